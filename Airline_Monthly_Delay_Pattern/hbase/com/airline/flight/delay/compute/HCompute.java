@@ -1,9 +1,13 @@
 package com.airline.flight.delay.compute;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
@@ -12,44 +16,106 @@ import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.mapreduce.TableMapReduceUtil;
 import org.apache.hadoop.hbase.mapreduce.TableMapper;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.io.WritableComparable;
-import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Partitioner;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.GenericOptionsParser;
 
+import com.airline.flight.aggregate.CarrierMonthDelayBuffer;
+import com.airline.flight.aggregate.CarrierMonthDelayCombiner;
+import com.airline.flight.aggregate.MonthlyDelayReport;
+import com.airline.flight.comparator.CarrierIDGroupComparator;
+import com.airline.flight.comparator.CarrierIDMonthKeyComparator;
 import com.airline.flight.comparator.CarrierIDMonthKeyPair;
+import com.airline.flight.delay.schema.FlightRowKey;
+import com.airline.flight.delay.schema.FlightTableSchema;
+import com.mapreduce.common.aggregate.FlightDelayStatsWritable;
+import com.mapreduce.common.aggregate.SumCountWritable;
+import com.mapreduce.common.metrics.FlightCounters;
+import com.mapreduce.common.metrics.GroupSizeHistogram;
+import com.mapreduce.common.metrics.PhaseCpuMicros;
+import com.mapreduce.common.metrics.PhaseTimer;
+import com.mapreduce.common.metrics.RunReport;
+import com.mapreduce.common.sizing.ReducerSizing;
 
 public class HCompute {
 	
-	private static final String FLIGHT_INFO_TABLE_NAME = "FlightInfo";
-	private static final String FLIGHT_COLOUMN_FAMILY = "FlightFamily";
-	private static final String FLIGHT_YEAR_COLOUMN = "C0";
-	private static final String FLIGHT_DELAY_COLOUMN = "C37";
-	private static final String FLIGHT_CANCELLED_COLOUMN = "C41";
+	public static final String FLIGHT_INFO_TABLE_NAME = "FlightInfo";
+	public static final int YEAR_OF_INTEREST = 2008;
 	
-	private static final String YEAR_OF_INTEREST = "2008";
-	private static final String NOT_CANCELLED_FLIGHT = "0.00";
+	//Counter group of the number of values of each carrier reduced
+	public static final String GROUP_SIZES = "Carrier group sizes";
 	
-	public static class HComputeAirlineMapper extends TableMapper<CarrierIDMonthKeyPair, Text> {
+	public static class HComputeAirlineMapper extends TableMapper<CarrierIDMonthKeyPair, SumCountWritable> {
+		
+		private CarrierIDMonthKeyPair keyPair = new CarrierIDMonthKeyPair();
+		private SumCountWritable airlineDelay;
+		
+		//Buffer for in-mapper aggregation, null when every flight is emitted individually
+		private CarrierMonthDelayBuffer delayBuffer;
+		
+		//Bytes preceding the year in the row keys
+		private int saltLength;
+		
+		//Binary delay cell of the hot family when the families are split, string cell C37 otherwise
+		private boolean splitFamilies;
+		private byte[] delayFamily;
+		private byte[] delayColumn;
+		
+		//Rows of other years and cancelled flights are never returned by the scans, only rows without a delay are dropped
+		//An empty delay is a diverted flight or a corrupt record, dropped as by the secondary sort job
+		private Counter[] flightCounters;
+		
+		/*
+		 * Setup in-mapper aggregation if enabled for the job
+		 */
+		protected void setup(Context context) {
+			flightCounters = FlightCounters.getCounters(context);
+			saltLength = FlightRowKey.getSaltLength(context.getConfiguration().getInt(FlightRowKey.SALT_BUCKETS, 0));
+			splitFamilies = context.getConfiguration().getBoolean(FlightTableSchema.SPLIT_FAMILIES, false);
+			delayFamily = splitFamilies ? FlightTableSchema.HOT_FAMILY : FlightTableSchema.COLD_FAMILY;
+			delayColumn = splitFamilies ? FlightTableSchema.DELAY_COLUMN : FlightTableSchema.COLD_DELAY_COLUMN;
+			boolean percentiles = context.getConfiguration().getBoolean(FlightDelayStatsWritable.PERCENTILES, false);
+			airlineDelay = FlightDelayStatsWritable.newAggregate(percentiles);
+			if (context.getConfiguration().getBoolean(CarrierMonthDelayBuffer.IN_MAPPER_AGGREGATION, false)) {
+				delayBuffer = new CarrierMonthDelayBuffer(percentiles);
+			}
+		}
 		
 		@Override
 		public void map(ImmutableBytesWritable row, Result value, Context context) throws IOException, InterruptedException {
+			flightCounters[FlightCounters.RECORDS_READ.ordinal()].increment(1);
 			
-			CarrierIDMonthKeyPair keyPair = new CarrierIDMonthKeyPair();
-			Text airlineDelay = new Text();
-			
-			String[] rowKeyAttributes = new String(value.getRow()).split(";");
-			keyPair.setCarrierID(new Text(rowKeyAttributes[0]));
-			keyPair.setMonth(new Text(rowKeyAttributes[2]));
-			byte[] delay = value.getValue(FLIGHT_COLOUMN_FAMILY.getBytes(), FLIGHT_DELAY_COLOUMN.getBytes());
-			if(delay != null && delay != "".getBytes()){
-				airlineDelay.set(new String(value.getValue(FLIGHT_COLOUMN_FAMILY.getBytes(), 
-						FLIGHT_DELAY_COLOUMN.getBytes())));
-				context.write(keyPair, airlineDelay);
+			//Carrier and month are read from the binary row key
+			FlightRowKey.getCarrier(row.get(), row.getOffset(), saltLength, keyPair.getCarrierID());
+			keyPair.setMonth(FlightRowKey.getMonth(row.get(), row.getOffset(), saltLength));
+			byte[] delay = value.getValue(delayFamily, delayColumn);
+			if (delay != null && delay.length > 0) {
+				double flightDelay = FlightTableSchema.getDelay(delay, 0, delay.length, splitFamilies);
+				
+				if (delayBuffer != null) {
+					delayBuffer.add(keyPair.getCarrierID(), keyPair.getMonth(), flightDelay);
+				} else {
+					airlineDelay.reset();
+					airlineDelay.add(flightDelay);
+					context.write(keyPair, airlineDelay);
+				}
+				flightCounters[FlightCounters.RECORDS_EMITTED.ordinal()].increment(1);
+			} else {
+				flightCounters[FlightCounters.DROPPED_MALFORMED.ordinal()].increment(1);
+			}
+		}
+		
+		/*
+		 * Emit the aggregated delays of the map task
+		 */
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			if (delayBuffer != null) {
+				delayBuffer.flush(context);
 			}
 		}
 	}
@@ -58,159 +124,179 @@ public class HCompute {
 	 * Custom partitioner for flight data,
 	 * Uses the hash code of the underlying key to determine the partition
 	 */
-	public static class FlightDataPartitioner extends Partitioner<CarrierIDMonthKeyPair, Text> {
+	public static class FlightDataPartitioner extends Partitioner<CarrierIDMonthKeyPair, SumCountWritable> {
 
-		public int getPartition(CarrierIDMonthKeyPair key, Text value, int numReduceTasks) {
+		public int getPartition(CarrierIDMonthKeyPair key, SumCountWritable value, int numReduceTasks) {
 			//Multiply by 127 to perform some mixing
 			return Math.abs(key.getCarrierID().hashCode() * 127) % numReduceTasks;
 		}
 	}
 	
-	/*
-	 * Custom comparator that controls how the keys are sorted before they are passed to the Reducer
-	 * Here we use the composite key of Unique carrier id and month of travel
-	 * It first sorts on the basis of carrier id and then sorts in increasing order of month of journey
-	 */
-	public static class CarrierIDMonthKeyComparator extends WritableComparator {
-	    protected CarrierIDMonthKeyComparator() {
-	        super(CarrierIDMonthKeyPair.class, true);
-	    }   
-	    
-	    @SuppressWarnings("rawtypes")
-		@Override
-	    public int compare(WritableComparable writable1, WritableComparable writable2) {
-	    	CarrierIDMonthKeyPair flight1 = (CarrierIDMonthKeyPair)writable1;
-	    	CarrierIDMonthKeyPair flight2 = (CarrierIDMonthKeyPair)writable2;
-	         
-	        return flight1.compareCarrierIDAndMonth(flight2);
-	    }
-	}
-	
-	/*
-	 * Custom comparator that controls which keys are grouped together for a single call to reduce
-	 * Here we use the first half of composite key, Unique carrier id
-	 * It groups all the records with the same carrier id irrespective of their month of travel
-	 */
-	public static class CarrierIDGroupComparator extends WritableComparator {
-	    protected CarrierIDGroupComparator() {
-	        super(CarrierIDMonthKeyPair.class, true);
-	    }   
-	    
-	    @SuppressWarnings("rawtypes")
-		@Override
-	    public int compare(WritableComparable writable1, WritableComparable writable2) {
-	    	CarrierIDMonthKeyPair flight1 = (CarrierIDMonthKeyPair)writable1;
-	    	CarrierIDMonthKeyPair flight2 = (CarrierIDMonthKeyPair)writable2;
-	         
-	        return flight1.compareCarrierIDOnly(flight2);
-	    }
-	}
-	
 	/*
 	 * Reducer for computing the average delay by month for each carrier
 	 */
-	public static class HComputeAirlineReducer extends Reducer<CarrierIDMonthKeyPair, Text, Text, Text> {
+	public static class HComputeAirlineReducer extends Reducer<CarrierIDMonthKeyPair, SumCountWritable, Text, Text> {
+		
+		private MonthlyDelayReport monthlyDelayReport;
+		
+		private GroupSizeHistogram groupSizes = new GroupSizeHistogram(GROUP_SIZES);
+		private PhaseTimer processTimer;
+		private PhaseTimer emitTimer;
+		
+		protected void setup(Context context) {
+			monthlyDelayReport = new MonthlyDelayReport(
+					context.getConfiguration().getBoolean(FlightDelayStatsWritable.PERCENTILES, false));
+			processTimer = new PhaseTimer(context, PhaseCpuMicros.REDUCE_PROCESS);
+			emitTimer = new PhaseTimer(context, PhaseCpuMicros.REDUCE_EMIT);
+		}
 		
 		/*
 		 * Key : Composite key(UniqueCarrierID, Month)
-		 * Values : All the records with for an individual unique carrier, sorted in increasing order of month
+		 * Values : Partial aggregates of delays for an individual unique carrier, sorted in increasing order of month
 		 */
-		public void reduce(CarrierIDMonthKeyPair key, Iterable<Text> values, Context context) throws IOException, InterruptedException {
-			
-			//Initialize the counters for average delay computation
-			int currentMonthNum = 1;
-			int totalFlightsByMonth = 0;
-			double airlineTotalDelayforMonth = 0;
+		public void reduce(CarrierIDMonthKeyPair key, Iterable<SumCountWritable> values, Context context) throws IOException, InterruptedException {
+			processTimer.start();
 			
-			//Initialize the variable to store the output text
-			StringBuffer airlineDelayInformationByMonth = new StringBuffer(key.getCarrierID().toString());
+			//Reset the delays left over from the previous carrier
+			monthlyDelayReport.reset();
 
-			// For each flight of a given carrier compute average delay by month
-			for (Text value : values) {
-				int keyMonthNum = Integer.parseInt(key.getMonth().toString());
-				
-				//If a new month has been found, add its average delay to the output text
-				if(currentMonthNum != keyMonthNum) {
-					int airlineAverageDelayforMonth = (int)(Math.ceil(airlineTotalDelayforMonth / totalFlightsByMonth));
-					airlineDelayInformationByMonth.append(", (" + currentMonthNum + ", " + airlineAverageDelayforMonth + ")");
-					
-					//Increment the month counter by 1 to handle the case of a no flight during amonth
-					currentMonthNum++;
-					
-					//Reset counters used in the average delay computation
-					totalFlightsByMonth = 0;
-					airlineTotalDelayforMonth = 0;
-				}
-				//Increment the counters for average delay computation of current month
-				totalFlightsByMonth++;
-				if(!value.toString().isEmpty()){
-					airlineTotalDelayforMonth += Double.parseDouble(value.toString());
-				}
-			}
-			
-			//Write average delay for the last month with flight, as well as any remaining months
-			while(currentMonthNum <= 12){
-				int averageDelay = (int)(Math.ceil(airlineTotalDelayforMonth / totalFlightsByMonth));
-				airlineDelayInformationByMonth.append(", (" + currentMonthNum + ", " + averageDelay + ")");
-				airlineTotalDelayforMonth = 0;
-				totalFlightsByMonth = 0;
-				currentMonthNum++;
+			//Merge the delays of a given carrier by month, the month of the key changes along with the values
+			long groupSize = 0;
+			for (SumCountWritable value : values) {
+				monthlyDelayReport.add(key.getMonth(), value);
+				groupSize++;
 			}
+			groupSizes.add(groupSize);
+			processTimer.stop();
 			
 			//Emit the average delay for each airline per month
-			context.write(new Text(""), new Text(airlineDelayInformationByMonth.toString()));
+			emitTimer.start();
+			context.write(new Text(""), new Text(monthlyDelayReport.format(key.getCarrierID())));
+			emitTimer.stop();
+		}
+		
+		protected void cleanup(Context context) {
+			groupSizes.flush(context);
+			processTimer.flush();
+			emitTimer.flush();
 		}
 	}
 	
-	public static FilterList setupHbaseFilters() {
+	/*
+	 * The year is selected by the row key range of the scans, only the cancelled flights are filtered out
+	 */
+	public static FilterList setupHbaseFilters(boolean splitFamilies) {
 		
 		FilterList filterList = new FilterList(FilterList.Operator.MUST_PASS_ALL);
 		
-		SingleColumnValueFilter yearOfInterestFilter = 
-				new SingleColumnValueFilter(FLIGHT_COLOUMN_FAMILY.getBytes(), FLIGHT_YEAR_COLOUMN.getBytes(), 
-						CompareOp.EQUAL, YEAR_OF_INTEREST.getBytes());
-		filterList.addFilter(yearOfInterestFilter);
-		
-		SingleColumnValueFilter cancelledFilter = 
-				new SingleColumnValueFilter(FLIGHT_COLOUMN_FAMILY.getBytes(), FLIGHT_CANCELLED_COLOUMN.getBytes(), 
-						CompareOp.EQUAL, NOT_CANCELLED_FLIGHT.getBytes());
+		SingleColumnValueFilter cancelledFilter;
+		if (splitFamilies) {
+			cancelledFilter = new SingleColumnValueFilter(FlightTableSchema.HOT_FAMILY, FlightTableSchema.CANCELLED_COLUMN, 
+					CompareOp.EQUAL, FlightTableSchema.NOT_CANCELLED);
+		} else {
+			cancelledFilter = new SingleColumnValueFilter(FlightTableSchema.COLD_FAMILY, FlightTableSchema.COLD_CANCELLED_COLUMN, 
+					CompareOp.EQUAL, FlightTableSchema.COLD_NOT_CANCELLED);
+		}
 		filterList.addFilter(cancelledFilter);
 		
 		return filterList;
 	}
 	
-	public static void main(String[] args) throws Exception {
-		
-		Configuration computeDelayConf = new Configuration();
-		String[] otherArgs = new GenericOptionsParser(computeDelayConf, args).getRemainingArgs();
-		
-		if (otherArgs.length != 1) {
-			System.err.println("Usage: AirlineAverageFlightDelay <out>");
-			System.exit(2);
+	/*
+	 * Request only the delay and cancelled cells, the region servers return nothing else of the rows
+	 * When the families are split, the blocks of the cold family are not read at all
+	 */
+	public static void addScanColumns(Scan scan, boolean splitFamilies) {
+		if (splitFamilies) {
+			scan.addColumn(FlightTableSchema.HOT_FAMILY, FlightTableSchema.DELAY_COLUMN);
+			scan.addColumn(FlightTableSchema.HOT_FAMILY, FlightTableSchema.CANCELLED_COLUMN);
+		} else {
+			scan.addColumn(FlightTableSchema.COLD_FAMILY, FlightTableSchema.COLD_DELAY_COLUMN);
+			scan.addColumn(FlightTableSchema.COLD_FAMILY, FlightTableSchema.COLD_CANCELLED_COLUMN);
 		}
-		
-		FilterList filterList = setupHbaseFilters();
-		Scan scan = new Scan();
-		scan.setCacheBlocks(false);
-		scan.setCaching(700);
-		scan.setFilter(filterList);
+	}
+	
+	/*
+	 * One scan per salt bucket, from the first row of the start year up to the last row of the end year
+	 * Only the regions holding these years are read
+	 */
+	public static List<Scan> setupYearScans(int saltBuckets, boolean splitFamilies, int startYear, int endYear) {
+		List<Scan> scans = new ArrayList<Scan>();
+		for (int bucket = 0; bucket < Math.max(1, saltBuckets); bucket++) {
+			Scan scan = new Scan(FlightRowKey.getStartRow(saltBuckets, bucket, startYear), 
+					FlightRowKey.getStopRow(saltBuckets, bucket, endYear));
+			scan.setCacheBlocks(false);
+			scan.setCaching(700);
+			scan.setFilter(setupHbaseFilters(splitFamilies));
+			addScanColumns(scan, splitFamilies);
+			scan.setAttribute(Scan.SCAN_ATTRIBUTES_TABLE_NAME, Bytes.toBytes(FLIGHT_INFO_TABLE_NAME));
+			scans.add(scan);
+		}
+		return scans;
+	}
+	
+	
+	/*
+	 * Number of regions of the table, the amount of map output grows with the regions read
+	 */
+	public static int getRegionCount(Configuration conf) throws IOException {
+		HTable flightInfoTable = new HTable(HBaseConfiguration.create(conf), FLIGHT_INFO_TABLE_NAME);
+		try {
+			return flightInfoTable.getStartKeys().length;
+		} finally {
+			flightInfoTable.close();
+		}
+	}
+	
+	/*
+	 * Compute the monthly delays of the year of interest from the table, returns the completed job
+	 */
+	public static Job run(Configuration computeDelayConf, Path output) throws Exception {
+		//Mappers decode the rows with the schema options the table was written with
+		FlightTableSchema.loadOptions(FLIGHT_INFO_TABLE_NAME, computeDelayConf);
+		List<Scan> scans = setupYearScans(computeDelayConf.getInt(FlightRowKey.SALT_BUCKETS, 0), 
+				computeDelayConf.getBoolean(FlightTableSchema.SPLIT_FAMILIES, false), YEAR_OF_INTEREST, YEAR_OF_INTEREST);
 			
 		Job computeDelayJob = new Job(computeDelayConf, "Compute Flight Delays");
 		computeDelayJob.setJarByClass(HCompute.class);
 		computeDelayJob.setMapperClass(HComputeAirlineMapper.class);
+		computeDelayJob.setCombinerClass(CarrierMonthDelayCombiner.class);
 		computeDelayJob.setPartitionerClass(FlightDataPartitioner.class);
 		computeDelayJob.setSortComparatorClass(CarrierIDMonthKeyComparator.class);
 		computeDelayJob.setGroupingComparatorClass(CarrierIDGroupComparator.class);
 		computeDelayJob.setReducerClass(HComputeAirlineReducer.class);
-		computeDelayJob.setOutputKeyClass(CarrierIDMonthKeyPair.class);
+		computeDelayJob.setOutputKeyClass(Text.class);
 		computeDelayJob.setOutputValueClass(Text.class);
-		computeDelayJob.setNumReduceTasks(10);
+		computeDelayJob.setNumReduceTasks(ReducerSizing.forUnits(computeDelayConf, getRegionCount(computeDelayConf)));
 
-		TableMapReduceUtil.initTableMapperJob(FLIGHT_INFO_TABLE_NAME, scan,
-				HComputeAirlineMapper.class, CarrierIDMonthKeyPair.class, Text.class, computeDelayJob);
-		FileOutputFormat.setOutputPath(computeDelayJob, new Path(otherArgs[0]));
+		TableMapReduceUtil.initTableMapperJob(scans,
+				HComputeAirlineMapper.class, CarrierIDMonthKeyPair.class, 
+				FlightDelayStatsWritable.getAggregateClass(computeDelayConf.getBoolean(FlightDelayStatsWritable.PERCENTILES, false)),
+				computeDelayJob);
+		FileOutputFormat.setOutputPath(computeDelayJob, output);
 
-		System.exit(computeDelayJob.waitForCompletion(true) ? 0 : 1);
+		if (computeDelayJob.waitForCompletion(true)) {
+			new RunReport().add(computeDelayJob).write(computeDelayConf, output);
+		}
+		return computeDelayJob;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		
+		Configuration computeDelayConf = new Configuration();
+		String[] otherArgs = new GenericOptionsParser(computeDelayConf, args).getRemainingArgs();
+		
+		if (otherArgs.length != 1) {
+			System.err.println("Usage: AirlineAverageFlightDelay <out>");
+			System.exit(2);
+		}
+		if (computeDelayConf.getInt(MonthlyDelayReport.TOP_DELAYS, 0) > 0) {
+			System.err.println(MonthlyDelayReport.TOP_DELAYS + " is only supported by the secondary sort job");
+			System.exit(2);
+		}
+		
+		Job computeDelayJob = run(computeDelayConf, new Path(otherArgs[0]));
+		System.exit(computeDelayJob.isSuccessful() ? 0 : 1);
 	}
 
 }
@@ -0,0 +1,156 @@
+package com.airline.flight.delay.compute;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import com.airline.flight.aggregate.MonthlyDelayReport;
+import com.airline.flight.delay.coprocessor.DelayAggregatingScanner;
+import com.airline.flight.delay.coprocessor.DelayAggregationObserver;
+import com.airline.flight.delay.schema.DelayAggregateTable;
+import com.airline.flight.delay.schema.FlightRowKey;
+import com.airline.flight.delay.schema.FlightTableSchema;
+import com.mapreduce.common.aggregate.SumCountWritable;
+
+/*
+ * Client computing the monthly delays of each carrier without a map reduce job
+ * Runs the same scans as HCompute, as aggregation requests answered by the DelayAggregationObserver of each region,
+ * and merges the partial (sum, count) of each (carrier, month) returned by the regions, a few rows of the regions at a time
+ * The table has to be created by HPopulate with -D flight.hbase.aggregation.coprocessor=true
+ * With -D flight.hbase.aggregate.table=true, reads the aggregates maintained by HPopulate instead, at most carriers * 12 rows
+ */
+public class HComputeAggregate {
+
+	/*
+	 * Monthly delay report of each carrier for the given year, sorted by carrier
+	 */
+	public static Map<String, MonthlyDelayReport> computeMonthlyDelays(Configuration conf, int year) throws IOException {
+		Configuration hBaseConfig = HBaseConfiguration.create(conf);
+		FlightTableSchema.loadOptions(HCompute.FLIGHT_INFO_TABLE_NAME, hBaseConfig);
+		int saltBuckets = hBaseConfig.getInt(FlightRowKey.SALT_BUCKETS, 0);
+		boolean splitFamilies = hBaseConfig.getBoolean(FlightTableSchema.SPLIT_FAMILIES, false);
+		byte[] delayFamily = splitFamilies ? FlightTableSchema.HOT_FAMILY : FlightTableSchema.COLD_FAMILY;
+		
+		Map<String, MonthlyDelayReport> monthlyDelays = new TreeMap<String, MonthlyDelayReport>();
+		SumCountWritable regionDelay = new SumCountWritable();
+		Text carrierID = new Text();
+		
+		HTable flightInfoTable = new HTable(hBaseConfig, HCompute.FLIGHT_INFO_TABLE_NAME);
+		try {
+			for (Scan scan : HCompute.setupYearScans(saltBuckets, splitFamilies, year, year)) {
+				DelayAggregationObserver.setAggregation(scan, FlightRowKey.getSaltLength(saltBuckets), splitFamilies);
+				ResultScanner scanner = flightInfoTable.getScanner(scan);
+				try {
+					for (Result aggregates : scanner) {
+						for (Cell aggregate : aggregates.rawCells()) {
+							if (!CellUtil.matchingFamily(aggregate, delayFamily) 
+									|| aggregate.getQualifierLength() != DelayAggregatingScanner.AGGREGATE_QUALIFIER_LENGTH
+									|| aggregate.getValueLength() != DelayAggregatingScanner.AGGREGATE_VALUE_LENGTH) {
+								throw new IOException("Table " + HCompute.FLIGHT_INFO_TABLE_NAME 
+										+ " returned flights instead of aggregates, the aggregation coprocessor is not loaded");
+							}
+							
+							//Aggregate qualifiers are | carrier, zero padded | month |
+							byte[] qualifier = aggregate.getQualifierArray();
+							int qualifierOffset = aggregate.getQualifierOffset();
+							int carrierIDLength = FlightRowKey.CODE_LENGTH;
+							while (carrierIDLength > 0 && qualifier[qualifierOffset + carrierIDLength - 1] == 0) {
+								carrierIDLength--;
+							}
+							carrierID.set(qualifier, qualifierOffset, carrierIDLength);
+							int month = qualifier[qualifierOffset + FlightRowKey.CODE_LENGTH] & 0xff;
+							
+							MonthlyDelayReport carrierDelays = monthlyDelays.get(carrierID.toString());
+							if (carrierDelays == null) {
+								carrierDelays = new MonthlyDelayReport();
+								monthlyDelays.put(carrierID.toString(), carrierDelays);
+							}
+							regionDelay.set(Bytes.toDouble(aggregate.getValueArray(), aggregate.getValueOffset()), 
+									Bytes.toLong(aggregate.getValueArray(), aggregate.getValueOffset() + Bytes.SIZEOF_DOUBLE));
+							carrierDelays.add(month, regionDelay);
+						}
+					}
+				} finally {
+					scanner.close();
+				}
+			}
+		} finally {
+			flightInfoTable.close();
+		}
+		return monthlyDelays;
+	}
+	
+	/*
+	 * Monthly delay report of each carrier for the given year, read from the aggregate table maintained by HPopulate
+	 */
+	public static Map<String, MonthlyDelayReport> readMonthlyDelays(Configuration conf, int year) throws IOException {
+		Map<String, MonthlyDelayReport> monthlyDelays = new TreeMap<String, MonthlyDelayReport>();
+		SumCountWritable monthlyDelay = new SumCountWritable();
+		
+		HTable delayAggregateTable = new HTable(HBaseConfiguration.create(conf), DelayAggregateTable.TABLE_NAME);
+		try {
+			ResultScanner scanner = delayAggregateTable.getScanner(
+					new Scan(DelayAggregateTable.getStartRow(year), DelayAggregateTable.getStopRow(year)));
+			try {
+				for (Result aggregate : scanner) {
+					byte[] sum = aggregate.getValue(DelayAggregateTable.FAMILY, DelayAggregateTable.SUM_COLUMN);
+					byte[] count = aggregate.getValue(DelayAggregateTable.FAMILY, DelayAggregateTable.COUNT_COLUMN);
+					
+					String carrierID = DelayAggregateTable.getCarrier(aggregate.getRow());
+					MonthlyDelayReport carrierDelays = monthlyDelays.get(carrierID);
+					if (carrierDelays == null) {
+						carrierDelays = new MonthlyDelayReport();
+						monthlyDelays.put(carrierID, carrierDelays);
+					}
+					monthlyDelay.set((double) Bytes.toLong(sum) / DelayAggregateTable.DELAY_SCALE, Bytes.toLong(count));
+					carrierDelays.add(DelayAggregateTable.getMonth(aggregate.getRow()), monthlyDelay);
+				}
+			} finally {
+				scanner.close();
+			}
+		} finally {
+			delayAggregateTable.close();
+		}
+		return monthlyDelays;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		
+		Configuration computeDelayConf = new Configuration();
+		String[] otherArgs = new GenericOptionsParser(computeDelayConf, args).getRemainingArgs();
+		
+		if (otherArgs.length > 1) {
+			System.err.println("Usage: HComputeAggregate [year]");
+			System.exit(2);
+		}
+		if (computeDelayConf.getInt(MonthlyDelayReport.TOP_DELAYS, 0) > 0) {
+			System.err.println(MonthlyDelayReport.TOP_DELAYS + " is only supported by the secondary sort job");
+			System.exit(2);
+		}
+		int year = otherArgs.length == 1 ? Integer.parseInt(otherArgs[0]) : HCompute.YEAR_OF_INTEREST;
+		
+		Map<String, MonthlyDelayReport> monthlyDelays;
+		if (computeDelayConf.getBoolean(DelayAggregateTable.MAINTAIN_AGGREGATES, false)) {
+			monthlyDelays = readMonthlyDelays(computeDelayConf, year);
+		} else {
+			monthlyDelays = computeMonthlyDelays(computeDelayConf, year);
+		}
+		
+		//Same lines as HComputeAirlineReducer
+		for (Map.Entry<String, MonthlyDelayReport> carrierDelays : monthlyDelays.entrySet()) {
+			System.out.println(carrierDelays.getValue().format(new Text(carrierDelays.getKey())));
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package com.airline.flight.delay.coprocessor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.ScannerContext;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.airline.flight.delay.schema.FlightRowKey;
+import com.airline.flight.delay.schema.FlightTableSchema;
+import com.mapreduce.common.aggregate.SumCountWritable;
+
+/*
+ * Region scanner returning partial delay aggregates of a region instead of its rows
+ * Each call reads the next rows of the wrapped scanner, which already applies the range, columns and filter of the scan,
+ * until the cells read reach the max result size of the scan, the time budget of a call or the batch of the scan,
+ * and returns the aggregates of the delays of these rows by (carrier, month) as a single row
+ * The returned row is the last row read, so the rows returned are rows of the region in ascending order,
+ * and a scanner reopened by the client after the last row it received aggregates exactly the rows not returned yet
+ * Each aggregate is a cell of the delay family:
+ * qualifier | carrier, zero padded to 3 bytes | month, 1 byte |, value | sum, double | count, long |
+ */
+public class DelayAggregatingScanner implements RegionScanner {
+
+	public static final int AGGREGATE_QUALIFIER_LENGTH = FlightRowKey.CODE_LENGTH + 1;
+	public static final int AGGREGATE_VALUE_LENGTH = Bytes.SIZEOF_DOUBLE + Bytes.SIZEOF_LONG;
+
+	private final RegionScanner scanner;
+	private final int saltLength;
+	private final boolean splitFamilies;
+	private final byte[] delayFamily;
+	private final byte[] delayColumn;
+
+	//Limits of the rows read by a call, the server checks its own limits against the progress of the wrapped scanner after each call
+	private final long maxResultSize;
+	private final long timeBudget;
+
+	//Cells of a row of the wrapped scanner, reused across rows
+	private final List<Cell> cells = new ArrayList<Cell>();
+
+	/*
+	 * Wrap the scanner of a region, each call reads rows for at most the given milliseconds
+	 */
+	public DelayAggregatingScanner(RegionScanner scanner, int saltLength, boolean splitFamilies, long timeBudget) {
+		this.scanner = scanner;
+		this.saltLength = saltLength;
+		this.splitFamilies = splitFamilies;
+		this.delayFamily = splitFamilies ? FlightTableSchema.HOT_FAMILY : FlightTableSchema.COLD_FAMILY;
+		this.delayColumn = splitFamilies ? FlightTableSchema.DELAY_COLUMN : FlightTableSchema.COLD_DELAY_COLUMN;
+		this.maxResultSize = scanner.getMaxResultSize() > 0 ? scanner.getMaxResultSize() : Long.MAX_VALUE;
+		this.timeBudget = timeBudget;
+	}
+
+	@Override
+	public boolean nextRaw(List<Cell> result) throws IOException {
+		return nextRaw(result, null);
+	}
+
+	/*
+	 * Aggregate the next rows of the region, the context is handed to the wrapped scanner so that the server accounts
+	 * for the rows read and ends the RPC once its limits are reached
+	 * A flight without a delay cell or with an empty one is not counted, as by H-COMPUTE
+	 */
+	@Override
+	public boolean nextRaw(List<Cell> result, ScannerContext scannerContext) throws IOException {
+		Map<byte[], SumCountWritable> aggregates = new TreeMap<byte[], SumCountWritable>(Bytes.BYTES_COMPARATOR);
+		byte[] aggregateQualifier = new byte[AGGREGATE_QUALIFIER_LENGTH];
+		Cell lastCell = null;
+		long resultSize = 0;
+		long deadline = System.currentTimeMillis() + timeBudget;
+		int batch = scanner.getBatch();
+
+		boolean moreRows;
+		do {
+			cells.clear();
+			moreRows = scannerContext == null ? scanner.nextRaw(cells) : scanner.nextRaw(cells, scannerContext);
+			for (Cell cell : cells) {
+				resultSize += CellUtil.estimatedSerializedSizeOf(cell);
+				lastCell = cell;
+				if (cell.getValueLength() > 0 && CellUtil.matchingColumn(cell, delayFamily, delayColumn)) {
+					//Carrier and month are contiguous in the row key
+					System.arraycopy(cell.getRowArray(), cell.getRowOffset() + saltLength + FlightRowKey.CARRIER_OFFSET,
+							aggregateQualifier, 0, FlightRowKey.CODE_LENGTH);
+					aggregateQualifier[FlightRowKey.CODE_LENGTH] =
+							cell.getRowArray()[cell.getRowOffset() + saltLength + FlightRowKey.MONTH_OFFSET];
+
+					SumCountWritable aggregate = aggregates.get(aggregateQualifier);
+					if (aggregate == null) {
+						aggregate = new SumCountWritable();
+						aggregates.put(aggregateQualifier.clone(), aggregate);
+					}
+					aggregate.add(FlightTableSchema.getDelay(cell.getValueArray(), cell.getValueOffset(),
+							cell.getValueLength(), splitFamilies));
+				}
+			}
+			//A row adds at most one aggregate, stopping at the batch keeps the cells returned within it
+		} while (moreRows && !cells.isEmpty() && resultSize < maxResultSize && System.currentTimeMillis() < deadline
+				&& (batch <= 0 || aggregates.size() < batch));
+
+		if (!aggregates.isEmpty()) {
+			byte[] row = CellUtil.cloneRow(lastCell);
+			for (Map.Entry<byte[], SumCountWritable> aggregate : aggregates.entrySet()) {
+				byte[] value = new byte[AGGREGATE_VALUE_LENGTH];
+				Bytes.putDouble(value, 0, aggregate.getValue().getSum());
+				Bytes.putLong(value, Bytes.SIZEOF_DOUBLE, aggregate.getValue().getCount());
+				result.add(new KeyValue(row, delayFamily, aggregate.getKey(), value));
+			}
+		}
+		return moreRows;
+	}
+
+	@Override
+	public boolean next(List<Cell> result) throws IOException {
+		return nextRaw(result);
+	}
+
+	@Override
+	public boolean next(List<Cell> result, ScannerContext scannerContext) throws IOException {
+		return nextRaw(result, scannerContext);
+	}
+
+	/*
+	 * No rows are kept across calls, the next call aggregates the rows from the given row on
+	 */
+	@Override
+	public boolean reseek(byte[] row) throws IOException {
+		return scanner.reseek(row);
+	}
+
+	@Override
+	public HRegionInfo getRegionInfo() {
+		return scanner.getRegionInfo();
+	}
+
+	@Override
+	public boolean isFilterDone() throws IOException {
+		return scanner.isFilterDone();
+	}
+
+	@Override
+	public long getMaxResultSize() {
+		return scanner.getMaxResultSize();
+	}
+
+	@Override
+	public long getMvccReadPoint() {
+		return scanner.getMvccReadPoint();
+	}
+
+	@Override
+	public int getBatch() {
+		return scanner.getBatch();
+	}
+
+	@Override
+	public void close() throws IOException {
+		scanner.close();
+	}
+}
@@ -0,0 +1,61 @@
+package com.airline.flight.delay.coprocessor;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/*
+ * Region observer aggregating the delays of a scan inside each region
+ * A scan carrying the AGGREGATE_SALT_LENGTH attribute gets back, from each region, rows holding the sum and count
+ * of the delays by (carrier, month) of the rows matched by the scan, instead of the rows themselves
+ * Each row aggregates as many rows as fit in the size and time limits of a scanner call, see DelayAggregatingScanner
+ * Other scans are left untouched
+ */
+public class DelayAggregationObserver extends BaseRegionObserver {
+
+	/*************** Scan attributes of an aggregation request *****************/
+	//Bytes preceding the year in the row keys, as an int
+	public static final String AGGREGATE_SALT_LENGTH = "flight.delay.aggregate.salt.length";
+	//Whether the delay is a binary cell of the hot family, as a boolean
+	public static final String AGGREGATE_SPLIT_FAMILIES = "flight.delay.aggregate.split.families";
+
+	@Override
+	public RegionScanner postScannerOpen(ObserverContext<RegionCoprocessorEnvironment> context, Scan scan, 
+			RegionScanner scanner) throws IOException {
+		byte[] saltLength = scan.getAttribute(AGGREGATE_SALT_LENGTH);
+		if (saltLength == null) {
+			return scanner;
+		}
+		byte[] splitFamilies = scan.getAttribute(AGGREGATE_SPLIT_FAMILIES);
+		return new DelayAggregatingScanner(scanner, Bytes.toInt(saltLength), 
+				splitFamilies != null && Bytes.toBoolean(splitFamilies), getTimeBudget(context.getEnvironment().getConfiguration()));
+	}
+	
+	/*
+	 * Milliseconds a scanner call may spend reading rows, half the time the client waits for the call
+	 * as the region server does for the heartbeats of long scans
+	 */
+	private static long getTimeBudget(Configuration conf) {
+		int scannerTimeout = conf.getInt(HConstants.HBASE_CLIENT_SCANNER_TIMEOUT_PERIOD, 
+				HConstants.DEFAULT_HBASE_CLIENT_SCANNER_TIMEOUT_PERIOD);
+		int rpcTimeout = conf.getInt(HConstants.HBASE_RPC_TIMEOUT_KEY, HConstants.DEFAULT_HBASE_RPC_TIMEOUT);
+		return Math.min(scannerTimeout, rpcTimeout) / 2;
+	}
+
+	/*
+	 * Turn the scan into an aggregation request, answered by the regions of a table with this observer
+	 * The aggregates of a row are returned whole, the scan must not allow partial results
+	 */
+	public static void setAggregation(Scan scan, int saltLength, boolean splitFamilies) {
+		scan.setAllowPartialResults(false);
+		scan.setAttribute(AGGREGATE_SALT_LENGTH, Bytes.toBytes(saltLength));
+		scan.setAttribute(AGGREGATE_SPLIT_FAMILIES, Bytes.toBytes(splitFamilies));
+	}
+}
@@ -0,0 +1,55 @@
+package com.airline.flight.delay.populate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.airline.flight.delay.schema.DelayAggregateTable;
+
+/*
+ * Delay sums and flight counts of a map task by aggregate row, added to the aggregate table with a single batch of increments
+ * A map task sends at most one increment per (year, carrier, month), however many flights it reads
+ */
+public class DelayAggregateBuffer {
+
+	//Sum in hundredths of a minute and count, by row of the aggregate table
+	private Map<byte[], long[]> aggregates = new TreeMap<byte[], long[]>(Bytes.BYTES_COMPARATOR);
+
+	//Row key buffer reused to look up the aggregates, copied only for a new aggregate
+	private byte[] row = new byte[DelayAggregateTable.KEY_LENGTH];
+
+	public void add(int year, byte[] carrier, int carrierStart, int carrierLength, int month, double delay) {
+		DelayAggregateTable.setRow(row, year, carrier, carrierStart, carrierLength, month);
+		long[] aggregate = aggregates.get(row);
+		if (aggregate == null) {
+			aggregate = new long[2];
+			aggregates.put(row.clone(), aggregate);
+		}
+		aggregate[0] += Math.round(delay * DelayAggregateTable.DELAY_SCALE);
+		aggregate[1]++;
+	}
+
+	/*
+	 * Add the buffered aggregates to the table and clear the buffer
+	 */
+	public void flush(HTable aggregateTable) throws IOException, InterruptedException {
+		List<Row> increments = new ArrayList<Row>(aggregates.size());
+		for (Map.Entry<byte[], long[]> aggregate : aggregates.entrySet()) {
+			Increment increment = new Increment(aggregate.getKey());
+			increment.addColumn(DelayAggregateTable.FAMILY, DelayAggregateTable.SUM_COLUMN, aggregate.getValue()[0]);
+			increment.addColumn(DelayAggregateTable.FAMILY, DelayAggregateTable.COUNT_COLUMN, aggregate.getValue()[1]);
+			increments.add(increment);
+		}
+		if (!increments.isEmpty()) {
+			aggregateTable.batch(increments, new Object[increments.size()]);
+		}
+		aggregates.clear();
+	}
+}
@@ -1,20 +1,26 @@
 package com.airline.flight.delay.populate;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseConfiguration;
-import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
 import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.HFileOutputFormat2;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
 import org.apache.hadoop.hbase.mapreduce.TableOutputFormat;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
@@ -22,7 +28,15 @@ import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.*;
 import org.apache.hadoop.hbase.ZooKeeperConnectionException;
 
-import au.com.bytecode.opencsv.CSVParser;
+import com.airline.flight.delay.schema.DelayAggregateTable;
+import com.airline.flight.delay.schema.FlightRowKey;
+import com.airline.flight.delay.schema.FlightTableSchema;
+import com.mapreduce.common.csv.CSVFieldScanner;
+import com.mapreduce.common.metrics.FlightCounters;
+import com.mapreduce.common.metrics.PhaseCpuMicros;
+import com.mapreduce.common.metrics.PhaseTimer;
+import com.mapreduce.common.metrics.RunReport;
+import com.mapreduce.common.sample.RandomLineSampler;
 
 /*
  * Mapper class for reading the input flight data
@@ -31,12 +45,20 @@ import au.com.bytecode.opencsv.CSVParser;
 public class HPopulate {
   
 	private static final String FLIGHT_INFO_TABLE_NAME = "FlightInfo";
-	private static final String FLIGHT_COLOUMN_FAMILY = "FlightFamily";
+	
+	//Configuration flags for loading the table through HFiles, instead of writing each row through the region servers
+	public static final String BULK_LOAD = "flight.hbase.bulkload";
+	public static final String BULK_LOAD_REGIONS = "flight.hbase.bulkload.regions";
+	public static final String BULK_LOAD_SAMPLES = "flight.hbase.bulkload.samples";
+	
+	private static final int DEFAULT_BULK_LOAD_REGIONS = 16;
+	private static final int DEFAULT_BULK_LOAD_SAMPLES = 10000;
 	
 	/*
-	 * Map each input record to a row in HBASE table
+	 * Builds the row key and the row of an input record
+	 * Reuses the scanner, row key and column qualifiers across records
 	 */
-	public static class AirlineInfoMapper extends Mapper<Object, Text, ImmutableBytesWritable, Writable> {
+	public static class FlightRowBuilder {
 		
 		/*************** Indexes of relevant data in csv file *****************/
 		private static final int YEAR_INDEX = 0;
@@ -49,25 +71,171 @@ public class HPopulate {
 		private static final int ARRIVAL_DELAY_INDEX = 37;
 		private static final int FLIGHT_CANCELLED_INDEX = 41;
 		
-		private static final String FLIGHT_YEAR_COLOUMN = "Year";
-		private static final String FLIGHT_DELAY_COLOUMN = "ArrDelayMinutes";
-		private static final String FLIGHT_CANCELLED_COLOUMN = "Cancelled";
+	    private CSVFieldScanner scanner = new CSVFieldScanner(CSVFieldScanner.ALL_FIELDS);
+	    private FlightRowKey rowKey;
+	    
+	    //Column qualifiers C0..Cn built once per task
+	    private byte[][] columnQualifiers = new byte[0][];
+	    
+	    //Year, month, delay and cancelled go to the hot family as binary cells when the families are split
+	    private boolean splitFamilies;
+	    
+	    /*
+	     * Builder for the schema options of the given configuration
+	     */
+	    public FlightRowBuilder(Configuration conf) {
+	    	this.rowKey = new FlightRowKey(conf.getInt(FlightRowKey.SALT_BUCKETS, 0));
+	    	this.splitFamilies = conf.getBoolean(FlightTableSchema.SPLIT_FAMILIES, false);
+	    }
+	    
+	    /*
+	     * Unique row key of the input record, null when the record has too few fields or malformed key fields
+	     */
+	    public byte[] buildRowKey(Text value) {
+	    	if (scanner.scan(value) <= DEST_INDEX) {
+	    		return null;
+	    	}
+	    	
+	    	try {
+	    		rowKey.reset(scanner.getInt(YEAR_INDEX), scanner.getInt(MONTH_INDEX), 
+	    				scanner.getInt(DAY_INDEX), scanner.getInt(FLIGHT_NUM_INDEX));
+	    		rowKey.setCarrier(scanner.getBytes(), scanner.getStart(UNIQUE_CARRIER_INDEX), scanner.getLength(UNIQUE_CARRIER_INDEX));
+	    		rowKey.setOrigin(scanner.getBytes(), scanner.getStart(ORIGIN_INDEX), scanner.getLength(ORIGIN_INDEX));
+	    		rowKey.setDestination(scanner.getBytes(), scanner.getStart(DEST_INDEX), scanner.getLength(DEST_INDEX));
+	    	} catch (IllegalArgumentException malformedField) {
+	    		//Header lines, and codes too long for the key
+	    		return null;
+	    	}
+	    	return rowKey.toBytes();
+	    }
+	    
+	    /*
+	     * Row holding all the fields of the input record, null when the record has no valid row key or hot cells
+	     */
+	    public Put buildRow(Text value) {
+	    	byte[] rowKey = buildRowKey(value);
+	    	if (rowKey == null) {
+	    		return null;
+	    	}
+	    	
+	    	Put row = new Put(rowKey);
+	    	if (splitFamilies) {
+	    		try {
+	    			addHotCells(row);
+	    		} catch (NumberFormatException malformedField) {
+	    			//A delay or cancelled flag that can not be encoded
+	    			return null;
+	    		}
+	    	}
+			for (int count = 0; count < scanner.getFieldCount(); count++) {
+				if (!(splitFamilies && isHotField(count))) {
+					row.add(FlightTableSchema.COLD_FAMILY, getColumnQualifier(count), scanner.copyField(count));
+				}
+			}
+			return row;
+	    }
+	    
+	    /*
+	     * Binary year, month, delay and cancelled cells, a field missing from the record has no cell
+	     * An empty delay gets an empty cell, the readers drop the flight as the secondary sort job does
+	     */
+	    private void addHotCells(Put row) {
+	    	row.add(FlightTableSchema.HOT_FAMILY, FlightTableSchema.YEAR_COLUMN, Bytes.toBytes((short) scanner.getInt(YEAR_INDEX)));
+	    	row.add(FlightTableSchema.HOT_FAMILY, FlightTableSchema.MONTH_COLUMN, new byte[] { (byte) scanner.getInt(MONTH_INDEX) });
+	    	
+	    	if (scanner.hasField(ARRIVAL_DELAY_INDEX)) {
+	    		byte[] delay = scanner.isEmpty(ARRIVAL_DELAY_INDEX) ? 
+	    				new byte[0] : Bytes.toBytes((float) scanner.getDouble(ARRIVAL_DELAY_INDEX));
+	    		row.add(FlightTableSchema.HOT_FAMILY, FlightTableSchema.DELAY_COLUMN, delay);
+	    	}
+	    	
+	    	//Cancelled is written as 0.00 or 1.00 in the csv file
+	    	if (scanner.hasField(FLIGHT_CANCELLED_INDEX) && !scanner.isEmpty(FLIGHT_CANCELLED_INDEX)) {
+	    		byte cancelled = (byte) (scanner.getDouble(FLIGHT_CANCELLED_INDEX) != 0 ? 1 : 0);
+	    		row.add(FlightTableSchema.HOT_FAMILY, FlightTableSchema.CANCELLED_COLUMN, new byte[] { cancelled });
+	    	}
+	    }
+	    
+	    /*
+	     * Add the delay of the record last built to its (year, carrier, month) aggregate
+	     * Same selection as HCompute : cancelled flights and flights without a delay, or with an empty one, are left out
+	     * A flight is cancelled when its cancelled field is not 0, as for the cancelled hot cell
+	     */
+	    public void addToAggregate(DelayAggregateBuffer delayAggregates) {
+	    	if (!scanner.hasField(ARRIVAL_DELAY_INDEX) || scanner.isEmpty(ARRIVAL_DELAY_INDEX)
+	    			|| !scanner.hasField(FLIGHT_CANCELLED_INDEX) || scanner.isEmpty(FLIGHT_CANCELLED_INDEX)) {
+	    		return;
+	    	}
+	    	double delay;
+	    	try {
+	    		if (scanner.getDouble(FLIGHT_CANCELLED_INDEX) != 0) {
+	    			return;
+	    		}
+	    		delay = scanner.getDouble(ARRIVAL_DELAY_INDEX);
+	    	} catch (NumberFormatException malformedField) {
+	    		//The row is stored, its flight is not part of any aggregate
+	    		return;
+	    	}
+	    	delayAggregates.add(scanner.getInt(YEAR_INDEX), scanner.getBytes(), scanner.getStart(UNIQUE_CARRIER_INDEX), 
+	    			scanner.getLength(UNIQUE_CARRIER_INDEX), scanner.getInt(MONTH_INDEX), delay);
+	    }
+	    
+	    private boolean isHotField(int fieldIndex) {
+	    	return fieldIndex == YEAR_INDEX || fieldIndex == MONTH_INDEX 
+	    			|| fieldIndex == ARRIVAL_DELAY_INDEX || fieldIndex == FLIGHT_CANCELLED_INDEX;
+	    }
+	    
+	    /*
+	     * Column qualifier for the field at given index, C<index>
+	     */
+	    private byte[] getColumnQualifier(int fieldIndex) {
+	    	if (fieldIndex >= columnQualifiers.length) {
+	    		columnQualifiers = Arrays.copyOf(columnQualifiers, fieldIndex + 1);
+	    	}
+	    	if (columnQualifiers[fieldIndex] == null) {
+	    		columnQualifiers[fieldIndex] = new String("C" + fieldIndex).getBytes();
+	    	}
+	    	return columnQualifiers[fieldIndex];
+	    }
+	}
+	
+	/*
+	 * Map each input record to a row in HBASE table
+	 */
+	public static class AirlineInfoMapper extends Mapper<Object, Text, ImmutableBytesWritable, Writable> {
 		
 		private Configuration config;
 	    private HTable flightInfoTable;
-	    private CSVParser parser;
+	    private FlightRowBuilder rowBuilder;
+	    
+	    //Delay aggregates of the task, null unless the aggregate table is maintained
+	    private HTable delayAggregateTable;
+	    private DelayAggregateBuffer delayAggregates;
+	    
+	    //Every record is stored, only the records without a valid row key are dropped
+	    private Counter[] flightCounters;
+	    private PhaseTimer parseTimer;
+	    private PhaseTimer emitTimer;
 	    
 	    /*
 	     * Setup initial configuration for each map task
 	     */
 	    protected void setup(Context context) throws IOException {
-	    	this.config = HBaseConfiguration.create();
-	    	this.parser = new CSVParser();
+	    	this.config = HBaseConfiguration.create(context.getConfiguration());
+	    	this.rowBuilder = new FlightRowBuilder(context.getConfiguration());
+	    	this.flightCounters = FlightCounters.getCounters(context);
+	    	this.parseTimer = new PhaseTimer(context, PhaseCpuMicros.MAP_PARSE);
+	    	this.emitTimer = new PhaseTimer(context, PhaseCpuMicros.MAP_EMIT);
 	    	this.flightInfoTable = new HTable(config, FLIGHT_INFO_TABLE_NAME);
 	    	
 	    	//Disable flush, setup buffer to write as bulk
 	    	flightInfoTable.setWriteBufferSize(51200);
 	    	flightInfoTable.setAutoFlush(false);
+	    	
+	    	if (context.getConfiguration().getBoolean(DelayAggregateTable.MAINTAIN_AGGREGATES, false)) {
+	    		delayAggregateTable = new HTable(config, DelayAggregateTable.TABLE_NAME);
+	    		delayAggregates = new DelayAggregateBuffer();
+	    	}
 	    }
 	
 	    /*
@@ -77,52 +245,139 @@ public class HPopulate {
 	    public void map(Object offset, Text value, Context context)
 	    		throws IOException, InterruptedException {
 	    	
-			String[] flightDetails = this.parser.parseLine(value.toString());
-			StringBuilder rowKey = new StringBuilder();
-	
-			if (flightDetails != null && flightDetails.length > 0) {
-				//Build a unique key for table
-				rowKey.append(flightDetails[UNIQUE_CARRIER_INDEX]).append(";");
-				rowKey.append(flightDetails[YEAR_INDEX]).append(";");
-				rowKey.append(flightDetails[MONTH_INDEX]).append(";");
-				rowKey.append(flightDetails[DAY_INDEX]).append(";");
-				rowKey.append(flightDetails[FLIGHT_NUM_INDEX]).append(";");
-				rowKey.append(flightDetails[ORIGIN_INDEX]).append(";");
-				rowKey.append(flightDetails[DEST_INDEX]);
-				
-				//Put all the flight data into a hbase row
-				Put row = new Put(Bytes.toBytes(rowKey.toString()));
-				for (int count = 0; count < flightDetails.length; count++) {
-					row.add(FLIGHT_COLOUMN_FAMILY.getBytes(), new String("C" + count).getBytes(), 
-							flightDetails[count].getBytes());
-				}
-				
-				//Put the row in the hbase table
-				flightInfoTable.put(row);
+	    	flightCounters[FlightCounters.RECORDS_READ.ordinal()].increment(1);
+	    	
+	    	//Put all the flight data into a hbase row
+	    	parseTimer.start();
+	    	Put row = rowBuilder.buildRow(value);
+	    	parseTimer.stop();
+			if (row == null) {
+				flightCounters[FlightCounters.DROPPED_MALFORMED.ordinal()].increment(1);
+				return;
+			}
+			
+			emitTimer.start();
+			flightInfoTable.put(row);
+			if (delayAggregates != null) {
+				rowBuilder.addToAggregate(delayAggregates);
 			}
+			emitTimer.stop();
+			flightCounters[FlightCounters.RECORDS_EMITTED.ordinal()].increment(1);
 	    }
 	    
+	    /*
+	     * The aggregates are incremented only once all the rows of the task are written
+	     */
 	    protected void cleanup(Context context) throws IOException, InterruptedException{
+	    	//Flushing the buffered puts is part of writing the rows
+	    	emitTimer.start();
 	    	flightInfoTable.close();
+	    	if (delayAggregates != null) {
+	    		delayAggregates.flush(delayAggregateTable);
+	    		delayAggregateTable.close();
+	    	}
+	    	emitTimer.stop();
+	    	parseTimer.flush();
+	    	emitTimer.flush();
 	    }
 	}
 	
+	/*
+	 * Map each input record to a row, the rows are sorted and written as HFiles by the reducers
+	 * set up by HFileOutputFormat2, one reducer per region of the pre-split table
+	 */
+	public static class BulkLoadMapper extends Mapper<Object, Text, ImmutableBytesWritable, Put> {
+		
+		private FlightRowBuilder rowBuilder;
+		private ImmutableBytesWritable rowKey = new ImmutableBytesWritable();
+		private Counter[] flightCounters;
+		
+		//Delay aggregates of the task, null unless the aggregate table is maintained
+		private HTable delayAggregateTable;
+		private DelayAggregateBuffer delayAggregates;
+		
+		protected void setup(Context context) throws IOException {
+			rowBuilder = new FlightRowBuilder(context.getConfiguration());
+			flightCounters = FlightCounters.getCounters(context);
+			if (context.getConfiguration().getBoolean(DelayAggregateTable.MAINTAIN_AGGREGATES, false)) {
+				delayAggregateTable = new HTable(HBaseConfiguration.create(context.getConfiguration()), DelayAggregateTable.TABLE_NAME);
+				delayAggregates = new DelayAggregateBuffer();
+			}
+		}
+		
+		public void map(Object offset, Text value, Context context) throws IOException, InterruptedException {
+			flightCounters[FlightCounters.RECORDS_READ.ordinal()].increment(1);
+			Put row = rowBuilder.buildRow(value);
+			if (row == null) {
+				flightCounters[FlightCounters.DROPPED_MALFORMED.ordinal()].increment(1);
+				return;
+			}
+			rowKey.set(row.getRow());
+			context.write(rowKey, row);
+			if (delayAggregates != null) {
+				rowBuilder.addToAggregate(delayAggregates);
+			}
+			flightCounters[FlightCounters.RECORDS_EMITTED.ordinal()].increment(1);
+		}
+		
+		/*
+		 * The aggregates are incremented once all the rows of the task are written to the map output
+		 */
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			if (delayAggregates != null) {
+				delayAggregates.flush(delayAggregateTable);
+				delayAggregateTable.close();
+			}
+		}
+	}
+	
+	/*
+	 * Split keys for the given number of regions, taken at even intervals from the sorted row keys of sampled records
+	 * Regions are sized by the input, so that each of the bulk load reducers writes about the same amount of HFiles
+	 */
+	public static byte[][] sampleSplitKeys(Configuration conf, Path input, int regions, int samples) throws IOException {
+		FlightRowBuilder rowBuilder = new FlightRowBuilder(conf);
+		List<byte[]> sampledKeys = new ArrayList<byte[]>();
+		for (Text line : new RandomLineSampler(System.currentTimeMillis()).sample(conf, input, samples)) {
+			byte[] rowKey = rowBuilder.buildRowKey(line);
+			if (rowKey != null) {
+				sampledKeys.add(rowKey);
+			}
+		}
+		Collections.sort(sampledKeys, Bytes.BYTES_COMPARATOR);
+		
+		//Skip duplicate split keys, a region can not start and end at the same key
+		List<byte[]> splitKeys = new ArrayList<byte[]>();
+		for (int region = 1; region < regions && !sampledKeys.isEmpty(); region++) {
+			byte[] splitKey = sampledKeys.get((int) ((long) region * sampledKeys.size() / regions));
+			if (splitKeys.isEmpty() || Bytes.compareTo(splitKeys.get(splitKeys.size() - 1), splitKey) < 0) {
+				splitKeys.add(splitKey);
+			}
+		}
+		return splitKeys.toArray(new byte[splitKeys.size()][]);
+	}
+	
 	/*
 	 * Create the hbase table using HBaseAdmin
 	 */
 	public static void createFlightInfoTable() throws IOException, ZooKeeperConnectionException {
+		createFlightInfoTable(new Configuration(), null);
+	}
+	
+	/*
+	 * Create the hbase table using HBaseAdmin, pre-split at the given keys when there are any
+	 * The schema options of the configuration are kept in the table descriptor, for the readers of the table
+	 */
+	public static void createFlightInfoTable(Configuration conf, byte[][] splitKeys) throws IOException, ZooKeeperConnectionException {
 
-		// Instantiating configuration class
-		Configuration hBaseConfig = HBaseConfiguration.create();
+		// Instantiating configuration class, for the cluster of the given configuration
+		Configuration hBaseConfig = HBaseConfiguration.create(conf);
 
 		// Instantiating HbaseAdmin class
 		HBaseAdmin hBaseAdmin = new HBaseAdmin(hBaseConfig);
 
-		// Instantiating table descriptor class
-        HTableDescriptor hBaseTableDescriptor = new HTableDescriptor(FLIGHT_INFO_TABLE_NAME);
-
-        // Adding column families to table descriptor
-        hBaseTableDescriptor.addFamily(new HColumnDescriptor(FLIGHT_COLOUMN_FAMILY));
+		// Instantiating table descriptor class, with the column families of the schema
+        HTableDescriptor hBaseTableDescriptor = FlightTableSchema.createDescriptor(FLIGHT_INFO_TABLE_NAME, conf);
 
         //Execute the table through admin
         if(hBaseAdmin.tableExists(FLIGHT_INFO_TABLE_NAME))
@@ -130,23 +385,71 @@ public class HPopulate {
         	hBaseAdmin.disableTable(FLIGHT_INFO_TABLE_NAME);
         	hBaseAdmin.deleteTable(FLIGHT_INFO_TABLE_NAME);
         }
-        hBaseAdmin.createTable(hBaseTableDescriptor);
+        if (splitKeys == null || splitKeys.length == 0) {
+        	hBaseAdmin.createTable(hBaseTableDescriptor);
+        } else {
+        	hBaseAdmin.createTable(hBaseTableDescriptor, splitKeys);
+        }
+        
+        //The aggregates are rebuilt along with the table
+        if (conf.getBoolean(DelayAggregateTable.MAINTAIN_AGGREGATES, false)) {
+        	DelayAggregateTable.recreate(hBaseAdmin);
+        }
         hBaseAdmin.close();
 	}
-
 	
-	public static void main(String[] args) throws Exception {
-		
-		Configuration computeDelayConf = new Configuration();
-		computeDelayConf.set(TableOutputFormat.OUTPUT_TABLE, FLIGHT_INFO_TABLE_NAME);
+	/*
+	 * Load the table through HFiles, bypassing the memstores and write ahead logs of the region servers
+	 * The table is pre-split from sampled row keys, the job writes sorted HFiles matching the regions
+	 * to the output directory, and the HFiles are then moved into the regions
+	 */
+	public static boolean bulkLoad(Configuration conf, Path input, Path hFileOutput) throws Exception {
+		int regions = conf.getInt(BULK_LOAD_REGIONS, DEFAULT_BULK_LOAD_REGIONS);
+		int samples = conf.getInt(BULK_LOAD_SAMPLES, DEFAULT_BULK_LOAD_SAMPLES);
+		createFlightInfoTable(conf, sampleSplitKeys(conf, input, regions, samples));
 		
-		String[] otherArgs = new GenericOptionsParser(computeDelayConf, args).getRemainingArgs();
-		if (otherArgs.length != 2) {
-			System.err.println("Usage: AirlineAverageFlightDelay <in> <out>");
-			System.exit(2);
+		Configuration hBaseConfig = HBaseConfiguration.create(conf);
+		HTable flightInfoTable = new HTable(hBaseConfig, FLIGHT_INFO_TABLE_NAME);
+		try {
+			Job bulkLoadJob = new Job(hBaseConfig, "Bulk Load Flight Info");
+			bulkLoadJob.setJarByClass(HPopulate.class);
+			bulkLoadJob.setMapperClass(BulkLoadMapper.class);
+			bulkLoadJob.setMapOutputKeyClass(ImmutableBytesWritable.class);
+			bulkLoadJob.setMapOutputValueClass(Put.class);
+			
+			//Increments are not idempotent, a speculative attempt would add its aggregates a second time
+			if (conf.getBoolean(DelayAggregateTable.MAINTAIN_AGGREGATES, false)) {
+				bulkLoadJob.setMapSpeculativeExecution(false);
+			}
+			
+			//Sets the total order partitioner on the region boundaries, the sorting reducer and the HFile output format
+			HFileOutputFormat2.configureIncrementalLoad(bulkLoadJob, flightInfoTable);
+			
+			FileInputFormat.addInputPath(bulkLoadJob, input);
+			FileOutputFormat.setOutputPath(bulkLoadJob, hFileOutput);
+			if (!bulkLoadJob.waitForCompletion(true)) {
+				return false;
+			}
+			
+			//Each region adopts its HFiles as a whole, a region never exposes part of its rows
+			new LoadIncrementalHFiles(hBaseConfig).doBulkLoad(hFileOutput, flightInfoTable);
+			new RunReport().add(bulkLoadJob).write(conf, hFileOutput);
+			return true;
+		} finally {
+			flightInfoTable.close();
 		}
+	}
+
+	
+	/*
+	 * Create the table and write every flight to it with puts from the map tasks, returns the completed job
+	 */
+	public static Job run(Configuration computeDelayConf, Path input, Path output) throws Exception {
+		computeDelayConf.set(TableOutputFormat.OUTPUT_TABLE, FLIGHT_INFO_TABLE_NAME);
 		
-		createFlightInfoTable();
+		//Each salt bucket starts in its own region, so the writes of a month are spread over the buckets
+		int saltBuckets = computeDelayConf.getInt(FlightRowKey.SALT_BUCKETS, 0);
+		createFlightInfoTable(computeDelayConf, FlightRowKey.getSaltSplitKeys(saltBuckets));
 		
 		Job computeDelayJob = new Job(computeDelayConf, "Compute Flight Delays");
 		computeDelayJob.setJarByClass(HPopulate.class);
@@ -154,9 +457,33 @@ public class HPopulate {
 		computeDelayJob.setOutputKeyClass(TableOutputFormat.class);
 		computeDelayJob.setOutputValueClass(Text.class);
 		computeDelayJob.setNumReduceTasks(0);
+		
+		//Increments are not idempotent, a speculative attempt would add its aggregates a second time
+		if (computeDelayConf.getBoolean(DelayAggregateTable.MAINTAIN_AGGREGATES, false)) {
+			computeDelayJob.setMapSpeculativeExecution(false);
+		}
 
-		FileInputFormat.addInputPath(computeDelayJob, new Path(otherArgs[0]));
-		FileOutputFormat.setOutputPath(computeDelayJob, new Path(otherArgs[1]));
-		System.exit(computeDelayJob.waitForCompletion(true) ? 0 : 1);
+		FileInputFormat.addInputPath(computeDelayJob, input);
+		FileOutputFormat.setOutputPath(computeDelayJob, output);
+		if (computeDelayJob.waitForCompletion(true)) {
+			new RunReport().add(computeDelayJob).write(computeDelayConf, output);
+		}
+		return computeDelayJob;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		
+		Configuration computeDelayConf = new Configuration();
+		String[] otherArgs = new GenericOptionsParser(computeDelayConf, args).getRemainingArgs();
+		if (otherArgs.length != 2) {
+			System.err.println("Usage: AirlineAverageFlightDelay <in> <out>");
+			System.exit(2);
+		}
+		
+		if (computeDelayConf.getBoolean(BULK_LOAD, false)) {
+			System.exit(bulkLoad(computeDelayConf, new Path(otherArgs[0]), new Path(otherArgs[1])) ? 0 : 1);
+		}
+		Job computeDelayJob = run(computeDelayConf, new Path(otherArgs[0]), new Path(otherArgs[1]));
+		System.exit(computeDelayJob.isSuccessful() ? 0 : 1);
 	}
 }
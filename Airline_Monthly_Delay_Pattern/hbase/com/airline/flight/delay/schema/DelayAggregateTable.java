@@ -0,0 +1,85 @@
+package com.airline.flight.delay.schema;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/*
+ * Compact table of the delay sum and flight count of each (year, carrier, month), maintained by HPopulate while loading FlightInfo
+ * Row key : | year, 2 bytes | carrier, zero padded to 3 bytes | month, 1 byte |
+ * The sum is kept in hundredths of a minute as a long, so that it can be added to with atomic increments
+ * The rows of a year are contiguous, and a year holds at most carriers * 12 rows
+ */
+public class DelayAggregateTable {
+
+	//Maintain the table while loading FlightInfo
+	public static final String MAINTAIN_AGGREGATES = "flight.hbase.aggregate.table";
+
+	public static final String TABLE_NAME = "FlightDelayAggregate";
+	public static final byte[] FAMILY = Bytes.toBytes("A");
+	public static final byte[] SUM_COLUMN = Bytes.toBytes("sum");
+	public static final byte[] COUNT_COLUMN = Bytes.toBytes("count");
+	public static final int DELAY_SCALE = 100;
+
+	/*************** Serialized layout of the key *****************/
+	public static final int CARRIER_OFFSET = 2;
+	public static final int MONTH_OFFSET = CARRIER_OFFSET + FlightRowKey.CODE_LENGTH;
+	public static final int KEY_LENGTH = MONTH_OFFSET + 1;
+
+	/*
+	 * Fill the given row key buffer with the key of the aggregate of the carrier held by the given bytes
+	 */
+	public static void setRow(byte[] row, int year, byte[] carrier, int carrierStart, int carrierLength, int month) {
+		if (carrierLength > FlightRowKey.CODE_LENGTH) {
+			throw new IllegalArgumentException("Carrier " + Bytes.toString(carrier, carrierStart, carrierLength) 
+					+ " is longer than " + FlightRowKey.CODE_LENGTH + " bytes");
+		}
+		Bytes.putShort(row, 0, (short) year);
+		Arrays.fill(row, CARRIER_OFFSET, MONTH_OFFSET, (byte) 0);
+		System.arraycopy(carrier, carrierStart, row, CARRIER_OFFSET, carrierLength);
+		row[MONTH_OFFSET] = (byte) month;
+	}
+
+	public static byte[] getStartRow(int year) {
+		return Bytes.toBytes((short) year);
+	}
+
+	public static byte[] getStopRow(int year) {
+		return getStartRow(year + 1);
+	}
+
+	/*
+	 * Carrier of the row, without its zero padding
+	 */
+	public static String getCarrier(byte[] row) {
+		int carrierLength = FlightRowKey.CODE_LENGTH;
+		while (carrierLength > 0 && row[CARRIER_OFFSET + carrierLength - 1] == 0) {
+			carrierLength--;
+		}
+		return Bytes.toString(row, CARRIER_OFFSET, carrierLength);
+	}
+
+	public static int getMonth(byte[] row) {
+		return row[MONTH_OFFSET] & 0xff;
+	}
+
+	/*
+	 * Drop and create the table, its rows have to match the rows of FlightInfo being loaded
+	 */
+	public static void recreate(HBaseAdmin hBaseAdmin) throws IOException {
+		if (hBaseAdmin.tableExists(TABLE_NAME)) {
+			hBaseAdmin.disableTable(TABLE_NAME);
+			hBaseAdmin.deleteTable(TABLE_NAME);
+		}
+		HTableDescriptor tableDescriptor = new HTableDescriptor(TableName.valueOf(TABLE_NAME));
+		HColumnDescriptor family = new HColumnDescriptor(FAMILY);
+		family.setInMemory(true);
+		tableDescriptor.addFamily(family);
+		hBaseAdmin.createTable(tableDescriptor);
+	}
+}
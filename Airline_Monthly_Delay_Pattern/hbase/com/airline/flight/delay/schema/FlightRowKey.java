@@ -0,0 +1,152 @@
+package com.airline.flight.delay.schema;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.Text;
+
+/*
+ * Binary row key of the FlightInfo table, leading with the year and month of the flight
+ * | salt, 1 byte, optional | year, 2 bytes | month, 1 byte | carrier, 3 bytes | day, 1 byte | flight number, 4 bytes |
+ * | origin, 3 bytes | destination, 3 bytes |
+ * Codes are zero padded, so all the rows of a year are contiguous within each salt bucket,
+ * and a query on a range of years reads only the regions holding those years
+ * The salt spreads the writes of a single month over several regions, at the cost of one scan per bucket when reading
+ */
+public class FlightRowKey {
+
+	//Number of salt buckets, in the configuration of HPopulate and in the descriptor of the table it creates
+	public static final String SALT_BUCKETS = "flight.hbase.salt.buckets";
+	public static final int MAX_SALT_BUCKETS = 256;
+
+	/*************** Serialized layout of the key, following the salt *****************/
+	public static final int CODE_LENGTH = 3;
+	public static final int YEAR_OFFSET = 0;
+	public static final int MONTH_OFFSET = YEAR_OFFSET + 2;
+	public static final int CARRIER_OFFSET = MONTH_OFFSET + 1;
+	public static final int DAY_OFFSET = CARRIER_OFFSET + CODE_LENGTH;
+	public static final int FLIGHT_NUM_OFFSET = DAY_OFFSET + 1;
+	public static final int ORIGIN_OFFSET = FLIGHT_NUM_OFFSET + 4;
+	public static final int DESTINATION_OFFSET = ORIGIN_OFFSET + CODE_LENGTH;
+	public static final int KEY_LENGTH = DESTINATION_OFFSET + CODE_LENGTH;
+
+	private final int saltBuckets;
+	private final int saltLength;
+
+	//Buffer reused to build the keys
+	private final byte[] key;
+
+	public FlightRowKey(int saltBuckets) {
+		if (saltBuckets < 0 || saltBuckets > MAX_SALT_BUCKETS) {
+			throw new IllegalArgumentException("Salt buckets must be between 0 and " + MAX_SALT_BUCKETS + ": " + saltBuckets);
+		}
+		this.saltBuckets = saltBuckets;
+		this.saltLength = getSaltLength(saltBuckets);
+		this.key = new byte[saltLength + KEY_LENGTH];
+	}
+
+	/*
+	 * Start building a new key, the codes are set separately
+	 */
+	public void reset(int year, int month, int day, int flightNumber) {
+		Arrays.fill(key, (byte) 0);
+		Bytes.putShort(key, saltLength + YEAR_OFFSET, (short) year);
+		key[saltLength + MONTH_OFFSET] = (byte) month;
+		key[saltLength + DAY_OFFSET] = (byte) day;
+		Bytes.putInt(key, saltLength + FLIGHT_NUM_OFFSET, flightNumber);
+	}
+
+	public void setCarrier(byte[] bytes, int start, int length) {
+		setCode(CARRIER_OFFSET, bytes, start, length);
+	}
+
+	public void setOrigin(byte[] bytes, int start, int length) {
+		setCode(ORIGIN_OFFSET, bytes, start, length);
+	}
+
+	public void setDestination(byte[] bytes, int start, int length) {
+		setCode(DESTINATION_OFFSET, bytes, start, length);
+	}
+
+	/*
+	 * Copy of the key built so far, prefixed with its salt bucket
+	 */
+	public byte[] toBytes() {
+		if (saltLength > 0) {
+			int hash = 1;
+			for (int index = saltLength; index < key.length; index++) {
+				hash = 31 * hash + key[index];
+			}
+			key[0] = (byte) ((hash & Integer.MAX_VALUE) % saltBuckets);
+		}
+		return Arrays.copyOf(key, key.length);
+	}
+
+	private void setCode(int offset, byte[] bytes, int start, int length) {
+		if (length > CODE_LENGTH) {
+			throw new IllegalArgumentException("Code " + Bytes.toString(bytes, start, length) + " is longer than " + CODE_LENGTH + " bytes");
+		}
+		System.arraycopy(bytes, start, key, saltLength + offset, length);
+	}
+
+	/*
+	 * Bytes preceding the year in the keys of a table with the given number of salt buckets
+	 */
+	public static int getSaltLength(int saltBuckets) {
+		return saltBuckets > 0 ? 1 : 0;
+	}
+
+	/*
+	 * Split keys at the start of each salt bucket, so that each bucket starts in its own region
+	 */
+	public static byte[][] getSaltSplitKeys(int saltBuckets) {
+		byte[][] splitKeys = new byte[Math.max(0, saltBuckets - 1)][];
+		for (int bucket = 1; bucket < saltBuckets; bucket++) {
+			splitKeys[bucket - 1] = new byte[] { (byte) bucket };
+		}
+		return splitKeys;
+	}
+
+	/*
+	 * First row of the given year in the given salt bucket
+	 */
+	public static byte[] getStartRow(int saltBuckets, int bucket, int year) {
+		int saltLength = getSaltLength(saltBuckets);
+		byte[] row = new byte[saltLength + MONTH_OFFSET];
+		if (saltLength > 0) {
+			row[0] = (byte) bucket;
+		}
+		Bytes.putShort(row, saltLength + YEAR_OFFSET, (short) year);
+		return row;
+	}
+
+	/*
+	 * Row following the last row of the given year in the given salt bucket
+	 */
+	public static byte[] getStopRow(int saltBuckets, int bucket, int year) {
+		return getStartRow(saltBuckets, bucket, year + 1);
+	}
+
+	/*************** Decoding, from a row key starting at the given offset *****************/
+
+	public static int getYear(byte[] row, int offset, int saltLength) {
+		int start = offset + saltLength + YEAR_OFFSET;
+		return ((row[start] & 0xff) << 8) | (row[start + 1] & 0xff);
+	}
+
+	public static int getMonth(byte[] row, int offset, int saltLength) {
+		return row[offset + saltLength + MONTH_OFFSET] & 0xff;
+	}
+
+	/*
+	 * Set the target to the carrier of the row, without its zero padding
+	 */
+	public static void getCarrier(byte[] row, int offset, int saltLength, Text target) {
+		int start = offset + saltLength + CARRIER_OFFSET;
+		int length = CODE_LENGTH;
+		while (length > 0 && row[start + length - 1] == 0) {
+			length--;
+		}
+		target.set(row, start, length);
+	}
+}
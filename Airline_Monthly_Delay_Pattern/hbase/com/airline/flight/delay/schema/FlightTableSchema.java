@@ -0,0 +1,101 @@
+package com.airline.flight.delay.schema;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.airline.flight.delay.coprocessor.DelayAggregationObserver;
+
+/*
+ * Column families of the FlightInfo table, and the schema options kept in its descriptor
+ * Default schema : every csv field as a string cell C<index> of FlightFamily
+ * Split families : year, month, arrival delay and cancelled as binary cells of a narrow hot family,
+ * every other csv field as a string cell C<index> of FlightFamily, which becomes the cold family
+ * Scans needing only the hot cells never read the blocks of the cold family
+ */
+public class FlightTableSchema {
+
+	//Schema option, in the configuration of HPopulate and in the descriptor of the table it creates
+	public static final String SPLIT_FAMILIES = "flight.hbase.split.families";
+	
+	//Load the delay aggregation observer on the regions of the table created by HPopulate
+	public static final String AGGREGATION_COPROCESSOR = "flight.hbase.aggregation.coprocessor";
+
+	public static final byte[] COLD_FAMILY = Bytes.toBytes("FlightFamily");
+	public static final byte[] HOT_FAMILY = Bytes.toBytes("HotFamily");
+
+	/*************** Cells of the hot family *****************/
+	public static final byte[] YEAR_COLUMN = Bytes.toBytes("Y");
+	public static final byte[] MONTH_COLUMN = Bytes.toBytes("M");
+	public static final byte[] DELAY_COLUMN = Bytes.toBytes("D");
+	public static final byte[] CANCELLED_COLUMN = Bytes.toBytes("X");
+
+	//Binary cancelled cell of a flight that was not cancelled
+	public static final byte[] NOT_CANCELLED = { 0 };
+	
+	/*************** String cells of the cold family read by the queries *****************/
+	public static final byte[] COLD_DELAY_COLUMN = Bytes.toBytes("C37");
+	public static final byte[] COLD_CANCELLED_COLUMN = Bytes.toBytes("C41");
+	public static final byte[] COLD_NOT_CANCELLED = Bytes.toBytes("0.00");
+
+	/*
+	 * Descriptor of the table for the schema options of the given configuration
+	 * The options are kept in the descriptor, so that readers do not need to be told how the table was written
+	 */
+	public static HTableDescriptor createDescriptor(String tableName, Configuration conf) throws IOException {
+		HTableDescriptor tableDescriptor = new HTableDescriptor(TableName.valueOf(tableName));
+		tableDescriptor.addFamily(new HColumnDescriptor(COLD_FAMILY));
+
+		boolean splitFamilies = conf.getBoolean(SPLIT_FAMILIES, false);
+		if (splitFamilies) {
+			//A few bytes per row, keep its blocks cached ahead of the blocks of the cold family
+			HColumnDescriptor hotFamily = new HColumnDescriptor(HOT_FAMILY);
+			hotFamily.setInMemory(true);
+			tableDescriptor.addFamily(hotFamily);
+		}
+		//The observer classes have to be on the classpath of the region servers
+		if (conf.getBoolean(AGGREGATION_COPROCESSOR, false)) {
+			tableDescriptor.addCoprocessor(DelayAggregationObserver.class.getName());
+		}
+		tableDescriptor.setValue(FlightRowKey.SALT_BUCKETS, String.valueOf(conf.getInt(FlightRowKey.SALT_BUCKETS, 0)));
+		tableDescriptor.setValue(SPLIT_FAMILIES, String.valueOf(splitFamilies));
+		return tableDescriptor;
+	}
+
+	/*
+	 * Copy the schema options of the existing table into the given configuration
+	 */
+	public static void loadOptions(String tableName, Configuration conf) throws IOException {
+		HBaseAdmin hBaseAdmin = new HBaseAdmin(HBaseConfiguration.create(conf));
+		try {
+			HTableDescriptor tableDescriptor = hBaseAdmin.getTableDescriptor(TableName.valueOf(tableName));
+			String saltBuckets = tableDescriptor.getValue(FlightRowKey.SALT_BUCKETS);
+			String splitFamilies = tableDescriptor.getValue(SPLIT_FAMILIES);
+			conf.setInt(FlightRowKey.SALT_BUCKETS, saltBuckets == null ? 0 : Integer.parseInt(saltBuckets));
+			conf.setBoolean(SPLIT_FAMILIES, Boolean.parseBoolean(splitFamilies));
+		} finally {
+			hBaseAdmin.close();
+		}
+	}
+
+	/*
+	 * Arrival delay of a binary delay cell, the cell must not be empty
+	 */
+	public static double getDelay(byte[] delay) {
+		return getDelay(delay, 0, delay.length, true);
+	}
+	
+	/*
+	 * Arrival delay of a binary cell of the hot family, or of a string cell of the cold family
+	 * An empty cell stands for a flight without a delay, which the callers drop before asking for its delay
+	 */
+	public static double getDelay(byte[] bytes, int offset, int length, boolean splitFamilies) {
+		return splitFamilies ? Bytes.toFloat(bytes, offset) : Double.parseDouble(Bytes.toString(bytes, offset, length));
+	}
+}
@@ -0,0 +1,58 @@
+package com.airline.flight.aggregate;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import com.airline.flight.comparator.CarrierIndexMonthKey;
+import com.mapreduce.common.aggregate.FlightDelayStatsWritable;
+import com.mapreduce.common.aggregate.SumCountWritable;
+
+/*
+ * In-mapper combining buffer for flight delays of dictionary encoded carriers
+ * Same as CarrierMonthDelayBuffer, with the aggregates held in an array indexed by carrier id and month instead of a hash map,
+ * and flushed in key order
+ */
+public class CarrierIndexDelayBuffer {
+	
+	private static final int MONTHS_IN_YEAR = 12;
+	
+	//Delays by carrier id * 12 + month - 1, created for the first flight of each (carrier, month)
+	private final SumCountWritable[] monthlyDelays;
+	
+	//Whether the buffered aggregates carry delay sketches
+	private final boolean percentiles;
+	
+	public CarrierIndexDelayBuffer(int carriers, boolean percentiles) {
+		this.monthlyDelays = new SumCountWritable[carriers * MONTHS_IN_YEAR];
+		this.percentiles = percentiles;
+	}
+	
+	/*
+	 * Add a single flight delay for given carrier id and month
+	 */
+	public void add(int carrierIndex, int month, double delay) {
+		int index = carrierIndex * MONTHS_IN_YEAR + month - 1;
+		if (monthlyDelays[index] == null) {
+			monthlyDelays[index] = FlightDelayStatsWritable.newAggregate(percentiles);
+		}
+		monthlyDelays[index].add(delay);
+	}
+	
+	/*
+	 * Emit one record for each (carrier, month) with at least one flight and clear the buffer
+	 */
+	public void flush(TaskInputOutputContext<?, ?, IntWritable, SumCountWritable> context) 
+			throws IOException, InterruptedException {
+		
+		IntWritable key = new IntWritable();
+		for (int index = 0; index < monthlyDelays.length; index++) {
+			if (monthlyDelays[index] != null && monthlyDelays[index].getCount() > 0) {
+				key.set(CarrierIndexMonthKey.encode(index / MONTHS_IN_YEAR, index % MONTHS_IN_YEAR + 1));
+				context.write(key, monthlyDelays[index]);
+				monthlyDelays[index].reset();
+			}
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.airline.flight.aggregate;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import com.mapreduce.common.aggregate.FlightDelayStatsWritable;
+import com.mapreduce.common.aggregate.SumCountWritable;
+
+/*
+ * Combiner for flight delays keyed by the packed (carrier id, month), merges the partial aggregates of each key
+ */
+public class CarrierIndexDelayCombiner 
+		extends Reducer<IntWritable, SumCountWritable, IntWritable, SumCountWritable> {
+	
+	private SumCountWritable monthlyDelay;
+	
+	protected void setup(Context context) {
+		monthlyDelay = FlightDelayStatsWritable.newAggregate(
+				context.getConfiguration().getBoolean(FlightDelayStatsWritable.PERCENTILES, false));
+	}
+	
+	public void reduce(IntWritable key, Iterable<SumCountWritable> values, Context context) 
+			throws IOException, InterruptedException {
+		
+		monthlyDelay.reset();
+		for (SumCountWritable value : values) {
+			monthlyDelay.merge(value);
+		}
+		context.write(key, monthlyDelay);
+	}
+}
@@ -0,0 +1,88 @@
+package com.airline.flight.aggregate;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import com.airline.flight.comparator.CarrierIDMonthKeyPair;
+import com.mapreduce.common.aggregate.FlightDelayStatsWritable;
+import com.mapreduce.common.aggregate.SumCountWritable;
+
+/*
+ * In-mapper combining buffer for flight delays
+ * Keeps a running sum and count of delays per (carrier, month) for the whole map task,
+ * so that a map task emits at most one record per (carrier, month) instead of one record per flight
+ */
+public class CarrierMonthDelayBuffer {
+	
+	//Configuration flag enabling in-mapper aggregation in the delay mappers
+	public static final String IN_MAPPER_AGGREGATION = "flight.delay.inmapper.aggregation";
+	
+	private static final int MONTHS_IN_YEAR = 12;
+	
+	//Delays by carrier, indexed by month number
+	private Map<Text, SumCountWritable[]> carrierDelays = new HashMap<Text, SumCountWritable[]>();
+	
+	//Whether the buffered aggregates carry delay sketches
+	private final boolean percentiles;
+	
+	public CarrierMonthDelayBuffer() {
+		this(false);
+	}
+	
+	public CarrierMonthDelayBuffer(boolean percentiles) {
+		this.percentiles = percentiles;
+	}
+	
+	/*
+	 * Add a single flight delay for given carrier and month
+	 */
+	public void add(Text carrierID, int month, double delay) {
+		getMonthlyDelays(carrierID)[month].add(delay);
+	}
+	
+	/*
+	 * Add a partial aggregate of flight delays for given carrier and month
+	 */
+	public void add(Text carrierID, int month, SumCountWritable delays) {
+		getMonthlyDelays(carrierID)[month].merge(delays);
+	}
+	
+	/*
+	 * Emit one record for each (carrier, month) with at least one flight and clear the buffer
+	 */
+	public void flush(TaskInputOutputContext<?, ?, CarrierIDMonthKeyPair, SumCountWritable> context) 
+			throws IOException, InterruptedException {
+		
+		CarrierIDMonthKeyPair keyPair = new CarrierIDMonthKeyPair();
+		for (Map.Entry<Text, SumCountWritable[]> carrier : carrierDelays.entrySet()) {
+			keyPair.setCarrierID(carrier.getKey());
+			SumCountWritable[] monthlyDelays = carrier.getValue();
+			for (int month = 1; month <= MONTHS_IN_YEAR; month++) {
+				if (monthlyDelays[month].getCount() > 0) {
+					keyPair.setMonth(month);
+					context.write(keyPair, monthlyDelays[month]);
+				}
+			}
+		}
+		carrierDelays.clear();
+	}
+	
+	/*
+	 * Get the monthly delays of a carrier, copying the carrier id only the first time it is seen
+	 */
+	private SumCountWritable[] getMonthlyDelays(Text carrierID) {
+		SumCountWritable[] monthlyDelays = carrierDelays.get(carrierID);
+		if (monthlyDelays == null) {
+			monthlyDelays = new SumCountWritable[MONTHS_IN_YEAR + 1];
+			for (int month = 0; month <= MONTHS_IN_YEAR; month++) {
+				monthlyDelays[month] = FlightDelayStatsWritable.newAggregate(percentiles);
+			}
+			carrierDelays.put(new Text(carrierID), monthlyDelays);
+		}
+		return monthlyDelays;
+	}
+}
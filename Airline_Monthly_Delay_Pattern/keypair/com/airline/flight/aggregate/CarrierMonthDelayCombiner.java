@@ -0,0 +1,41 @@
+package com.airline.flight.aggregate;
+
+import java.io.IOException;
+
+import org.apache.hadoop.mapreduce.Reducer;
+
+import com.airline.flight.comparator.CarrierIDMonthKeyPair;
+import com.mapreduce.common.aggregate.FlightDelayStatsWritable;
+import com.mapreduce.common.aggregate.SumCountWritable;
+
+/*
+ * Combiner for flight delays, merges the partial sum and count of delays for each (carrier, month)
+ * Combiner groups follow the sort comparator, so every call to reduce sees a single (carrier, month)
+ */
+public class CarrierMonthDelayCombiner 
+		extends Reducer<CarrierIDMonthKeyPair, SumCountWritable, CarrierIDMonthKeyPair, SumCountWritable> {
+	
+	private SumCountWritable monthlyDelay;
+	
+	/*
+	 * The merged aggregate has to be of the map output value class, with a sketch when percentiles are requested
+	 */
+	protected void setup(Context context) {
+		monthlyDelay = FlightDelayStatsWritable.newAggregate(
+				context.getConfiguration().getBoolean(FlightDelayStatsWritable.PERCENTILES, false));
+	}
+	
+	/*
+	 * Key : Composite key(UniqueCarrierID, Month)
+	 * Values : Partial aggregates of delays for the given carrier and month
+	 */
+	public void reduce(CarrierIDMonthKeyPair key, Iterable<SumCountWritable> values, Context context) 
+			throws IOException, InterruptedException {
+		
+		monthlyDelay.reset();
+		for (SumCountWritable value : values) {
+			monthlyDelay.merge(value);
+		}
+		context.write(key, monthlyDelay);
+	}
+}
@@ -0,0 +1,216 @@
+package com.airline.flight.aggregate;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.mapreduce.common.aggregate.FlightDelayStatsWritable;
+import com.mapreduce.common.aggregate.SumCountWritable;
+
+/*
+ * Saved state of the incremental monthly delay job
+ * Holds the delay aggregate of every (carrier, year, month) seen so far, and the input files already aggregated
+ * A refresh aggregates only the files that are not in the checkpoint, merges them in and saves the checkpoint again
+ *
+ * Binary layout: | version | percentiles | files (path, length) | carriers (carrier, years (year, months (month, aggregate))) |
+ */
+public class DelayCheckpoint {
+
+	private static final int VERSION = 1;
+	private static final int MONTHS_IN_YEAR = 12;
+
+	//Whether the aggregates carry delay sketches, fixed for the life of a checkpoint
+	private final boolean percentiles;
+
+	//Length of each input file aggregated, by path
+	private Map<String, Long> processedFiles = new TreeMap<String, Long>();
+
+	//Monthly delays by carrier and year
+	private Map<String, Map<Integer, MonthlyDelayReport>> carrierDelays = new TreeMap<String, Map<Integer, MonthlyDelayReport>>();
+
+	public DelayCheckpoint(boolean percentiles) {
+		this.percentiles = percentiles;
+	}
+
+	/*
+	 * Read the checkpoint at the given path, an empty checkpoint if there is none yet
+	 */
+	public static DelayCheckpoint load(Configuration conf, Path path, boolean percentiles) throws IOException {
+		DelayCheckpoint checkpoint = new DelayCheckpoint(percentiles);
+		FileSystem fileSystem = path.getFileSystem(conf);
+		if (!fileSystem.exists(path)) {
+			return checkpoint;
+		}
+
+		DataInputStream input = fileSystem.open(path);
+		try {
+			int version = input.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported checkpoint version " + version + " in " + path);
+			}
+			if (input.readBoolean() != percentiles) {
+				throw new IOException("Checkpoint " + path + " was not written with " + FlightDelayStatsWritable.PERCENTILES
+						+ "=" + percentiles + ", start a new checkpoint to change it");
+			}
+
+			int files = WritableUtils.readVInt(input);
+			for (int file = 0; file < files; file++) {
+				checkpoint.processedFiles.put(Text.readString(input), WritableUtils.readVLong(input));
+			}
+
+			SumCountWritable monthlyDelay = FlightDelayStatsWritable.newAggregate(percentiles);
+			int carriers = WritableUtils.readVInt(input);
+			for (int carrier = 0; carrier < carriers; carrier++) {
+				String carrierID = Text.readString(input);
+				int years = WritableUtils.readVInt(input);
+				for (int yearIndex = 0; yearIndex < years; yearIndex++) {
+					int year = WritableUtils.readVInt(input);
+					int months = input.readByte();
+					for (int monthIndex = 0; monthIndex < months; monthIndex++) {
+						int month = input.readByte();
+						monthlyDelay.readFields(input);
+						checkpoint.add(carrierID, year, month, monthlyDelay);
+					}
+				}
+			}
+		} finally {
+			input.close();
+		}
+		return checkpoint;
+	}
+
+	/*
+	 * Write the checkpoint to the given path, replacing the previous checkpoint only once it is completely written
+	 */
+	public void save(Configuration conf, Path path) throws IOException {
+		FileSystem fileSystem = path.getFileSystem(conf);
+		Path temporaryPath = new Path(path.getParent(), "." + path.getName() + ".tmp");
+
+		DataOutputStream output = fileSystem.create(temporaryPath, true);
+		try {
+			output.writeInt(VERSION);
+			output.writeBoolean(percentiles);
+
+			WritableUtils.writeVInt(output, processedFiles.size());
+			for (Map.Entry<String, Long> processedFile : processedFiles.entrySet()) {
+				Text.writeString(output, processedFile.getKey());
+				WritableUtils.writeVLong(output, processedFile.getValue());
+			}
+
+			WritableUtils.writeVInt(output, carrierDelays.size());
+			for (Map.Entry<String, Map<Integer, MonthlyDelayReport>> carrier : carrierDelays.entrySet()) {
+				Text.writeString(output, carrier.getKey());
+				WritableUtils.writeVInt(output, carrier.getValue().size());
+				for (Map.Entry<Integer, MonthlyDelayReport> year : carrier.getValue().entrySet()) {
+					WritableUtils.writeVInt(output, year.getKey());
+					MonthlyDelayReport monthlyDelays = year.getValue();
+
+					int months = 0;
+					for (int month = 1; month <= MONTHS_IN_YEAR; month++) {
+						months += monthlyDelays.getMonthlyDelay(month).getCount() > 0 ? 1 : 0;
+					}
+					output.writeByte(months);
+					for (int month = 1; month <= MONTHS_IN_YEAR; month++) {
+						if (monthlyDelays.getMonthlyDelay(month).getCount() > 0) {
+							output.writeByte(month);
+							monthlyDelays.getMonthlyDelay(month).write(output);
+						}
+					}
+				}
+			}
+		} finally {
+			output.close();
+		}
+
+		//Rename does not replace an existing file on every file system
+		fileSystem.delete(path, false);
+		if (!fileSystem.rename(temporaryPath, path)) {
+			throw new IOException("Could not move checkpoint " + temporaryPath + " to " + path);
+		}
+	}
+
+	/*
+	 * Input files below the given path that are not in the checkpoint, hidden files (_ or .) are ignored
+	 * A file aggregated before that has changed since cannot be refreshed incrementally
+	 */
+	public List<FileStatus> getNewFiles(Configuration conf, Path input) throws IOException {
+		List<FileStatus> newFiles = new ArrayList<FileStatus>();
+		for (FileStatus file : listFiles(input.getFileSystem(conf), input)) {
+			Long processedLength = processedFiles.get(file.getPath().toString());
+			if (processedLength == null) {
+				newFiles.add(file);
+			} else if (processedLength != file.getLen()) {
+				throw new IOException("Input file " + file.getPath() + " changed since it was checkpointed, "
+						+ "its flights would be counted twice");
+			}
+		}
+		return newFiles;
+	}
+
+	/*
+	 * Record the files whose flights have been added
+	 */
+	public void addProcessedFiles(List<FileStatus> files) {
+		for (FileStatus file : files) {
+			processedFiles.put(file.getPath().toString(), file.getLen());
+		}
+	}
+
+	/*
+	 * Merge a partial aggregate of the delays of the given carrier, year and month
+	 */
+	public void add(String carrierID, int year, int month, SumCountWritable delays) {
+		Map<Integer, MonthlyDelayReport> yearlyDelays = carrierDelays.get(carrierID);
+		if (yearlyDelays == null) {
+			yearlyDelays = new TreeMap<Integer, MonthlyDelayReport>();
+			carrierDelays.put(carrierID, yearlyDelays);
+		}
+		MonthlyDelayReport monthlyDelays = yearlyDelays.get(year);
+		if (monthlyDelays == null) {
+			monthlyDelays = new MonthlyDelayReport(percentiles);
+			yearlyDelays.put(year, monthlyDelays);
+		}
+		monthlyDelays.add(month, delays);
+	}
+
+	/*
+	 * Monthly delays of each carrier with flights in the given year, sorted by carrier
+	 */
+	public Map<String, MonthlyDelayReport> getMonthlyDelays(int year) {
+		Map<String, MonthlyDelayReport> monthlyDelays = new TreeMap<String, MonthlyDelayReport>();
+		for (Map.Entry<String, Map<Integer, MonthlyDelayReport>> carrier : carrierDelays.entrySet()) {
+			MonthlyDelayReport yearDelays = carrier.getValue().get(year);
+			if (yearDelays != null) {
+				monthlyDelays.put(carrier.getKey(), yearDelays);
+			}
+		}
+		return monthlyDelays;
+	}
+
+	private static List<FileStatus> listFiles(FileSystem fileSystem, Path path) throws IOException {
+		List<FileStatus> files = new ArrayList<FileStatus>();
+		for (FileStatus file : fileSystem.listStatus(path)) {
+			String fileName = file.getPath().getName();
+			if (fileName.startsWith("_") || fileName.startsWith(".")) {
+				continue;
+			}
+			if (file.isDirectory()) {
+				files.addAll(listFiles(fileSystem, file.getPath()));
+			} else {
+				files.add(file);
+			}
+		}
+		return files;
+	}
+}
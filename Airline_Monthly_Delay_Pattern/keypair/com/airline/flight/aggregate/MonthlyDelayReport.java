@@ -0,0 +1,85 @@
+package com.airline.flight.aggregate;
+
+import org.apache.hadoop.io.Text;
+
+import com.mapreduce.common.aggregate.FlightDelayStatsWritable;
+import com.mapreduce.common.aggregate.SumCountWritable;
+
+/*
+ * Builds the monthly delay pattern of a single carrier
+ * AIR-A, (1, A1), (2, A2),..., (11, A11), (12, A12)
+ * Where Ai is the average delay of carrier AIR-A in month i rounded up, 0 for a month with no flights
+ * With percentiles, each month is followed by its p50, p95 and p99 delays, (i, Ai, P50i, P95i, P99i)
+ * Percentiles are rounded to the nearest minute, rounding up the sketch value within 1% would add a minute to whole delays
+ */
+public class MonthlyDelayReport {
+	
+	//Number of (carrier, month) pairs with the highest average delay written to <out>/top-delays by the secondary sort, none by default
+	public static final String TOP_DELAYS = "carrier.top.delays";
+	
+	private static final int MONTHS_IN_YEAR = 12;
+	
+	//Delays of the current carrier, indexed by month number
+	private SumCountWritable[] monthlyDelays = new SumCountWritable[MONTHS_IN_YEAR + 1];
+	
+	public MonthlyDelayReport() {
+		this(false);
+	}
+	
+	/*
+	 * Report of the average delays, and of the delay percentiles when requested
+	 */
+	public MonthlyDelayReport(boolean percentiles) {
+		for (int month = 0; month <= MONTHS_IN_YEAR; month++) {
+			monthlyDelays[month] = FlightDelayStatsWritable.newAggregate(percentiles);
+		}
+	}
+	
+	/*
+	 * Clear the delays before starting with a new carrier
+	 */
+	public void reset() {
+		for (SumCountWritable monthlyDelay : monthlyDelays) {
+			monthlyDelay.reset();
+		}
+	}
+	
+	/*
+	 * Merge a partial aggregate of delays for the given month
+	 */
+	public void add(int month, SumCountWritable delays) {
+		monthlyDelays[month].merge(delays);
+	}
+	
+	/*
+	 * Merge all the monthly delays of another report of the same carrier
+	 */
+	public void merge(MonthlyDelayReport other) {
+		for (int month = 1; month <= MONTHS_IN_YEAR; month++) {
+			monthlyDelays[month].merge(other.monthlyDelays[month]);
+		}
+	}
+	
+	public SumCountWritable getMonthlyDelay(int month) {
+		return monthlyDelays[month];
+	}
+	
+	/*
+	 * Format the average delay of each month for the given carrier
+	 */
+	public String format(Text carrierID) {
+		StringBuffer airlineDelayInformationByMonth = new StringBuffer(carrierID.toString());
+		for (int month = 1; month <= MONTHS_IN_YEAR; month++) {
+			int airlineAverageDelayforMonth = (int)(Math.ceil(monthlyDelays[month].getAverage()));
+			airlineDelayInformationByMonth.append(", (" + month + ", " + airlineAverageDelayforMonth);
+			if (monthlyDelays[month] instanceof FlightDelayStatsWritable) {
+				FlightDelayStatsWritable monthlyStats = (FlightDelayStatsWritable) monthlyDelays[month];
+				for (double quantile : FlightDelayStatsWritable.REPORTED_QUANTILES) {
+					airlineDelayInformationByMonth.append(", " + (int)(Math.round(monthlyStats.getQuantile(quantile))));
+				}
+			}
+			airlineDelayInformationByMonth.append(")");
+		}
+		return airlineDelayInformationByMonth.toString();
+	}
+}
@@ -0,0 +1,33 @@
+package com.airline.flight.comparator;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/*
+ * Custom comparator that controls which keys are grouped together for a single call to reduce
+ * Here we use the first half of composite key, Unique carrier id
+ * It groups all the records with the same carrier id irrespective of their month of travel
+ * 
+ * Only the fixed width carrier id prefix of the serialized keys is compared
+ */
+public class CarrierIDGroupComparator extends WritableComparator {
+	
+    public CarrierIDGroupComparator() {
+        super(CarrierIDMonthKeyPair.class);
+    }
+    
+    @Override
+    public int compare(byte[] bytes1, int start1, int length1, byte[] bytes2, int start2, int length2) {
+    	return compareBytes(bytes1, start1, CarrierIDMonthKeyPair.CARRIER_ID_LENGTH, 
+    			bytes2, start2, CarrierIDMonthKeyPair.CARRIER_ID_LENGTH);
+    }
+    
+    @SuppressWarnings("rawtypes")
+	@Override
+    public int compare(WritableComparable writable1, WritableComparable writable2) {
+    	CarrierIDMonthKeyPair flight1 = (CarrierIDMonthKeyPair)writable1;
+    	CarrierIDMonthKeyPair flight2 = (CarrierIDMonthKeyPair)writable2;
+         
+        return flight1.compareCarrierIDOnly(flight2);
+    }
+}
@@ -0,0 +1,34 @@
+package com.airline.flight.comparator;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/*
+ * Custom comparator that controls how the keys are sorted before they are passed to the Reducer
+ * Here we use the composite key of Unique carrier id and month of travel
+ * It first sorts on the basis of carrier id and then sorts in increasing order of month of journey
+ * 
+ * Serialized keys are compared byte by byte, zero padded carrier id followed by the month byte,
+ * so no key is deserialized during the shuffle sort and merge
+ */
+public class CarrierIDMonthKeyComparator extends WritableComparator {
+	
+    public CarrierIDMonthKeyComparator() {
+        super(CarrierIDMonthKeyPair.class);
+    }
+    
+    @Override
+    public int compare(byte[] bytes1, int start1, int length1, byte[] bytes2, int start2, int length2) {
+    	return compareBytes(bytes1, start1, CarrierIDMonthKeyPair.SERIALIZED_LENGTH, 
+    			bytes2, start2, CarrierIDMonthKeyPair.SERIALIZED_LENGTH);
+    }
+    
+    @SuppressWarnings("rawtypes")
+	@Override
+    public int compare(WritableComparable writable1, WritableComparable writable2) {
+    	CarrierIDMonthKeyPair flight1 = (CarrierIDMonthKeyPair)writable1;
+    	CarrierIDMonthKeyPair flight2 = (CarrierIDMonthKeyPair)writable2;
+         
+        return flight1.compareCarrierIDAndMonth(flight2);
+    }
+}
@@ -7,26 +7,45 @@ import java.io.IOException;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
 
+/*
+ * Composite key of unique carrier id and month of travel
+ * Serialized in a fixed width binary layout so that it can be compared without deserialization:
+ * | carrier id, zero padded to CARRIER_ID_LENGTH bytes | month, 1 byte |
+ */
 @SuppressWarnings("rawtypes")
 public class CarrierIDMonthKeyPair implements WritableComparable{
-	
+
+	/*************** Serialized layout of the key *****************/
+	public static final int CARRIER_ID_LENGTH = 3;
+	public static final int MONTH_OFFSET = CARRIER_ID_LENGTH;
+	public static final int SERIALIZED_LENGTH = CARRIER_ID_LENGTH + 1;
+
 	Text carrierID;
-	Text month;
-	
+	int month;
+
+	//Buffer reused to write the zero padded carrier id
+	private final byte[] carrierIDBuffer = new byte[CARRIER_ID_LENGTH];
+
 	/*
 	 * Default constructor
 	 */
 	public CarrierIDMonthKeyPair() {
 		this.carrierID = new Text();
-    	this.month = new Text();
 	}
-	
+
 	/*
 	 * Constructor expecting carrierID and month
 	 */
 	public CarrierIDMonthKeyPair(String carrierID, String month) {
+		this(carrierID, Integer.parseInt(month));
+	}
+
+	/*
+	 * Constructor expecting carrierID and month number
+	 */
+	public CarrierIDMonthKeyPair(String carrierID, int month) {
 		this.carrierID = new Text(carrierID.getBytes());
-		this.month = new Text(month.getBytes());
+		this.month = month;
 	}
 
 	@Override
@@ -34,7 +53,7 @@ public class CarrierIDMonthKeyPair implements WritableComparable{
 		CarrierIDMonthKeyPair airlineMonthPair = (CarrierIDMonthKeyPair) object;
 		return getCarrierID().compareTo(airlineMonthPair.getCarrierID());
 	}
-	
+
 	/*
 	 * Used by grouping comparator, only uses carrier ID for comparison between 2 objects
 	 */
@@ -42,7 +61,7 @@ public class CarrierIDMonthKeyPair implements WritableComparable{
 		CarrierIDMonthKeyPair airlineMonthPair = (CarrierIDMonthKeyPair) object;
 		return getCarrierID().compareTo(airlineMonthPair.getCarrierID());
 	}
-	
+
 	/*
 	 * Used by sort(key) comparator, first sorts by carrier id
 	 * Then sorts in increasing order of month
@@ -50,25 +69,40 @@ public class CarrierIDMonthKeyPair implements WritableComparable{
 	public int compareCarrierIDAndMonth(Object object) {
 		CarrierIDMonthKeyPair airlineMonthPair = (CarrierIDMonthKeyPair) object;
 		int airlineComparison = getCarrierID().compareTo(airlineMonthPair.getCarrierID());
-		
+
         if (0 != airlineComparison) {
         	return airlineComparison;
         }
-        Integer month1 = Integer.parseInt(getMonth().toString());
-        Integer month2 = Integer.parseInt(airlineMonthPair.getMonth().toString());
-        return month1.compareTo(month2);
+        return month - airlineMonthPair.getMonth();
 	}
 
 	@Override
 	public void readFields(DataInput input) throws IOException {
-		this.carrierID.readFields(input);
-        this.month.readFields(input);
+		input.readFully(carrierIDBuffer);
+
+		//Strip the zero padding from the carrier id
+		int carrierIDLength = CARRIER_ID_LENGTH;
+		while (carrierIDLength > 0 && carrierIDBuffer[carrierIDLength - 1] == 0) {
+			carrierIDLength--;
+		}
+		this.carrierID.set(carrierIDBuffer, 0, carrierIDLength);
+		this.month = input.readUnsignedByte();
 	}
 
 	@Override
 	public void write(DataOutput output) throws IOException {
-		this.carrierID.write(output);
-    	this.month.write(output);
+		int carrierIDLength = carrierID.getLength();
+		if (carrierIDLength > CARRIER_ID_LENGTH) {
+			throw new IOException("Carrier id " + carrierID + " is longer than " + CARRIER_ID_LENGTH + " bytes");
+		}
+
+		//Zero pad the carrier id, so that padded ids sort before longer ids sharing the same prefix
+		System.arraycopy(carrierID.getBytes(), 0, carrierIDBuffer, 0, carrierIDLength);
+		for (int index = carrierIDLength; index < CARRIER_ID_LENGTH; index++) {
+			carrierIDBuffer[index] = 0;
+		}
+		output.write(carrierIDBuffer);
+		output.writeByte(month);
 	}
 
     public boolean equals(Object object) {
@@ -84,13 +118,12 @@ public class CarrierIDMonthKeyPair implements WritableComparable{
 		this.carrierID = carrierID;
 	}
 
-	public Text getMonth() {
+	public int getMonth() {
 		return month;
 	}
 
-	public void setMonth(Text month) {
+	public void setMonth(int month) {
 		this.month = month;
 	}
 
 }
-
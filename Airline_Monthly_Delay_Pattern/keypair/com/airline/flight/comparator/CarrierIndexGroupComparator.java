@@ -0,0 +1,31 @@
+package com.airline.flight.comparator;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/*
+ * Grouping comparator of the packed (carrier id, month) keys
+ * Groups all the records with the same carrier id irrespective of their month, comparing the serialized ints without deserializing them
+ */
+public class CarrierIndexGroupComparator extends WritableComparator {
+	
+    public CarrierIndexGroupComparator() {
+        super(IntWritable.class);
+    }
+    
+    @Override
+    public int compare(byte[] bytes1, int start1, int length1, byte[] bytes2, int start2, int length2) {
+    	int carrierIndex1 = CarrierIndexMonthKey.getCarrierIndex(readInt(bytes1, start1));
+    	int carrierIndex2 = CarrierIndexMonthKey.getCarrierIndex(readInt(bytes2, start2));
+    	return carrierIndex1 < carrierIndex2 ? -1 : (carrierIndex1 == carrierIndex2 ? 0 : 1);
+    }
+    
+    @SuppressWarnings("rawtypes")
+	@Override
+    public int compare(WritableComparable writable1, WritableComparable writable2) {
+    	int carrierIndex1 = CarrierIndexMonthKey.getCarrierIndex(((IntWritable) writable1).get());
+    	int carrierIndex2 = CarrierIndexMonthKey.getCarrierIndex(((IntWritable) writable2).get());
+    	return carrierIndex1 < carrierIndex2 ? -1 : (carrierIndex1 == carrierIndex2 ? 0 : 1);
+    }
+}
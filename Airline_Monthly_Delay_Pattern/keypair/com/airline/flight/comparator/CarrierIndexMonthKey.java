@@ -0,0 +1,30 @@
+package com.airline.flight.comparator;
+
+/*
+ * Composite key of carrier and month packed into a single int, for jobs reading the carriers through a Dictionary (Common)
+ * | carrier id, dense dictionary id | month, low MONTH_BITS bits |
+ * Carrier ids sort like the carrier codes, so IntWritable keys sort by carrier and then by month like CarrierIDMonthKeyPair
+ */
+public class CarrierIndexMonthKey {
+
+	public static final int MONTH_BITS = 4;
+	private static final int MONTH_MASK = (1 << MONTH_BITS) - 1;
+
+	//Largest carrier id that keeps the packed key positive
+	public static final int MAX_CARRIER_INDEX = Integer.MAX_VALUE >>> MONTH_BITS;
+
+	private CarrierIndexMonthKey() {
+	}
+
+	public static int encode(int carrierIndex, int month) {
+		return carrierIndex << MONTH_BITS | month;
+	}
+
+	public static int getCarrierIndex(int key) {
+		return key >>> MONTH_BITS;
+	}
+
+	public static int getMonth(int key) {
+		return key & MONTH_MASK;
+	}
+}
@@ -0,0 +1,18 @@
+package com.airline.flight.partition;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+import com.airline.flight.comparator.CarrierIndexMonthKey;
+import com.mapreduce.common.aggregate.SumCountWritable;
+
+/*
+ * Partitions the packed (carrier id, month) keys by carrier id only, all the months of a carrier go to the same reducer
+ */
+public class CarrierIndexPartitioner extends Partitioner<IntWritable, SumCountWritable> {
+	
+	@Override
+	public int getPartition(IntWritable key, SumCountWritable value, int numReduceTasks) {
+		return CarrierIndexMonthKey.getCarrierIndex(key.get()) % numReduceTasks;
+	}
+}
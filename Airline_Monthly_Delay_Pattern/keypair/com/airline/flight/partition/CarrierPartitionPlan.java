@@ -0,0 +1,197 @@
+package com.airline.flight.partition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+
+/*
+ * Assignment of (carrier, month range) pieces to reducers, balancing the estimated number of flights of each reducer
+ * Built from a histogram of flights by carrier and month, usually counted on a sample of the input
+ * A carrier with more flights than the average load of a reducer is split into ranges of consecutive months,
+ * its reducers then emit partial aggregates which have to be merged once the job is done
+ * Pieces are assigned largest first, each to the reducer with the least flights so far
+ * Carriers missing from the histogram are assigned by hash
+ */
+public class CarrierPartitionPlan {
+	
+	//Serialized plan in the job configuration, carrier:firstMonth-lastMonth:partition entries separated by commas
+	public static final String PARTITION_PLAN = "carrier.partition.plan";
+	
+	private static final int MONTHS_IN_YEAR = 12;
+	
+	//Partition of each month of a carrier, indexed by month number
+	private Map<Text, int[]> monthPartitions = new HashMap<Text, int[]>();
+	
+	//Carriers whose months are spread over several partitions
+	private Map<Text, Boolean> splitCarriers = new HashMap<Text, Boolean>();
+	
+	private List<String> entries = new ArrayList<String>();
+	
+	/*
+	 * Piece of a carrier assigned to a single partition
+	 */
+	private static class Piece {
+		String carrierID;
+		int firstMonth;
+		int lastMonth;
+		long flights;
+		
+		Piece(String carrierID, int firstMonth, int lastMonth, long flights) {
+			this.carrierID = carrierID;
+			this.firstMonth = firstMonth;
+			this.lastMonth = lastMonth;
+			this.flights = flights;
+		}
+	}
+	
+	/*
+	 * Plan for the given number of partitions from the flights of each carrier, indexed by month number
+	 */
+	public static CarrierPartitionPlan build(Map<String, long[]> flightHistogram, int numPartitions) {
+		long totalFlights = 0;
+		for (long[] monthlyFlights : flightHistogram.values()) {
+			for (long flights : monthlyFlights) {
+				totalFlights += flights;
+			}
+		}
+		long targetLoad = Math.max(1, totalFlights / numPartitions);
+		
+		//Split the carriers larger than a partition into month ranges of about the target load
+		List<Piece> pieces = new ArrayList<Piece>();
+		for (Map.Entry<String, long[]> carrier : flightHistogram.entrySet()) {
+			long[] monthlyFlights = carrier.getValue();
+			long carrierFlights = 0;
+			for (int month = 1; month <= MONTHS_IN_YEAR; month++) {
+				carrierFlights += monthlyFlights[month];
+			}
+			int numPieces = (int) Math.min(MONTHS_IN_YEAR, Math.min(numPartitions, (carrierFlights + targetLoad - 1) / targetLoad));
+			long pieceLoad = Math.max(1, carrierFlights / Math.max(1, numPieces));
+			
+			//The last piece takes the remaining months
+			int firstMonth = 1;
+			int carrierPieces = 0;
+			long flights = 0;
+			for (int month = 1; month <= MONTHS_IN_YEAR; month++) {
+				flights += monthlyFlights[month];
+				if (month == MONTHS_IN_YEAR || (flights >= pieceLoad && carrierPieces < numPieces - 1)) {
+					pieces.add(new Piece(carrier.getKey(), firstMonth, month, flights));
+					carrierPieces++;
+					firstMonth = month + 1;
+					flights = 0;
+				}
+			}
+		}
+		
+		//Largest pieces first, each on the least loaded partition
+		Collections.sort(pieces, new Comparator<Piece>() {
+			public int compare(Piece first, Piece second) {
+				return first.flights == second.flights ? 0 : (first.flights > second.flights ? -1 : 1);
+			}
+		});
+		PriorityQueue<long[]> partitionLoads = new PriorityQueue<long[]>(numPartitions, new Comparator<long[]>() {
+			public int compare(long[] first, long[] second) {
+				return first[0] == second[0] ? (int) (first[1] - second[1]) : (first[0] < second[0] ? -1 : 1);
+			}
+		});
+		for (int partition = 0; partition < numPartitions; partition++) {
+			partitionLoads.add(new long[] { 0, partition });
+		}
+		
+		StringBuilder plan = new StringBuilder();
+		for (Piece piece : pieces) {
+			long[] partitionLoad = partitionLoads.poll();
+			partitionLoad[0] += piece.flights;
+			partitionLoads.add(partitionLoad);
+			
+			if (plan.length() > 0) {
+				plan.append(',');
+			}
+			plan.append(piece.carrierID).append(':').append(piece.firstMonth).append('-').append(piece.lastMonth)
+				.append(':').append(partitionLoad[1]);
+		}
+		return parse(plan.toString());
+	}
+	
+	/*
+	 * Plan serialized by toString
+	 */
+	public static CarrierPartitionPlan parse(String serializedPlan) {
+		CarrierPartitionPlan plan = new CarrierPartitionPlan();
+		if (serializedPlan == null || serializedPlan.isEmpty()) {
+			return plan;
+		}
+		for (String entry : serializedPlan.split(",")) {
+			String[] fields = entry.split(":");
+			String[] months = fields[1].split("-");
+			plan.assign(fields[0], Integer.parseInt(months[0]), Integer.parseInt(months[1]), Integer.parseInt(fields[2]));
+		}
+		return plan;
+	}
+	
+	public static CarrierPartitionPlan fromConfiguration(Configuration conf) {
+		return parse(conf.get(PARTITION_PLAN));
+	}
+	
+	public void store(Configuration conf) {
+		conf.set(PARTITION_PLAN, toString());
+	}
+	
+	private void assign(String carrierID, int firstMonth, int lastMonth, int partition) {
+		Text carrier = new Text(carrierID);
+		int[] partitions = monthPartitions.get(carrier);
+		if (partitions == null) {
+			partitions = new int[MONTHS_IN_YEAR + 1];
+			monthPartitions.put(carrier, partitions);
+			splitCarriers.put(carrier, Boolean.FALSE);
+		} else {
+			splitCarriers.put(carrier, Boolean.TRUE);
+		}
+		for (int month = firstMonth; month <= lastMonth; month++) {
+			partitions[month] = partition;
+		}
+		entries.add(carrierID + ":" + firstMonth + "-" + lastMonth + ":" + partition);
+	}
+	
+	/*
+	 * Partition of the given carrier and month, by hash for a carrier outside of the plan
+	 */
+	public int getPartition(Text carrierID, int month, int numPartitions) {
+		int[] partitions = monthPartitions.get(carrierID);
+		if (partitions == null || month < 1 || month > MONTHS_IN_YEAR) {
+			//Multiply by 127 to perform some mixing
+			return Math.abs(carrierID.hashCode() * 127) % numPartitions;
+		}
+		return partitions[month] % numPartitions;
+	}
+	
+	/*
+	 * Whether the months of the carrier are spread over several partitions
+	 */
+	public boolean isSplit(Text carrierID) {
+		Boolean split = splitCarriers.get(carrierID);
+		return split != null && split;
+	}
+	
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder plan = new StringBuilder();
+		for (String entry : entries) {
+			if (plan.length() > 0) {
+				plan.append(',');
+			}
+			plan.append(entry);
+		}
+		return plan.toString();
+	}
+}
@@ -0,0 +1,34 @@
+package com.airline.flight.partition;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+import com.airline.flight.comparator.CarrierIDMonthKeyPair;
+import com.mapreduce.common.aggregate.SumCountWritable;
+
+/*
+ * Partitions the (carrier, month) keys as assigned by the CarrierPartitionPlan of the job
+ * Without a plan, every key is partitioned by the hash of its carrier
+ */
+public class CarrierPlanPartitioner extends Partitioner<CarrierIDMonthKeyPair, SumCountWritable> implements Configurable {
+	
+	private Configuration conf;
+	private CarrierPartitionPlan plan;
+	
+	@Override
+	public int getPartition(CarrierIDMonthKeyPair key, SumCountWritable value, int numReduceTasks) {
+		return plan.getPartition(key.getCarrierID(), key.getMonth(), numReduceTasks);
+	}
+	
+	@Override
+	public void setConf(Configuration conf) {
+		this.conf = conf;
+		this.plan = CarrierPartitionPlan.fromConfiguration(conf);
+	}
+	
+	@Override
+	public Configuration getConf() {
+		return conf;
+	}
+}
@@ -1,68 +1,202 @@
 package com.airline.flight.delay;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.io.WritableComparable;
-import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.hadoop.mapreduce.Partitioner;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.hadoop.util.GenericOptionsParser;
 
+import com.airline.flight.aggregate.CarrierIndexDelayBuffer;
+import com.airline.flight.aggregate.CarrierIndexDelayCombiner;
+import com.airline.flight.aggregate.CarrierMonthDelayBuffer;
+import com.airline.flight.aggregate.CarrierMonthDelayCombiner;
+import com.airline.flight.aggregate.DelayCheckpoint;
+import com.airline.flight.aggregate.MonthlyDelayReport;
+import com.airline.flight.comparator.CarrierIDGroupComparator;
+import com.airline.flight.comparator.CarrierIndexGroupComparator;
+import com.airline.flight.comparator.CarrierIndexMonthKey;
+import com.airline.flight.comparator.CarrierIDMonthKeyComparator;
 import com.airline.flight.comparator.CarrierIDMonthKeyPair;
-
-import au.com.bytecode.opencsv.CSVParser;
+import com.airline.flight.partition.CarrierIndexPartitioner;
+import com.airline.flight.partition.CarrierPartitionPlan;
+import com.airline.flight.partition.CarrierPlanPartitioner;
+import com.mapreduce.common.aggregate.FlightDelayStatsWritable;
+import com.mapreduce.common.aggregate.SumCountWritable;
+import com.mapreduce.common.csv.CSVFieldScanner;
+import com.mapreduce.common.dictionary.Dictionary;
+import com.mapreduce.common.dictionary.DictionaryBuilder;
+import com.mapreduce.common.flight.columnar.ColumnarFlightInputFormat;
+import com.mapreduce.common.flight.columnar.ColumnarFlightRecord;
+import com.mapreduce.common.flight.columnar.FlightColumn;
+import com.mapreduce.common.flight.partition.DateRangeInputFormat;
+import com.mapreduce.common.local.LocalEngine;
+import com.mapreduce.common.local.LocalLineJob;
+import com.mapreduce.common.local.LocalLineTask;
+import com.mapreduce.common.metrics.FlightCounters;
+import com.mapreduce.common.metrics.GroupSizeHistogram;
+import com.mapreduce.common.metrics.PhaseCpuMicros;
+import com.mapreduce.common.metrics.PhaseTimer;
+import com.mapreduce.common.metrics.RunReport;
+import com.mapreduce.common.sample.RandomLineSampler;
+import com.mapreduce.common.sizing.ReducerSizing;
+import com.mapreduce.common.topk.ScoredNameWritable;
+import com.mapreduce.common.topk.TopKHeap;
+import com.mapreduce.common.topk.TopKReducer;
 
 public class CarrierPerMonthAverageDelay {
+	
+	//Number of input lines sampled for the partition plan, 0 partitions by the hash of the carrier
+	public static final String PLAN_SAMPLES = "carrier.partition.plan.samples";
+	private static final int DEFAULT_PLAN_SAMPLES = 10000;
+	
+	//Partial aggregates of the carriers split over several reducers, and their merged delay lines
+	private static final String PARTIAL_OUTPUT = "partial";
+	private static final String MERGED_OUTPUT = "part-r-merged";
+	
+	//Counter group of the number of values of each carrier reduced
+	public static final String GROUP_SIZES = "Carrier group sizes";
+	
+	//Path of the checkpoint of the incremental mode, only the input files not yet in the checkpoint are read
+	public static final String CHECKPOINT = "carrier.delay.checkpoint";
+	
+	//Aggregates of the new input files, read by the driver and merged into the checkpoint
+	private static final String INCREMENT_OUTPUT = "_increment";
+	
+	//Path of the carrier dictionary, mappers emit dense carrier ids instead of carrier codes, built from the input when missing
+	public static final String CARRIER_DICTIONARY = "carrier.dictionary";
+	
+	//Name of the carrier dictionary in the distributed cache of the job
+	private static final String CARRIER_DICTIONARY_NAME = "carriers.dict";
+	
+	//Most delayed pairs of each reducer, merged into the file of the most delayed pairs of all
+	private static final String TOP_DELAYS_OUTPUT = "topdelays";
+	private static final String TOP_DELAYS_FILE = "top-delays";
 
 	/*
 	 * Mapper class for reading the input flight data
 	 * Applies projection and selection while reading the input data
 	 */
-	public static class FlightDataMapper extends Mapper<Object, Text, CarrierIDMonthKeyPair, Text> {
+	public static class FlightDataMapper extends Mapper<Object, Text, CarrierIDMonthKeyPair, SumCountWritable> {
 		
 		/*************** Indexes of relevant data in csv file *****************/
-		private static final int YEAR_INDEX = 0;
-		private static final int MONTH_INDEX = 2;
-		private static final int UNIQUE_CARRIER_INDEX = 6;
-		private static final int ARRIVAL_DELAY_INDEX = 37;
+		static final int YEAR_INDEX = 0;
+		static final int MONTH_INDEX = 2;
+		static final int UNIQUE_CARRIER_INDEX = 6;
+		static final int ARRIVAL_DELAY_INDEX = 37;
 		private static final int FLIGHT_CANCELLED_INDEX = 41;
+		private static final int FLIGHT_DIVERTED_INDEX = 43;
 		
 		/*************** Problem statement data *****************/
 		private static double CANCELED = 1.00;
+		private static double DIVERTED = 1.00;
 		private static int YEAR = 2008;
+		private static final int MONTHS_IN_YEAR = 12;
+		
+		//Year passed to getDropReason to select the flights of every year
+		static final int ANY_YEAR = 0;
+		
+		//Initialize the scanner for the input CSV file, projecting only the relevant fields
+		private CSVFieldScanner scanner = CSVFieldScanner.forFields(YEAR_INDEX, MONTH_INDEX, UNIQUE_CARRIER_INDEX, 
+				ARRIVAL_DELAY_INDEX, FLIGHT_CANCELLED_INDEX, FLIGHT_DIVERTED_INDEX);
 		
-		//Initialize the parser for the input CSV file
-		private CSVParser parser = new CSVParser();
+		//Composite key(secondary sort) and flight delay reused across records
+		private CarrierIDMonthKeyPair carrierIDMonthKeyPair = new CarrierIDMonthKeyPair();
+		private SumCountWritable flightDelay;
+		
+		//Buffer for in-mapper aggregation, null when every flight is emitted individually
+		private CarrierMonthDelayBuffer delayBuffer;
+		
+		//Counters looked up once per task, and timers of the parse and emit phases
+		private Counter[] flightCounters;
+		private PhaseTimer parseTimer;
+		private PhaseTimer emitTimer;
+		
+		/*
+		 * Setup in-mapper aggregation if enabled for the job
+		 */
+		protected void setup(Context context) {
+			boolean percentiles = context.getConfiguration().getBoolean(FlightDelayStatsWritable.PERCENTILES, false);
+			flightDelay = FlightDelayStatsWritable.newAggregate(percentiles);
+			if (context.getConfiguration().getBoolean(CarrierMonthDelayBuffer.IN_MAPPER_AGGREGATION, false)) {
+				delayBuffer = new CarrierMonthDelayBuffer(percentiles);
+			}
+			flightCounters = FlightCounters.getCounters(context);
+			parseTimer = new PhaseTimer(context, PhaseCpuMicros.MAP_PARSE);
+			emitTimer = new PhaseTimer(context, PhaseCpuMicros.MAP_EMIT);
+		}
 
 		/*
 		 * Key : Offset in input file to read the data from
 		 * Value : UTF-8 string representation of data at given offset
 		 */
 		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+			flightCounters[FlightCounters.RECORDS_READ.ordinal()].increment(1);
+			parseTimer.start();
 
-			//Read the flight records as tokens
-			String[] flightDetails = parser.parseLine(value.toString());			
+			//Locate the relevant fields of the flight record
+			scanner.scan(value);
 
-			if (isValidFlight(flightDetails)) {
-				
-				//Create a composite key(secondary sort) for flight data
-				CarrierIDMonthKeyPair CarrierIDMonthKeyPair = 
-						new CarrierIDMonthKeyPair(flightDetails[UNIQUE_CARRIER_INDEX], flightDetails[MONTH_INDEX]);
-				
-				//Initialize and text for flight delay
-				Text flightDelay = new Text();
-				flightDelay.set(flightDetails[ARRIVAL_DELAY_INDEX].getBytes());
+			FlightCounters dropReason = getDropReason(scanner);
+			if (dropReason != null) {
+				parseTimer.stop();
+				flightCounters[dropReason.ordinal()].increment(1);
+				return;
+			}
 				
-				//Emit the record
-				context.write(CarrierIDMonthKeyPair, flightDelay);
+			//Set the composite key(secondary sort) for flight data
+			scanner.getText(UNIQUE_CARRIER_INDEX, carrierIDMonthKeyPair.getCarrierID());
+			carrierIDMonthKeyPair.setMonth(scanner.getInt(MONTH_INDEX));
+			double delay = scanner.getDouble(ARRIVAL_DELAY_INDEX);
+			parseTimer.stop();
+			
+			emitTimer.start();
+			if (delayBuffer != null) {
+				//Aggregate the delay, emitted once per (carrier, month) at the end of the map task
+				delayBuffer.add(carrierIDMonthKeyPair.getCarrierID(), carrierIDMonthKeyPair.getMonth(), delay);
+			} else {
+				//Emit the record as a partial aggregate of a single flight
+				flightDelay.reset();
+				flightDelay.add(delay);
+				context.write(carrierIDMonthKeyPair, flightDelay);
+			}
+			emitTimer.stop();
+			flightCounters[FlightCounters.RECORDS_EMITTED.ordinal()].increment(1);
+		}
+		
+		/*
+		 * Emit the aggregated delays of the map task
+		 */
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			emitTimer.start();
+			if (delayBuffer != null) {
+				delayBuffer.flush(context);
 			}
+			emitTimer.stop();
+			parseTimer.flush();
+			emitTimer.flush();
 		}
 		
 		/*
@@ -70,152 +204,904 @@ public class CarrierPerMonthAverageDelay {
 		 * Ignoring flights that are missing one of the attributes needed for the computation
 		 * Also enforce the selection conditions for year and cancelled flights
 		 */
-		public boolean isValidFlight(String[] flightDetails) {
-			return ( !( "".equals(flightDetails[MONTH_INDEX]) || "".equals(flightDetails[UNIQUE_CARRIER_INDEX]) ||
-					    "".equals(flightDetails[ARRIVAL_DELAY_INDEX])) &&
-					 ( !("".equals(flightDetails[FLIGHT_CANCELLED_INDEX])) 
-							 && CANCELED != Double.parseDouble(flightDetails[FLIGHT_CANCELLED_INDEX])) &&
-				 	 ( !("".equals(flightDetails[YEAR_INDEX]))  
-				 			 && YEAR == Integer.parseInt(flightDetails[YEAR_INDEX])));
+		public boolean isValidFlight(CSVFieldScanner flightDetails) {
+			return getDropReason(flightDetails) == null;
+		}
+		
+		/*
+		 * Reason the given flight is not selected, null for a valid flight
+		 * A flight without a delay is dropped as diverted when it was diverted, and as malformed otherwise
+		 */
+		public FlightCounters getDropReason(CSVFieldScanner flightDetails) {
+			return getDropReason(flightDetails, YEAR);
+		}
+		
+		/*
+		 * Reason the given flight is not selected, for the given year or for ANY_YEAR
+		 * A month outside 1..12 or a carrier longer than the carrier id of the key is malformed
+		 */
+		FlightCounters getDropReason(CSVFieldScanner flightDetails, int year) {
+			try {
+				if (!flightDetails.hasField(FLIGHT_CANCELLED_INDEX) || flightDetails.isEmpty(MONTH_INDEX) 
+						|| flightDetails.isEmpty(UNIQUE_CARRIER_INDEX) || flightDetails.isEmpty(FLIGHT_CANCELLED_INDEX) 
+						|| flightDetails.isEmpty(YEAR_INDEX)) {
+					return FlightCounters.DROPPED_MALFORMED;
+				}
+				if (!isValidKey(flightDetails.getInt(MONTH_INDEX), flightDetails.getLength(UNIQUE_CARRIER_INDEX))) {
+					return FlightCounters.DROPPED_MALFORMED;
+				}
+				if (CANCELED == flightDetails.getDouble(FLIGHT_CANCELLED_INDEX)) {
+					return FlightCounters.DROPPED_CANCELLED;
+				}
+				int flightYear = flightDetails.getInt(YEAR_INDEX);
+				if (year != ANY_YEAR && year != flightYear) {
+					return FlightCounters.DROPPED_OUT_OF_RANGE;
+				}
+				if (flightDetails.isEmpty(ARRIVAL_DELAY_INDEX)) {
+					boolean diverted = flightDetails.hasField(FLIGHT_DIVERTED_INDEX) && !flightDetails.isEmpty(FLIGHT_DIVERTED_INDEX) 
+							&& DIVERTED == flightDetails.getDouble(FLIGHT_DIVERTED_INDEX);
+					return diverted ? FlightCounters.DROPPED_DIVERTED : FlightCounters.DROPPED_MALFORMED;
+				}
+			} catch (NumberFormatException e) {
+				//Header line or a corrupt record
+				return FlightCounters.DROPPED_MALFORMED;
+			}
+			return null;
+		}
+		
+		/*
+		 * Whether the month and the carrier length fit the composite key and the monthly aggregates
+		 */
+		static boolean isValidKey(int month, int carrierLength) {
+			return month >= 1 && month <= MONTHS_IN_YEAR && carrierLength <= CarrierIDMonthKeyPair.CARRIER_ID_LENGTH;
 		}
 	}
 	
 	/*
-	 * Custom partitioner for flight data,
-	 * Uses the hash code of the underlying key to determine the partition
+	 * Mapper class for reading the flight data in the columnar format
+	 * Only the relevant columns are decoded, and blocks without flights of the year of interest are never read
 	 */
-	public static class FlightDataPartitioner extends Partitioner<CarrierIDMonthKeyPair, Text> {
-
-		public int getPartition(CarrierIDMonthKeyPair key, Text value, int numReduceTasks) {
-			//Multiply by 127 to perform some mixing
-			return Math.abs(key.getCarrierID().hashCode() * 127) % numReduceTasks;
-		}
-	}
-	
-	/*
-	 * Custom comparator that controls how the keys are sorted before they are passed to the Reducer
-	 * Here we use the composite key of Unique carrier id and month of travel
-	 * It first sorts on the basis of carrier id and then sorts in increasing order of month of journey
-	 */
-	public static class CarrierIDMonthKeyComparator extends WritableComparator {
-	    protected CarrierIDMonthKeyComparator() {
-	        super(CarrierIDMonthKeyPair.class, true);
-	    }   
-	    
-	    @SuppressWarnings("rawtypes")
-		@Override
-	    public int compare(WritableComparable writable1, WritableComparable writable2) {
-	    	CarrierIDMonthKeyPair flight1 = (CarrierIDMonthKeyPair)writable1;
-	    	CarrierIDMonthKeyPair flight2 = (CarrierIDMonthKeyPair)writable2;
-	         
-	        return flight1.compareCarrierIDAndMonth(flight2);
-	    }
-	}
-	
-	/*
-	 * Custom comparator that controls which keys are grouped together for a single call to reduce
-	 * Here we use the first half of composite key, Unique carrier id
-	 * It groups all the records with the same carrier id irrespective of their month of travel
-	 */
-	public static class CarrierIDGroupComparator extends WritableComparator {
-	    protected CarrierIDGroupComparator() {
-	        super(CarrierIDMonthKeyPair.class, true);
-	    }   
-	    
-	    @SuppressWarnings("rawtypes")
-		@Override
-	    public int compare(WritableComparable writable1, WritableComparable writable2) {
-	    	CarrierIDMonthKeyPair flight1 = (CarrierIDMonthKeyPair)writable1;
-	    	CarrierIDMonthKeyPair flight2 = (CarrierIDMonthKeyPair)writable2;
-	         
-	        return flight1.compareCarrierIDOnly(flight2);
-	    }
+	public static class ColumnarFlightDataMapper 
+			extends Mapper<NullWritable, ColumnarFlightRecord, CarrierIDMonthKeyPair, SumCountWritable> {
+		
+		//Composite key(secondary sort) and flight delay reused across records
+		private CarrierIDMonthKeyPair carrierIDMonthKeyPair = new CarrierIDMonthKeyPair();
+		private SumCountWritable flightDelay;
+		
+		//Buffer for in-mapper aggregation, null when every flight is emitted individually
+		private CarrierMonthDelayBuffer delayBuffer;
+		
+		//The flights of the blocks skipped by their statistics are never read, nor counted
+		private Counter[] flightCounters;
+		
+		protected void setup(Context context) {
+			boolean percentiles = context.getConfiguration().getBoolean(FlightDelayStatsWritable.PERCENTILES, false);
+			flightDelay = FlightDelayStatsWritable.newAggregate(percentiles);
+			if (context.getConfiguration().getBoolean(CarrierMonthDelayBuffer.IN_MAPPER_AGGREGATION, false)) {
+				delayBuffer = new CarrierMonthDelayBuffer(percentiles);
+			}
+			flightCounters = FlightCounters.getCounters(context);
+		}
+		
+		public void map(NullWritable key, ColumnarFlightRecord flight, Context context) throws IOException, InterruptedException {
+			flightCounters[FlightCounters.RECORDS_READ.ordinal()].increment(1);
+			
+			FlightCounters dropReason = getDropReason(flight);
+			if (dropReason != null) {
+				flightCounters[dropReason.ordinal()].increment(1);
+				return;
+			}
+			
+			carrierIDMonthKeyPair.getCarrierID().set(flight.getText(FlightColumn.CARRIER));
+			carrierIDMonthKeyPair.setMonth(flight.getInt(FlightColumn.MONTH));
+			double delay = flight.getFloat(FlightColumn.ARRIVAL_DELAY);
+			
+			if (delayBuffer != null) {
+				delayBuffer.add(carrierIDMonthKeyPair.getCarrierID(), carrierIDMonthKeyPair.getMonth(), delay);
+			} else {
+				flightDelay.reset();
+				flightDelay.add(delay);
+				context.write(carrierIDMonthKeyPair, flightDelay);
+			}
+			flightCounters[FlightCounters.RECORDS_EMITTED.ordinal()].increment(1);
+		}
+		
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			if (delayBuffer != null) {
+				delayBuffer.flush(context);
+			}
+		}
+		
+		/*
+		 * Same selection as FlightDataMapper, on typed columns
+		 */
+		public boolean isValidFlight(ColumnarFlightRecord flight) {
+			return getDropReason(flight) == null;
+		}
+		
+		/*
+		 * Same drop reasons as FlightDataMapper, on typed columns
+		 */
+		public FlightCounters getDropReason(ColumnarFlightRecord flight) {
+			if (flight.isNull(FlightColumn.MONTH) || flight.isNull(FlightColumn.CARRIER) 
+					|| flight.isNull(FlightColumn.CANCELLED) || flight.isNull(FlightColumn.YEAR)) {
+				return FlightCounters.DROPPED_MALFORMED;
+			}
+			if (!FlightDataMapper.isValidKey(flight.getInt(FlightColumn.MONTH), flight.getText(FlightColumn.CARRIER).getLength())) {
+				return FlightCounters.DROPPED_MALFORMED;
+			}
+			if (FlightDataMapper.CANCELED == flight.getInt(FlightColumn.CANCELLED)) {
+				return FlightCounters.DROPPED_CANCELLED;
+			}
+			if (FlightDataMapper.YEAR != flight.getInt(FlightColumn.YEAR)) {
+				return FlightCounters.DROPPED_OUT_OF_RANGE;
+			}
+			if (flight.isNull(FlightColumn.ARRIVAL_DELAY)) {
+				boolean diverted = !flight.isNull(FlightColumn.DIVERTED) 
+						&& FlightDataMapper.DIVERTED == flight.getInt(FlightColumn.DIVERTED);
+				return diverted ? FlightCounters.DROPPED_DIVERTED : FlightCounters.DROPPED_MALFORMED;
+			}
+			return null;
+		}
 	}
-
+	
 	/*
 	 * Reducer for computing the average delay by month for each carrier
+	 * A carrier split over several reducers by the partition plan only has some of its months here,
+	 * their partial aggregates are written to the partial output and merged by the driver
 	 */
-	public static class AirlineReducer extends Reducer<CarrierIDMonthKeyPair, Text, Text, Text> {
+	public static class AirlineReducer extends Reducer<CarrierIDMonthKeyPair, SumCountWritable, Text, Text> {
+		
+		private MonthlyDelayReport monthlyDelayReport;
+		private CarrierPartitionPlan partitionPlan;
+		private MultipleOutputs<Text, Text> partialOutput;
+		private Text partialDelay = new Text();
+		
+		//Most delayed (carrier, month) pairs of this reducer, null when not requested
+		private TopKHeap<ScoredNameWritable> mostDelayed;
+		
+		private GroupSizeHistogram groupSizes = new GroupSizeHistogram(GROUP_SIZES);
+		private PhaseTimer processTimer;
+		private PhaseTimer emitTimer;
+		
+		protected void setup(Context context) {
+			monthlyDelayReport = new MonthlyDelayReport(
+					context.getConfiguration().getBoolean(FlightDelayStatsWritable.PERCENTILES, false));
+			partitionPlan = CarrierPartitionPlan.fromConfiguration(context.getConfiguration());
+			partialOutput = new MultipleOutputs<Text, Text>(context);
+			int topDelays = context.getConfiguration().getInt(MonthlyDelayReport.TOP_DELAYS, 0);
+			if (topDelays > 0) {
+				mostDelayed = new TopKHeap<ScoredNameWritable>(topDelays, ScoredNameWritable.HIGHEST_FIRST);
+			}
+			processTimer = new PhaseTimer(context, PhaseCpuMicros.REDUCE_PROCESS);
+			emitTimer = new PhaseTimer(context, PhaseCpuMicros.REDUCE_EMIT);
+		}
 		
 		/*
 		 * Key : Composite key(UniqueCarrierID, Month)
-		 * Values : All the records with for an individual unique carrier, sorted in increasing order of month
+		 * Values : Partial aggregates of delays for an individual unique carrier, sorted in increasing order of month
 		 */
-		public void reduce(CarrierIDMonthKeyPair key, Iterable<Text> values, Context context) throws IOException, InterruptedException {
+		public void reduce(CarrierIDMonthKeyPair key, Iterable<SumCountWritable> values, Context context) throws IOException, InterruptedException {
 			
-			//Initialize the counters for average delay computation
-			int currentMonthNum = 1;
-			int totalFlightsByMonth = 0;
-			double airlineTotalDelayforMonth = 0;
+			processTimer.start();
 			
-			//Initialize the variable to store the output text
-			StringBuffer airlineDelayInformationByMonth = new StringBuffer(key.getCarrierID().toString());
+			//Reset the delays left over from the previous carrier
+			monthlyDelayReport.reset();
 
-			// For each flight of a given carrier compute average delay by month
-			for (Text value : values) {
-				int keyMonthNum = Integer.parseInt(key.getMonth().toString());
-				
-				//If a new month has been found, add its average delay to the output text
-				if(currentMonthNum != keyMonthNum) {
-					int airlineAverageDelayforMonth = (int)(Math.ceil(airlineTotalDelayforMonth / totalFlightsByMonth));
-					airlineDelayInformationByMonth.append(", (" + currentMonthNum + ", " + airlineAverageDelayforMonth + ")");
-					
-					//Increment the month counter by 1 to handle the case of a no flight during amonth
-					currentMonthNum++;
-					
-					//Reset counters used in the average delay computation
-					totalFlightsByMonth = 0;
-					airlineTotalDelayforMonth = 0;
-				}
-				//Increment the counters for average delay computation of current month
-				totalFlightsByMonth++;
-				airlineTotalDelayforMonth += Double.parseDouble(value.toString());
+			//Merge the delays of a given carrier by month, the month of the key changes along with the values
+			long groupSize = 0;
+			for (SumCountWritable value : values) {
+				monthlyDelayReport.add(key.getMonth(), value);
+				groupSize++;
+			}
+			groupSizes.add(groupSize);
+			if (mostDelayed != null) {
+				offerMonthlyDelays(key.getCarrierID());
 			}
+			processTimer.stop();
 			
-			//Write average delay for the last month with flight, as well as any remaining months
-			while(currentMonthNum <= 12){
-				int averageDelay = (int)(Math.ceil(airlineTotalDelayforMonth / totalFlightsByMonth));
-				airlineDelayInformationByMonth.append(", (" + currentMonthNum + ", " + averageDelay + ")");
-				airlineTotalDelayforMonth = 0;
-				totalFlightsByMonth = 0;
-				currentMonthNum++;
+			emitTimer.start();
+			emit(key, context);
+			emitTimer.stop();
+		}
+		
+		/*
+		 * Write the monthly delays of the carrier, or its partial aggregates when the carrier is split
+		 */
+		private void emit(CarrierIDMonthKeyPair key, Context context) throws IOException, InterruptedException {
+			if (partitionPlan.isSplit(key.getCarrierID())) {
+				//Emit the partial aggregate of each month, as month, sum and count, followed by the encoded sketch with percentiles
+				for (int month = 1; month <= 12; month++) {
+					SumCountWritable monthlyDelay = monthlyDelayReport.getMonthlyDelay(month);
+					if (monthlyDelay.getCount() > 0) {
+						partialDelay.set(month + "\t" + monthlyDelay);
+						partialOutput.write(PARTIAL_OUTPUT, key.getCarrierID(), partialDelay);
+					}
+				}
+				return;
 			}
 			
 			//Emit the average delay for each airline per month
-			context.write(new Text(""), new Text(airlineDelayInformationByMonth.toString()));
+			context.write(new Text(""), new Text(monthlyDelayReport.format(key.getCarrierID())));
+		}
+		
+		/*
+		 * Rank the months of the carrier by average delay, every flight of a (carrier, month) comes to the same reducer
+		 * even when the carrier is split, so the averages ranked are complete
+		 */
+		private void offerMonthlyDelays(Text carrierID) {
+			for (int month = 1; month <= 12; month++) {
+				SumCountWritable monthlyDelay = monthlyDelayReport.getMonthlyDelay(month);
+				if (monthlyDelay.getCount() > 0) {
+					mostDelayed.offer(new ScoredNameWritable(new Text(carrierID + "\t" + month), monthlyDelay.getAverage()));
+				}
+			}
+		}
+		
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			if (mostDelayed != null) {
+				//Only the most delayed pairs of each reducer are merged
+				for (ScoredNameWritable monthlyDelay : mostDelayed.getSorted()) {
+					partialOutput.write(TOP_DELAYS_OUTPUT, NullWritable.get(), monthlyDelay);
+				}
+			}
+			partialOutput.close();
+			groupSizes.flush(context);
+			processTimer.flush();
+			emitTimer.flush();
 		}
 	}
-
-	public static void main(String[] args) throws Exception {
+	
+	/*
+	 * Mapper of the incremental mode, aggregates the valid flights of every year by (carrier, year, month)
+	 * The key is carrier, year and month separated by tabs, copied from the bytes of the record
+	 */
+	public static class FlightAggregateMapper extends Mapper<Object, Text, Text, SumCountWritable> {
 		
-		Configuration computeDelayConf = new Configuration();
-		String[] otherArgs = new GenericOptionsParser(computeDelayConf, args).getRemainingArgs();
+		private static final byte[] TAB = { '\t' };
 		
-		if (otherArgs.length != 2) {
-			System.err.println("Usage: AirlineAverageFlightDelay <in> <out>");
-			System.exit(2);
+		private FlightDataMapper flightSelection = new FlightDataMapper();
+		private Text carrierYearMonth = new Text();
+		private SumCountWritable flightDelay;
+		private Counter[] flightCounters;
+		
+		protected void setup(Context context) {
+			flightDelay = FlightDelayStatsWritable.newAggregate(
+					context.getConfiguration().getBoolean(FlightDelayStatsWritable.PERCENTILES, false));
+			flightCounters = FlightCounters.getCounters(context);
+		}
+		
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+			flightCounters[FlightCounters.RECORDS_READ.ordinal()].increment(1);
+			CSVFieldScanner scanner = flightSelection.scanner;
+			scanner.scan(value);
+			
+			FlightCounters dropReason = flightSelection.getDropReason(scanner, FlightDataMapper.ANY_YEAR);
+			if (dropReason != null) {
+				flightCounters[dropReason.ordinal()].increment(1);
+				return;
+			}
+			
+			carrierYearMonth.clear();
+			appendField(scanner, FlightDataMapper.UNIQUE_CARRIER_INDEX);
+			carrierYearMonth.append(TAB, 0, 1);
+			appendField(scanner, FlightDataMapper.YEAR_INDEX);
+			carrierYearMonth.append(TAB, 0, 1);
+			appendField(scanner, FlightDataMapper.MONTH_INDEX);
+			
+			flightDelay.reset();
+			flightDelay.add(scanner.getDouble(FlightDataMapper.ARRIVAL_DELAY_INDEX));
+			context.write(carrierYearMonth, flightDelay);
+			flightCounters[FlightCounters.RECORDS_EMITTED.ordinal()].increment(1);
+		}
+		
+		private void appendField(CSVFieldScanner scanner, int fieldIndex) {
+			carrierYearMonth.append(scanner.getBytes(), scanner.getStart(fieldIndex), scanner.getLength(fieldIndex));
+		}
+	}
+	
+	/*
+	 * Combiner and reducer of the incremental mode, merges the partial aggregates of each (carrier, year, month)
+	 */
+	public static class FlightAggregateReducer extends Reducer<Text, SumCountWritable, Text, SumCountWritable> {
+		
+		private SumCountWritable monthlyDelay;
+		
+		protected void setup(Context context) {
+			monthlyDelay = FlightDelayStatsWritable.newAggregate(
+					context.getConfiguration().getBoolean(FlightDelayStatsWritable.PERCENTILES, false));
 		}
+		
+		public void reduce(Text key, Iterable<SumCountWritable> values, Context context) throws IOException, InterruptedException {
+			monthlyDelay.reset();
+			for (SumCountWritable value : values) {
+				monthlyDelay.merge(value);
+			}
+			context.write(key, monthlyDelay);
+		}
+	}
+	
+	/*
+	 * Emits the carrier of every valid flight of any year, for the carrier dictionary
+	 * Flights of every year are kept so that the same dictionary serves the later runs on a growing input
+	 */
+	public static class CarrierDictionaryMapper extends Mapper<Object, Text, Text, NullWritable> {
+		
+		private FlightDataMapper flightSelection = new FlightDataMapper();
+		private Text carrierID = new Text();
+		
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+			CSVFieldScanner scanner = flightSelection.scanner;
+			scanner.scan(value);
+			if (flightSelection.getDropReason(scanner, FlightDataMapper.ANY_YEAR) == null) {
+				scanner.getText(FlightDataMapper.UNIQUE_CARRIER_INDEX, carrierID);
+				context.write(carrierID, NullWritable.get());
+			}
+		}
+	}
+	
+	/*
+	 * Mapper of the dictionary mode, same selection as FlightDataMapper
+	 * Emits the carrier id and month packed into an IntWritable, the carrier is looked up in the dictionary without creating a Text
+	 */
+	public static class DictionaryFlightDataMapper extends Mapper<Object, Text, IntWritable, SumCountWritable> {
+		
+		private FlightDataMapper flightSelection = new FlightDataMapper();
+		private Dictionary carriers;
+		private IntWritable carrierIndexMonth = new IntWritable();
+		private SumCountWritable flightDelay;
+		
+		//Buffer for in-mapper aggregation indexed by carrier id, null when every flight is emitted individually
+		private CarrierIndexDelayBuffer delayBuffer;
+		private Counter[] flightCounters;
+		
+		protected void setup(Context context) throws IOException {
+			carriers = Dictionary.fromCache(context, CARRIER_DICTIONARY_NAME);
+			if (carriers.size() > CarrierIndexMonthKey.MAX_CARRIER_INDEX + 1) {
+				throw new IOException("Carrier dictionary of " + carriers.size() + " carriers does not fit the packed keys");
+			}
+			boolean percentiles = context.getConfiguration().getBoolean(FlightDelayStatsWritable.PERCENTILES, false);
+			flightDelay = FlightDelayStatsWritable.newAggregate(percentiles);
+			if (context.getConfiguration().getBoolean(CarrierMonthDelayBuffer.IN_MAPPER_AGGREGATION, false)) {
+				delayBuffer = new CarrierIndexDelayBuffer(carriers.size(), percentiles);
+			}
+			flightCounters = FlightCounters.getCounters(context);
+		}
+		
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+			flightCounters[FlightCounters.RECORDS_READ.ordinal()].increment(1);
+			CSVFieldScanner scanner = flightSelection.scanner;
+			scanner.scan(value);
+			
+			FlightCounters dropReason = flightSelection.getDropReason(scanner);
+			if (dropReason != null) {
+				flightCounters[dropReason.ordinal()].increment(1);
+				return;
+			}
+			
+			int carrierIndex = carriers.getId(scanner.getBytes(), scanner.getStart(FlightDataMapper.UNIQUE_CARRIER_INDEX), 
+					scanner.getLength(FlightDataMapper.UNIQUE_CARRIER_INDEX));
+			if (carrierIndex < 0) {
+				throw new IOException("Carrier " + scanner.getString(FlightDataMapper.UNIQUE_CARRIER_INDEX) 
+						+ " is not in the carrier dictionary, remove the file of " + CARRIER_DICTIONARY + " to rebuild it");
+			}
+			int month = scanner.getInt(FlightDataMapper.MONTH_INDEX);
+			double delay = scanner.getDouble(FlightDataMapper.ARRIVAL_DELAY_INDEX);
 			
+			if (delayBuffer != null) {
+				delayBuffer.add(carrierIndex, month, delay);
+			} else {
+				carrierIndexMonth.set(CarrierIndexMonthKey.encode(carrierIndex, month));
+				flightDelay.reset();
+				flightDelay.add(delay);
+				context.write(carrierIndexMonth, flightDelay);
+			}
+			flightCounters[FlightCounters.RECORDS_EMITTED.ordinal()].increment(1);
+		}
+		
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			if (delayBuffer != null) {
+				delayBuffer.flush(context);
+			}
+		}
+	}
+	
+	/*
+	 * Reducer of the dictionary mode, the carrier code is decoded from its id only to write the delay line
+	 */
+	public static class DictionaryAirlineReducer extends Reducer<IntWritable, SumCountWritable, Text, Text> {
+		
+		private Dictionary carriers;
+		private MonthlyDelayReport monthlyDelayReport;
+		private Text emptyKey = new Text();
+		private Text monthlyDelays = new Text();
+		private GroupSizeHistogram groupSizes = new GroupSizeHistogram(GROUP_SIZES);
+		
+		protected void setup(Context context) throws IOException {
+			carriers = Dictionary.fromCache(context, CARRIER_DICTIONARY_NAME);
+			monthlyDelayReport = new MonthlyDelayReport(
+					context.getConfiguration().getBoolean(FlightDelayStatsWritable.PERCENTILES, false));
+		}
+		
+		/*
+		 * Key : Packed (carrier id, month), the month changes along with the values
+		 * Values : Partial aggregates of delays for a single carrier, sorted in increasing order of month
+		 */
+		public void reduce(IntWritable key, Iterable<SumCountWritable> values, Context context) throws IOException, InterruptedException {
+			monthlyDelayReport.reset();
+			long groupSize = 0;
+			for (SumCountWritable value : values) {
+				monthlyDelayReport.add(CarrierIndexMonthKey.getMonth(key.get()), value);
+				groupSize++;
+			}
+			groupSizes.add(groupSize);
+			
+			monthlyDelays.set(monthlyDelayReport.format(carriers.getValue(CarrierIndexMonthKey.getCarrierIndex(key.get()))));
+			context.write(emptyKey, monthlyDelays);
+		}
+		
+		protected void cleanup(Context context) {
+			groupSizes.flush(context);
+		}
+	}
+	
+	/*
+	 * Local engine job, each task selects the valid flights of its chunk with the mapper's conditions
+	 * and aggregates their delays by carrier and month, the partial aggregates are merged by carrier
+	 */
+	public static class LocalFlightDelays implements LocalLineJob<Map<Text, MonthlyDelayReport>> {
+		
+		private final boolean percentiles;
+		
+		public LocalFlightDelays(boolean percentiles) {
+			this.percentiles = percentiles;
+		}
+		
+		public LocalLineTask<Map<Text, MonthlyDelayReport>> createTask() {
+			return new LocalFlightDelayTask(percentiles);
+		}
+		
+		public Map<Text, MonthlyDelayReport> merge(Map<Text, MonthlyDelayReport> first, Map<Text, MonthlyDelayReport> second) {
+			//Merge the smaller map into the larger one
+			if (first.size() < second.size()) {
+				Map<Text, MonthlyDelayReport> swap = first;
+				first = second;
+				second = swap;
+			}
+			for (Map.Entry<Text, MonthlyDelayReport> carrierDelays : second.entrySet()) {
+				MonthlyDelayReport merged = first.get(carrierDelays.getKey());
+				if (merged == null) {
+					first.put(carrierDelays.getKey(), carrierDelays.getValue());
+				} else {
+					merged.merge(carrierDelays.getValue());
+				}
+			}
+			return first;
+		}
+	}
+	
+	private static class LocalFlightDelayTask implements LocalLineTask<Map<Text, MonthlyDelayReport>> {
+		
+		private FlightDataMapper flightSelection = new FlightDataMapper();
+		private Map<Text, MonthlyDelayReport> monthlyDelays = new HashMap<Text, MonthlyDelayReport>();
+		private final boolean percentiles;
+		
+		//Carrier of the current flight, copied only when the carrier is seen for the first time
+		private Text carrierID = new Text();
+		
+		LocalFlightDelayTask(boolean percentiles) {
+			this.percentiles = percentiles;
+		}
+		
+		public void processLine(byte[] bytes, int start, int length) {
+			CSVFieldScanner scanner = flightSelection.scanner;
+			scanner.scan(bytes, start, length);
+			if (flightSelection.isValidFlight(scanner)) {
+				scanner.getText(FlightDataMapper.UNIQUE_CARRIER_INDEX, carrierID);
+				MonthlyDelayReport carrierDelays = monthlyDelays.get(carrierID);
+				if (carrierDelays == null) {
+					carrierDelays = new MonthlyDelayReport(percentiles);
+					monthlyDelays.put(new Text(carrierID), carrierDelays);
+				}
+				carrierDelays.getMonthlyDelay(scanner.getInt(FlightDataMapper.MONTH_INDEX))
+						.add(scanner.getDouble(FlightDataMapper.ARRIVAL_DELAY_INDEX));
+			}
+		}
+		
+		public Map<Text, MonthlyDelayReport> getResult() {
+			return monthlyDelays;
+		}
+	}
+	
+	/*
+	 * Compute the monthly delays with the local engine, from csv input on the local file system
+	 * Written as a single part file in the format of the reducers, with the carriers in the order of the sort comparator
+	 */
+	public static void runLocal(Configuration conf, Path input, Path output) throws IOException {
+		LocalFlightDelays flightDelays = new LocalFlightDelays(conf.getBoolean(FlightDelayStatsWritable.PERCENTILES, false));
+		Map<Text, MonthlyDelayReport> monthlyDelays = 
+				new TreeMap<Text, MonthlyDelayReport>(new LocalEngine(conf).run(flightDelays, input));
+		
+		FileSystem fileSystem = output.getFileSystem(conf);
+		Writer writer = new OutputStreamWriter(fileSystem.create(new Path(output, "part-r-00000"), false), "UTF-8");
+		try {
+			for (Map.Entry<Text, MonthlyDelayReport> carrierDelays : monthlyDelays.entrySet()) {
+				writer.write("\t" + carrierDelays.getValue().format(carrierDelays.getKey()) + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+	}
+	
+	/*
+	 * Plan balancing the reducers by the number of flights of each carrier and month, counted on a sample of the input
+	 */
+	public static CarrierPartitionPlan samplePartitionPlan(Configuration conf, Path input, int numReduceTasks) throws IOException {
+		Map<String, long[]> flightHistogram = new HashMap<String, long[]>();
+		FlightDataMapper flightSelection = new FlightDataMapper();
+		CSVFieldScanner scanner = flightSelection.scanner;
+		int samples = conf.getInt(PLAN_SAMPLES, DEFAULT_PLAN_SAMPLES);
+		
+		for (Text line : new RandomLineSampler(System.currentTimeMillis()).sample(conf, input, samples)) {
+			scanner.scan(line);
+			if (flightSelection.isValidFlight(scanner)) {
+				String carrierID = scanner.getString(FlightDataMapper.UNIQUE_CARRIER_INDEX);
+				long[] monthlyFlights = flightHistogram.get(carrierID);
+				if (monthlyFlights == null) {
+					monthlyFlights = new long[13];
+					flightHistogram.put(carrierID, monthlyFlights);
+				}
+				monthlyFlights[scanner.getInt(FlightDataMapper.MONTH_INDEX)]++;
+			}
+		}
+		return CarrierPartitionPlan.build(flightHistogram, numReduceTasks);
+	}
+	
+	/*
+	 * Merge the partial aggregates of the carriers split over several reducers into their monthly delay lines
+	 * Written next to the reducer output, in the same format, and the partial output is removed
+	 */
+	public static void mergePartialDelays(Configuration conf, Path output) throws IOException {
+		FileSystem fileSystem = output.getFileSystem(conf);
+		FileStatus[] partialFiles = fileSystem.globStatus(new Path(output, PARTIAL_OUTPUT + "-r-*"));
+		if (partialFiles == null || partialFiles.length == 0) {
+			return;
+		}
+		
+		Map<String, MonthlyDelayReport> monthlyDelays = new TreeMap<String, MonthlyDelayReport>();
+		boolean percentiles = conf.getBoolean(FlightDelayStatsWritable.PERCENTILES, false);
+		SumCountWritable partialDelay = FlightDelayStatsWritable.newAggregate(percentiles);
+		for (FileStatus partialFile : partialFiles) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(fileSystem.open(partialFile.getPath()), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					//carrier, month, sum and count separated by tabs, and the encoded sketch with percentiles
+					String[] fields = line.split("\t");
+					MonthlyDelayReport carrierDelays = monthlyDelays.get(fields[0]);
+					if (carrierDelays == null) {
+						carrierDelays = new MonthlyDelayReport(percentiles);
+						monthlyDelays.put(fields[0], carrierDelays);
+					}
+					partialDelay.set(Double.parseDouble(fields[2]), Long.parseLong(fields[3]));
+					if (percentiles) {
+						((FlightDelayStatsWritable) partialDelay).setSketch(fields[4]);
+					}
+					carrierDelays.add(Integer.parseInt(fields[1]), partialDelay);
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		
+		Writer writer = new OutputStreamWriter(fileSystem.create(new Path(output, MERGED_OUTPUT)), "UTF-8");
+		try {
+			for (Map.Entry<String, MonthlyDelayReport> carrierDelays : monthlyDelays.entrySet()) {
+				writer.write("\t" + carrierDelays.getValue().format(new Text(carrierDelays.getKey())) + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+		for (FileStatus partialFile : partialFiles) {
+			fileSystem.delete(partialFile.getPath(), false);
+		}
+	}
+
+	/*
+	 * Run the job on the given input, returns the completed job, the top delays merge job when it failed
+	 * The partial delays of split carriers are merged once the job has succeeded
+	 */
+	public static Job run(Configuration computeDelayConf, Path input, Path output) throws Exception {
 		Job computeDelayJob = new Job(computeDelayConf, "Compute Flight Delays");
 		computeDelayJob.setJarByClass(CarrierPerMonthAverageDelay.class);
 		
 		//Setup map reduce classes
 		computeDelayJob.setMapperClass(FlightDataMapper.class);
-		computeDelayJob.setPartitionerClass(FlightDataPartitioner.class);
+		computeDelayJob.setCombinerClass(CarrierMonthDelayCombiner.class);
+		computeDelayJob.setPartitionerClass(CarrierPlanPartitioner.class);
 		computeDelayJob.setSortComparatorClass(CarrierIDMonthKeyComparator.class);
 		computeDelayJob.setGroupingComparatorClass(CarrierIDGroupComparator.class);
 		computeDelayJob.setReducerClass(AirlineReducer.class);
 		
 		//Setup output classes
-		computeDelayJob.setOutputKeyClass(CarrierIDMonthKeyPair.class);
+		computeDelayJob.setMapOutputKeyClass(CarrierIDMonthKeyPair.class);
+		computeDelayJob.setMapOutputValueClass(
+				FlightDelayStatsWritable.getAggregateClass(computeDelayConf.getBoolean(FlightDelayStatsWritable.PERCENTILES, false)));
+		computeDelayJob.setOutputKeyClass(Text.class);
 		computeDelayJob.setOutputValueClass(Text.class);
 		
-		//Set number of reduce tasks
-		computeDelayJob.setNumReduceTasks(10);
+		//Set number of reduce tasks from the size of the input
+		int numReduceTasks = ReducerSizing.forInput(computeDelayConf, input);
+		computeDelayJob.setNumReduceTasks(numReduceTasks);
+		MultipleOutputs.addNamedOutput(computeDelayJob, PARTIAL_OUTPUT, TextOutputFormat.class, Text.class, Text.class);
+		MultipleOutputs.addNamedOutput(computeDelayJob, TOP_DELAYS_OUTPUT, SequenceFileOutputFormat.class, 
+				NullWritable.class, ScoredNameWritable.class);
+
+		FileInputFormat.addInputPath(computeDelayJob, input);
+		
+		//Read only the partitions of the year of interest, when the input is partitioned by date
+		if (computeDelayConf.getBoolean(DateRangeInputFormat.PARTITIONED_INPUT, false)) {
+			DateRangeInputFormat.setDateRange(computeDelayJob, FlightDataMapper.YEAR, 1, FlightDataMapper.YEAR, 12);
+		}
+		
+		//Decode only the relevant columns and skip blocks of other years, when the input is in the columnar format
+		if (computeDelayConf.getBoolean(ColumnarFlightInputFormat.COLUMNAR_INPUT, false)) {
+			computeDelayJob.setMapperClass(ColumnarFlightDataMapper.class);
+			ColumnarFlightInputFormat.setProjectedColumns(computeDelayJob, FlightColumn.YEAR, FlightColumn.MONTH, 
+					FlightColumn.CARRIER, FlightColumn.ARRIVAL_DELAY, FlightColumn.CANCELLED, FlightColumn.DIVERTED);
+			ColumnarFlightInputFormat.setColumnRange(computeDelayJob, FlightColumn.YEAR, FlightDataMapper.YEAR, FlightDataMapper.YEAR);
+		}
+		
+		//Balance the reducers by carrier and month, the plan is sampled from text input only
+		boolean textInput = !computeDelayConf.getBoolean(ColumnarFlightInputFormat.COLUMNAR_INPUT, false);
+		if (textInput && computeDelayConf.getInt(PLAN_SAMPLES, DEFAULT_PLAN_SAMPLES) > 0) {
+			samplePartitionPlan(computeDelayConf, input, numReduceTasks).store(computeDelayJob.getConfiguration());
+		}
+		FileOutputFormat.setOutputPath(computeDelayJob, output);
+
+		if (!computeDelayJob.waitForCompletion(true)) {
+			return computeDelayJob;
+		}
+		mergePartialDelays(computeDelayConf, output);
+		RunReport runReport = new RunReport().add(computeDelayJob);
+		
+		//Merge the most delayed pairs of each reducer into the most delayed of all
+		if (computeDelayConf.getInt(MonthlyDelayReport.TOP_DELAYS, 0) > 0) {
+			Job mergeJob = mergeTopDelays(computeDelayConf, output);
+			if (mergeJob != null) {
+				runReport.add(mergeJob);
+				if (!mergeJob.isSuccessful()) {
+					return mergeJob;
+				}
+			}
+		}
+		runReport.write(computeDelayConf, output);
+		return computeDelayJob;
+	}
+	
+	/*
+	 * Merge the most delayed pairs written by the reducers into <out>/top-delays and remove them
+	 * Reducers without any flight write no pairs, an empty top-delays file is written when none did
+	 * Returns the completed merge job, null when there was nothing to merge
+	 */
+	private static Job mergeTopDelays(Configuration computeDelayConf, Path output) throws Exception {
+		FileSystem fileSystem = output.getFileSystem(computeDelayConf);
+		Path topDelaysFiles = new Path(output, TOP_DELAYS_OUTPUT + "-r-*");
+		FileStatus[] reducerTopDelays = fileSystem.globStatus(topDelaysFiles);
+		if (reducerTopDelays == null || reducerTopDelays.length == 0) {
+			fileSystem.create(new Path(output, TOP_DELAYS_FILE), true).close();
+			return null;
+		}
+		
+		Configuration mergeConf = new Configuration(computeDelayConf);
+		mergeConf.setInt(TopKReducer.K, computeDelayConf.getInt(MonthlyDelayReport.TOP_DELAYS, 0));
+		Job mergeJob = TopKReducer.merge(mergeConf, topDelaysFiles, new Path(output, TOP_DELAYS_FILE));
+		if (mergeJob.isSuccessful()) {
+			for (FileStatus reducerTopDelaysFile : reducerTopDelays) {
+				fileSystem.delete(reducerTopDelaysFile.getPath(), false);
+			}
+		}
+		return mergeJob;
+	}
 
-		FileInputFormat.addInputPath(computeDelayJob, new Path(otherArgs[0]));
-		FileOutputFormat.setOutputPath(computeDelayJob, new Path(otherArgs[1]));
+	/*
+	 * Incremental mode, aggregates only the input files that are not in the checkpoint, for every year,
+	 * merges their aggregates into the checkpoint and writes the monthly delays of the year of interest from the checkpoint
+	 * Returns the completed job, null when there was no new input file and the report was written from the checkpoint alone
+	 */
+	public static Job runIncremental(Configuration computeDelayConf, Path input, Path output) throws Exception {
+		Path checkpointPath = new Path(computeDelayConf.get(CHECKPOINT));
+		boolean percentiles = computeDelayConf.getBoolean(FlightDelayStatsWritable.PERCENTILES, false);
+		DelayCheckpoint checkpoint = DelayCheckpoint.load(computeDelayConf, checkpointPath, percentiles);
+		List<FileStatus> newFiles = checkpoint.getNewFiles(computeDelayConf, input);
+		
+		Job aggregateJob = null;
+		if (!newFiles.isEmpty()) {
+			Path incrementOutput = new Path(output, INCREMENT_OUTPUT);
+			aggregateJob = new Job(computeDelayConf, "Aggregate New Flight Delays");
+			aggregateJob.setJarByClass(CarrierPerMonthAverageDelay.class);
+			aggregateJob.setMapperClass(FlightAggregateMapper.class);
+			aggregateJob.setCombinerClass(FlightAggregateReducer.class);
+			aggregateJob.setReducerClass(FlightAggregateReducer.class);
+			aggregateJob.setOutputKeyClass(Text.class);
+			aggregateJob.setOutputValueClass(FlightDelayStatsWritable.getAggregateClass(percentiles));
+			aggregateJob.setOutputFormatClass(SequenceFileOutputFormat.class);
+			
+			//At most one record per (carrier, year, month) reaches the reducer
+			aggregateJob.setNumReduceTasks(1);
+			for (FileStatus newFile : newFiles) {
+				FileInputFormat.addInputPath(aggregateJob, newFile.getPath());
+			}
+			FileOutputFormat.setOutputPath(aggregateJob, incrementOutput);
+			
+			if (!aggregateJob.waitForCompletion(true)) {
+				return aggregateJob;
+			}
+			mergeIncrement(computeDelayConf, incrementOutput, checkpoint);
+			checkpoint.addProcessedFiles(newFiles);
+			checkpoint.save(computeDelayConf, checkpointPath);
+			output.getFileSystem(computeDelayConf).delete(incrementOutput, true);
+		}
+		
+		writeMonthlyDelays(computeDelayConf, output, checkpoint.getMonthlyDelays(FlightDataMapper.YEAR));
+		if (aggregateJob != null) {
+			new RunReport().add(aggregateJob).write(computeDelayConf, output);
+		}
+		return aggregateJob;
+	}
+	
+	/*
+	 * Merge the (carrier, year, month) aggregates written by the incremental job into the checkpoint
+	 */
+	private static void mergeIncrement(Configuration conf, Path incrementOutput, DelayCheckpoint checkpoint) throws IOException {
+		FileSystem fileSystem = incrementOutput.getFileSystem(conf);
+		Text carrierYearMonth = new Text();
+		SumCountWritable monthlyDelay = 
+				FlightDelayStatsWritable.newAggregate(conf.getBoolean(FlightDelayStatsWritable.PERCENTILES, false));
+		
+		for (FileStatus partFile : fileSystem.globStatus(new Path(incrementOutput, "part-r-*"))) {
+			SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(partFile.getPath()));
+			try {
+				while (reader.next(carrierYearMonth, monthlyDelay)) {
+					String[] fields = carrierYearMonth.toString().split("\t");
+					checkpoint.add(fields[0], Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), monthlyDelay);
+				}
+			} finally {
+				reader.close();
+			}
+		}
+	}
+	
+	/*
+	 * Write the delay lines in the format of the reducers, sorted by carrier, as a single part file
+	 */
+	private static void writeMonthlyDelays(Configuration conf, Path output, Map<String, MonthlyDelayReport> monthlyDelays) 
+			throws IOException {
+		FileSystem fileSystem = output.getFileSystem(conf);
+		Writer writer = new OutputStreamWriter(fileSystem.create(new Path(output, "part-r-00000"), true), "UTF-8");
+		try {
+			for (Map.Entry<String, MonthlyDelayReport> carrierDelays : monthlyDelays.entrySet()) {
+				writer.write("\t" + carrierDelays.getValue().format(new Text(carrierDelays.getKey())) + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/*
+	 * Dictionary mode, the shuffle carries packed int (carrier id, month) keys instead of the carrier codes
+	 * The carrier dictionary is built by a pre-pass over the input when its file does not exist yet, and reused otherwise
+	 * Returns the last job run, the dictionary job when it failed
+	 */
+	public static Job runDictionary(Configuration computeDelayConf, Path input, Path output) throws Exception {
+		Path dictionaryPath = new Path(computeDelayConf.get(CARRIER_DICTIONARY));
+		RunReport runReport = new RunReport();
+		if (!dictionaryPath.getFileSystem(computeDelayConf).exists(dictionaryPath)) {
+			Job dictionaryJob = DictionaryBuilder.build(computeDelayConf, input, dictionaryPath, CarrierDictionaryMapper.class);
+			runReport.add(dictionaryJob);
+			if (!dictionaryJob.isSuccessful()) {
+				return dictionaryJob;
+			}
+		}
+		
+		Job computeDelayJob = new Job(computeDelayConf, "Compute Flight Delays");
+		computeDelayJob.setJarByClass(CarrierPerMonthAverageDelay.class);
+		Dictionary.addToCache(computeDelayJob, dictionaryPath, CARRIER_DICTIONARY_NAME);
+		
+		//Setup map reduce classes, ints are sorted by the raw comparator of IntWritable
+		computeDelayJob.setMapperClass(DictionaryFlightDataMapper.class);
+		computeDelayJob.setCombinerClass(CarrierIndexDelayCombiner.class);
+		computeDelayJob.setPartitionerClass(CarrierIndexPartitioner.class);
+		computeDelayJob.setGroupingComparatorClass(CarrierIndexGroupComparator.class);
+		computeDelayJob.setReducerClass(DictionaryAirlineReducer.class);
+		
+		//Setup output classes
+		computeDelayJob.setMapOutputKeyClass(IntWritable.class);
+		computeDelayJob.setMapOutputValueClass(
+				FlightDelayStatsWritable.getAggregateClass(computeDelayConf.getBoolean(FlightDelayStatsWritable.PERCENTILES, false)));
+		computeDelayJob.setOutputKeyClass(Text.class);
+		computeDelayJob.setOutputValueClass(Text.class);
+		computeDelayJob.setNumReduceTasks(ReducerSizing.forInput(computeDelayConf, input));
+		
+		FileInputFormat.addInputPath(computeDelayJob, input);
+		if (computeDelayConf.getBoolean(DateRangeInputFormat.PARTITIONED_INPUT, false)) {
+			DateRangeInputFormat.setDateRange(computeDelayJob, FlightDataMapper.YEAR, 1, FlightDataMapper.YEAR, 12);
+		}
+		FileOutputFormat.setOutputPath(computeDelayJob, output);
+		
+		if (computeDelayJob.waitForCompletion(true)) {
+			runReport.add(computeDelayJob).write(computeDelayConf, output);
+		}
+		return computeDelayJob;
+	}
 
-		System.exit(computeDelayJob.waitForCompletion(true) ? 0 : 1);
+	/*
+	 * Error message for options that the selected mode would ignore, null when every option applies
+	 * The local, incremental and dictionary modes exclude each other, and read csv input only
+	 */
+	private static String getUnsupportedOptions(Configuration conf) {
+		boolean localEngine = conf.getBoolean(LocalEngine.LOCAL_ENGINE, false);
+		boolean incremental = conf.get(CHECKPOINT) != null;
+		boolean dictionary = conf.get(CARRIER_DICTIONARY) != null;
+		String otherModes = LocalEngine.LOCAL_ENGINE + ", " + CHECKPOINT + " or " + CARRIER_DICTIONARY;
+		
+		if ((localEngine ? 1 : 0) + (incremental ? 1 : 0) + (dictionary ? 1 : 0) > 1) {
+			return "Only one of " + otherModes + " can be set";
+		}
+		if (!(localEngine || incremental || dictionary)) {
+			return null;
+		}
+		
+		//The most delayed months are ranked by the reducers of the default mode only
+		if (conf.getInt(MonthlyDelayReport.TOP_DELAYS, 0) > 0) {
+			return MonthlyDelayReport.TOP_DELAYS + " is not supported with " + otherModes;
+		}
+		if (conf.getBoolean(ColumnarFlightInputFormat.COLUMNAR_INPUT, false)) {
+			return ColumnarFlightInputFormat.COLUMNAR_INPUT + " is not supported with " + otherModes;
+		}
+		
+		//The incremental mode aggregates the files of every year, it would not prune the partitions of other years
+		if (incremental && conf.getBoolean(DateRangeInputFormat.PARTITIONED_INPUT, false)) {
+			return DateRangeInputFormat.PARTITIONED_INPUT + " is not supported with " + CHECKPOINT;
+		}
+		return null;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		
+		Configuration computeDelayConf = new Configuration();
+		String[] otherArgs = new GenericOptionsParser(computeDelayConf, args).getRemainingArgs();
+		
+		if (otherArgs.length != 2) {
+			System.err.println("Usage: AirlineAverageFlightDelay <in> <out>");
+			System.exit(2);
+		}
+		
+		String unsupportedOptions = getUnsupportedOptions(computeDelayConf);
+		if (unsupportedOptions != null) {
+			System.err.println(unsupportedOptions);
+			System.exit(2);
+		}
+		
+		//Run on the cores of this machine without submitting a job, the local engine reads csv input only
+		if (computeDelayConf.getBoolean(LocalEngine.LOCAL_ENGINE, false)) {
+			runLocal(computeDelayConf, new Path(otherArgs[0]), new Path(otherArgs[1]));
+			System.exit(0);
+		}
+		
+		//Aggregate only the input files added since the last run, and report from the checkpoint
+		if (computeDelayConf.get(CHECKPOINT) != null) {
+			Job aggregateJob = runIncremental(computeDelayConf, new Path(otherArgs[0]), new Path(otherArgs[1]));
+			System.exit(aggregateJob == null || aggregateJob.isSuccessful() ? 0 : 1);
+		}
+		
+		//Shuffle dictionary encoded carriers, csv input only
+		if (computeDelayConf.get(CARRIER_DICTIONARY) != null) {
+			Job lastJob = runDictionary(computeDelayConf, new Path(otherArgs[0]), new Path(otherArgs[1]));
+			System.exit(lastJob.isSuccessful() ? 0 : 1);
+		}
+		
+		Job computeDelayJob = run(computeDelayConf, new Path(otherArgs[0]), new Path(otherArgs[1]));
+		System.exit(computeDelayJob.isSuccessful() ? 0 : 1);
 	}
 }
@@ -0,0 +1,76 @@
+package com.search.flights;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/*
+ * Map output value of the join by flight date, a single leg of a possible two leg flight
+ * Holds only what the join needs: leg tag, connecting airport, time at the connecting airport and delay
+ * | leg tag, 1 byte | connecting airport, Text | time hhmm, 2 bytes | delay in hundredths of a minute, vint |
+ */
+public class FlightLegWritable implements Writable {
+
+	//Delays are sent as whole hundredths of a minute, the precision of the input
+	private static final double DELAY_SCALE = 100;
+	private static final int MAX_TIME = 0xFFFF;
+
+	private byte legTag;
+	private Text connectingAirport = new Text();
+	private int time;
+	private long delayHundredths;
+
+	/*
+	 * Set all the attributes of the leg, from the bytes of the connecting airport field
+	 * Time of a first leg is its arrival time, time of a second leg is its departure time
+	 */
+	public void set(byte legTag, byte[] airportBytes, int airportStart, int airportLength, int time, double delay) {
+		this.legTag = legTag;
+		this.connectingAirport.set(airportBytes, airportStart, airportLength);
+		this.time = time;
+		this.delayHundredths = Math.round(delay * DELAY_SCALE);
+	}
+
+	@Override
+	public void readFields(DataInput input) throws IOException {
+		legTag = input.readByte();
+		connectingAirport.readFields(input);
+		time = input.readUnsignedShort();
+		delayHundredths = WritableUtils.readVLong(input);
+	}
+
+	@Override
+	public void write(DataOutput output) throws IOException {
+		if (time < 0 || time > MAX_TIME) {
+			throw new IOException("Time " + time + " does not fit in 2 bytes");
+		}
+		output.writeByte(legTag);
+		connectingAirport.write(output);
+		output.writeShort(time);
+		WritableUtils.writeVLong(output, delayHundredths);
+	}
+
+	public String toString() {
+		return (isFirstLeg() ? "first," : "second,") + connectingAirport + "," + time + "," + getDelay();
+	}
+
+	public boolean isFirstLeg() {
+		return legTag == TwoLegFlightKey.FIRST_LEG;
+	}
+
+	public Text getConnectingAirport() {
+		return connectingAirport;
+	}
+
+	public int getTime() {
+		return time;
+	}
+
+	public double getDelay() {
+		return delayHundredths / DELAY_SCALE;
+	}
+}
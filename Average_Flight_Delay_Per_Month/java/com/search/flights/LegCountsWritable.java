@@ -0,0 +1,52 @@
+package com.search.flights;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/*
+ * Number of first legs arriving at and second legs leaving from a connecting airport
+ * | first legs, vlong | second legs, vlong |
+ */
+public class LegCountsWritable implements Writable {
+
+	private long firstLegs;
+	private long secondLegs;
+
+	public void set(long firstLegs, long secondLegs) {
+		this.firstLegs = firstLegs;
+		this.secondLegs = secondLegs;
+	}
+
+	public void merge(LegCountsWritable other) {
+		firstLegs += other.firstLegs;
+		secondLegs += other.secondLegs;
+	}
+
+	@Override
+	public void readFields(DataInput input) throws IOException {
+		firstLegs = WritableUtils.readVLong(input);
+		secondLegs = WritableUtils.readVLong(input);
+	}
+
+	@Override
+	public void write(DataOutput output) throws IOException {
+		WritableUtils.writeVLong(output, firstLegs);
+		WritableUtils.writeVLong(output, secondLegs);
+	}
+
+	public String toString() {
+		return firstLegs + "\t" + secondLegs;
+	}
+
+	public long getFirstLegs() {
+		return firstLegs;
+	}
+
+	public long getSecondLegs() {
+		return secondLegs;
+	}
+}
@@ -0,0 +1,27 @@
+package com.search.flights;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/*
+ * Grouping comparator for the streaming two leg join
+ * Groups all the legs of a flight date and connecting airport into a single call to reduce
+ */
+public class TwoLegFlightGroupComparator extends WritableComparator {
+	
+	public TwoLegFlightGroupComparator() {
+		super(TwoLegFlightKey.class);
+	}
+	
+	@Override
+	public int compare(byte[] bytes1, int start1, int length1, byte[] bytes2, int start2, int length2) {
+		return compareBytes(bytes1, start1, TwoLegFlightKey.GROUP_LENGTH, 
+				bytes2, start2, TwoLegFlightKey.GROUP_LENGTH);
+	}
+	
+	@SuppressWarnings("rawtypes")
+	@Override
+	public int compare(WritableComparable writable1, WritableComparable writable2) {
+		return ((TwoLegFlightKey) writable1).compareGroup((TwoLegFlightKey) writable2);
+	}
+}
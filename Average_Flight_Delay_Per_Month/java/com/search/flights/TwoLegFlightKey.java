@@ -0,0 +1,138 @@
+package com.search.flights;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+
+/*
+ * Composite key of a flight leg for the streaming two leg join
+ * (flight date, connecting airport) identifies a join group, (time, leg tag) orders the legs within the group
+ * Serialized in a fixed width binary layout, so that the comparators work on the raw bytes:
+ * | flight date yyyymmdd, 4 bytes | connecting airport, zero padded 3 bytes | time hhmm, 2 bytes | leg tag, 1 byte |
+ */
+public class TwoLegFlightKey implements WritableComparable<TwoLegFlightKey> {
+	
+	/*************** Leg tags, second legs sort before first legs of the same time *****************/
+	public static final byte SECOND_LEG = 0;
+	public static final byte FIRST_LEG = 1;
+	
+	/*************** Serialized layout of the key *****************/
+	public static final int AIRPORT_LENGTH = 3;
+	public static final int GROUP_LENGTH = 4 + AIRPORT_LENGTH;
+	public static final int SERIALIZED_LENGTH = GROUP_LENGTH + 2 + 1;
+	private static final int MAX_TIME = 0xFFFF;
+	
+	private int flightDate;
+	private Text connectingAirport = new Text();
+	private int time;
+	private byte legTag;
+	
+	//Buffer reused to read and write the zero padded airport
+	private final byte[] airportBuffer = new byte[AIRPORT_LENGTH];
+	
+	/*
+	 * Set all the attributes of the key
+	 * Time of a first leg is its arrival time, time of a second leg is its departure time
+	 */
+	public void set(int flightDate, Text connectingAirport, int time, byte legTag) {
+		this.flightDate = flightDate;
+		this.connectingAirport.set(connectingAirport);
+		this.time = time;
+		this.legTag = legTag;
+	}
+
+	@Override
+	public void readFields(DataInput input) throws IOException {
+		flightDate = input.readInt();
+		input.readFully(airportBuffer);
+		
+		//Strip the zero padding from the airport
+		int airportLength = AIRPORT_LENGTH;
+		while (airportLength > 0 && airportBuffer[airportLength - 1] == 0) {
+			airportLength--;
+		}
+		connectingAirport.set(airportBuffer, 0, airportLength);
+		time = input.readUnsignedShort();
+		legTag = input.readByte();
+	}
+
+	@Override
+	public void write(DataOutput output) throws IOException {
+		int airportLength = connectingAirport.getLength();
+		if (airportLength > AIRPORT_LENGTH) {
+			throw new IOException("Airport " + connectingAirport + " is longer than " + AIRPORT_LENGTH + " bytes");
+		}
+		if (time < 0 || time > MAX_TIME) {
+			throw new IOException("Time " + time + " does not fit in 2 bytes");
+		}
+		System.arraycopy(connectingAirport.getBytes(), 0, airportBuffer, 0, airportLength);
+		for (int index = airportLength; index < AIRPORT_LENGTH; index++) {
+			airportBuffer[index] = 0;
+		}
+		
+		output.writeInt(flightDate);
+		output.write(airportBuffer);
+		output.writeShort(time);
+		output.writeByte(legTag);
+	}
+	
+	/*
+	 * Compares only the join group, flight date and connecting airport
+	 */
+	public int compareGroup(TwoLegFlightKey other) {
+		if (flightDate != other.flightDate) {
+			return flightDate < other.flightDate ? -1 : 1;
+		}
+		return connectingAirport.compareTo(other.connectingAirport);
+	}
+
+	@Override
+	public int compareTo(TwoLegFlightKey other) {
+		int groupComparison = compareGroup(other);
+		if (groupComparison != 0) {
+			return groupComparison;
+		}
+		if (time != other.time) {
+			return time < other.time ? -1 : 1;
+		}
+		return legTag - other.legTag;
+	}
+	
+	public int hashCode() {
+		return flightDate * 31 + connectingAirport.hashCode();
+	}
+	
+	public boolean equals(Object object) {
+		return object instanceof TwoLegFlightKey && compareTo((TwoLegFlightKey) object) == 0;
+	}
+	
+	/*
+	 * Join group of the key, as written by TextOutputFormat
+	 */
+	public String toString() {
+		return flightDate + "," + connectingAirport;
+	}
+	
+	public boolean isFirstLeg() {
+		return legTag == FIRST_LEG;
+	}
+
+	public int getFlightDate() {
+		return flightDate;
+	}
+
+	public Text getConnectingAirport() {
+		return connectingAirport;
+	}
+
+	public int getTime() {
+		return time;
+	}
+
+	public byte getLegTag() {
+		return legTag;
+	}
+}
@@ -0,0 +1,21 @@
+package com.search.flights;
+
+import org.apache.hadoop.io.WritableComparator;
+
+/*
+ * Sort comparator for the streaming two leg join
+ * Sorts by flight date, connecting airport, time and leg tag, comparing the serialized bytes directly
+ * Within a join group legs are in time order, a second leg sorts before a first leg of the same time
+ */
+public class TwoLegFlightKeyComparator extends WritableComparator {
+	
+	public TwoLegFlightKeyComparator() {
+		super(TwoLegFlightKey.class);
+	}
+	
+	@Override
+	public int compare(byte[] bytes1, int start1, int length1, byte[] bytes2, int start2, int length2) {
+		return compareBytes(bytes1, start1, TwoLegFlightKey.SERIALIZED_LENGTH, 
+				bytes2, start2, TwoLegFlightKey.SERIALIZED_LENGTH);
+	}
+}
@@ -2,35 +2,88 @@ package com.search.flights;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Partitioner;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.NullOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.hadoop.util.GenericOptionsParser;
 
-import au.com.bytecode.opencsv.CSVParser;
+import com.mapreduce.common.aggregate.SumCountWritable;
+import com.mapreduce.common.csv.CSVFieldScanner;
+import com.mapreduce.common.flight.columnar.ColumnarFlightInputFormat;
+import com.mapreduce.common.flight.columnar.ColumnarFlightRecord;
+import com.mapreduce.common.flight.columnar.FlightColumn;
+import com.mapreduce.common.flight.partition.DateRangeInputFormat;
+import com.mapreduce.common.join.BloomFilter;
+import com.mapreduce.common.join.SemiJoinFilter;
+import com.mapreduce.common.local.LocalEngine;
+import com.mapreduce.common.local.LocalLineJob;
+import com.mapreduce.common.local.LocalLineTask;
+import com.mapreduce.common.metrics.FlightCounters;
+import com.mapreduce.common.metrics.GroupSizeHistogram;
+import com.mapreduce.common.metrics.PhaseCpuMicros;
+import com.mapreduce.common.metrics.PhaseTimer;
+import com.mapreduce.common.metrics.RunReport;
+import com.mapreduce.common.sizing.ReducerSizing;
 
 public class TwoLegFlightsAverageDelay {
 
 	private static String ORIGIN = "ORD";
 	private static String DESTINATION = "JFK";
+	
+	//Configuration flag set by the driver, when the average is computed from the counters of a single job
+	public static final String SINGLE_JOB_MODE = "two.leg.single.job";
+	
+	//Configuration flag selecting the secondary sort streaming join instead of the join by flight date
+	public static final String STREAMING_JOIN = "two.leg.streaming.join";
+	
+	//Configuration flag pruning the legs whose connecting airport has no leg on the other side of the join, csv input only
+	public static final String SEMI_JOIN = "two.leg.semijoin";
+	
+	//Configuration key set by the driver in semi-join mode, path of the Bloom filter of the airports with both first and second legs
+	public static final String AIRPORT_FILTER = "two.leg.airport.filter";
+	private static final String AIRPORT_FILTER_NAME = "airports.bloom";
+	
+	//Delays are recorded in counters as hundredths of a minute, counters only hold whole numbers
+	private static final double DELAY_COUNTER_SCALE = 100;
+	
+	//Counter group of the number of legs of each join group
+	public static final String GROUP_SIZES = "Join group sizes";
+	
+	/*
+	 * Partial sums of the two leg flight delays, merged by the framework across all the reduce tasks
+	 */
+	public static enum TwoLegFlightCounters {
+		TWO_LEG_FLIGHTS, TOTAL_DELAY_HUNDREDTHS
+	}
 
-	public static class FlightDataMapper extends Mapper<Object, Text, Text, Text> {
+	public static class FlightDataMapper extends Mapper<Object, Text, Text, FlightLegWritable> {
 
 		private Text flightDate = new Text();
-		private Text flightDetailsText = new Text();
+		private FlightLegWritable flightLeg = new FlightLegWritable();
 		
 		/*************** Indexes of relevant data in csv file start *****************/
 		private static int yearIndex = 0;
 		private static int monthIndex = 2;
+		private static int dayIndex = 3;
 		private static int dateIndex = 5;
 		private static int originIndex = 11;
 		private static int destinationIndex = 17;
@@ -51,136 +104,846 @@ public class TwoLegFlightsAverageDelay {
 		private static int END_MONTH_NUM = 5;
 		
 		/*************** Problem statement data end *****************/
+		
+		private static final byte[] ORIGIN_BYTES = ORIGIN.getBytes();
+		private static final byte[] DESTINATION_BYTES = DESTINATION.getBytes();
+		private static final Text ORIGIN_TEXT = new Text(ORIGIN);
+		private static final Text DESTINATION_TEXT = new Text(DESTINATION);
+		
+		//Scanner for the input CSV file, stops after the last relevant field
+		private CSVFieldScanner scanner = new CSVFieldScanner(divertedIndex);
+		
+		//Filter of the connecting airports in semi-join mode, null otherwise
+		private SemiJoinFilter airportFilter;
+		
+		//Counters looked up once per task, and timers of the parse and emit phases
+		private Counter[] flightCounters;
+		private PhaseTimer parseTimer;
+		private PhaseTimer emitTimer;
+		
+		protected void setup(Context context) throws IOException {
+			airportFilter = getAirportFilter(context);
+			flightCounters = FlightCounters.getCounters(context);
+			parseTimer = new PhaseTimer(context, PhaseCpuMicros.MAP_PARSE);
+			emitTimer = new PhaseTimer(context, PhaseCpuMicros.MAP_EMIT);
+		}
 
 		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+			flightCounters[FlightCounters.RECORDS_READ.ordinal()].increment(1);
+			parseTimer.start();
 
-			CSVParser parser = new CSVParser();
-			String[] flightDetails = parser.parseLine(value.toString());			
+			scanner.scan(value);
 
-			if (isValidFlight(flightDetails)) {
-				//Set flight date as the intermediate key
-				flightDate.set(flightDetails[dateIndex]);
-				
-				//Build relevant flight data
-				String[] relevantFlightData = { 
-						flightDetails[originIndex], flightDetails[destinationIndex], 
-						flightDetails[departureTimeIndex], flightDetails[arrivalTimeIndex], 
-						flightDetails[arrivalDelay]
-				};
-				//Emit relevant flight data with flight date as the key
-				flightDetailsText.set(StringUtils.join(relevantFlightData, ","));
-				context.write(flightDate, flightDetailsText);
+			FlightCounters dropReason = getDropReason(scanner);
+			if (dropReason != null) {
+				parseTimer.stop();
+				flightCounters[dropReason.ordinal()].increment(1);
+				return;
+			}
+			
+			boolean firstLeg = scanner.equals(originIndex, ORIGIN_BYTES);
+			if (!isConnected(airportFilter, scanner, firstLeg ? destinationIndex : originIndex)) {
+				parseTimer.stop();
+				flightCounters[FlightCounters.DROPPED_NO_CONNECTION.ordinal()].increment(1);
+				return;
+			}
+			
+			//Set flight date as the intermediate key
+			scanner.getText(dateIndex, flightDate);
+			
+			//Keep only what the join needs, connecting airport and the time there, parsed once in the mapper
+			if (firstLeg) {
+				setLeg(TwoLegFlightKey.FIRST_LEG, destinationIndex, arrivalTimeIndex);
+			} else {
+				setLeg(TwoLegFlightKey.SECOND_LEG, originIndex, departureTimeIndex);
 			}
+			parseTimer.stop();
+			
+			//Emit the flight leg with flight date as the key
+			emitTimer.start();
+			context.write(flightDate, flightLeg);
+			emitTimer.stop();
+			flightCounters[FlightCounters.RECORDS_EMITTED.ordinal()].increment(1);
+		}
+		
+		protected void cleanup(Context context) {
+			parseTimer.flush();
+			emitTimer.flush();
+		}
+		
+		//Set the flight leg from the connecting airport and time fields of the scanned flight
+		private void setLeg(byte legTag, int airportIndex, int timeIndex) {
+			flightLeg.set(legTag, scanner.getBytes(), scanner.getStart(airportIndex), scanner.getLength(airportIndex), 
+					scanner.getInt(timeIndex), scanner.getDouble(arrivalDelay));
 		}
 		
 		//Decide whether the flight with given details is a valid(relevant) flight
-		public boolean isValidFlight(String[] flightDetails) {
-			return (!(Double.parseDouble(flightDetails[cancelledIndex]) == CANCELED)
-					&& !(Double.parseDouble(flightDetails[divertedIndex]) == DIVERTED)
-					&& ((Integer.parseInt(flightDetails[yearIndex]) == START_YEAR 
-							&& Integer.parseInt(flightDetails[monthIndex]) >= START_MONTH_NUM)
-						|| (Integer.parseInt(flightDetails[yearIndex]) == END_YEAR 
-							&& Integer.parseInt(flightDetails[monthIndex]) <= END_MONTH_NUM))
-					&& ((flightDetails[originIndex].equals(ORIGIN) 
-						|| flightDetails[destinationIndex].equals(DESTINATION))
-							&& !(flightDetails[originIndex].equals(ORIGIN) 
-								&& flightDetails[destinationIndex].equals(DESTINATION))));
-		}
-	}
-
-	public static class FlightDataReducer extends Reducer<Text, Text, Text, Text> {
-
-		public void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException {
-			
-			List<String> firstLegList = new ArrayList<String>();
-			List<String> secondLegList = new ArrayList<String>();
-
-			//Build separate list for first leg and second leg of a flight
-			for (Text value : values) {
-				String[] flightData = value.toString().split(",");
-				if (flightData[0].equals(ORIGIN)) {
-					firstLegList.add(value.toString());
-				} else if (flightData[1].equals(DESTINATION)) {
-					secondLegList.add(value.toString());
+		public static boolean isValidFlight(CSVFieldScanner flightDetails) {
+			return getDropReason(flightDetails) == null;
+		}
+		
+		//Reason the flight with given details is not relevant, null for a valid flight
+		public static FlightCounters getDropReason(CSVFieldScanner flightDetails) {
+			if (!flightDetails.hasField(divertedIndex)) {
+				return FlightCounters.DROPPED_MALFORMED;
+			}
+			try {
+				if (flightDetails.getDouble(cancelledIndex) == CANCELED) {
+					return FlightCounters.DROPPED_CANCELLED;
 				}
+				if (flightDetails.getDouble(divertedIndex) == DIVERTED) {
+					return FlightCounters.DROPPED_DIVERTED;
+				}
+				int year = flightDetails.getInt(yearIndex);
+				int month = flightDetails.getInt(monthIndex);
+				if (!((year == START_YEAR && month >= START_MONTH_NUM) || (year == END_YEAR && month <= END_MONTH_NUM))) {
+					return FlightCounters.DROPPED_OUT_OF_RANGE;
+				}
+			} catch (NumberFormatException e) {
+				//Header line or a corrupt record
+				return FlightCounters.DROPPED_MALFORMED;
+			}
+			
+			boolean fromOrigin = flightDetails.equals(originIndex, ORIGIN_BYTES);
+			boolean toDestination = flightDetails.equals(destinationIndex, DESTINATION_BYTES);
+			if (!(fromOrigin || toDestination) || (fromOrigin && toDestination)) {
+				return FlightCounters.DROPPED_OTHER_ROUTE;
+			}
+			
+			//A leg without times or delay cannot be joined
+			if (flightDetails.isEmpty(departureTimeIndex) || flightDetails.isEmpty(arrivalTimeIndex) 
+					|| flightDetails.isEmpty(arrivalDelay)) {
+				return FlightCounters.DROPPED_MALFORMED;
+			}
+			return null;
+		}
+		
+		//Decide whether the flight read from the columnar format is a valid(relevant) flight
+		public static boolean isValidFlight(ColumnarFlightRecord flight) {
+			return getDropReason(flight) == null;
+		}
+		
+		//Reason the flight read from the columnar format is not relevant, null for a valid flight
+		public static FlightCounters getDropReason(ColumnarFlightRecord flight) {
+			if (flight.isNull(FlightColumn.CANCELLED) || flight.isNull(FlightColumn.DIVERTED) 
+					|| flight.isNull(FlightColumn.YEAR) || flight.isNull(FlightColumn.MONTH)) {
+				return FlightCounters.DROPPED_MALFORMED;
+			}
+			if (flight.getInt(FlightColumn.CANCELLED) == CANCELED) {
+				return FlightCounters.DROPPED_CANCELLED;
+			}
+			if (flight.getInt(FlightColumn.DIVERTED) == DIVERTED) {
+				return FlightCounters.DROPPED_DIVERTED;
+			}
+			int year = flight.getInt(FlightColumn.YEAR);
+			int month = flight.getInt(FlightColumn.MONTH);
+			if (!((year == START_YEAR && month >= START_MONTH_NUM) || (year == END_YEAR && month <= END_MONTH_NUM))) {
+				return FlightCounters.DROPPED_OUT_OF_RANGE;
+			}
+			
+			boolean fromOrigin = flight.getText(FlightColumn.ORIGIN).equals(ORIGIN_TEXT);
+			boolean toDestination = flight.getText(FlightColumn.DESTINATION).equals(DESTINATION_TEXT);
+			if (!(fromOrigin || toDestination) || (fromOrigin && toDestination)) {
+				return FlightCounters.DROPPED_OTHER_ROUTE;
+			}
+			
+			//A leg without date, times or delay cannot be joined, a null time would not fit the key either
+			if (flight.isNull(FlightColumn.DAY_OF_MONTH) || flight.isNull(FlightColumn.DEPARTURE_TIME) 
+					|| flight.isNull(FlightColumn.ARRIVAL_TIME) || flight.isNull(FlightColumn.ARRIVAL_DELAY)) {
+				return FlightCounters.DROPPED_MALFORMED;
+			}
+			return null;
+		}
+	}
+
+	/*
+	 * Mapper for the streaming join, emits each valid leg under its composite key
+	 * First legs are keyed by their destination and arrival time, second legs by their origin and departure time
+	 */
+	public static class FlightLegMapper extends Mapper<Object, Text, TwoLegFlightKey, DoubleWritable> {
+		
+		private TwoLegFlightKey flightLegKey = new TwoLegFlightKey();
+		private DoubleWritable flightDelay = new DoubleWritable();
+		private Text connectingAirport = new Text();
+		
+		//Scanner for the input CSV file, stops after the last relevant field
+		private CSVFieldScanner scanner = new CSVFieldScanner(FlightDataMapper.divertedIndex);
+		
+		//Filter of the connecting airports in semi-join mode, null otherwise
+		private SemiJoinFilter airportFilter;
+		
+		private Counter[] flightCounters;
+		private PhaseTimer parseTimer;
+		private PhaseTimer emitTimer;
+		
+		protected void setup(Context context) throws IOException {
+			airportFilter = getAirportFilter(context);
+			flightCounters = FlightCounters.getCounters(context);
+			parseTimer = new PhaseTimer(context, PhaseCpuMicros.MAP_PARSE);
+			emitTimer = new PhaseTimer(context, PhaseCpuMicros.MAP_EMIT);
+		}
+		
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+			flightCounters[FlightCounters.RECORDS_READ.ordinal()].increment(1);
+			parseTimer.start();
+			
+			scanner.scan(value);
+			
+			FlightCounters dropReason = FlightDataMapper.getDropReason(scanner);
+			if (dropReason != null) {
+				parseTimer.stop();
+				flightCounters[dropReason.ordinal()].increment(1);
+				return;
+			}
+			
+			boolean firstLeg = scanner.equals(FlightDataMapper.originIndex, FlightDataMapper.ORIGIN_BYTES);
+			if (!isConnected(airportFilter, scanner, firstLeg ? FlightDataMapper.destinationIndex : FlightDataMapper.originIndex)) {
+				parseTimer.stop();
+				flightCounters[FlightCounters.DROPPED_NO_CONNECTION.ordinal()].increment(1);
+				return;
+			}
+			
+			//Flight date as yyyymmdd, from the numeric date columns
+			int flightDate = scanner.getInt(FlightDataMapper.yearIndex) * 10000 
+					+ scanner.getInt(FlightDataMapper.monthIndex) * 100 + scanner.getInt(FlightDataMapper.dayIndex);
+			
+			if (firstLeg) {
+				scanner.getText(FlightDataMapper.destinationIndex, connectingAirport);
+				flightLegKey.set(flightDate, connectingAirport, 
+						scanner.getInt(FlightDataMapper.arrivalTimeIndex), TwoLegFlightKey.FIRST_LEG);
+			} else {
+				scanner.getText(FlightDataMapper.originIndex, connectingAirport);
+				flightLegKey.set(flightDate, connectingAirport, 
+						scanner.getInt(FlightDataMapper.departureTimeIndex), TwoLegFlightKey.SECOND_LEG);
+			}
+			flightDelay.set(scanner.getDouble(FlightDataMapper.arrivalDelay));
+			parseTimer.stop();
+			
+			emitTimer.start();
+			context.write(flightLegKey, flightDelay);
+			emitTimer.stop();
+			flightCounters[FlightCounters.RECORDS_EMITTED.ordinal()].increment(1);
+		}
+		
+		protected void cleanup(Context context) {
+			parseTimer.flush();
+			emitTimer.flush();
+		}
+	}
+	
+	/*
+	 * Mapper for the streaming join reading the flight data in the columnar format
+	 * Only the relevant columns are decoded, and blocks without flights of the years in range are never read
+	 */
+	public static class ColumnarFlightLegMapper 
+			extends Mapper<NullWritable, ColumnarFlightRecord, TwoLegFlightKey, DoubleWritable> {
+		
+		private TwoLegFlightKey flightLegKey = new TwoLegFlightKey();
+		private DoubleWritable flightDelay = new DoubleWritable();
+		
+		//The flights of the blocks skipped by their statistics are never read, nor counted
+		private Counter[] flightCounters;
+		
+		protected void setup(Context context) {
+			flightCounters = FlightCounters.getCounters(context);
+		}
+		
+		public void map(NullWritable key, ColumnarFlightRecord flight, Context context) throws IOException, InterruptedException {
+			flightCounters[FlightCounters.RECORDS_READ.ordinal()].increment(1);
+			
+			FlightCounters dropReason = FlightDataMapper.getDropReason(flight);
+			if (dropReason != null) {
+				flightCounters[dropReason.ordinal()].increment(1);
+				return;
 			}
 			
-			//For each first leg, loop to find a valid second leg
-			for (String firstLeg : firstLegList) {
-				String[] firstLegFields = firstLeg.toString().split(",");
-				String firstLegDestination = firstLegFields[1];
-				int firstLegArrivalTime = Integer.parseInt(firstLegFields[3]);
-				
-				//For each second leg, ascertain whether it is valid second leg for the current first leg
-				for (String secondLeg : secondLegList) {
-					String[] secondLegFields = secondLeg.toString().split(",");
-					String secondLegOrigin = secondLegFields[0];
-					int secondLegDepartureTime = Integer.parseInt(secondLegFields[2]);
-
-					//Check whether the given set of first leg and second leg can together act as a two leg flight based on problem statement rules
-					if (firstLegDestination.equals(secondLegOrigin) && (secondLegDepartureTime > firstLegArrivalTime)) {
-						Double totalDelay = 
-								Double.parseDouble(firstLegFields[4]) + Double.parseDouble(secondLegFields[4]);
-						context.write(key, new Text(totalDelay.toString()));
-					}
+			int flightDate = flight.getInt(FlightColumn.YEAR) * 10000 
+					+ flight.getInt(FlightColumn.MONTH) * 100 + flight.getInt(FlightColumn.DAY_OF_MONTH);
+			if (flight.getText(FlightColumn.ORIGIN).equals(FlightDataMapper.ORIGIN_TEXT)) {
+				flightLegKey.set(flightDate, flight.getText(FlightColumn.DESTINATION), 
+						flight.getInt(FlightColumn.ARRIVAL_TIME), TwoLegFlightKey.FIRST_LEG);
+			} else {
+				flightLegKey.set(flightDate, flight.getText(FlightColumn.ORIGIN), 
+						flight.getInt(FlightColumn.DEPARTURE_TIME), TwoLegFlightKey.SECOND_LEG);
+			}
+			flightDelay.set(flight.getFloat(FlightColumn.ARRIVAL_DELAY));
+			context.write(flightLegKey, flightDelay);
+			flightCounters[FlightCounters.RECORDS_EMITTED.ordinal()].increment(1);
+		}
+	}
+	
+	/*
+	 * Filter of the connecting airports shipped by the driver in semi-join mode, null otherwise
+	 */
+	private static SemiJoinFilter getAirportFilter(TaskAttemptContext context) throws IOException {
+		if (context.getConfiguration().get(AIRPORT_FILTER) == null) {
+			return null;
+		}
+		return SemiJoinFilter.fromCache(context, AIRPORT_FILTER_NAME);
+	}
+	
+	/*
+	 * Whether the connecting airport of the scanned leg may have legs on the other side of the join, always true without a filter
+	 */
+	private static boolean isConnected(SemiJoinFilter airportFilter, CSVFieldScanner scanner, int airportIndex) {
+		return airportFilter == null 
+				|| airportFilter.probe(scanner.getBytes(), scanner.getStart(airportIndex), scanner.getLength(airportIndex));
+	}
+	
+	/*
+	 * Semi-join pre-pass mapper, emits the connecting airport of each valid leg with a first or second leg count of one
+	 */
+	public static class ConnectingAirportMapper extends Mapper<Object, Text, Text, LegCountsWritable> {
+		
+		private Text connectingAirport = new Text();
+		private LegCountsWritable legCounts = new LegCountsWritable();
+		
+		//Scanner for the input CSV file, stops after the last relevant field
+		private CSVFieldScanner scanner = new CSVFieldScanner(FlightDataMapper.divertedIndex);
+		
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+			scanner.scan(value);
+			if (!FlightDataMapper.isValidFlight(scanner)) {
+				return;
+			}
+			if (scanner.equals(FlightDataMapper.originIndex, FlightDataMapper.ORIGIN_BYTES)) {
+				scanner.getText(FlightDataMapper.destinationIndex, connectingAirport);
+				legCounts.set(1, 0);
+			} else {
+				scanner.getText(FlightDataMapper.originIndex, connectingAirport);
+				legCounts.set(0, 1);
+			}
+			context.write(connectingAirport, legCounts);
+		}
+	}
+	
+	/*
+	 * Combiner, sums the first and second leg counts of each connecting airport
+	 */
+	public static class LegCountsCombiner extends Reducer<Text, LegCountsWritable, Text, LegCountsWritable> {
+		
+		private LegCountsWritable legCounts = new LegCountsWritable();
+		
+		public void reduce(Text key, Iterable<LegCountsWritable> values, Context context) throws IOException, InterruptedException {
+			legCounts.set(0, 0);
+			for (LegCountsWritable value : values) {
+				legCounts.merge(value);
+			}
+			context.write(key, legCounts);
+		}
+	}
+	
+	/*
+	 * Single reducer of the semi-join pre-pass, writes the Bloom filter of the airports with both first and second legs
+	 * The legs of the other airports that the filter would still let through are counted as its false positives
+	 */
+	public static class AirportFilterReducer extends Reducer<Text, LegCountsWritable, NullWritable, NullWritable> {
+		
+		//Airports with both first and second legs, and the number of legs of the others
+		private List<Text> connectingAirports = new ArrayList<Text>();
+		private Map<Text, Long> unconnectedLegs = new HashMap<Text, Long>();
+		
+		public void reduce(Text key, Iterable<LegCountsWritable> values, Context context) throws IOException, InterruptedException {
+			long firstLegs = 0;
+			long secondLegs = 0;
+			for (LegCountsWritable value : values) {
+				firstLegs += value.getFirstLegs();
+				secondLegs += value.getSecondLegs();
+			}
+			if (firstLegs > 0 && secondLegs > 0) {
+				connectingAirports.add(new Text(key));
+			} else {
+				unconnectedLegs.put(new Text(key), firstLegs + secondLegs);
+			}
+		}
+		
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			BloomFilter airportFilter = SemiJoinFilter.newFilter(context.getConfiguration(), connectingAirports.size());
+			for (Text airport : connectingAirports) {
+				airportFilter.add(airport.getBytes(), 0, airport.getLength());
+			}
+			for (Map.Entry<Text, Long> airportLegs : unconnectedLegs.entrySet()) {
+				Text airport = airportLegs.getKey();
+				if (airportFilter.mightContain(airport.getBytes(), 0, airport.getLength())) {
+					SemiJoinFilter.countFalsePositives(context, airportLegs.getValue());
 				}
 			}
+			//Written in the task output directory, moved into the job output directory when the task commits
+			SemiJoinFilter.save(context.getConfiguration(), 
+					new Path(FileOutputFormat.getWorkOutputPath(context), AIRPORT_FILTER_NAME), airportFilter);
+		}
+	}
+	
+	/*
+	 * Partitions the legs by flight date and connecting airport, so the legs of a hub are spread over all the dates
+	 */
+	public static class FlightLegPartitioner extends Partitioner<TwoLegFlightKey, DoubleWritable> {
+
+		public int getPartition(TwoLegFlightKey key, DoubleWritable value, int numReduceTasks) {
+			return (key.hashCode() & Integer.MAX_VALUE) % numReduceTasks;
 		}
 	}
 	
+	/*
+	 * Streaming join of a single flight date and connecting airport
+	 * Legs arrive in time order, so each second leg pairs with all the first legs seen before it
+	 * Only the count and total delay of the first legs seen so far are kept, memory does not grow with the group
+	 */
+	public static class StreamingJoinReducer extends Reducer<TwoLegFlightKey, DoubleWritable, TwoLegFlightKey, SumCountWritable> {
+		
+		private SumCountWritable twoLegFlightDelays = new SumCountWritable();
+		private boolean singleJobMode;
+		
+		private GroupSizeHistogram groupSizes = new GroupSizeHistogram(GROUP_SIZES);
+		private PhaseTimer processTimer;
+		private PhaseTimer emitTimer;
+		
+		protected void setup(Context context) {
+			singleJobMode = context.getConfiguration().getBoolean(SINGLE_JOB_MODE, false);
+			processTimer = new PhaseTimer(context, PhaseCpuMicros.REDUCE_PROCESS);
+			emitTimer = new PhaseTimer(context, PhaseCpuMicros.REDUCE_EMIT);
+		}
+		
+		/*
+		 * Key : Composite key of the leg, the time and leg tag change along with the values
+		 * Values : Delays of the legs in time order
+		 */
+		public void reduce(TwoLegFlightKey key, Iterable<DoubleWritable> values, Context context) 
+				throws IOException, InterruptedException {
+			processTimer.start();
+			
+			long firstLegs = 0;
+			double firstLegDelays = 0;
+			long twoLegFlights = 0;
+			double totalDelay = 0;
+			long legs = 0;
+			
+			for (DoubleWritable delay : values) {
+				if (key.isFirstLeg()) {
+					firstLegs++;
+					firstLegDelays += delay.get();
+				} else {
+					//Every first leg seen so far arrived strictly before this second leg departs
+					twoLegFlights += firstLegs;
+					totalDelay += firstLegDelays + firstLegs * delay.get();
+				}
+				legs++;
+			}
+			groupSizes.add(legs);
+			processTimer.stop();
+			
+			emitTimer.start();
+			twoLegFlightDelays.set(totalDelay, twoLegFlights);
+			if (recordTwoLegFlights(context, twoLegFlightDelays) && !singleJobMode) {
+				context.write(key, twoLegFlightDelays);
+			}
+			emitTimer.stop();
+		}
+		
+		protected void cleanup(Context context) {
+			groupSizes.flush(context);
+			processTimer.flush();
+			emitTimer.flush();
+		}
+	}
+
+	/*
+	 * Joins the first and second legs of each flight date
+	 * Emits the total delay and the number of valid two leg flights of the date, instead of one record per pair
+	 * The same partial sums are added to the job counters, in single job mode nothing else is written
+	 */
+	public static class FlightDataReducer extends Reducer<Text, FlightLegWritable, Text, SumCountWritable> {
+		
+		private TwoLegJoin twoLegJoin = new TwoLegJoin();
+		private SumCountWritable twoLegFlightDelays = new SumCountWritable();
+		private boolean singleJobMode;
+		
+		private GroupSizeHistogram groupSizes = new GroupSizeHistogram(GROUP_SIZES);
+		private PhaseTimer processTimer;
+		private PhaseTimer emitTimer;
+		
+		protected void setup(Context context) {
+			singleJobMode = context.getConfiguration().getBoolean(SINGLE_JOB_MODE, false);
+			processTimer = new PhaseTimer(context, PhaseCpuMicros.REDUCE_PROCESS);
+			emitTimer = new PhaseTimer(context, PhaseCpuMicros.REDUCE_EMIT);
+		}
+
+		public void reduce(Text key, Iterable<FlightLegWritable> values, Context context) throws IOException, InterruptedException {
+			processTimer.start();
+			
+			//Bucket the first and second legs of a flight by connecting airport, legs arrive already parsed
+			twoLegJoin.clear();
+			long legs = 0;
+			for (FlightLegWritable leg : values) {
+				legs++;
+				if (leg.isFirstLeg()) {
+					twoLegJoin.addFirstLeg(leg.getConnectingAirport(), leg.getTime(), leg.getDelay());
+				} else {
+					twoLegJoin.addSecondLeg(leg.getConnectingAirport(), leg.getTime(), leg.getDelay());
+				}
+			}
+			
+			//Join the legs, emitting the aggregated delay of all valid two leg flights of the date
+			twoLegJoin.join(twoLegFlightDelays);
+			groupSizes.add(legs);
+			processTimer.stop();
+			
+			emitTimer.start();
+			if (recordTwoLegFlights(context, twoLegFlightDelays) && !singleJobMode) {
+				context.write(key, twoLegFlightDelays);
+			}
+			emitTimer.stop();
+		}
+		
+		protected void cleanup(Context context) {
+			groupSizes.flush(context);
+			processTimer.flush();
+			emitTimer.flush();
+		}
+	}
+	
+	/*
+	 * Add the partial sums of a join group to the job counters, returns false if the group had no two leg flights
+	 */
+	private static boolean recordTwoLegFlights(TaskAttemptContext context, SumCountWritable twoLegFlightDelays) {
+		if (twoLegFlightDelays.getCount() == 0) {
+			return false;
+		}
+		context.getCounter(TwoLegFlightCounters.TWO_LEG_FLIGHTS).increment(twoLegFlightDelays.getCount());
+		context.getCounter(TwoLegFlightCounters.TOTAL_DELAY_HUNDREDTHS)
+			.increment(Math.round(twoLegFlightDelays.getSum() * DELAY_COUNTER_SCALE));
+		return true;
+	}
+	
 	public static class AverageDelayMapper extends
-			Mapper<Object, Text, Text, DoubleWritable> {
+			Mapper<Object, Text, Text, SumCountWritable> {
 
 		private Text defaultKey = new Text("Default");
+		private SumCountWritable flightDelays = new SumCountWritable();
 
-		/* Emit all the delays with the same key, so they are processes by same reduce call */
+		/* Emit the delays of all the dates with the same key, so they are processes by same reduce call */
 		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
-			String[] flightDelays = value.toString().split("\t");
-			context.write(defaultKey, new DoubleWritable(Double.parseDouble(flightDelays[1])));
+			//Flight date, total delay, number of two leg flights
+			String[] flightDelayFields = value.toString().split("\t");
+			flightDelays.set(Double.parseDouble(flightDelayFields[1]), Long.parseLong(flightDelayFields[2]));
+			context.write(defaultKey, flightDelays);
 		}
 	}
 
 	public static class AverageDelayReducer extends
-			Reducer<Text, DoubleWritable, Text, DoubleWritable> {
+			Reducer<Text, SumCountWritable, Text, DoubleWritable> {
 		private DoubleWritable result = new DoubleWritable();
 
 		/* Compute average of all the flight delays and output a single record containing the average delay*/
-		public void reduce(Text key, Iterable<DoubleWritable> values,
+		public void reduce(Text key, Iterable<SumCountWritable> values,
 				Context context) throws IOException, InterruptedException {
-			int sum = 0;
-			int count = 0;
-			for (DoubleWritable val : values) {
-				count++;
-				sum += val.get();
+			SumCountWritable flightDelays = new SumCountWritable();
+			for (SumCountWritable val : values) {
+				flightDelays.merge(val);
 			}
-			result.set((double)sum / count);
+			result.set(flightDelays.getAverage());
 			context.write(new Text("Average Delay"), result);
 		}
 	}
 
-	public static void main(String[] args) throws Exception {
-		/* Setup first map reduce job */
-		Configuration computeDelayConf = new Configuration();
-		String[] otherArgs = new GenericOptionsParser(computeDelayConf, args).getRemainingArgs();
-		
-		if (otherArgs.length != 3) {
-			System.err.println("Usage: wordcount <in>  <intermediate> <out>");
-			System.exit(2);
+	/*
+	 * Setup the job joining first and second legs of the two leg flights
+	 */
+	private static Job createComputeDelayJob(Configuration computeDelayConf, String input) throws IOException {
+		//Columnar input is only supported by the streaming join, its mapper does not need the date as text
+		boolean columnarInput = computeDelayConf.getBoolean(ColumnarFlightInputFormat.COLUMNAR_INPUT, false);
+		if (columnarInput && !computeDelayConf.getBoolean(STREAMING_JOIN, true)) {
+			throw new IllegalArgumentException(ColumnarFlightInputFormat.COLUMNAR_INPUT + " is only supported by the streaming join, " 
+					+ STREAMING_JOIN + " cannot be false");
 		}
-
+		
 		Job computeDelayJob = new Job(computeDelayConf, "Compute Flight Delays");
 		computeDelayJob.setJarByClass(TwoLegFlightsAverageDelay.class);
-		computeDelayJob.setMapperClass(FlightDataMapper.class);
-		computeDelayJob.setReducerClass(FlightDataReducer.class);
-		computeDelayJob.setOutputKeyClass(Text.class);
-		computeDelayJob.setOutputValueClass(Text.class);
-		/* Set number of reduce tasks to 10*/
-		computeDelayJob.setNumReduceTasks(10);
+		
+		if (columnarInput || computeDelayConf.getBoolean(STREAMING_JOIN, false)) {
+			//Secondary sort on (date, connecting airport, time, leg tag), grouped by (date, connecting airport)
+			computeDelayJob.setMapperClass(FlightLegMapper.class);
+			computeDelayJob.setPartitionerClass(FlightLegPartitioner.class);
+			computeDelayJob.setSortComparatorClass(TwoLegFlightKeyComparator.class);
+			computeDelayJob.setGroupingComparatorClass(TwoLegFlightGroupComparator.class);
+			computeDelayJob.setReducerClass(StreamingJoinReducer.class);
+			computeDelayJob.setMapOutputKeyClass(TwoLegFlightKey.class);
+			computeDelayJob.setMapOutputValueClass(DoubleWritable.class);
+			computeDelayJob.setOutputKeyClass(TwoLegFlightKey.class);
+		} else {
+			computeDelayJob.setMapperClass(FlightDataMapper.class);
+			computeDelayJob.setReducerClass(FlightDataReducer.class);
+			computeDelayJob.setMapOutputKeyClass(Text.class);
+			computeDelayJob.setMapOutputValueClass(FlightLegWritable.class);
+			computeDelayJob.setOutputKeyClass(Text.class);
+		}
+		computeDelayJob.setOutputValueClass(SumCountWritable.class);
+		
+		//Prune the legs of airports without connections, in semi-join mode
+		if (computeDelayConf.get(AIRPORT_FILTER) != null) {
+			SemiJoinFilter.addToCache(computeDelayJob, new Path(computeDelayConf.get(AIRPORT_FILTER)), AIRPORT_FILTER_NAME);
+		}
+		/* Set number of reduce tasks from the size of the input */
+		computeDelayJob.setNumReduceTasks(ReducerSizing.forInput(computeDelayConf, new Path(input)));
 
-		FileInputFormat.addInputPath(computeDelayJob, new Path(otherArgs[0]));
-		FileOutputFormat.setOutputPath(computeDelayJob, new Path(otherArgs[1]));
+		FileInputFormat.addInputPath(computeDelayJob, new Path(input));
+		
+		//Read only the partitions within the date range, when the input is partitioned by date
+		if (computeDelayConf.getBoolean(DateRangeInputFormat.PARTITIONED_INPUT, false)) {
+			DateRangeInputFormat.setDateRange(computeDelayJob, FlightDataMapper.START_YEAR, FlightDataMapper.START_MONTH_NUM, 
+					FlightDataMapper.END_YEAR, FlightDataMapper.END_MONTH_NUM);
+		}
+		
+		//Decode only the relevant columns and skip blocks outside the years in range, when the input is in the columnar format
+		if (columnarInput) {
+			computeDelayJob.setMapperClass(ColumnarFlightLegMapper.class);
+			ColumnarFlightInputFormat.setProjectedColumns(computeDelayJob, FlightColumn.YEAR, FlightColumn.MONTH, 
+					FlightColumn.DAY_OF_MONTH, FlightColumn.ORIGIN, FlightColumn.DESTINATION, FlightColumn.DEPARTURE_TIME, 
+					FlightColumn.ARRIVAL_TIME, FlightColumn.ARRIVAL_DELAY, FlightColumn.CANCELLED, FlightColumn.DIVERTED);
+			ColumnarFlightInputFormat.setColumnRange(computeDelayJob, FlightColumn.YEAR, 
+					FlightDataMapper.START_YEAR, FlightDataMapper.END_YEAR);
+		}
+		return computeDelayJob;
+	}
+	
+	/*
+	 * Single job mode, the average is computed from the job counters merged across all reduce tasks
+	 * There is no intermediate output and no second job funnelling all the delays into a single reducer
+	 * Returns the completed job, the average is written only when it succeeded
+	 */
+	public static Job runSingleJob(Configuration computeDelayConf, String input, String output) throws Exception {
+		computeDelayConf.setBoolean(SINGLE_JOB_MODE, true);
+		RunReport runReport = new RunReport();
+		if (isSemiJoin(computeDelayConf)) {
+			Job airportFilterJob = runAirportFilterJob(computeDelayConf, input, output, runReport);
+			if (!airportFilterJob.isSuccessful()) {
+				return airportFilterJob;
+			}
+		}
 		
-		computeDelayJob.waitForCompletion(true);
+		Job computeDelayJob = createComputeDelayJob(computeDelayConf, input);
+		computeDelayJob.setOutputFormatClass(NullOutputFormat.class);
+		
+		boolean computed = computeDelayJob.waitForCompletion(true);
+		deleteAirportFilter(computeDelayConf, output);
+		if (!computed) {
+			return computeDelayJob;
+		}
+		
+		Counters counters = computeDelayJob.getCounters();
+		long twoLegFlights = counters.findCounter(TwoLegFlightCounters.TWO_LEG_FLIGHTS).getValue();
+		double totalDelay = 
+				counters.findCounter(TwoLegFlightCounters.TOTAL_DELAY_HUNDREDTHS).getValue() / DELAY_COUNTER_SCALE;
+		writeAverageDelay(computeDelayConf, output, totalDelay, twoLegFlights);
+		runReport.add(computeDelayJob).write(computeDelayConf, new Path(output));
+		return computeDelayJob;
+	}
+	
+	/*
+	 * Whether the legs are pruned by the filter of the connecting airports, the pre-pass building the filter reads csv input only
+	 */
+	private static boolean isSemiJoin(Configuration computeDelayConf) {
+		boolean semiJoin = computeDelayConf.getBoolean(SEMI_JOIN, false);
+		if (semiJoin && computeDelayConf.getBoolean(ColumnarFlightInputFormat.COLUMNAR_INPUT, false)) {
+			throw new IllegalArgumentException(SEMI_JOIN + " is not supported with " + ColumnarFlightInputFormat.COLUMNAR_INPUT);
+		}
+		return semiJoin;
+	}
+	
+	/*
+	 * Error message for options that would be ignored or fail once the jobs run, null when every option applies
+	 */
+	private static String getUnsupportedOptions(Configuration conf) {
+		if (!conf.getBoolean(ColumnarFlightInputFormat.COLUMNAR_INPUT, false)) {
+			return null;
+		}
+		if (conf.getBoolean(LocalEngine.LOCAL_ENGINE, false)) {
+			return ColumnarFlightInputFormat.COLUMNAR_INPUT + " is not supported with " + LocalEngine.LOCAL_ENGINE;
+		}
+		if (conf.getBoolean(SEMI_JOIN, false)) {
+			return ColumnarFlightInputFormat.COLUMNAR_INPUT + " is not supported with " + SEMI_JOIN;
+		}
+		if (!conf.getBoolean(STREAMING_JOIN, true)) {
+			return ColumnarFlightInputFormat.COLUMNAR_INPUT + " is only supported by the streaming join, " 
+					+ STREAMING_JOIN + " cannot be false";
+		}
+		return null;
+	}
+	
+	/*
+	 * Semi-join pre-pass, writes the Bloom filter of the connecting airports with both first and second legs next to the output
+	 * and points the compute delay job at it
+	 * Returns the completed pre-pass, added to the run report
+	 */
+	private static Job runAirportFilterJob(Configuration computeDelayConf, String input, String output, RunReport runReport) 
+			throws Exception {
+		Path airportFilterOutput = new Path(output + "-semijoin");
+		
+		Job airportFilterJob = new Job(computeDelayConf, "Connecting Airport Filter");
+		airportFilterJob.setJarByClass(TwoLegFlightsAverageDelay.class);
+		airportFilterJob.setMapperClass(ConnectingAirportMapper.class);
+		airportFilterJob.setCombinerClass(LegCountsCombiner.class);
+		airportFilterJob.setReducerClass(AirportFilterReducer.class);
+		airportFilterJob.setMapOutputKeyClass(Text.class);
+		airportFilterJob.setMapOutputValueClass(LegCountsWritable.class);
+		airportFilterJob.setOutputKeyClass(NullWritable.class);
+		airportFilterJob.setOutputValueClass(NullWritable.class);
+		
+		//The filter is the only output, no empty part file is created
+		LazyOutputFormat.setOutputFormatClass(airportFilterJob, TextOutputFormat.class);
+		
+		//A single filter of all the connecting airports
+		airportFilterJob.setNumReduceTasks(1);
+		
+		FileInputFormat.addInputPath(airportFilterJob, new Path(input));
+		if (computeDelayConf.getBoolean(DateRangeInputFormat.PARTITIONED_INPUT, false)) {
+			DateRangeInputFormat.setDateRange(airportFilterJob, FlightDataMapper.START_YEAR, FlightDataMapper.START_MONTH_NUM, 
+					FlightDataMapper.END_YEAR, FlightDataMapper.END_MONTH_NUM);
+		}
+		FileOutputFormat.setOutputPath(airportFilterJob, airportFilterOutput);
+		
+		if (airportFilterJob.waitForCompletion(true)) {
+			runReport.add(airportFilterJob);
+			computeDelayConf.set(AIRPORT_FILTER, new Path(airportFilterOutput, AIRPORT_FILTER_NAME).toString());
+		}
+		return airportFilterJob;
+	}
+	
+	/*
+	 * Remove the output of the semi-join pre-pass, once the compute delay job no longer needs the filter
+	 */
+	private static void deleteAirportFilter(Configuration computeDelayConf, String output) throws IOException {
+		if (computeDelayConf.get(AIRPORT_FILTER) != null) {
+			Path airportFilterOutput = new Path(output + "-semijoin");
+			airportFilterOutput.getFileSystem(computeDelayConf).delete(airportFilterOutput, true);
+		}
+	}
+	
+	/*
+	 * Write the average in the same format as the second job of the two job mode
+	 */
+	private static void writeAverageDelay(Configuration conf, String output, double totalDelay, long twoLegFlights) 
+			throws IOException {
+		double averageDelay = new SumCountWritable(totalDelay, twoLegFlights).getAverage();
+		Path outputPath = new Path(output, "part-r-00000");
+		FSDataOutputStream outputStream = outputPath.getFileSystem(conf).create(outputPath, false);
+		try {
+			outputStream.write(("Average Delay\t" + averageDelay + "\n").getBytes("UTF-8"));
+		} finally {
+			outputStream.close();
+		}
+	}
+	
+	/*
+	 * Local engine job, each task collects the valid legs of its chunk by flight date, as the mapper keyed by date does
+	 * The legs of a date found in different chunks are merged before joining
+	 */
+	public static class LocalTwoLegJoin implements LocalLineJob<Map<Integer, TwoLegJoin>> {
+		
+		public LocalLineTask<Map<Integer, TwoLegJoin>> createTask() {
+			return new LocalFlightLegTask();
+		}
+		
+		public Map<Integer, TwoLegJoin> merge(Map<Integer, TwoLegJoin> first, Map<Integer, TwoLegJoin> second) {
+			//Merge the smaller map into the larger one
+			if (first.size() < second.size()) {
+				Map<Integer, TwoLegJoin> swap = first;
+				first = second;
+				second = swap;
+			}
+			for (Map.Entry<Integer, TwoLegJoin> dateLegs : second.entrySet()) {
+				TwoLegJoin merged = first.get(dateLegs.getKey());
+				if (merged == null) {
+					first.put(dateLegs.getKey(), dateLegs.getValue());
+				} else {
+					merged.addAll(dateLegs.getValue());
+				}
+			}
+			return first;
+		}
+	}
+	
+	private static class LocalFlightLegTask implements LocalLineTask<Map<Integer, TwoLegJoin>> {
+		
+		private Map<Integer, TwoLegJoin> legsByDate = new HashMap<Integer, TwoLegJoin>();
+		
+		//Scanner for the input CSV file, stops after the last relevant field
+		private CSVFieldScanner scanner = new CSVFieldScanner(FlightDataMapper.divertedIndex);
+		
+		//Connecting airport reused across lines, copied by the join only for a new airport
+		private Text connectingAirport = new Text();
+		
+		public void processLine(byte[] bytes, int start, int length) {
+			scanner.scan(bytes, start, length);
+			if (!FlightDataMapper.isValidFlight(scanner)) {
+				return;
+			}
+			//Flight date as yyyymmdd, from the numeric date columns
+			int flightDate = scanner.getInt(FlightDataMapper.yearIndex) * 10000 
+					+ scanner.getInt(FlightDataMapper.monthIndex) * 100 + scanner.getInt(FlightDataMapper.dayIndex);
+			TwoLegJoin twoLegJoin = legsByDate.get(flightDate);
+			if (twoLegJoin == null) {
+				twoLegJoin = new TwoLegJoin();
+				legsByDate.put(flightDate, twoLegJoin);
+			}
+			
+			double delay = scanner.getDouble(FlightDataMapper.arrivalDelay);
+			if (scanner.equals(FlightDataMapper.originIndex, FlightDataMapper.ORIGIN_BYTES)) {
+				scanner.getText(FlightDataMapper.destinationIndex, connectingAirport);
+				twoLegJoin.addFirstLeg(connectingAirport, scanner.getInt(FlightDataMapper.arrivalTimeIndex), delay);
+			} else {
+				scanner.getText(FlightDataMapper.originIndex, connectingAirport);
+				twoLegJoin.addSecondLeg(connectingAirport, scanner.getInt(FlightDataMapper.departureTimeIndex), delay);
+			}
+		}
+		
+		public Map<Integer, TwoLegJoin> getResult() {
+			return legsByDate;
+		}
+	}
+	
+	/*
+	 * Compute the average with the local engine, from csv input on the local file system
+	 * Delays are totalled per flight date in hundredths of a minute, as the single job does with its counters,
+	 * so that both write the same average
+	 */
+	private static boolean runLocal(Configuration conf, String input, String output) throws IOException {
+		Map<Integer, TwoLegJoin> legsByDate = new LocalEngine(conf).run(new LocalTwoLegJoin(), new Path(input));
+		
+		SumCountWritable twoLegFlightDelays = new SumCountWritable();
+		long twoLegFlights = 0;
+		long totalDelayHundredths = 0;
+		for (TwoLegJoin twoLegJoin : legsByDate.values()) {
+			twoLegJoin.join(twoLegFlightDelays);
+			if (twoLegFlightDelays.getCount() > 0) {
+				twoLegFlights += twoLegFlightDelays.getCount();
+				totalDelayHundredths += Math.round(twoLegFlightDelays.getSum() * DELAY_COUNTER_SCALE);
+			}
+		}
+		writeAverageDelay(conf, output, totalDelayHundredths / DELAY_COUNTER_SCALE, twoLegFlights);
+		return true;
+	}
+	
+	/*
+	 * Two job mode, the second job reads the partial sums written by the first job and averages them
+	 */
+	private static boolean runTwoJobs(Configuration computeDelayConf, String input, String intermediate, String output) 
+			throws Exception {
+		RunReport runReport = new RunReport();
+		if (isSemiJoin(computeDelayConf) 
+				&& !runAirportFilterJob(computeDelayConf, input, output, runReport).isSuccessful()) {
+			return false;
+		}
+		
+		/* Setup first map reduce job */
+		Job computeDelayJob = createComputeDelayJob(computeDelayConf, input);
+		FileOutputFormat.setOutputPath(computeDelayJob, new Path(intermediate));
+		
+		boolean computed = computeDelayJob.waitForCompletion(true);
+		deleteAirportFilter(computeDelayConf, output);
+		if (!computed) {
+			return false;
+		}
 		
 		/* Setup second map reduce job*/
 		Configuration computeAverageConf = new Configuration();
@@ -189,15 +952,46 @@ public class TwoLegFlightsAverageDelay {
 		computeAverageJob.setJarByClass(TwoLegFlightsAverageDelay.class);
 		computeAverageJob.setMapperClass(AverageDelayMapper.class);
 		computeAverageJob.setReducerClass(AverageDelayReducer.class);
+		computeAverageJob.setMapOutputKeyClass(Text.class);
+		computeAverageJob.setMapOutputValueClass(SumCountWritable.class);
 		computeAverageJob.setOutputKeyClass(Text.class);
 		computeAverageJob.setOutputValueClass(DoubleWritable.class);
 		computeAverageJob.setNumReduceTasks(1);
 
 		/* Input file path to second map reduce job is same as the output file path of first map reduce job */
-		FileInputFormat.addInputPath(computeAverageJob, new Path(otherArgs[1]));
-		FileOutputFormat.setOutputPath(computeAverageJob, new Path(otherArgs[2]));
+		FileInputFormat.addInputPath(computeAverageJob, new Path(intermediate));
+		FileOutputFormat.setOutputPath(computeAverageJob, new Path(output));
 
+		if (!computeAverageJob.waitForCompletion(true)) {
+			return false;
+		}
+		runReport.add(computeDelayJob).add(computeAverageJob).write(computeDelayConf, new Path(output));
+		return true;
+	}
 
-		System.exit(computeAverageJob.waitForCompletion(true) ? 0 : 1);
+	public static void main(String[] args) throws Exception {
+		Configuration computeDelayConf = new Configuration();
+		String[] otherArgs = new GenericOptionsParser(computeDelayConf, args).getRemainingArgs();
+		
+		String unsupportedOptions = getUnsupportedOptions(computeDelayConf);
+		if (unsupportedOptions != null) {
+			System.err.println(unsupportedOptions);
+			System.exit(2);
+		}
+		
+		boolean succeeded;
+		if (otherArgs.length == 2 && computeDelayConf.getBoolean(LocalEngine.LOCAL_ENGINE, false)) {
+			//Run on the cores of this machine without submitting a job, the local engine reads csv input only
+			succeeded = runLocal(computeDelayConf, otherArgs[0], otherArgs[1]);
+		} else if (otherArgs.length == 2) {
+			succeeded = runSingleJob(computeDelayConf, otherArgs[0], otherArgs[1]).isSuccessful();
+		} else if (otherArgs.length == 3) {
+			succeeded = runTwoJobs(computeDelayConf, otherArgs[0], otherArgs[1], otherArgs[2]);
+		} else {
+			System.err.println("Usage: TwoLegFlightsAverageDelay <in> [<intermediate>] <out>");
+			System.exit(2);
+			return;
+		}
+		System.exit(succeeded ? 0 : 1);
 	}
 }
@@ -0,0 +1,168 @@
+package com.search.flights;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.io.Text;
+
+import com.mapreduce.common.aggregate.SumCountWritable;
+
+/*
+ * Sort-merge join of the first and second legs of two leg flights on a single flight date
+ * Legs are bucketed by the connecting airport, the second legs of each airport are sorted by departure time
+ * For each first leg, the valid second legs are found with a binary search on its arrival time,
+ * and their delays are added using suffix sums, so the join never enumerates the individual pairs
+ * Airports are looked up by their bytes, a reused Text can be passed for every leg, it is copied only for a new airport
+ */
+public class TwoLegJoin {
+	
+	//Legs bucketed by connecting airport, destination of first leg and origin of second leg
+	private Map<Text, Legs> firstLegs = new HashMap<Text, Legs>();
+	private Map<Text, Legs> secondLegs = new HashMap<Text, Legs>();
+	
+	/*
+	 * Add a first leg arriving at the connecting airport
+	 */
+	public void addFirstLeg(Text connectingAirport, int arrivalTime, double delay) {
+		getLegs(firstLegs, connectingAirport).add(arrivalTime, delay);
+	}
+	
+	/*
+	 * Add a second leg departing from the connecting airport
+	 */
+	public void addSecondLeg(Text connectingAirport, int departureTime, double delay) {
+		getLegs(secondLegs, connectingAirport).add(departureTime, delay);
+	}
+	
+	/*
+	 * Add all the legs of another join of the same flight date, before joining
+	 */
+	public void addAll(TwoLegJoin other) {
+		addAll(firstLegs, other.firstLegs);
+		addAll(secondLegs, other.secondLegs);
+	}
+	
+	/*
+	 * Join all the legs added so far, result holds the total delay and the number of valid two leg flights
+	 * A second leg is valid for a first leg if it departs later than the first leg arrives
+	 */
+	public void join(SumCountWritable result) {
+		double totalDelay = 0;
+		long twoLegFlights = 0;
+		for (Map.Entry<Text, Legs> connectingAirport : firstLegs.entrySet()) {
+			Legs connections = secondLegs.get(connectingAirport.getKey());
+			if (connections == null) {
+				continue;
+			}
+			connections.sortByTime();
+			
+			Legs arrivals = connectingAirport.getValue();
+			for (int leg = 0; leg < arrivals.size; leg++) {
+				//Second legs departing later than the arrival of first leg
+				int firstConnection = connections.upperBound(arrivals.times[leg]);
+				long validConnections = connections.size - firstConnection;
+				totalDelay += validConnections * arrivals.delays[leg] + connections.delaySuffixSums[firstConnection];
+				twoLegFlights += validConnections;
+			}
+		}
+		result.set(totalDelay, twoLegFlights);
+	}
+	
+	/*
+	 * Remove all the legs, before joining the legs of next flight date
+	 */
+	public void clear() {
+		firstLegs.clear();
+		secondLegs.clear();
+	}
+	
+	private static void addAll(Map<Text, Legs> legsByAirport, Map<Text, Legs> otherLegsByAirport) {
+		for (Map.Entry<Text, Legs> otherLegs : otherLegsByAirport.entrySet()) {
+			Legs legs = getLegs(legsByAirport, otherLegs.getKey());
+			Legs added = otherLegs.getValue();
+			for (int leg = 0; leg < added.size; leg++) {
+				legs.add(added.times[leg], added.delays[leg]);
+			}
+		}
+	}
+	
+	private static Legs getLegs(Map<Text, Legs> legsByAirport, Text connectingAirport) {
+		Legs legs = legsByAirport.get(connectingAirport);
+		if (legs == null) {
+			legs = new Legs();
+			legsByAirport.put(new Text(connectingAirport), legs);
+		}
+		return legs;
+	}
+	
+	/*
+	 * Times and delays of the legs of a single connecting airport, as parallel primitive arrays
+	 */
+	private static class Legs {
+		
+		int size;
+		int[] times = new int[8];
+		double[] delays = new double[8];
+		
+		//Sum of delays from each leg to the last leg, valid only after sorting
+		double[] delaySuffixSums;
+		
+		void add(int time, double delay) {
+			if (size == times.length) {
+				times = Arrays.copyOf(times, size * 2);
+				delays = Arrays.copyOf(delays, size * 2);
+			}
+			times[size] = time;
+			delays[size] = delay;
+			size++;
+		}
+		
+		/*
+		 * Sort the legs by time and build the suffix sums of delays
+		 */
+		void sortByTime() {
+			if (delaySuffixSums != null) {
+				return;
+			}
+			
+			//Sort time and position together, so that the delays can follow their times
+			long[] timePositions = new long[size];
+			for (int leg = 0; leg < size; leg++) {
+				timePositions[leg] = ((long) times[leg] << 32) | leg;
+			}
+			Arrays.sort(timePositions);
+			
+			int[] sortedTimes = new int[size];
+			double[] sortedDelays = new double[size];
+			for (int leg = 0; leg < size; leg++) {
+				sortedTimes[leg] = (int) (timePositions[leg] >> 32);
+				sortedDelays[leg] = delays[(int) timePositions[leg]];
+			}
+			times = sortedTimes;
+			delays = sortedDelays;
+			
+			delaySuffixSums = new double[size + 1];
+			for (int leg = size - 1; leg >= 0; leg--) {
+				delaySuffixSums[leg] = delaySuffixSums[leg + 1] + delays[leg];
+			}
+		}
+		
+		/*
+		 * Position of the first leg with time strictly greater than the given time, size if there is none
+		 */
+		int upperBound(int time) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (times[middle] <= time) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+#!/bin/sh
+# Build and run the benchmarks with the gc profiler, and compare the results with the saved baseline
+#
+# Usage: run-benchmarks.sh [--save-baseline] [jmh options, e.g. a benchmark name pattern]
+#   --save-baseline : keep the results of this run as the baseline for the next runs
+#
+# Results of the last run are written to results/current.csv, the baseline is kept in baseline/baseline.csv
+# Only the throughput (ops/s) and allocation per operation (gc.alloc.rate.norm, B/op) are compared
+
+set -e
+cd "$(dirname "$0")"
+
+SAVE_BASELINE=false
+if [ "$1" = "--save-baseline" ]; then
+	SAVE_BASELINE=true
+	shift
+fi
+
+mvn -B -q package
+mkdir -p results
+java -jar target/benchmarks.jar -prof gc -rf csv -rff results/current.csv "$@"
+
+if [ "$SAVE_BASELINE" = true ]; then
+	mkdir -p baseline
+	cp results/current.csv baseline/baseline.csv
+	echo "Saved baseline/baseline.csv"
+	exit 0
+fi
+
+if [ ! -f baseline/baseline.csv ]; then
+	echo "No baseline to compare with, run with --save-baseline to keep one"
+	exit 0
+fi
+
+# Key of a result : benchmark name and parameter values, the score is the fifth column
+awk -F',' '
+	function key() {
+		result = $1
+		for (field = 8; field <= NF; field++) {
+			result = result "," $field
+		}
+		return result
+	}
+	function compared(name) {
+		return name !~ /:/ || name ~ /gc\.alloc\.rate\.norm"$/
+	}
+	FNR == 1 { next }
+	NR == FNR { if (compared($1)) baseline[key()] = $5; next }
+	compared($1) {
+		name = key()
+		unit = $7
+		gsub(/"/, "", name)
+		gsub(/"/, "", unit)
+		sub(/^com\.mapreduce\.benchmark\./, "", name)
+		if (key() in baseline) {
+			before = baseline[key()]
+			change = before == 0 ? 0 : (($5 - before) / before) * 100
+			printf "%-80s %16.3f %16.3f %+8.1f%% %s\n", name, before, $5, change, unit
+		} else {
+			printf "%-80s %16s %16.3f %9s %s\n", name, "-", $5, "new", unit
+		}
+	}
+' baseline/baseline.csv results/current.csv
@@ -0,0 +1,86 @@
+package com.mapreduce.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mapreduce.common.csv.CSVFieldScanner;
+
+/*
+ * Parsing the fields read by the carrier per month mapper, one operation is one record
+ * The split benchmark is the String based parsing the scanner replaced, kept as the reference point
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CSVParsingBenchmark {
+
+	static final int RECORD_COUNT = 10000;
+
+	private static final int MONTH_INDEX = 2;
+	private static final int ARRIVAL_DELAY_INDEX = 37;
+	private static final int CANCELLED_INDEX = 41;
+
+	private Text[] records;
+	private CSVFieldScanner scanner;
+
+	@Setup
+	public void setup() {
+		records = FlightRecords.generate(RECORD_COUNT, 42);
+		scanner = CSVFieldScanner.forFields(MONTH_INDEX, ARRIVAL_DELAY_INDEX, CANCELLED_INDEX);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RECORD_COUNT)
+	public double scanProjectedFields() {
+		double total = 0;
+		for (Text record : records) {
+			scanner.scan(record);
+			total += scanner.getInt(MONTH_INDEX) + scanner.getDouble(CANCELLED_INDEX);
+			if (!scanner.isEmpty(ARRIVAL_DELAY_INDEX)) {
+				total += scanner.getDouble(ARRIVAL_DELAY_INDEX);
+			}
+		}
+		return total;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RECORD_COUNT)
+	public double scanAllFields() {
+		CSVFieldScanner allFields = new CSVFieldScanner(CSVFieldScanner.ALL_FIELDS);
+		double total = 0;
+		for (Text record : records) {
+			total += allFields.scan(record);
+		}
+		return total;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RECORD_COUNT)
+	public double splitString() {
+		double total = 0;
+		for (Text record : records) {
+			String[] fields = record.toString().split(",");
+			//Quoted city names hold one delimiter each, shifting the later fields by two
+			total += Integer.parseInt(fields[MONTH_INDEX]) + Double.parseDouble(fields[CANCELLED_INDEX + 2]);
+			if (!fields[ARRIVAL_DELAY_INDEX + 2].isEmpty()) {
+				total += Double.parseDouble(fields[ARRIVAL_DELAY_INDEX + 2]);
+			}
+		}
+		return total;
+	}
+}
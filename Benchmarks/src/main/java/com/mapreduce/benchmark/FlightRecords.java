@@ -0,0 +1,25 @@
+package com.mapreduce.benchmark;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+
+import com.mapreduce.common.flight.generate.SyntheticFlightGenerator;
+
+/*
+ * Synthetic records in the layout of the airline csv files read by the flight jobs, with the default generator options
+ */
+public class FlightRecords {
+
+	/*
+	 * Records generated from the given seed, the same seed always gives the same records
+	 */
+	public static Text[] generate(int count, long seed) {
+		SyntheticFlightGenerator generator = new SyntheticFlightGenerator(new Configuration(), seed);
+		Text[] records = new Text[count];
+		for (int index = 0; index < count; index++) {
+			records[index] = new Text();
+			generator.next(records[index]);
+		}
+		return records;
+	}
+}
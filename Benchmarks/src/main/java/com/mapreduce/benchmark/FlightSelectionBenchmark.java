@@ -0,0 +1,78 @@
+package com.mapreduce.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.airline.flight.delay.CarrierPerMonthAverageDelay;
+import com.mapreduce.common.csv.CSVFieldScanner;
+import com.search.flights.TwoLegFlightsAverageDelay;
+
+/*
+ * Selection of the flights by the mappers, scanning the record and checking isValidFlight
+ * One operation is one record
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlightSelectionBenchmark {
+
+	private static final int RECORD_COUNT = 10000;
+
+	/*************** Last field scanned by each mapper *****************/
+	private static final int CARRIER_LAST_FIELD = 41;
+	private static final int TWO_LEG_LAST_FIELD = 43;
+
+	private Text[] records;
+	private CarrierPerMonthAverageDelay.FlightDataMapper carrierMapper;
+	private CSVFieldScanner carrierScanner;
+	private CSVFieldScanner twoLegScanner;
+
+	@Setup
+	public void setup() {
+		records = FlightRecords.generate(RECORD_COUNT, 42);
+		carrierMapper = new CarrierPerMonthAverageDelay.FlightDataMapper();
+		carrierScanner = new CSVFieldScanner(CARRIER_LAST_FIELD);
+		twoLegScanner = new CSVFieldScanner(TWO_LEG_LAST_FIELD);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RECORD_COUNT)
+	public int carrierPerMonthSelection() {
+		int validFlights = 0;
+		for (Text record : records) {
+			carrierScanner.scan(record);
+			if (carrierMapper.isValidFlight(carrierScanner)) {
+				validFlights++;
+			}
+		}
+		return validFlights;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RECORD_COUNT)
+	public int twoLegSelection() {
+		int validFlights = 0;
+		for (Text record : records) {
+			twoLegScanner.scan(record);
+			if (TwoLegFlightsAverageDelay.FlightDataMapper.isValidFlight(twoLegScanner)) {
+				validFlights++;
+			}
+		}
+		return validFlights;
+	}
+}
@@ -0,0 +1,81 @@
+package com.mapreduce.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.airline.flight.comparator.CarrierIDMonthKeyComparator;
+import com.airline.flight.comparator.CarrierIDMonthKeyPair;
+
+/*
+ * Sort comparison of the (carrier, month) keys, on deserialized keys and on their serialized bytes as the shuffle does
+ * One operation is one comparison of adjacent keys
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyComparisonBenchmark {
+
+	private static final int KEY_COUNT = 4096;
+	private static final String[] CARRIERS = { "WN", "AA", "OO", "MQ", "US", "DL", "UA", "XE", "NW", "CO", "EV", "9E", "FL", "B6" };
+
+	private CarrierIDMonthKeyPair[] keys;
+	private byte[] serializedKeys;
+	private int[] keyOffsets;
+	private CarrierIDMonthKeyComparator comparator;
+
+	@Setup
+	public void setup() throws IOException {
+		Random random = new Random(42);
+		keys = new CarrierIDMonthKeyPair[KEY_COUNT];
+		keyOffsets = new int[KEY_COUNT + 1];
+		DataOutputBuffer buffer = new DataOutputBuffer();
+		for (int index = 0; index < KEY_COUNT; index++) {
+			//Mostly the same carrier as the previous key, as in a partially sorted spill
+			String carrier = CARRIERS[random.nextInt(4) == 0 ? random.nextInt(CARRIERS.length) : index % 3];
+			keys[index] = new CarrierIDMonthKeyPair(carrier, 1 + random.nextInt(12));
+			keyOffsets[index] = buffer.getLength();
+			keys[index].write(buffer);
+		}
+		keyOffsets[KEY_COUNT] = buffer.getLength();
+		serializedKeys = buffer.getData();
+		comparator = new CarrierIDMonthKeyComparator();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEY_COUNT - 1)
+	public int compareCarrierIDAndMonth() {
+		int total = 0;
+		for (int index = 1; index < KEY_COUNT; index++) {
+			total += keys[index - 1].compareCarrierIDAndMonth(keys[index]);
+		}
+		return total;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEY_COUNT - 1)
+	public int compareSerialized() {
+		int total = 0;
+		for (int index = 1; index < KEY_COUNT; index++) {
+			total += comparator.compare(serializedKeys, keyOffsets[index - 1], keyOffsets[index] - keyOffsets[index - 1], 
+					serializedKeys, keyOffsets[index], keyOffsets[index + 1] - keyOffsets[index]);
+		}
+		return total;
+	}
+}
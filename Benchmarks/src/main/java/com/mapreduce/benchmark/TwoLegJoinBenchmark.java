@@ -0,0 +1,83 @@
+package com.mapreduce.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mapreduce.common.aggregate.SumCountWritable;
+import com.search.flights.TwoLegJoin;
+
+/*
+ * Join of the legs of a single flight date by the two leg reducer, one operation is one reduce call
+ * The legs of a date are spread over a few connecting airports, the busiest taking most of them
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TwoLegJoinBenchmark {
+
+	private static final String[] CONNECTING_AIRPORTS = { "ATL", "DFW", "DEN", "LAX", "PHX", "IAH", "LAS", "DTW", "SFO", "BOS" };
+
+	//Legs of each kind on a flight date
+	@Param({ "100", "1000" })
+	public int legsPerDate;
+
+	private Text[] firstLegAirports;
+	private int[] firstLegTimes;
+	private double[] firstLegDelays;
+	private Text[] secondLegAirports;
+	private int[] secondLegTimes;
+	private double[] secondLegDelays;
+
+	private TwoLegJoin twoLegJoin = new TwoLegJoin();
+	private SumCountWritable result = new SumCountWritable();
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		firstLegAirports = new Text[legsPerDate];
+		firstLegTimes = new int[legsPerDate];
+		firstLegDelays = new double[legsPerDate];
+		secondLegAirports = new Text[legsPerDate];
+		secondLegTimes = new int[legsPerDate];
+		secondLegDelays = new double[legsPerDate];
+		for (int leg = 0; leg < legsPerDate; leg++) {
+			firstLegAirports[leg] = pickAirport(random);
+			firstLegTimes[leg] = random.nextInt(2400);
+			firstLegDelays[leg] = random.nextInt(120) - 20;
+			secondLegAirports[leg] = pickAirport(random);
+			secondLegTimes[leg] = random.nextInt(2400);
+			secondLegDelays[leg] = random.nextInt(120) - 20;
+		}
+	}
+
+	private static Text pickAirport(Random random) {
+		return new Text(CONNECTING_AIRPORTS[Math.min(random.nextInt(CONNECTING_AIRPORTS.length), random.nextInt(CONNECTING_AIRPORTS.length))]);
+	}
+
+	@Benchmark
+	public SumCountWritable joinDate() {
+		twoLegJoin.clear();
+		for (int leg = 0; leg < legsPerDate; leg++) {
+			twoLegJoin.addFirstLeg(firstLegAirports[leg], firstLegTimes[leg], firstLegDelays[leg]);
+			twoLegJoin.addSecondLeg(secondLegAirports[leg], secondLegTimes[leg], secondLegDelays[leg]);
+		}
+		twoLegJoin.join(result);
+		return result;
+	}
+}
@@ -0,0 +1,156 @@
+package com.mapreduce.benchmark.scale;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import com.airline.flight.aggregate.MonthlyDelayReport;
+import com.airline.flight.delay.CarrierPerMonthAverageDelay;
+import com.airline.flight.delay.compute.HCompute;
+import com.airline.flight.delay.compute.HComputeAggregate;
+import com.airline.flight.delay.populate.HPopulate;
+import com.airline.flight.delay.schema.DelayAggregateTable;
+import com.airline.flight.delay.schema.FlightTableSchema;
+import com.mapreduce.common.flight.generate.SyntheticFlightData;
+
+/*
+ * Compares the monthly delays computed inside hbase with the output of the H-COMPUTE map reduce job, on synthetic data
+ * The data is loaded by H-POPULATE into a cluster started in this process, with the aggregation coprocessor
+ * and the aggregate table, then the lines of each of these are compared with the lines of H-COMPUTE:
+ *   secondary-sort : CarrierPerMonthAverageDelay on the input files, the same selection of flights without hbase
+ *   coprocessor : HComputeAggregate.computeMonthlyDelays, the partial aggregates of the DelayAggregationObserver
+ *   aggregate-table : HComputeAggregate.readMonthlyDelays, the aggregates maintained by H-POPULATE
+ *
+ * Options, along with the generator options of SyntheticFlightGenerator and the schema options of H-POPULATE :
+ *   -D flight.synthetic.records=N : Number of records, 100000 by default
+ *   -D hbase.client.scanner.max.result.size=N : Bytes read by each call of the aggregating scanners,
+ *      64 KB by default so that every region is aggregated over several calls
+ *   -D flight.hbase.bulkload=true : Load the data with the bulk load of H-POPULATE
+ *
+ * Prints one line per comparison and the lines that differ, exits with 1 when any comparison differs
+ */
+public class AggregationCheck {
+
+	private static final long DEFAULT_RECORDS = 100000;
+	private static final long DEFAULT_MAX_RESULT_SIZE = 64 * 1024;
+
+	public static void main(String[] args) throws Exception {
+		Configuration conf = new Configuration();
+		String[] otherArgs = new GenericOptionsParser(conf, args).getRemainingArgs();
+
+		if (otherArgs.length != 1) {
+			System.err.println("Usage: AggregationCheck <work directory>");
+			System.exit(2);
+		}
+		File work = new File(otherArgs[0]).getAbsoluteFile();
+
+		//Every job runs in this process, on the local file system
+		conf.set("mapreduce.framework.name", "local");
+		conf.set(FileSystem.FS_DEFAULT_NAME_KEY, "file:///");
+		conf.setLong(SyntheticFlightData.RECORDS, conf.getLong(SyntheticFlightData.RECORDS, DEFAULT_RECORDS));
+		conf.setLong(HConstants.HBASE_CLIENT_SCANNER_MAX_RESULT_SIZE_KEY,
+				conf.getLong(HConstants.HBASE_CLIENT_SCANNER_MAX_RESULT_SIZE_KEY, DEFAULT_MAX_RESULT_SIZE));
+		conf.setBoolean(FlightTableSchema.AGGREGATION_COPROCESSOR, true);
+		conf.setBoolean(DelayAggregateTable.MAINTAIN_AGGREGATES, true);
+
+		FileSystem localFileSystem = FileSystem.getLocal(conf);
+		Path workDirectory = new Path(work.toURI().toString());
+		Path input = new Path(workDirectory, "input");
+		localFileSystem.delete(workDirectory, true);
+		SyntheticFlightData.generate(conf, input);
+
+		Path secondarySortOutput = new Path(workDirectory, "secondarysort");
+		if (!CarrierPerMonthAverageDelay.run(new Configuration(conf), input, secondarySortOutput).isSuccessful()) {
+			System.err.println("A job failed, see its log");
+			System.exit(1);
+		}
+
+		InProcessHBase hBase = new InProcessHBase();
+		boolean same = false;
+		try {
+			Configuration clusterConf = hBase.start(conf, new File(work, "hbase"));
+			if (!populate(new Configuration(clusterConf), input, new Path(workDirectory, "hpopulate"))
+					|| !HCompute.run(new Configuration(clusterConf), new Path(workDirectory, "hcompute")).isSuccessful()) {
+				System.err.println("A job failed, see its log");
+				System.exit(1);
+			}
+
+			TreeSet<String> expected = readLines(localFileSystem, new Path(workDirectory, "hcompute"));
+			same = compare("secondary-sort", expected, readLines(localFileSystem, secondarySortOutput));
+			same &= compare("coprocessor", expected,
+					formatLines(HComputeAggregate.computeMonthlyDelays(clusterConf, HCompute.YEAR_OF_INTEREST)));
+			same &= compare("aggregate-table", expected,
+					formatLines(HComputeAggregate.readMonthlyDelays(clusterConf, HCompute.YEAR_OF_INTEREST)));
+		} finally {
+			hBase.stop();
+		}
+		System.exit(same ? 0 : 1);
+	}
+
+	/*
+	 * Load the input with the per row load of H-POPULATE, or with its bulk load when -D flight.hbase.bulkload=true
+	 */
+	private static boolean populate(Configuration conf, Path input, Path output) throws Exception {
+		if (conf.getBoolean(HPopulate.BULK_LOAD, false)) {
+			return HPopulate.bulkLoad(conf, input, output);
+		}
+		return HPopulate.run(conf, input, output).isSuccessful();
+	}
+
+	/*
+	 * Print the comparison of the lines of a computation with the expected lines, returns whether they are the same
+	 */
+	private static boolean compare(String name, TreeSet<String> expected, TreeSet<String> actual) {
+		boolean same = expected.equals(actual);
+		System.out.println(name + "," + actual.size() + " lines," + (same ? "same" : "different"));
+		for (String line : expected) {
+			if (!actual.contains(line)) {
+				System.out.println("  expected " + line);
+			}
+		}
+		for (String line : actual) {
+			if (!expected.contains(line)) {
+				System.out.println("  actual   " + line);
+			}
+		}
+		return same;
+	}
+
+	/*
+	 * Lines of the part files of a job output, without the empty values of the text output
+	 */
+	private static TreeSet<String> readLines(FileSystem fileSystem, Path output) throws IOException {
+		TreeSet<String> lines = new TreeSet<String>();
+		for (FileStatus partFile : fileSystem.globStatus(new Path(output, "part-r-*"))) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(fileSystem.open(partFile.getPath()), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					lines.add(line.trim());
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		return lines;
+	}
+
+	private static TreeSet<String> formatLines(Map<String, MonthlyDelayReport> monthlyDelays) {
+		TreeSet<String> lines = new TreeSet<String>();
+		for (Map.Entry<String, MonthlyDelayReport> carrierDelays : monthlyDelays.entrySet()) {
+			lines.add(carrierDelays.getValue().format(new Text(carrierDelays.getKey())));
+		}
+		return lines;
+	}
+}
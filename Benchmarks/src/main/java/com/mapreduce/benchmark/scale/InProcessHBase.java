@@ -0,0 +1,54 @@
+package com.mapreduce.benchmark.scale;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.LocalHBaseCluster;
+import org.apache.hadoop.hbase.zookeeper.MiniZooKeeperCluster;
+
+/*
+ * Single master, single region server hbase cluster and zookeeper running in this process,
+ * storing its data on the local file system
+ */
+public class InProcessHBase {
+
+	private MiniZooKeeperCluster zooKeeper;
+	private LocalHBaseCluster cluster;
+	private Configuration conf;
+
+	/*
+	 * Start the cluster with its data under the given directory, returns the configuration of the cluster
+	 */
+	public Configuration start(Configuration baseConf, File directory) throws IOException, InterruptedException {
+		conf = HBaseConfiguration.create(baseConf);
+		zooKeeper = new MiniZooKeeperCluster(conf);
+		int clientPort = zooKeeper.startup(new File(directory, "zookeeper"));
+
+		conf.setInt(HConstants.ZOOKEEPER_CLIENT_PORT, clientPort);
+		conf.set(HConstants.HBASE_DIR, new File(directory, "hbase").toURI().toString());
+		//Ephemeral ports and no web interfaces, a cluster may already be running on the default ports
+		conf.setInt(HConstants.MASTER_PORT, 0);
+		conf.setInt(HConstants.REGIONSERVER_PORT, 0);
+		conf.setInt(HConstants.MASTER_INFO_PORT, -1);
+		conf.setInt(HConstants.REGIONSERVER_INFO_PORT, -1);
+		//The local file system does not support hflush, which the write ahead log checks for by default
+		conf.setBoolean("hbase.unsafe.stream.capability.enforce", false);
+
+		cluster = new LocalHBaseCluster(conf, 1, 1);
+		cluster.startup();
+		return conf;
+	}
+
+	public void stop() throws IOException {
+		if (cluster != null) {
+			cluster.shutdown();
+			cluster.join();
+		}
+		if (zooKeeper != null) {
+			zooKeeper.shutdown();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.mapreduce.benchmark.scale;
+
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import com.mapreduce.common.flight.generate.SyntheticFlightData;
+
+/*
+ * Runs the flight jobs with the local job runner on synthetic data of increasing sizes
+ * For each size the data is generated once under <work>/<records>/input, and every job is run on it
+ * Hbase jobs run against a cluster started in this process for the whole run
+ * 
+ * Options, along with the generator options of SyntheticFlightGenerator (skew, cancelled rate, ...) :
+ *   -D scale.harness.sizes=100000,1000000 : Number of records of each size
+ *   -D scale.harness.jobs=carrier,twoleg,hpopulate,hcompute : Jobs to run, in this order
+ * 
+ * Written to <work>/scale-report.csv, one line per size and job
+ */
+public class ScaleHarness {
+
+	public static final String SIZES = "scale.harness.sizes";
+	public static final String JOBS = "scale.harness.jobs";
+
+	private static final String DEFAULT_SIZES = "100000,1000000";
+	private static final String DEFAULT_JOBS = "carrier,twoleg,hpopulate,hcompute";
+	private static final String REPORT_HEADER = 
+			"records,job,succeeded,seconds,records_per_second,input_mb_per_second,shuffle_bytes,peak_heap_mb";
+
+	private static final double MB = 1024 * 1024;
+
+	public static void main(String[] args) throws Exception {
+		Configuration conf = new Configuration();
+		String[] otherArgs = new GenericOptionsParser(conf, args).getRemainingArgs();
+
+		if (otherArgs.length != 1) {
+			System.err.println("Usage: ScaleHarness <work directory>");
+			System.exit(2);
+		}
+		File work = new File(otherArgs[0]).getAbsoluteFile();
+
+		//Every job runs in this process, on the local file system
+		conf.set("mapreduce.framework.name", "local");
+		conf.set(FileSystem.FS_DEFAULT_NAME_KEY, "file:///");
+
+		List<ScaleJob> jobs = new ArrayList<ScaleJob>();
+		boolean needsHBase = false;
+		for (String name : conf.getTrimmedStrings(JOBS, DEFAULT_JOBS.split(","))) {
+			ScaleJob job = ScaleJob.forName(name);
+			jobs.add(job);
+			needsHBase |= job.needsHBase();
+		}
+
+		InProcessHBase hBase = new InProcessHBase();
+		Configuration clusterConf = needsHBase ? hBase.start(conf, new File(work, "hbase")) : conf;
+		
+		FileSystem localFileSystem = FileSystem.getLocal(conf);
+		Writer report = new OutputStreamWriter(localFileSystem.create(new Path(work.toURI().toString(), "scale-report.csv")), "UTF-8");
+		try {
+			report.write(REPORT_HEADER + "\n");
+			System.out.println(REPORT_HEADER);
+			for (String size : conf.getTrimmedStrings(SIZES, DEFAULT_SIZES.split(","))) {
+				long records = Long.parseLong(size);
+				Configuration sizeConf = new Configuration(clusterConf);
+				sizeConf.setLong(SyntheticFlightData.RECORDS, records);
+				Path sizeDirectory = new Path(new File(work, size).toURI().toString());
+				Path input = new Path(sizeDirectory, "input");
+
+				localFileSystem.delete(sizeDirectory, true);
+				long inputBytes = SyntheticFlightData.generate(sizeConf, input);
+
+				for (ScaleJob job : jobs) {
+					String line = measure(job, new Configuration(sizeConf), input, new Path(sizeDirectory, job.getName()), 
+							records, inputBytes);
+					System.out.println(line);
+					report.write(line + "\n");
+					report.flush();
+				}
+			}
+		} finally {
+			report.close();
+			hBase.stop();
+		}
+	}
+
+	/*
+	 * Run the job and format its report line
+	 * The peak heap covers this whole process, including the other tasks of the job and the in-process hbase cluster
+	 */
+	private static String measure(ScaleJob scaleJob, Configuration conf, Path input, Path output, long records, long inputBytes) 
+			throws Exception {
+		resetPeakHeap();
+		long start = System.nanoTime();
+		Job job = scaleJob.run(conf, input, output);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long peakHeap = getPeakHeap();
+
+		Counters counters = job.getCounters();
+		long shuffleBytes = counters == null ? 0 : counters.findCounter(TaskCounter.REDUCE_SHUFFLE_BYTES).getValue();
+		return records + "," + scaleJob.getName() + "," + job.isSuccessful() + "," + String.format("%.3f", seconds) + "," 
+				+ String.format("%.0f", records / seconds) + "," + String.format("%.2f", inputBytes / MB / seconds) + "," 
+				+ shuffleBytes + "," + String.format("%.1f", peakHeap / MB);
+	}
+
+	private static void resetPeakHeap() {
+		System.gc();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private static long getPeakHeap() {
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peakHeap;
+	}
+}
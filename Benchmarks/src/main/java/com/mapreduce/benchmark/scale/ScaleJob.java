@@ -0,0 +1,65 @@
+package com.mapreduce.benchmark.scale;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+
+import com.airline.flight.delay.CarrierPerMonthAverageDelay;
+import com.airline.flight.delay.compute.HCompute;
+import com.airline.flight.delay.populate.HPopulate;
+import com.search.flights.TwoLegFlightsAverageDelay;
+
+/*
+ * Jobs measured by the scale harness, each returns its completed job for the counters
+ * hcompute reads the table written by the last hpopulate, so it has to follow it
+ */
+public enum ScaleJob {
+
+	CARRIER("carrier", false) {
+		public Job run(Configuration conf, Path input, Path output) throws Exception {
+			return CarrierPerMonthAverageDelay.run(conf, input, output);
+		}
+	},
+	TWO_LEG("twoleg", false) {
+		public Job run(Configuration conf, Path input, Path output) throws Exception {
+			return TwoLegFlightsAverageDelay.runSingleJob(conf, input.toString(), output.toString());
+		}
+	},
+	HPOPULATE("hpopulate", true) {
+		public Job run(Configuration conf, Path input, Path output) throws Exception {
+			return HPopulate.run(conf, input, output);
+		}
+	},
+	HCOMPUTE("hcompute", true) {
+		public Job run(Configuration conf, Path input, Path output) throws Exception {
+			return HCompute.run(conf, output);
+		}
+	};
+
+	private final String name;
+	private final boolean needsHBase;
+
+	private ScaleJob(String name, boolean needsHBase) {
+		this.name = name;
+		this.needsHBase = needsHBase;
+	}
+
+	public abstract Job run(Configuration conf, Path input, Path output) throws Exception;
+
+	public String getName() {
+		return name;
+	}
+
+	public boolean needsHBase() {
+		return needsHBase;
+	}
+
+	public static ScaleJob forName(String name) {
+		for (ScaleJob job : values()) {
+			if (job.name.equals(name)) {
+				return job;
+			}
+		}
+		throw new IllegalArgumentException("Unknown job " + name);
+	}
+}
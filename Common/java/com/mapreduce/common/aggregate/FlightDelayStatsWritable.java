@@ -0,0 +1,105 @@
+package com.mapreduce.common.aggregate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.util.StringUtils;
+
+/*
+ * Partial aggregate of flight delays carrying a quantile sketch along with the sum and count
+ * Used in place of SumCountWritable by the mappers, combiners and reducers when delay percentiles are requested,
+ * so the same jobs report the tail delays with bounded memory and shuffle size
+ */
+public class FlightDelayStatsWritable extends SumCountWritable {
+
+	//Configuration flag adding the delay percentiles to the monthly delay output
+	public static final String PERCENTILES = "flight.delay.percentiles";
+
+	//Percentiles reported for each month
+	public static final double[] REPORTED_QUANTILES = { 0.50, 0.95, 0.99 };
+
+	private QuantileSketch sketch = new QuantileSketch();
+
+	/*
+	 * Empty aggregate of the class selected by the percentiles flag
+	 */
+	public static SumCountWritable newAggregate(boolean percentiles) {
+		return percentiles ? new FlightDelayStatsWritable() : new SumCountWritable();
+	}
+
+	/*
+	 * Map output value class matching the aggregates created by newAggregate
+	 */
+	public static Class<? extends SumCountWritable> getAggregateClass(boolean percentiles) {
+		return percentiles ? FlightDelayStatsWritable.class : SumCountWritable.class;
+	}
+
+	@Override
+	public void add(double value) {
+		super.add(value);
+		sketch.add(value);
+	}
+
+	/*
+	 * Merge another partial aggregate, the sketch only receives the values of other stats aggregates
+	 */
+	@Override
+	public void merge(SumCountWritable other) {
+		super.merge(other);
+		if (other instanceof FlightDelayStatsWritable) {
+			sketch.merge(((FlightDelayStatsWritable) other).sketch);
+		}
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		sketch.reset();
+	}
+
+	/*
+	 * Delay at the given quantile (0 to 1), within 1% of the exact value, NaN if there is no delay
+	 */
+	public double getQuantile(double quantile) {
+		return sketch.getQuantile(quantile);
+	}
+
+	@Override
+	public void readFields(DataInput input) throws IOException {
+		super.readFields(input);
+		sketch.readFields(input);
+	}
+
+	@Override
+	public void write(DataOutput output) throws IOException {
+		super.write(output);
+		sketch.write(output);
+	}
+
+	/*
+	 * Replace the sketch by one encoded with toString
+	 */
+	public void setSketch(String encodedSketch) throws IOException {
+		byte[] sketchBytes = StringUtils.hexStringToByte(encodedSketch);
+		DataInputBuffer input = new DataInputBuffer();
+		input.reset(sketchBytes, sketchBytes.length);
+		sketch.readFields(input);
+	}
+
+	/*
+	 * Tab separated sum, count and hex encoded sketch, as written by TextOutputFormat
+	 */
+	public String toString() {
+		DataOutputBuffer output = new DataOutputBuffer();
+		try {
+			sketch.write(output);
+		} catch (IOException e) {
+			//Writing to memory does not fail
+			throw new IllegalStateException(e);
+		}
+		return super.toString() + "\t" + StringUtils.byteToHexString(output.getData(), 0, output.getLength());
+	}
+}
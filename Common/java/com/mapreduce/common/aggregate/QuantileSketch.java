@@ -0,0 +1,229 @@
+package com.mapreduce.common.aggregate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/*
+ * Mergeable quantile sketch with a relative error guarantee, in the manner of DDSketch
+ * Values are counted in logarithmic buckets, bucket i holds the values in (gamma^(i-1), gamma^i], so any quantile
+ * is returned within 1% of the value of that rank; negative values are counted in a mirrored set of buckets
+ * Memory and serialized size depend on the range of the values, not on their number, and sketches merge by adding buckets
+ */
+public class QuantileSketch implements Writable {
+
+	//Relative accuracy of the quantiles, fixed so that all the sketches of a job can be merged
+	public static final double RELATIVE_ACCURACY = 0.01;
+
+	//Values closer to zero than this are counted as zero
+	private static final double MIN_INDEXABLE_VALUE = 1e-6;
+
+	//Buckets kept for each sign, the buckets closest to zero are collapsed beyond this, covering 1e-6 to 1e+11 at 1%
+	private static final int MAX_BUCKETS = 2048;
+
+	private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+	private static final double LOG_GAMMA = Math.log(GAMMA);
+
+	private final BucketStore positiveBuckets = new BucketStore();
+	private final BucketStore negativeBuckets = new BucketStore();
+	private long zeroCount;
+
+	public void add(double value) {
+		if (value > MIN_INDEXABLE_VALUE) {
+			positiveBuckets.add(getIndex(value), 1);
+		} else if (value < -MIN_INDEXABLE_VALUE) {
+			negativeBuckets.add(getIndex(-value), 1);
+		} else {
+			zeroCount++;
+		}
+	}
+
+	/*
+	 * Merge another sketch into this sketch
+	 */
+	public void merge(QuantileSketch other) {
+		positiveBuckets.merge(other.positiveBuckets);
+		negativeBuckets.merge(other.negativeBuckets);
+		zeroCount += other.zeroCount;
+	}
+
+	public void reset() {
+		positiveBuckets.clear();
+		negativeBuckets.clear();
+		zeroCount = 0;
+	}
+
+	public long getCount() {
+		return negativeBuckets.total + zeroCount + positiveBuckets.total;
+	}
+
+	/*
+	 * Value at the given quantile (0 to 1) of the values added, NaN if the sketch is empty
+	 */
+	public double getQuantile(double quantile) {
+		long count = getCount();
+		if (count == 0) {
+			return Double.NaN;
+		}
+		long rank = (long) (Math.max(0, Math.min(1, quantile)) * (count - 1));
+
+		//Negative values in increasing order are the mirrored buckets from the largest magnitude down
+		if (rank < negativeBuckets.total) {
+			long seen = 0;
+			for (int index = negativeBuckets.maxIndex; index >= negativeBuckets.minIndex; index--) {
+				seen += negativeBuckets.get(index);
+				if (seen > rank) {
+					return -getValue(index);
+				}
+			}
+		}
+		rank -= negativeBuckets.total;
+		if (rank < zeroCount) {
+			return 0;
+		}
+		rank -= zeroCount;
+		long seen = 0;
+		for (int index = positiveBuckets.minIndex; index <= positiveBuckets.maxIndex; index++) {
+			seen += positiveBuckets.get(index);
+			if (seen > rank) {
+				return getValue(index);
+			}
+		}
+		return getValue(positiveBuckets.maxIndex);
+	}
+
+	private static int getIndex(double value) {
+		return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+	}
+
+	/*
+	 * Value returned for a bucket, within the relative accuracy of every value in the bucket
+	 */
+	private static double getValue(int index) {
+		return Math.pow(GAMMA, index - 1) * (1 + RELATIVE_ACCURACY);
+	}
+
+	@Override
+	public void write(DataOutput output) throws IOException {
+		WritableUtils.writeVLong(output, zeroCount);
+		positiveBuckets.write(output);
+		negativeBuckets.write(output);
+	}
+
+	@Override
+	public void readFields(DataInput input) throws IOException {
+		zeroCount = WritableUtils.readVLong(input);
+		positiveBuckets.readFields(input);
+		negativeBuckets.readFields(input);
+	}
+
+	/*
+	 * Counts of a contiguous range of bucket indexes, grown as values arrive
+	 * When the range would exceed MAX_BUCKETS, the lowest buckets are collapsed into the lowest bucket kept
+	 */
+	private static class BucketStore {
+
+		private static final long[] NO_COUNTS = new long[0];
+
+		//counts[i] is the count of bucket offset + i
+		private long[] counts = NO_COUNTS;
+		private int offset;
+
+		//Lowest and highest bucket with a count, valid only when total > 0
+		private int minIndex;
+		private int maxIndex;
+		private long total;
+
+		long get(int index) {
+			return counts[index - offset];
+		}
+
+		void add(int index, long count) {
+			if (count == 0) {
+				return;
+			}
+			if (total == 0) {
+				minIndex = index;
+				maxIndex = index;
+			}
+			int low = Math.min(minIndex, index);
+			int high = Math.max(maxIndex, index);
+			if (high - low >= MAX_BUCKETS) {
+				low = high - MAX_BUCKETS + 1;
+			}
+			if (low < offset || high >= offset + counts.length || low > minIndex) {
+				resize(low, high);
+			}
+			counts[Math.max(index, low) - offset] += count;
+			total += count;
+			minIndex = low;
+			maxIndex = high;
+		}
+
+		void merge(BucketStore other) {
+			for (int index = other.minIndex; other.total > 0 && index <= other.maxIndex; index++) {
+				add(index, other.get(index));
+			}
+		}
+
+		void clear() {
+			Arrays.fill(counts, 0);
+			total = 0;
+		}
+
+		/*
+		 * Reallocate the counts to cover the given range with some room on both sides,
+		 * the counts of buckets below the range are added to its lowest bucket
+		 */
+		private void resize(int low, int high) {
+			int slack = (high - low) / 2 + 16;
+			long[] resized = new long[high - low + 1 + 2 * slack];
+			int resizedOffset = low - slack;
+			for (int index = minIndex; total > 0 && index <= maxIndex; index++) {
+				resized[Math.max(index, low) - resizedOffset] += get(index);
+			}
+			counts = resized;
+			offset = resizedOffset;
+		}
+
+		/*
+		 * Number of buckets, lowest bucket and the count of each bucket from the lowest to the highest
+		 */
+		void write(DataOutput output) throws IOException {
+			if (total == 0) {
+				WritableUtils.writeVInt(output, 0);
+				return;
+			}
+			WritableUtils.writeVInt(output, maxIndex - minIndex + 1);
+			WritableUtils.writeVInt(output, minIndex);
+			for (int index = minIndex; index <= maxIndex; index++) {
+				WritableUtils.writeVLong(output, get(index));
+			}
+		}
+
+		void readFields(DataInput input) throws IOException {
+			int buckets = WritableUtils.readVInt(input);
+			total = 0;
+			if (buckets == 0) {
+				Arrays.fill(counts, 0);
+				return;
+			}
+			minIndex = WritableUtils.readVInt(input);
+			maxIndex = minIndex + buckets - 1;
+			if (counts.length < buckets) {
+				counts = new long[buckets];
+			} else {
+				Arrays.fill(counts, 0);
+			}
+			offset = minIndex;
+			for (int bucket = 0; bucket < buckets; bucket++) {
+				counts[bucket] = WritableUtils.readVLong(input);
+				total += counts[bucket];
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.mapreduce.common.aggregate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/*
+ * Mergeable partial aggregate of a sum and the count of values that were summed
+ * Partial aggregates from mappers and combiners can be merged in any order, the average is computed only at the end
+ */
+public class SumCountWritable implements Writable {
+	
+	private double sum;
+	private long count;
+	
+	/*
+	 * Default constructor
+	 */
+	public SumCountWritable() {
+	}
+	
+	/*
+	 * Constructor expecting sum and count
+	 */
+	public SumCountWritable(double sum, long count) {
+		set(sum, count);
+	}
+	
+	/*
+	 * Add a single value to the aggregate
+	 */
+	public void add(double value) {
+		this.sum += value;
+		this.count++;
+	}
+	
+	/*
+	 * Merge another partial aggregate into this aggregate
+	 */
+	public void merge(SumCountWritable other) {
+		this.sum += other.getSum();
+		this.count += other.getCount();
+	}
+	
+	public void set(double sum, long count) {
+		this.sum = sum;
+		this.count = count;
+	}
+	
+	public void reset() {
+		set(0, 0);
+	}
+	
+	/*
+	 * Average of all the values in the aggregate, NaN if the aggregate is empty
+	 */
+	public double getAverage() {
+		return sum / count;
+	}
+
+	@Override
+	public void readFields(DataInput input) throws IOException {
+		this.sum = input.readDouble();
+		this.count = WritableUtils.readVLong(input);
+	}
+
+	@Override
+	public void write(DataOutput output) throws IOException {
+		output.writeDouble(sum);
+		WritableUtils.writeVLong(output, count);
+	}
+	
+	/*
+	 * Tab separated sum and count, as written by TextOutputFormat
+	 */
+	public String toString() {
+		return sum + "\t" + count;
+	}
+
+	public double getSum() {
+		return sum;
+	}
+
+	public long getCount() {
+		return count;
+	}
+}
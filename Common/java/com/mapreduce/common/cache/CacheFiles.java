@@ -0,0 +1,55 @@
+package com.mapreduce.common.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+
+/*
+ * Small side files shipped to every task of a job through the distributed cache, under a name of their own
+ * A task finds the file linked into its working directory, or opens it at its original path when it is not linked,
+ * as with the local job runner
+ */
+public class CacheFiles {
+
+	private CacheFiles() {
+	}
+
+	/*
+	 * Ship the file at the given path to the tasks of the job, under the given name
+	 */
+	public static void add(Job job, Path path, String name) throws IOException {
+		URI fileURI = path.getFileSystem(job.getConfiguration()).makeQualified(path).toUri();
+		try {
+			job.addCacheFile(new URI(fileURI.getScheme(), fileURI.getAuthority(), fileURI.getPath(), null, name));
+		} catch (URISyntaxException e) {
+			throw new IOException("Invalid cache file path " + path, e);
+		}
+	}
+
+	/*
+	 * Open the file shipped to the task under the given name
+	 */
+	public static InputStream open(JobContext context, String name) throws IOException {
+		URI[] cacheFiles = context.getCacheFiles();
+		for (int index = 0; cacheFiles != null && index < cacheFiles.length; index++) {
+			if (!name.equals(cacheFiles[index].getFragment())) {
+				continue;
+			}
+			File link = new File(name);
+			if (link.isFile()) {
+				return new FileInputStream(link);
+			}
+			URI fileURI = cacheFiles[index];
+			Path path = new Path(fileURI.getScheme(), fileURI.getAuthority(), fileURI.getPath());
+			return path.getFileSystem(context.getConfiguration()).open(path);
+		}
+		throw new IOException("File " + name + " is not in the distributed cache of the job");
+	}
+}
@@ -0,0 +1,306 @@
+package com.mapreduce.common.csv;
+
+import java.nio.charset.Charset;
+
+import org.apache.hadoop.io.Text;
+
+/*
+ * Reusable scanner for delimited records, working directly on the bytes of a Text
+ * Only the start and end offsets of each field are recorded, fields are never copied into Strings
+ * Scanning stops after the last field needed by the caller, the rest of the record is never looked at
+ * 
+ * Quoted fields are supported, the offsets of a quoted field exclude the enclosing quotes
+ * Escaped quotes ("") inside a quoted field are left as is, none of the airline columns contain them
+ */
+public class CSVFieldScanner {
+	
+	//Last field index to scan all the fields of a record
+	public static final int ALL_FIELDS = Integer.MAX_VALUE;
+	
+	private static final byte QUOTE = '"';
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	//Largest power of ten, for which long to double conversion and division are exact
+	private static final int MAX_EXACT_POWER_OF_TEN = 22;
+	private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER_OF_TEN + 1];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int power = 1; power <= MAX_EXACT_POWER_OF_TEN; power++) {
+			POWERS_OF_TEN[power] = POWERS_OF_TEN[power - 1] * 10;
+		}
+	}
+	
+	private final byte delimiter;
+	private final int lastFieldIndex;
+	
+	//Whether fields may be quoted, plain delimited files such as Hive and Pig tables treat quotes as data
+	private final boolean quoted;
+	
+	//Offsets of the fields of the current record, end offset is exclusive
+	private int[] fieldStarts;
+	private int[] fieldEnds;
+	private int fieldCount;
+	private byte[] bytes;
+	
+	/*
+	 * Scanner for comma separated records, stopping after the given field index
+	 */
+	public CSVFieldScanner(int lastFieldIndex) {
+		this(lastFieldIndex, ',');
+	}
+	
+	/*
+	 * Scanner for records separated by the given delimiter, stopping after the given field index
+	 */
+	public CSVFieldScanner(int lastFieldIndex, char delimiter) {
+		this(lastFieldIndex, delimiter, true);
+	}
+	
+	/*
+	 * Scanner for records separated by the given delimiter, with or without quoted fields, stopping after the given field index
+	 */
+	public CSVFieldScanner(int lastFieldIndex, char delimiter, boolean quoted) {
+		this.lastFieldIndex = lastFieldIndex;
+		this.delimiter = (byte) delimiter;
+		this.quoted = quoted;
+		int initialCapacity = lastFieldIndex == ALL_FIELDS ? 64 : lastFieldIndex + 1;
+		this.fieldStarts = new int[initialCapacity];
+		this.fieldEnds = new int[initialCapacity];
+	}
+	
+	/*
+	 * Scanner for comma separated records projecting only the given field indexes
+	 */
+	public static CSVFieldScanner forFields(int... fieldIndexes) {
+		int lastFieldIndex = 0;
+		for (int fieldIndex : fieldIndexes) {
+			lastFieldIndex = Math.max(lastFieldIndex, fieldIndex);
+		}
+		return new CSVFieldScanner(lastFieldIndex);
+	}
+	
+	/*
+	 * Scan the given record, returns the number of fields found up to the last field index
+	 * Offsets stay valid until the next call to scan, or until the record is modified
+	 */
+	public int scan(Text record) {
+		return scan(record.getBytes(), 0, record.getLength());
+	}
+	
+	/*
+	 * Scan the record in the given range of bytes, returns the number of fields found up to the last field index
+	 */
+	public int scan(byte[] recordBytes, int offset, int length) {
+		this.bytes = recordBytes;
+		this.fieldCount = 0;
+		
+		int end = offset + length;
+		int position = offset;
+		while (fieldCount <= lastFieldIndex) {
+			int fieldStart = position;
+			int fieldEnd;
+			
+			if (quoted && position < end && recordBytes[position] == QUOTE) {
+				//Quoted field, ends at the first quote that is not followed by another quote
+				fieldStart = ++position;
+				while (position < end && 
+						!(recordBytes[position] == QUOTE && (position + 1 >= end || recordBytes[position + 1] != QUOTE))) {
+					position += recordBytes[position] == QUOTE ? 2 : 1;
+				}
+				fieldEnd = Math.min(position, end);
+				
+				//Skip anything between the closing quote and the delimiter
+				while (position < end && recordBytes[position] != delimiter) {
+					position++;
+				}
+			} else {
+				while (position < end && recordBytes[position] != delimiter) {
+					position++;
+				}
+				fieldEnd = position;
+			}
+			
+			addField(fieldStart, fieldEnd);
+			if (position >= end) {
+				break;
+			}
+			//Skip the delimiter
+			position++;
+		}
+		return fieldCount;
+	}
+	
+	/*
+	 * Number of fields found in the current record, never more than the last field index + 1
+	 */
+	public int getFieldCount() {
+		return fieldCount;
+	}
+	
+	public boolean hasField(int fieldIndex) {
+		return fieldIndex < fieldCount;
+	}
+	
+	public boolean isEmpty(int fieldIndex) {
+		return getLength(fieldIndex) == 0;
+	}
+	
+	public byte[] getBytes() {
+		return bytes;
+	}
+	
+	public int getStart(int fieldIndex) {
+		checkField(fieldIndex);
+		return fieldStarts[fieldIndex];
+	}
+	
+	public int getLength(int fieldIndex) {
+		checkField(fieldIndex);
+		return fieldEnds[fieldIndex] - fieldStarts[fieldIndex];
+	}
+	
+	/*
+	 * Compare the field with the given bytes, without copying the field
+	 */
+	public boolean equals(int fieldIndex, byte[] expected) {
+		int length = getLength(fieldIndex);
+		if (length != expected.length) {
+			return false;
+		}
+		int start = fieldStarts[fieldIndex];
+		for (int index = 0; index < length; index++) {
+			if (bytes[start + index] != expected[index]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/*
+	 * Parse the field as an int, throws NumberFormatException for an empty or non numeric field
+	 */
+	public int getInt(int fieldIndex) {
+		long value = getLong(fieldIndex);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Value out of int range: " + getString(fieldIndex));
+		}
+		return (int) value;
+	}
+	
+	/*
+	 * Parse the field as a long, throws NumberFormatException for an empty or non numeric field
+	 */
+	public long getLong(int fieldIndex) {
+		int position = getStart(fieldIndex);
+		int end = fieldEnds[fieldIndex];
+		
+		boolean negative = false;
+		if (position < end && (bytes[position] == '-' || bytes[position] == '+')) {
+			negative = bytes[position] == '-';
+			position++;
+		}
+		if (position == end || end - position > 18) {
+			//Empty, or too many digits to accumulate without overflow
+			return Long.parseLong(getString(fieldIndex));
+		}
+		
+		long value = 0;
+		for (; position < end; position++) {
+			int digit = bytes[position] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("For input string: \"" + getString(fieldIndex) + "\"");
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+	
+	/*
+	 * Parse the field as a double, throws NumberFormatException for an empty or non numeric field
+	 * Plain decimals like -12.50 are parsed from the bytes, anything else falls back to Double.parseDouble
+	 */
+	public double getDouble(int fieldIndex) {
+		int position = getStart(fieldIndex);
+		int end = fieldEnds[fieldIndex];
+		
+		boolean negative = false;
+		if (position < end && (bytes[position] == '-' || bytes[position] == '+')) {
+			negative = bytes[position] == '-';
+			position++;
+		}
+		
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean fraction = false;
+		for (; position < end; position++) {
+			byte current = bytes[position];
+			if (current == '.' && !fraction) {
+				fraction = true;
+				continue;
+			}
+			int digit = current - '0';
+			if (digit < 0 || digit > 9 || digits >= 15) {
+				//Exponent, special values or too many digits for an exact conversion
+				return Double.parseDouble(getString(fieldIndex));
+			}
+			mantissa = mantissa * 10 + digit;
+			digits++;
+			if (fraction) {
+				fractionDigits++;
+			}
+		}
+		if (digits == 0) {
+			return Double.parseDouble(getString(fieldIndex));
+		}
+		
+		//Both operands are exact, so a single division rounds correctly like Double.parseDouble
+		double value = mantissa / POWERS_OF_TEN[fractionDigits];
+		return negative ? -value : value;
+	}
+	
+	/*
+	 * Copy the field into the given Text, reusing its buffer
+	 */
+	public void getText(int fieldIndex, Text target) {
+		target.set(bytes, getStart(fieldIndex), getLength(fieldIndex));
+	}
+	
+	/*
+	 * Copy of the bytes of the field
+	 */
+	public byte[] copyField(int fieldIndex) {
+		int start = getStart(fieldIndex);
+		byte[] field = new byte[getLength(fieldIndex)];
+		System.arraycopy(bytes, start, field, 0, field.length);
+		return field;
+	}
+	
+	/*
+	 * Field as a String, allocates, only meant for rarely used fields and error messages
+	 */
+	public String getString(int fieldIndex) {
+		return new String(bytes, getStart(fieldIndex), getLength(fieldIndex), UTF8);
+	}
+	
+	private void addField(int start, int end) {
+		if (fieldCount == fieldStarts.length) {
+			int capacity = fieldStarts.length * 2;
+			int[] starts = new int[capacity];
+			int[] ends = new int[capacity];
+			System.arraycopy(fieldStarts, 0, starts, 0, fieldCount);
+			System.arraycopy(fieldEnds, 0, ends, 0, fieldCount);
+			fieldStarts = starts;
+			fieldEnds = ends;
+		}
+		fieldStarts[fieldCount] = start;
+		fieldEnds[fieldCount] = end;
+		fieldCount++;
+	}
+	
+	private void checkField(int fieldIndex) {
+		if (fieldIndex >= fieldCount) {
+			throw new ArrayIndexOutOfBoundsException("Field " + fieldIndex + " not found, record has " + fieldCount + " fields");
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package com.mapreduce.common.dictionary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.util.LineReader;
+
+import com.mapreduce.common.cache.CacheFiles;
+
+/*
+ * Dense int ids of the distinct values of a field, such as carrier or airport codes
+ * The dictionary file holds one value per line in increasing byte order, as written by DictionaryBuilder,
+ * and the id of a value is its line number, so ids sort in the same order as the values they stand for
+ * Jobs ship the file to their tasks through the distributed cache, mappers emit ids and reducers decode them at output time
+ */
+public class Dictionary {
+
+	//Values by id, in increasing byte order
+	private final Text[] values;
+
+	private Dictionary(Text[] values) {
+		this.values = values;
+	}
+
+	/*
+	 * Read the dictionary file at the given path
+	 */
+	public static Dictionary read(Configuration conf, Path path) throws IOException {
+		InputStream input = path.getFileSystem(conf).open(path);
+		try {
+			return read(input, path.toString());
+		} finally {
+			input.close();
+		}
+	}
+
+	/*
+	 * Ship the dictionary file at the given path to the tasks of the job, under the given name
+	 */
+	public static void addToCache(Job job, Path path, String name) throws IOException {
+		CacheFiles.add(job, path, name);
+	}
+
+	/*
+	 * Read the dictionary shipped to the task under the given name
+	 */
+	public static Dictionary fromCache(JobContext context, String name) throws IOException {
+		InputStream input = CacheFiles.open(context, name);
+		try {
+			return read(input, name);
+		} finally {
+			input.close();
+		}
+	}
+
+	private static Dictionary read(InputStream input, String source) throws IOException {
+		List<Text> values = new ArrayList<Text>();
+		LineReader reader = new LineReader(input);
+		Text value = new Text();
+		while (reader.readLine(value) > 0) {
+			//Ids are found by binary search, a dictionary out of order would return wrong ids
+			if (!values.isEmpty() && values.get(values.size() - 1).compareTo(value) >= 0) {
+				throw new IOException("Dictionary " + source + " is not sorted, or repeats " + value);
+			}
+			values.add(value);
+			value = new Text();
+		}
+		return new Dictionary(values.toArray(new Text[values.size()]));
+	}
+
+	public int size() {
+		return values.length;
+	}
+
+	/*
+	 * Id of the value held in the given bytes, -1 if the value is not in the dictionary
+	 */
+	public int getId(byte[] bytes, int start, int length) {
+		int low = 0;
+		int high = values.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = WritableComparator.compareBytes(values[middle].getBytes(), 0, values[middle].getLength(),
+					bytes, start, length);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	public int getId(Text value) {
+		return getId(value.getBytes(), 0, value.getLength());
+	}
+
+	/*
+	 * Value of the given id, shared by all the callers and not to be modified
+	 */
+	public Text getValue(int id) {
+		return values[id];
+	}
+}
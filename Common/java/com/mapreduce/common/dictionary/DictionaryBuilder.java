@@ -0,0 +1,122 @@
+package com.mapreduce.common.dictionary;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import com.mapreduce.common.csv.CSVFieldScanner;
+
+/*
+ * Pre-pass writing the dictionary file of the distinct values of some fields of the input
+ * Mappers emit the values, a combiner removes the duplicates of each map task and a single reducer
+ * writes each distinct value once, in the byte order of the shuffle sort, which is the order Dictionary expects
+ */
+public class DictionaryBuilder {
+
+	//Comma separated indexes of the csv fields whose values are collected by FieldValueMapper
+	public static final String FIELDS = "dictionary.fields";
+	
+	//Field delimiter of the input records, a comma by default; only comma separated fields may be quoted
+	public static final String DELIMITER = "dictionary.delimiter";
+
+	/*
+	 * Emits the non empty values of the configured csv fields of each record
+	 */
+	public static class FieldValueMapper extends Mapper<Object, Text, Text, NullWritable> {
+
+		private int[] fieldIndexes;
+		private CSVFieldScanner scanner;
+		private Text fieldValue = new Text();
+
+		protected void setup(Context context) {
+			fieldIndexes = context.getConfiguration().getInts(FIELDS);
+			int lastFieldIndex = 0;
+			for (int fieldIndex : fieldIndexes) {
+				lastFieldIndex = Math.max(lastFieldIndex, fieldIndex);
+			}
+			char delimiter = context.getConfiguration().get(DELIMITER, ",").charAt(0);
+			scanner = new CSVFieldScanner(lastFieldIndex, delimiter, delimiter == ',');
+		}
+
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+			scanner.scan(value);
+			for (int fieldIndex : fieldIndexes) {
+				if (scanner.hasField(fieldIndex) && !scanner.isEmpty(fieldIndex)) {
+					scanner.getText(fieldIndex, fieldValue);
+					context.write(fieldValue, NullWritable.get());
+				}
+			}
+		}
+	}
+
+	/*
+	 * Combiner and reducer, each distinct value is written once
+	 */
+	public static class DistinctValueReducer extends Reducer<Text, NullWritable, Text, NullWritable> {
+
+		public void reduce(Text key, Iterable<NullWritable> values, Context context) throws IOException, InterruptedException {
+			context.write(key, NullWritable.get());
+		}
+	}
+
+	/*
+	 * Write the dictionary of the values emitted by the given mapper over the input, returns the completed job
+	 * The dictionary replaces the file at the given path only once the job has succeeded
+	 */
+	@SuppressWarnings("rawtypes")
+	public static Job build(Configuration conf, Path input, Path dictionary, Class<? extends Mapper> valueMapper) throws Exception {
+		Path buildOutput = new Path(dictionary.getParent(), "_" + dictionary.getName() + "-build");
+
+		Job dictionaryJob = new Job(conf, "Build Dictionary " + dictionary.getName());
+		dictionaryJob.setJarByClass(DictionaryBuilder.class);
+		dictionaryJob.setMapperClass(valueMapper);
+		dictionaryJob.setCombinerClass(DistinctValueReducer.class);
+		dictionaryJob.setReducerClass(DistinctValueReducer.class);
+		dictionaryJob.setOutputKeyClass(Text.class);
+		dictionaryJob.setOutputValueClass(NullWritable.class);
+		dictionaryJob.setOutputFormatClass(TextOutputFormat.class);
+
+		//A single sorted file, the values are few compared to the records
+		dictionaryJob.setNumReduceTasks(1);
+		FileInputFormat.addInputPath(dictionaryJob, input);
+		
+		//Date partitioned input keeps its files in year and month directories
+		FileInputFormat.setInputDirRecursive(dictionaryJob, true);
+		FileOutputFormat.setOutputPath(dictionaryJob, buildOutput);
+
+		if (dictionaryJob.waitForCompletion(true)) {
+			FileSystem fileSystem = dictionary.getFileSystem(conf);
+			fileSystem.delete(dictionary, false);
+			if (!fileSystem.rename(new Path(buildOutput, "part-r-00000"), dictionary)) {
+				throw new IOException("Could not move the dictionary built in " + buildOutput + " to " + dictionary);
+			}
+			fileSystem.delete(buildOutput, true);
+		}
+		return dictionaryJob;
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		Configuration dictionaryConf = new Configuration();
+		String[] otherArgs = new GenericOptionsParser(dictionaryConf, args).getRemainingArgs();
+
+		if (otherArgs.length != 2 || dictionaryConf.get(FIELDS) == null) {
+			System.err.println("Usage: DictionaryBuilder -D " + FIELDS + "=<index,...> <in> <dictionary>");
+			System.exit(2);
+		}
+
+		Job dictionaryJob = build(dictionaryConf, new Path(otherArgs[0]), new Path(otherArgs[1]), FieldValueMapper.class);
+		System.exit(dictionaryJob.isSuccessful() ? 0 : 1);
+	}
+}
@@ -0,0 +1,72 @@
+package com.mapreduce.common.flight.columnar;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import com.mapreduce.common.csv.CSVFieldScanner;
+
+/*
+ * One time conversion of the airline csv data into the columnar airline format
+ */
+public class ColumnarFlightData {
+	
+	/*
+	 * Records that could not be converted, like the csv header
+	 */
+	public static enum ConversionCounters {
+		UNCONVERTED_RECORDS
+	}
+	
+	/*
+	 * Map only, converts each csv record into a typed columnar record
+	 */
+	public static class ColumnarFlightMapper extends Mapper<Object, Text, NullWritable, ColumnarFlightRecord> {
+		
+		private CSVFieldScanner scanner = new CSVFieldScanner(FlightColumn.lastCsvIndex());
+		private ColumnarFlightRecord flight = new ColumnarFlightRecord();
+		
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+			try {
+				scanner.scan(value);
+				flight.set(scanner);
+			} catch (NumberFormatException malformedRecord) {
+				context.getCounter(ConversionCounters.UNCONVERTED_RECORDS).increment(1);
+				return;
+			}
+			context.write(NullWritable.get(), flight);
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		
+		Configuration conversionConf = new Configuration();
+		String[] otherArgs = new GenericOptionsParser(conversionConf, args).getRemainingArgs();
+		
+		if (otherArgs.length != 2) {
+			System.err.println("Usage: ColumnarFlightData <in> <out>");
+			System.exit(2);
+		}
+		
+		Job conversionJob = new Job(conversionConf, "Convert Flight Data To Columnar Format");
+		conversionJob.setJarByClass(ColumnarFlightData.class);
+		conversionJob.setMapperClass(ColumnarFlightMapper.class);
+		conversionJob.setOutputKeyClass(NullWritable.class);
+		conversionJob.setOutputValueClass(ColumnarFlightRecord.class);
+		conversionJob.setOutputFormatClass(ColumnarFlightOutputFormat.class);
+		conversionJob.setNumReduceTasks(0);
+		
+		FileInputFormat.addInputPath(conversionJob, new Path(otherArgs[0]));
+		FileOutputFormat.setOutputPath(conversionJob, new Path(otherArgs[1]));
+		
+		System.exit(conversionJob.waitForCompletion(true) ? 0 : 1);
+	}
+}
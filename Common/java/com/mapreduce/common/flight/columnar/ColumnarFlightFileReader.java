@@ -0,0 +1,208 @@
+package com.mapreduce.common.flight.columnar;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+/*
+ * Reads flights from a file in the columnar airline format, see ColumnarFlightFileWriter for the layout
+ * Only the projected columns are decoded, the chunks of other columns are skipped without being read
+ * Blocks whose statistics do not overlap the range of every filtered column are skipped as a whole
+ */
+public class ColumnarFlightFileReader implements Closeable {
+	
+	private static final FlightColumn[] COLUMNS = FlightColumn.values();
+	
+	private final FSDataInputStream input;
+	private final long fileLength;
+	private final boolean[] projected;
+	
+	//Inclusive range of each filtered column, null for a column without filter
+	private final double[][] ranges;
+	
+	private int blockRows;
+	private long blocksRead;
+	private long blocksSkipped;
+	private long rowsSkipped;
+	
+	//Decoded values of the projected columns of the current block
+	private int[][] intColumns = new int[COLUMNS.length][];
+	private float[][] floatColumns = new float[COLUMNS.length][];
+	private char[][] dictionaryCodes = new char[COLUMNS.length][];
+	private Text[][] dictionaries = new Text[COLUMNS.length][];
+	
+	private byte[] chunk = new byte[0];
+	private DataInputBuffer chunkInput = new DataInputBuffer();
+	
+	/*
+	 * projected : Whether each column, by ordinal, is decoded
+	 * ranges : Inclusive [min, max] of each column, by ordinal, null if the column is not filtered
+	 */
+	public ColumnarFlightFileReader(FSDataInputStream input, long fileLength, boolean[] projected, double[][] ranges) 
+			throws IOException {
+		this.input = input;
+		this.fileLength = fileLength;
+		this.projected = projected;
+		this.ranges = ranges;
+		
+		byte[] magic = new byte[ColumnarFlightFileWriter.MAGIC.length];
+		input.readFully(magic);
+		if (!Arrays.equals(magic, ColumnarFlightFileWriter.MAGIC)) {
+			throw new IOException("Not a columnar flight file");
+		}
+	}
+	
+	/*
+	 * Move to the next block matching the filters, returns false at the end of the file
+	 */
+	public boolean nextBlock() throws IOException {
+		while (input.getPos() < fileLength) {
+			int rowCount = input.readInt();
+			int blockLength = input.readInt();
+			long blockEnd = input.getPos() + blockLength;
+			
+			if (!matchesStatistics()) {
+				input.seek(blockEnd);
+				blocksSkipped++;
+				rowsSkipped += rowCount;
+				continue;
+			}
+			
+			blockRows = rowCount;
+			for (FlightColumn column : COLUMNS) {
+				int chunkLength = input.readInt();
+				if (projected[column.ordinal()]) {
+					readChunk(column, chunkLength);
+				} else {
+					input.seek(input.getPos() + chunkLength);
+				}
+			}
+			blocksRead++;
+			return true;
+		}
+		return false;
+	}
+	
+	/*
+	 * Number of rows in the current block
+	 */
+	public int getBlockRows() {
+		return blockRows;
+	}
+	
+	/*
+	 * Set the projected columns of the given row of the current block into the flight
+	 */
+	public void readRow(int row, ColumnarFlightRecord flight) {
+		for (FlightColumn column : COLUMNS) {
+			if (!projected[column.ordinal()]) {
+				continue;
+			}
+			switch (column.getType()) {
+			case INT:
+				flight.setInt(column, intColumns[column.ordinal()][row]);
+				break;
+			case FLOAT:
+				flight.setFloat(column, floatColumns[column.ordinal()][row]);
+				break;
+			case DICTIONARY:
+				flight.getText(column).set(dictionaries[column.ordinal()][dictionaryCodes[column.ordinal()][row]]);
+				break;
+			}
+		}
+	}
+	
+	/*
+	 * Fraction of the file read so far
+	 */
+	public float getProgress() throws IOException {
+		return fileLength == 0 ? 1 : Math.min(1, input.getPos() / (float) fileLength);
+	}
+	
+	public long getBlocksRead() {
+		return blocksRead;
+	}
+	
+	public long getBlocksSkipped() {
+		return blocksSkipped;
+	}
+	
+	public long getRowsSkipped() {
+		return rowsSkipped;
+	}
+	
+	public void close() throws IOException {
+		input.close();
+	}
+	
+	/*
+	 * Read the statistics of the block, true if every filtered column may have a value within its range
+	 */
+	private boolean matchesStatistics() throws IOException {
+		boolean matches = true;
+		for (FlightColumn column : COLUMNS) {
+			double min;
+			double max;
+			if (column.getType() == FlightColumn.ColumnType.INT) {
+				min = input.readInt();
+				max = input.readInt();
+			} else if (column.getType() == FlightColumn.ColumnType.FLOAT) {
+				min = input.readFloat();
+				max = input.readFloat();
+			} else {
+				continue;
+			}
+			double[] range = ranges[column.ordinal()];
+			if (range != null && (max < range[0] || min > range[1])) {
+				matches = false;
+			}
+		}
+		return matches;
+	}
+	
+	private void readChunk(FlightColumn column, int chunkLength) throws IOException {
+		if (chunk.length < chunkLength) {
+			chunk = new byte[chunkLength];
+		}
+		input.readFully(chunk, 0, chunkLength);
+		int ordinal = column.ordinal();
+		
+		switch (column.getType()) {
+		case INT:
+			if (intColumns[ordinal] == null || intColumns[ordinal].length < blockRows) {
+				intColumns[ordinal] = new int[blockRows];
+			}
+			ByteBuffer.wrap(chunk, 0, chunkLength).asIntBuffer().get(intColumns[ordinal], 0, blockRows);
+			break;
+		case FLOAT:
+			if (floatColumns[ordinal] == null || floatColumns[ordinal].length < blockRows) {
+				floatColumns[ordinal] = new float[blockRows];
+			}
+			ByteBuffer.wrap(chunk, 0, chunkLength).asFloatBuffer().get(floatColumns[ordinal], 0, blockRows);
+			break;
+		case DICTIONARY:
+			chunkInput.reset(chunk, chunkLength);
+			int dictionarySize = WritableUtils.readVInt(chunkInput);
+			Text[] dictionary = new Text[dictionarySize];
+			for (int code = 0; code < dictionarySize; code++) {
+				dictionary[code] = new Text();
+				dictionary[code].readFields(chunkInput);
+			}
+			dictionaries[ordinal] = dictionary;
+			
+			if (dictionaryCodes[ordinal] == null || dictionaryCodes[ordinal].length < blockRows) {
+				dictionaryCodes[ordinal] = new char[blockRows];
+			}
+			int codesStart = chunkInput.getPosition();
+			ByteBuffer.wrap(chunk, codesStart, chunkLength - codesStart).asCharBuffer()
+				.get(dictionaryCodes[ordinal], 0, blockRows);
+			break;
+		}
+	}
+}
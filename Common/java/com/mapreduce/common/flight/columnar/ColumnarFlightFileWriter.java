@@ -0,0 +1,193 @@
+package com.mapreduce.common.flight.columnar;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+/*
+ * Writes flights in the columnar airline format
+ * 
+ * File : | magic | block | block | ... |
+ * Block : | row count | byte length of the rest of the block | statistics | column chunk | column chunk | ... |
+ * Statistics : min and max of each INT and FLOAT column, ignoring missing values, in FlightColumn order
+ * Column chunk : | byte length of the chunk | values of the column for every row of the block |
+ * Dictionary chunk : | number of distinct values | distinct values | 2 byte code of each row |
+ */
+public class ColumnarFlightFileWriter implements Closeable {
+	
+	public static final byte[] MAGIC = "FLCOL1".getBytes();
+	public static final int DEFAULT_BLOCK_ROWS = 64 * 1024;
+	
+	//Largest dictionary that can be addressed with 2 byte codes
+	static final int MAX_DICTIONARY_SIZE = 1 << 16;
+	
+	private static final FlightColumn[] COLUMNS = FlightColumn.values();
+	
+	private final DataOutputStream output;
+	private final int blockRows;
+	private int rowCount;
+	
+	//Values of the current block, indexed by column ordinal and then by row
+	private int[][] intColumns = new int[COLUMNS.length][];
+	private float[][] floatColumns = new float[COLUMNS.length][];
+	private char[][] dictionaryCodes = new char[COLUMNS.length][];
+	private List<Map<Text, Integer>> dictionaryCodesByValue = new ArrayList<Map<Text, Integer>>();
+	private List<List<Text>> dictionaryValues = new ArrayList<List<Text>>();
+	
+	private DataOutputBuffer blockBuffer = new DataOutputBuffer();
+	private DataOutputBuffer chunkBuffer = new DataOutputBuffer();
+	
+	public ColumnarFlightFileWriter(DataOutputStream output) throws IOException {
+		this(output, DEFAULT_BLOCK_ROWS);
+	}
+	
+	public ColumnarFlightFileWriter(DataOutputStream output, int blockRows) throws IOException {
+		this.output = output;
+		this.blockRows = blockRows;
+		for (FlightColumn column : COLUMNS) {
+			switch (column.getType()) {
+			case INT:
+				intColumns[column.ordinal()] = new int[blockRows];
+				break;
+			case FLOAT:
+				floatColumns[column.ordinal()] = new float[blockRows];
+				break;
+			case DICTIONARY:
+				dictionaryCodes[column.ordinal()] = new char[blockRows];
+				break;
+			}
+			dictionaryCodesByValue.add(new HashMap<Text, Integer>());
+			dictionaryValues.add(new ArrayList<Text>());
+		}
+		output.write(MAGIC);
+	}
+	
+	/*
+	 * Add a flight to the current block, the block is written once it is full
+	 */
+	public void append(ColumnarFlightRecord flight) throws IOException {
+		for (FlightColumn column : COLUMNS) {
+			switch (column.getType()) {
+			case INT:
+				intColumns[column.ordinal()][rowCount] = flight.getInt(column);
+				break;
+			case FLOAT:
+				floatColumns[column.ordinal()][rowCount] = flight.getFloat(column);
+				break;
+			case DICTIONARY:
+				dictionaryCodes[column.ordinal()][rowCount] = encode(column, flight.getText(column));
+				break;
+			}
+		}
+		
+		if (++rowCount == blockRows) {
+			writeBlock();
+		}
+	}
+	
+	/*
+	 * Write the last, partially filled, block and close the underlying stream
+	 */
+	public void close() throws IOException {
+		if (rowCount > 0) {
+			writeBlock();
+		}
+		output.close();
+	}
+	
+	private char encode(FlightColumn column, Text value) throws IOException {
+		Map<Text, Integer> codesByValue = dictionaryCodesByValue.get(column.ordinal());
+		Integer code = codesByValue.get(value);
+		if (code == null) {
+			if (codesByValue.size() == MAX_DICTIONARY_SIZE) {
+				throw new IOException("More than " + MAX_DICTIONARY_SIZE + " distinct values of " + column + " in a block");
+			}
+			code = codesByValue.size();
+			Text dictionaryValue = new Text(value);
+			codesByValue.put(dictionaryValue, code);
+			dictionaryValues.get(column.ordinal()).add(dictionaryValue);
+		}
+		return (char) code.intValue();
+	}
+	
+	private void writeBlock() throws IOException {
+		blockBuffer.reset();
+		writeStatistics();
+		
+		for (FlightColumn column : COLUMNS) {
+			chunkBuffer.reset();
+			switch (column.getType()) {
+			case INT:
+				for (int row = 0; row < rowCount; row++) {
+					chunkBuffer.writeInt(intColumns[column.ordinal()][row]);
+				}
+				break;
+			case FLOAT:
+				for (int row = 0; row < rowCount; row++) {
+					chunkBuffer.writeFloat(floatColumns[column.ordinal()][row]);
+				}
+				break;
+			case DICTIONARY:
+				List<Text> values = dictionaryValues.get(column.ordinal());
+				WritableUtils.writeVInt(chunkBuffer, values.size());
+				for (Text value : values) {
+					value.write(chunkBuffer);
+				}
+				for (int row = 0; row < rowCount; row++) {
+					chunkBuffer.writeChar(dictionaryCodes[column.ordinal()][row]);
+				}
+				values.clear();
+				dictionaryCodesByValue.get(column.ordinal()).clear();
+				break;
+			}
+			blockBuffer.writeInt(chunkBuffer.getLength());
+			blockBuffer.write(chunkBuffer.getData(), 0, chunkBuffer.getLength());
+		}
+		
+		output.writeInt(rowCount);
+		output.writeInt(blockBuffer.getLength());
+		output.write(blockBuffer.getData(), 0, blockBuffer.getLength());
+		rowCount = 0;
+	}
+	
+	/*
+	 * Min and max of each column with statistics, a column with only missing values gets an empty range (min > max)
+	 */
+	private void writeStatistics() throws IOException {
+		for (FlightColumn column : COLUMNS) {
+			if (column.getType() == FlightColumn.ColumnType.INT) {
+				int min = Integer.MAX_VALUE;
+				int max = Integer.MIN_VALUE;
+				for (int row = 0; row < rowCount; row++) {
+					int value = intColumns[column.ordinal()][row];
+					if (value != FlightColumn.NULL_INT) {
+						min = Math.min(min, value);
+						max = Math.max(max, value);
+					}
+				}
+				blockBuffer.writeInt(min);
+				blockBuffer.writeInt(max);
+			} else if (column.getType() == FlightColumn.ColumnType.FLOAT) {
+				float min = Float.POSITIVE_INFINITY;
+				float max = Float.NEGATIVE_INFINITY;
+				for (int row = 0; row < rowCount; row++) {
+					float value = floatColumns[column.ordinal()][row];
+					if (!Float.isNaN(value)) {
+						min = Math.min(min, value);
+						max = Math.max(max, value);
+					}
+				}
+				blockBuffer.writeFloat(min);
+				blockBuffer.writeFloat(max);
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package com.mapreduce.common.flight.columnar;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+/*
+ * Input format for files in the columnar airline format
+ * Mappers get a ColumnarFlightRecord per flight with only the projected columns set,
+ * and never see the flights of blocks whose statistics fall outside the configured column ranges
+ * Each file is a single split, conversion writes one file per map task of the csv input
+ */
+public class ColumnarFlightInputFormat extends FileInputFormat<NullWritable, ColumnarFlightRecord> {
+	
+	//Configuration flag used by the drivers, set when the input is in the columnar format
+	public static final String COLUMNAR_INPUT = "flight.input.columnar";
+	
+	//Comma separated names of the projected columns, all columns if not set
+	public static final String PROJECTED_COLUMNS = "columnar.flight.columns";
+	
+	//Prefix of the inclusive range of a filtered column, as min,max
+	public static final String COLUMN_RANGE_PREFIX = "columnar.flight.range.";
+	
+	/*
+	 * Blocks read and skipped by all the map tasks of the job
+	 */
+	public static enum ColumnarBlockCounters {
+		BLOCKS_READ, BLOCKS_SKIPPED, ROWS_SKIPPED
+	}
+	
+	/*
+	 * Use this input format for the job, decoding only the given columns
+	 */
+	public static void setProjectedColumns(Job job, FlightColumn... columns) {
+		StringBuilder columnNames = new StringBuilder();
+		for (FlightColumn column : columns) {
+			if (columnNames.length() > 0) {
+				columnNames.append(",");
+			}
+			columnNames.append(column.name());
+		}
+		job.getConfiguration().set(PROJECTED_COLUMNS, columnNames.toString());
+		job.setInputFormatClass(ColumnarFlightInputFormat.class);
+	}
+	
+	/*
+	 * Skip the blocks that have no value of the column within the given inclusive range
+	 * Only blocks are skipped, the mappers still have to check each flight
+	 */
+	public static void setColumnRange(Job job, FlightColumn column, double min, double max) {
+		job.getConfiguration().set(COLUMN_RANGE_PREFIX + column.name(), min + "," + max);
+	}
+	
+	@Override
+	protected boolean isSplitable(JobContext context, Path file) {
+		return false;
+	}
+
+	@Override
+	public RecordReader<NullWritable, ColumnarFlightRecord> createRecordReader(InputSplit split, TaskAttemptContext context) {
+		return new ColumnarFlightRecordReader();
+	}
+	
+	/*
+	 * Reads the rows of the matching blocks of a single file
+	 */
+	public static class ColumnarFlightRecordReader extends RecordReader<NullWritable, ColumnarFlightRecord> {
+		
+		private ColumnarFlightFileReader reader;
+		private ColumnarFlightRecord flight = new ColumnarFlightRecord();
+		private TaskAttemptContext context;
+		private int row;
+
+		@Override
+		public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+			this.context = context;
+			Configuration conf = context.getConfiguration();
+			FlightColumn[] columns = FlightColumn.values();
+			
+			boolean[] projected = new boolean[columns.length];
+			String projectedColumns = conf.get(PROJECTED_COLUMNS);
+			if (projectedColumns == null) {
+				Arrays.fill(projected, true);
+			} else {
+				for (String columnName : projectedColumns.split(",")) {
+					projected[FlightColumn.valueOf(columnName.trim()).ordinal()] = true;
+				}
+			}
+			
+			double[][] ranges = new double[columns.length][];
+			for (FlightColumn column : columns) {
+				String range = conf.get(COLUMN_RANGE_PREFIX + column.name());
+				if (range != null) {
+					String[] bounds = range.split(",");
+					ranges[column.ordinal()] = new double[] { Double.parseDouble(bounds[0]), Double.parseDouble(bounds[1]) };
+				}
+			}
+			
+			Path file = ((FileSplit) split).getPath();
+			FileSystem fileSystem = file.getFileSystem(conf);
+			long fileLength = fileSystem.getFileStatus(file).getLen();
+			reader = new ColumnarFlightFileReader(fileSystem.open(file), fileLength, projected, ranges);
+			row = 0;
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException {
+			while (row >= reader.getBlockRows()) {
+				if (!reader.nextBlock()) {
+					return false;
+				}
+				row = 0;
+			}
+			reader.readRow(row++, flight);
+			return true;
+		}
+
+		@Override
+		public NullWritable getCurrentKey() {
+			return NullWritable.get();
+		}
+
+		@Override
+		public ColumnarFlightRecord getCurrentValue() {
+			return flight;
+		}
+
+		@Override
+		public float getProgress() throws IOException {
+			return reader.getProgress();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (reader == null) {
+				return;
+			}
+			context.getCounter(ColumnarBlockCounters.BLOCKS_READ).increment(reader.getBlocksRead());
+			context.getCounter(ColumnarBlockCounters.BLOCKS_SKIPPED).increment(reader.getBlocksSkipped());
+			context.getCounter(ColumnarBlockCounters.ROWS_SKIPPED).increment(reader.getRowsSkipped());
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package com.mapreduce.common.flight.columnar;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+/*
+ * Output format writing one file in the columnar airline format per task
+ */
+public class ColumnarFlightOutputFormat extends FileOutputFormat<NullWritable, ColumnarFlightRecord> {
+	
+	public static final String FILE_EXTENSION = ".flc";
+
+	@Override
+	public RecordWriter<NullWritable, ColumnarFlightRecord> getRecordWriter(TaskAttemptContext context) throws IOException {
+		Path file = getDefaultWorkFile(context, FILE_EXTENSION);
+		FSDataOutputStream output = file.getFileSystem(context.getConfiguration()).create(file, false);
+		final ColumnarFlightFileWriter writer = new ColumnarFlightFileWriter(output);
+		
+		return new RecordWriter<NullWritable, ColumnarFlightRecord>() {
+			
+			@Override
+			public void write(NullWritable key, ColumnarFlightRecord flight) throws IOException {
+				writer.append(flight);
+			}
+
+			@Override
+			public void close(TaskAttemptContext context) throws IOException {
+				writer.close();
+			}
+		};
+	}
+}
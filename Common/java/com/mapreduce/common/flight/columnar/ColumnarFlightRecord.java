@@ -0,0 +1,140 @@
+package com.mapreduce.common.flight.columnar;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+
+import com.mapreduce.common.csv.CSVFieldScanner;
+
+/*
+ * Single flight of the columnar airline format, holding a typed value for each FlightColumn
+ * When read through ColumnarFlightInputFormat, only the projected columns are set
+ */
+public class ColumnarFlightRecord implements Writable {
+	
+	private static final FlightColumn[] COLUMNS = FlightColumn.values();
+	
+	private int[] intValues = new int[COLUMNS.length];
+	private float[] floatValues = new float[COLUMNS.length];
+	private Text[] textValues = new Text[COLUMNS.length];
+	
+	public ColumnarFlightRecord() {
+		for (FlightColumn column : COLUMNS) {
+			if (column.getType() == FlightColumn.ColumnType.DICTIONARY) {
+				textValues[column.ordinal()] = new Text();
+			}
+		}
+		clear();
+	}
+	
+	/*
+	 * Set every column to missing
+	 */
+	public void clear() {
+		for (FlightColumn column : COLUMNS) {
+			intValues[column.ordinal()] = FlightColumn.NULL_INT;
+			floatValues[column.ordinal()] = Float.NaN;
+			if (textValues[column.ordinal()] != null) {
+				textValues[column.ordinal()].clear();
+			}
+		}
+	}
+	
+	/*
+	 * Set the columns from a scanned csv record, empty fields are stored as missing
+	 * Throws NumberFormatException for a non numeric value in a numeric column
+	 */
+	public void set(CSVFieldScanner flightDetails) {
+		for (FlightColumn column : COLUMNS) {
+			int csvIndex = column.getCsvIndex();
+			boolean missing = !flightDetails.hasField(csvIndex) || flightDetails.isEmpty(csvIndex);
+			switch (column.getType()) {
+			case INT:
+				//Flags like cancelled are written as 0.00 or 1.00 in the csv file
+				intValues[column.ordinal()] = missing ? FlightColumn.NULL_INT : (int) flightDetails.getDouble(csvIndex);
+				break;
+			case FLOAT:
+				floatValues[column.ordinal()] = missing ? Float.NaN : (float) flightDetails.getDouble(csvIndex);
+				break;
+			case DICTIONARY:
+				if (missing) {
+					textValues[column.ordinal()].clear();
+				} else {
+					flightDetails.getText(csvIndex, textValues[column.ordinal()]);
+				}
+				break;
+			}
+		}
+	}
+	
+	public boolean isNull(FlightColumn column) {
+		switch (column.getType()) {
+		case INT:
+			return intValues[column.ordinal()] == FlightColumn.NULL_INT;
+		case FLOAT:
+			return Float.isNaN(floatValues[column.ordinal()]);
+		default:
+			return textValues[column.ordinal()].getLength() == 0;
+		}
+	}
+	
+	public int getInt(FlightColumn column) {
+		return intValues[column.ordinal()];
+	}
+	
+	public void setInt(FlightColumn column, int value) {
+		intValues[column.ordinal()] = value;
+	}
+	
+	public float getFloat(FlightColumn column) {
+		return floatValues[column.ordinal()];
+	}
+	
+	public void setFloat(FlightColumn column, float value) {
+		floatValues[column.ordinal()] = value;
+	}
+	
+	/*
+	 * Value of a dictionary column, the returned Text is reused for the next record
+	 */
+	public Text getText(FlightColumn column) {
+		return textValues[column.ordinal()];
+	}
+
+	@Override
+	public void readFields(DataInput input) throws IOException {
+		for (FlightColumn column : COLUMNS) {
+			switch (column.getType()) {
+			case INT:
+				intValues[column.ordinal()] = input.readInt();
+				break;
+			case FLOAT:
+				floatValues[column.ordinal()] = input.readFloat();
+				break;
+			case DICTIONARY:
+				textValues[column.ordinal()].readFields(input);
+				break;
+			}
+		}
+	}
+
+	@Override
+	public void write(DataOutput output) throws IOException {
+		for (FlightColumn column : COLUMNS) {
+			switch (column.getType()) {
+			case INT:
+				output.writeInt(intValues[column.ordinal()]);
+				break;
+			case FLOAT:
+				output.writeFloat(floatValues[column.ordinal()]);
+				break;
+			case DICTIONARY:
+				textValues[column.ordinal()].write(output);
+				break;
+			}
+		}
+	}
+}
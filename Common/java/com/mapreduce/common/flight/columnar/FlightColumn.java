@@ -0,0 +1,66 @@
+package com.mapreduce.common.flight.columnar;
+
+/*
+ * Typed columns of the columnar airline format, with the index of the column in the airline csv file
+ * Only the columns used by the airline jobs are kept, the flight date is derived from year, month and day
+ */
+public enum FlightColumn {
+	
+	YEAR(0, ColumnType.INT),
+	MONTH(2, ColumnType.INT),
+	DAY_OF_MONTH(3, ColumnType.INT),
+	CARRIER(6, ColumnType.DICTIONARY),
+	ORIGIN(11, ColumnType.DICTIONARY),
+	DESTINATION(17, ColumnType.DICTIONARY),
+	DEPARTURE_TIME(24, ColumnType.INT),
+	ARRIVAL_TIME(35, ColumnType.INT),
+	ARRIVAL_DELAY(37, ColumnType.FLOAT),
+	CANCELLED(41, ColumnType.INT),
+	DIVERTED(43, ColumnType.INT);
+	
+	/*
+	 * Physical type of a column
+	 * INT and FLOAT columns are stored as fixed width values with min/max statistics per block
+	 * DICTIONARY columns are stored as a per block dictionary of distinct values and a 2 byte code per row
+	 */
+	public static enum ColumnType {
+		INT, FLOAT, DICTIONARY
+	}
+	
+	//Stored value of a missing int, missing floats are stored as NaN and missing strings as empty values
+	public static final int NULL_INT = Integer.MIN_VALUE;
+	
+	private final int csvIndex;
+	private final ColumnType type;
+	
+	private FlightColumn(int csvIndex, ColumnType type) {
+		this.csvIndex = csvIndex;
+		this.type = type;
+	}
+	
+	public int getCsvIndex() {
+		return csvIndex;
+	}
+	
+	public ColumnType getType() {
+		return type;
+	}
+	
+	/*
+	 * Whether min/max statistics are kept for the column
+	 */
+	public boolean hasStatistics() {
+		return type != ColumnType.DICTIONARY;
+	}
+	
+	/*
+	 * Highest csv index of all the columns
+	 */
+	public static int lastCsvIndex() {
+		int lastCsvIndex = 0;
+		for (FlightColumn column : values()) {
+			lastCsvIndex = Math.max(lastCsvIndex, column.getCsvIndex());
+		}
+		return lastCsvIndex;
+	}
+}
@@ -0,0 +1,66 @@
+package com.mapreduce.common.flight.generate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+/*
+ * Writes synthetic airline data, for measuring the flight jobs at sizes and skews the real data does not have
+ * The records are split evenly over the files, each file is generated from its own seed derived from the given seed,
+ * so the same options always write the same data
+ */
+public class SyntheticFlightData {
+
+	public static final String RECORDS = "flight.synthetic.records";
+	public static final String FILES = "flight.synthetic.files";
+	public static final String SEED = "flight.synthetic.seed";
+
+	private static final long DEFAULT_RECORDS = 1000000;
+	private static final byte[] NEW_LINE = { '\n' };
+
+	/*
+	 * Write the configured number of records under the given directory, returns the number of bytes written
+	 */
+	public static long generate(Configuration conf, Path output) throws IOException {
+		long records = conf.getLong(RECORDS, DEFAULT_RECORDS);
+		int files = Math.max(1, conf.getInt(FILES, 1));
+		long seed = conf.getLong(SEED, 42);
+		FileSystem fileSystem = output.getFileSystem(conf);
+		Text record = new Text();
+		long bytesWritten = 0;
+
+		for (int file = 0; file < files; file++) {
+			//Spread the remainder over the first files
+			long fileRecords = records / files + (file < records % files ? 1 : 0);
+			SyntheticFlightGenerator generator = new SyntheticFlightGenerator(conf, seed + file);
+			OutputStream out = fileSystem.create(new Path(output, String.format("part-%05d.csv", file)), false);
+			try {
+				for (long count = 0; count < fileRecords; count++) {
+					generator.next(record);
+					out.write(record.getBytes(), 0, record.getLength());
+					out.write(NEW_LINE);
+					bytesWritten += record.getLength() + 1;
+				}
+			} finally {
+				out.close();
+			}
+		}
+		return bytesWritten;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Configuration conf = new Configuration();
+		String[] otherArgs = new GenericOptionsParser(conf, args).getRemainingArgs();
+
+		if (otherArgs.length != 1) {
+			System.err.println("Usage: SyntheticFlightData <out>");
+			System.exit(2);
+		}
+		generate(conf, new Path(otherArgs[0]));
+	}
+}
@@ -0,0 +1,257 @@
+package com.mapreduce.common.flight.generate;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+
+/*
+ * Generates synthetic flight records in the column layout of the airline csv files read by the flight jobs
+ * Carriers and airports are drawn from Zipf distributions, an exponent of 0 spreads the flights evenly,
+ * larger exponents concentrate them on the first carriers and on the hubs
+ * ORD and JFK are among the busiest airports, so that the two leg job always finds legs to join
+ */
+public class SyntheticFlightGenerator {
+
+	/*************** Options, read from the configuration *****************/
+	public static final String START_YEAR = "flight.synthetic.start.year";
+	public static final String END_YEAR = "flight.synthetic.end.year";
+	public static final String CARRIERS = "flight.synthetic.carriers";
+	public static final String CARRIER_SKEW = "flight.synthetic.carrier.skew";
+	public static final String AIRPORTS = "flight.synthetic.airports";
+	public static final String HUB_SKEW = "flight.synthetic.hub.skew";
+	public static final String CANCELLED_RATE = "flight.synthetic.cancelled.rate";
+	public static final String DIVERTED_RATE = "flight.synthetic.diverted.rate";
+
+	/*************** Indexes of the csv fields read by the flight jobs *****************/
+	public static final int FIELD_COUNT = 55;
+	private static final int YEAR_INDEX = 0;
+	private static final int QUARTER_INDEX = 1;
+	private static final int MONTH_INDEX = 2;
+	private static final int DAY_INDEX = 3;
+	private static final int DAY_OF_WEEK_INDEX = 4;
+	private static final int DATE_INDEX = 5;
+	private static final int UNIQUE_CARRIER_INDEX = 6;
+	private static final int CARRIER_INDEX = 8;
+	private static final int TAIL_NUM_INDEX = 9;
+	private static final int FLIGHT_NUM_INDEX = 10;
+	private static final int ORIGIN_INDEX = 11;
+	private static final int ORIGIN_CITY_INDEX = 12;
+	private static final int DESTINATION_INDEX = 17;
+	private static final int DESTINATION_CITY_INDEX = 18;
+	private static final int DEPARTURE_TIME_INDEX = 24;
+	private static final int ARRIVAL_TIME_INDEX = 35;
+	private static final int ARRIVAL_DELAY_INDEX = 37;
+	private static final int CANCELLED_INDEX = 41;
+	private static final int DIVERTED_INDEX = 43;
+
+	//Carriers and airports in decreasing order of traffic, more are made up when asked for
+	private static final String[] KNOWN_CARRIERS = { "WN", "AA", "OO", "MQ", "US", "DL", "UA", "XE", "NW", "CO", 
+			"EV", "9E", "FL", "YV", "OH", "B6", "AS", "F9", "HA", "AQ" };
+	private static final String[] KNOWN_AIRPORTS = { "ATL", "ORD", "DFW", "DEN", "LAX", "PHX", "IAH", "LAS", "DTW", "JFK", 
+			"SFO", "EWR", "MSP", "SLC", "BOS", "CLT", "MCO", "LGA", "SEA", "PHL" };
+	private static final String[] KNOWN_CITIES = { "Atlanta, GA", "Chicago, IL", "Dallas/Fort Worth, TX", "Denver, CO", 
+			"Los Angeles, CA", "Phoenix, AZ", "Houston, TX", "Las Vegas, NV", "Detroit, MI", "New York, NY", "San Francisco, CA", 
+			"Newark, NJ", "Minneapolis, MN", "Salt Lake City, UT", "Boston, MA", "Charlotte, NC", "Orlando, FL", "New York, NY", 
+			"Seattle, WA", "Philadelphia, PA" };
+
+	private static final int MAX_FLIGHT_NUMBER = 9999;
+
+	//Made up codes are a fixed letter followed by two letters
+	private static final int MADE_UP_CODES = 26 * 26;
+
+	private static final int[] DAYS_IN_MONTH = { 0, 31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+	private final Random random;
+	private final int startYear;
+	private final int yearCount;
+	private final double cancelledRate;
+	private final double divertedRate;
+
+	private final String[] carriers;
+	private final double[] carrierWeights;
+	private final String[] airports;
+	private final String[] cities;
+	private final double[] airportWeights;
+
+	//Record being built, reused across records
+	private final StringBuilder record = new StringBuilder(512);
+	
+	//Records generated so far, flight numbers follow it so that flights keyed by date, carrier, number and route stay distinct
+	private long sequence;
+
+	public SyntheticFlightGenerator(Configuration conf, long seed) {
+		this.random = new Random(seed);
+		this.startYear = conf.getInt(START_YEAR, 2007);
+		this.yearCount = Math.max(1, conf.getInt(END_YEAR, 2008) - startYear + 1);
+		this.cancelledRate = conf.getFloat(CANCELLED_RATE, 0.02f);
+		this.divertedRate = conf.getFloat(DIVERTED_RATE, 0.003f);
+
+		int carrierCount = Math.min(KNOWN_CARRIERS.length + MADE_UP_CODES, Math.max(1, conf.getInt(CARRIERS, KNOWN_CARRIERS.length)));
+		carriers = new String[carrierCount];
+		for (int carrier = 0; carrier < carrierCount; carrier++) {
+			carriers[carrier] = carrier < KNOWN_CARRIERS.length ? KNOWN_CARRIERS[carrier] : "Z" + code(carrier - KNOWN_CARRIERS.length, 2);
+		}
+		carrierWeights = zipfCumulativeWeights(carrierCount, conf.getFloat(CARRIER_SKEW, 1.0f));
+
+		//At least two airports, so that every flight has a destination different from its origin
+		int airportCount = Math.min(KNOWN_AIRPORTS.length + MADE_UP_CODES, Math.max(2, conf.getInt(AIRPORTS, 100)));
+		airports = new String[airportCount];
+		cities = new String[airportCount];
+		for (int airport = 0; airport < airportCount; airport++) {
+			boolean known = airport < KNOWN_AIRPORTS.length;
+			airports[airport] = known ? KNOWN_AIRPORTS[airport] : "Q" + code(airport - KNOWN_AIRPORTS.length, 2);
+			cities[airport] = known ? KNOWN_CITIES[airport] : "City " + airports[airport] + ", ZZ";
+		}
+		airportWeights = zipfCumulativeWeights(airportCount, conf.getFloat(HUB_SKEW, 1.0f));
+	}
+
+	/*
+	 * Set the given text to the next record, without a line terminator
+	 */
+	public void next(Text target) {
+		target.set(nextRecord());
+	}
+
+	/*
+	 * Next record, without a line terminator
+	 */
+	public String nextRecord() {
+		int year = startYear + random.nextInt(yearCount);
+		int month = 1 + random.nextInt(12);
+		int day = 1 + random.nextInt(DAYS_IN_MONTH[month] - (month == 2 && !isLeapYear(year) ? 1 : 0));
+		int carrier = pick(carrierWeights);
+		int origin = pick(airportWeights);
+		int destination = pick(airportWeights);
+		while (destination == origin) {
+			destination = pick(airportWeights);
+		}
+		int departureMinute = 5 * 60 + random.nextInt(18 * 60);
+		int arrivalMinute = (departureMinute + 45 + random.nextInt(5 * 60)) % (24 * 60);
+		boolean cancelled = random.nextDouble() < cancelledRate;
+		boolean diverted = !cancelled && random.nextDouble() < divertedRate;
+
+		record.setLength(0);
+		for (int field = 0; field < FIELD_COUNT; field++) {
+			if (field > 0) {
+				record.append(',');
+			}
+			switch (field) {
+			case YEAR_INDEX:
+				record.append(year);
+				break;
+			case QUARTER_INDEX:
+				record.append((month + 2) / 3);
+				break;
+			case MONTH_INDEX:
+				record.append(month);
+				break;
+			case DAY_INDEX:
+				record.append(day);
+				break;
+			case DAY_OF_WEEK_INDEX:
+				record.append(1 + random.nextInt(7));
+				break;
+			case DATE_INDEX:
+				record.append(year).append('-').append(twoDigits(month)).append('-').append(twoDigits(day));
+				break;
+			case UNIQUE_CARRIER_INDEX:
+			case CARRIER_INDEX:
+				record.append(carriers[carrier]);
+				break;
+			case TAIL_NUM_INDEX:
+				record.append('N').append(100 + random.nextInt(900)).append(carriers[carrier]);
+				break;
+			case FLIGHT_NUM_INDEX:
+				record.append(1 + sequence % MAX_FLIGHT_NUMBER);
+				break;
+			case ORIGIN_INDEX:
+				record.append(airports[origin]);
+				break;
+			case ORIGIN_CITY_INDEX:
+				record.append('"').append(cities[origin]).append('"');
+				break;
+			case DESTINATION_INDEX:
+				record.append(airports[destination]);
+				break;
+			case DESTINATION_CITY_INDEX:
+				record.append('"').append(cities[destination]).append('"');
+				break;
+			case DEPARTURE_TIME_INDEX:
+				appendTime(departureMinute);
+				break;
+			case ARRIVAL_TIME_INDEX:
+				if (!cancelled) {
+					appendTime(arrivalMinute);
+				}
+				break;
+			case ARRIVAL_DELAY_INDEX:
+				//Mostly early or slightly late, with a long tail of large delays
+				if (!cancelled && !diverted) {
+					int delay = random.nextInt(10) == 0 ? random.nextInt(300) : random.nextInt(40) - 15;
+					record.append(delay).append(".00");
+				}
+				break;
+			case CANCELLED_INDEX:
+				record.append(cancelled ? "1.00" : "0.00");
+				break;
+			case DIVERTED_INDEX:
+				record.append(diverted ? "1.00" : "0.00");
+				break;
+			default:
+				record.append(random.nextInt(1000));
+				break;
+			}
+		}
+		sequence++;
+		return record.toString();
+	}
+
+	/*
+	 * Cumulative weights of the ranks of a Zipf distribution with the given exponent
+	 */
+	private static double[] zipfCumulativeWeights(int count, double exponent) {
+		double[] weights = new double[count];
+		double total = 0;
+		for (int rank = 0; rank < count; rank++) {
+			total += 1 / Math.pow(rank + 1, exponent);
+			weights[rank] = total;
+		}
+		return weights;
+	}
+
+	/*
+	 * Rank drawn with the given cumulative weights
+	 */
+	private int pick(double[] cumulativeWeights) {
+		double value = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+		int rank = Arrays.binarySearch(cumulativeWeights, value);
+		return Math.min(rank < 0 ? -rank - 1 : rank, cumulativeWeights.length - 1);
+	}
+
+	private void appendTime(int minuteOfDay) {
+		int time = (minuteOfDay / 60) * 100 + minuteOfDay % 60;
+		record.append(twoDigits(time / 100)).append(twoDigits(time % 100));
+	}
+
+	private static boolean isLeapYear(int year) {
+		return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+	}
+
+	private static String twoDigits(int value) {
+		return value < 10 ? "0" + value : String.valueOf(value);
+	}
+
+	/*
+	 * Upper case letters code of the given number
+	 */
+	private static String code(int number, int length) {
+		char[] letters = new char[length];
+		for (int position = length - 1; position >= 0; position--) {
+			letters[position] = (char) ('A' + number % 26);
+			number /= 26;
+		}
+		return new String(letters);
+	}
+}
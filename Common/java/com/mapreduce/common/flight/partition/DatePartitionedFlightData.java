@@ -0,0 +1,111 @@
+package com.mapreduce.common.flight.partition;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import com.mapreduce.common.csv.CSVFieldScanner;
+
+/*
+ * Repartitions the airline data by flight date
+ * Each record is written unchanged under <out>/year=YYYY/month=M/, so that date range queries
+ * can skip whole directories with DateRangeInputFormat instead of reading and filtering every record
+ */
+public class DatePartitionedFlightData {
+	
+	/*
+	 * Records that could not be assigned to a partition, like the csv header
+	 */
+	public static enum PartitionCounters {
+		UNPARTITIONED_RECORDS
+	}
+	
+	/*
+	 * Map only, writes each record into the directory of its year and month
+	 */
+	public static class FlightDataPartitionMapper extends Mapper<Object, Text, NullWritable, Text> {
+		
+		/*************** Indexes of relevant data in csv file *****************/
+		private static final int YEAR_INDEX = 0;
+		private static final int MONTH_INDEX = 2;
+		
+		private CSVFieldScanner scanner = new CSVFieldScanner(MONTH_INDEX);
+		private MultipleOutputs<NullWritable, Text> partitionOutputs;
+		
+		//Output path of each partition seen by the task, keyed by year * 100 + month
+		private Map<Integer, String> partitionPaths = new HashMap<Integer, String>();
+		
+		protected void setup(Context context) {
+			partitionOutputs = new MultipleOutputs<NullWritable, Text>(context);
+		}
+		
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+			
+			int year;
+			int month;
+			try {
+				scanner.scan(value);
+				year = scanner.getInt(YEAR_INDEX);
+				month = scanner.getInt(MONTH_INDEX);
+			} catch (RuntimeException malformedRecord) {
+				context.getCounter(PartitionCounters.UNPARTITIONED_RECORDS).increment(1);
+				return;
+			}
+			
+			partitionOutputs.write(NullWritable.get(), value, getPartitionPath(year, month));
+		}
+		
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			partitionOutputs.close();
+		}
+		
+		private String getPartitionPath(int year, int month) {
+			Integer partition = year * 100 + month;
+			String partitionPath = partitionPaths.get(partition);
+			if (partitionPath == null) {
+				partitionPath = DateRangeInputFormat.partitionDirectory(year, month) + "/part";
+				partitionPaths.put(partition, partitionPath);
+			}
+			return partitionPath;
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		
+		Configuration partitionConf = new Configuration();
+		String[] otherArgs = new GenericOptionsParser(partitionConf, args).getRemainingArgs();
+		
+		if (otherArgs.length != 2) {
+			System.err.println("Usage: DatePartitionedFlightData <in> <out>");
+			System.exit(2);
+		}
+		
+		Job partitionJob = new Job(partitionConf, "Partition Flight Data By Date");
+		partitionJob.setJarByClass(DatePartitionedFlightData.class);
+		partitionJob.setMapperClass(FlightDataPartitionMapper.class);
+		partitionJob.setOutputKeyClass(NullWritable.class);
+		partitionJob.setOutputValueClass(Text.class);
+		partitionJob.setNumReduceTasks(0);
+		
+		//Only the partition files are written, no empty default part files
+		LazyOutputFormat.setOutputFormatClass(partitionJob, TextOutputFormat.class);
+		
+		FileInputFormat.addInputPath(partitionJob, new Path(otherArgs[0]));
+		FileOutputFormat.setOutputPath(partitionJob, new Path(otherArgs[1]));
+		
+		System.exit(partitionJob.waitForCompletion(true) ? 0 : 1);
+	}
+}
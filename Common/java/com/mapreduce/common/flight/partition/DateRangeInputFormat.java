@@ -0,0 +1,89 @@
+package com.mapreduce.common.flight.partition;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+
+/*
+ * Text input format for airline data partitioned by DatePartitionedFlightData
+ * Files under year=YYYY/month=M directories outside the configured date range are dropped while listing the input,
+ * so no split is ever created, and no mapper ever started, for data outside the range
+ * Files outside of partition directories are always kept
+ */
+public class DateRangeInputFormat extends TextInputFormat {
+	
+	//Configuration flag used by the drivers, set when the input is partitioned by date
+	public static final String PARTITIONED_INPUT = "flight.input.partitioned";
+	
+	//Inclusive date range, as year * 100 + month
+	public static final String START_YEAR_MONTH = "flight.date.range.start";
+	public static final String END_YEAR_MONTH = "flight.date.range.end";
+	
+	private static final String YEAR_PREFIX = "year=";
+	private static final String MONTH_PREFIX = "month=";
+	
+	/*
+	 * Use this input format for the job, reading only the partitions in the given inclusive range of months
+	 */
+	public static void setDateRange(Job job, int startYear, int startMonth, int endYear, int endMonth) {
+		Configuration conf = job.getConfiguration();
+		conf.setInt(START_YEAR_MONTH, startYear * 100 + startMonth);
+		conf.setInt(END_YEAR_MONTH, endYear * 100 + endMonth);
+		
+		//Partition files are nested below the input directory
+		FileInputFormat.setInputDirRecursive(job, true);
+		job.setInputFormatClass(DateRangeInputFormat.class);
+	}
+	
+	/*
+	 * Directory of a partition, relative to the root of the partitioned data
+	 */
+	public static String partitionDirectory(int year, int month) {
+		return YEAR_PREFIX + year + Path.SEPARATOR + MONTH_PREFIX + month;
+	}
+	
+	@Override
+	protected List<FileStatus> listStatus(JobContext job) throws IOException {
+		Configuration conf = job.getConfiguration();
+		int startYearMonth = conf.getInt(START_YEAR_MONTH, Integer.MIN_VALUE);
+		int endYearMonth = conf.getInt(END_YEAR_MONTH, Integer.MAX_VALUE);
+		
+		List<FileStatus> filesInRange = new ArrayList<FileStatus>();
+		for (FileStatus file : super.listStatus(job)) {
+			int yearMonth = getYearMonth(file.getPath());
+			if (yearMonth < 0 || (yearMonth >= startYearMonth && yearMonth <= endYearMonth)) {
+				filesInRange.add(file);
+			}
+		}
+		return filesInRange;
+	}
+	
+	/*
+	 * Year * 100 + month of the partition holding the given file, -1 if the file is not in a partition directory
+	 */
+	static int getYearMonth(Path file) {
+		int year = -1;
+		int month = -1;
+		for (Path directory = file.getParent(); directory != null; directory = directory.getParent()) {
+			String name = directory.getName();
+			try {
+				if (month < 0 && name.startsWith(MONTH_PREFIX)) {
+					month = Integer.parseInt(name.substring(MONTH_PREFIX.length()));
+				} else if (year < 0 && name.startsWith(YEAR_PREFIX)) {
+					year = Integer.parseInt(name.substring(YEAR_PREFIX.length()));
+				}
+			} catch (NumberFormatException notAPartition) {
+				return -1;
+			}
+		}
+		return year < 0 || month < 0 ? -1 : year * 100 + month;
+	}
+}
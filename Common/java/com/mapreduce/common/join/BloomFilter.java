@@ -0,0 +1,120 @@
+package com.mapreduce.common.join;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/*
+ * Bloom filter of byte string keys, sized for an expected number of keys and false positive rate
+ * A key never added is reported as possibly present with about the chosen probability, a key added always is
+ * Keys are probed straight from the bytes of a record, with k bit positions derived from one 64 bit hash (double hashing)
+ */
+public class BloomFilter implements Writable {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private long[] bits = new long[1];
+	private int numHashes = 1;
+	private long numKeys;
+
+	/*
+	 * Empty filter, to be read with readFields
+	 */
+	public BloomFilter() {
+	}
+
+	public BloomFilter(long expectedKeys, double falsePositiveRate) {
+		long keys = Math.max(1, expectedKeys);
+		long numBits = (long) Math.ceil(-keys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		bits = new long[(int) Math.max(1, (numBits + 63) >>> 6)];
+		numHashes = Math.max(1, (int) Math.round(getNumBits() / (double) keys * Math.log(2)));
+	}
+
+	public void add(byte[] bytes, int start, int length) {
+		long hash = hash(bytes, start, length);
+		long numBits = getNumBits();
+		for (int index = 0; index < numHashes; index++) {
+			long bit = getBit(hash, index, numBits);
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+		numKeys++;
+	}
+
+	/*
+	 * False if the key was never added, true if it was added or, rarely, if it was not
+	 */
+	public boolean mightContain(byte[] bytes, int start, int length) {
+		long hash = hash(bytes, start, length);
+		long numBits = getNumBits();
+		for (int index = 0; index < numHashes; index++) {
+			long bit = getBit(hash, index, numBits);
+			if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * False positive rate expected from the number of keys added and the size of the filter
+	 */
+	public double getExpectedFalsePositiveRate() {
+		return Math.pow(1 - Math.exp(-numHashes * (double) numKeys / getNumBits()), numHashes);
+	}
+
+	public long getNumKeys() {
+		return numKeys;
+	}
+
+	private long getNumBits() {
+		return (long) bits.length << 6;
+	}
+
+	/*
+	 * Bit of the index-th hash function, from the low and high halves of the key hash
+	 */
+	private static long getBit(long hash, int index, long numBits) {
+		long combined = (hash + index * (hash >>> 32)) & Long.MAX_VALUE;
+		return combined % numBits;
+	}
+
+	/*
+	 * FNV-1a over the bytes of the key, with the finalizer of MurmurHash3 to spread the bits
+	 */
+	private static long hash(byte[] bytes, int start, int length) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int index = start; index < start + length; index++) {
+			hash = (hash ^ (bytes[index] & 0xff)) * FNV_PRIME;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	@Override
+	public void write(DataOutput output) throws IOException {
+		WritableUtils.writeVInt(output, numHashes);
+		WritableUtils.writeVLong(output, numKeys);
+		WritableUtils.writeVInt(output, bits.length);
+		for (long word : bits) {
+			output.writeLong(word);
+		}
+	}
+
+	@Override
+	public void readFields(DataInput input) throws IOException {
+		numHashes = WritableUtils.readVInt(input);
+		numKeys = WritableUtils.readVLong(input);
+		bits = new long[WritableUtils.readVInt(input)];
+		for (int index = 0; index < bits.length; index++) {
+			bits[index] = input.readLong();
+		}
+	}
+}
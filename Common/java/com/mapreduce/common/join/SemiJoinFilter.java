@@ -0,0 +1,106 @@
+package com.mapreduce.common.join;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.mapreduce.common.cache.CacheFiles;
+
+/*
+ * Bloom filter semi-join, drops the records of the large side of a join whose key cannot match before they are shuffled
+ * The filter holds the join keys of the other side, it is built before the join job, saved as a small file
+ * and shipped to the mappers through the distributed cache
+ *
+ * Counters: PROBED and PRUNED by the mappers, FALSE_POSITIVES by whoever can tell a record passed but could not match,
+ * the false positive rate of the run is FALSE_POSITIVES / (FALSE_POSITIVES + PRUNED)
+ */
+public class SemiJoinFilter {
+
+	//False positive rate the filters are sized for, 1% by default
+	public static final String FALSE_POSITIVE_RATE = "semijoin.false.positive.rate";
+	private static final float DEFAULT_FALSE_POSITIVE_RATE = 0.01f;
+
+	/*
+	 * Records probed, records dropped by the filter, and records that passed the filter without a match
+	 */
+	public static enum SemiJoinCounters {
+		PROBED, PRUNED, FALSE_POSITIVES
+	}
+
+	private final BloomFilter filter;
+	private final Counter probed;
+	private final Counter pruned;
+
+	private SemiJoinFilter(BloomFilter filter, TaskAttemptContext context) {
+		this.filter = filter;
+		this.probed = context.getCounter(SemiJoinCounters.PROBED);
+		this.pruned = context.getCounter(SemiJoinCounters.PRUNED);
+	}
+
+	/*
+	 * Empty filter for the given number of keys, at the configured false positive rate
+	 */
+	public static BloomFilter newFilter(Configuration conf, long expectedKeys) {
+		return new BloomFilter(expectedKeys, conf.getFloat(FALSE_POSITIVE_RATE, DEFAULT_FALSE_POSITIVE_RATE));
+	}
+
+	public static void save(Configuration conf, Path path, BloomFilter filter) throws IOException {
+		DataOutputStream output = path.getFileSystem(conf).create(path, true);
+		try {
+			filter.write(output);
+		} finally {
+			output.close();
+		}
+	}
+
+	/*
+	 * Ship the filter saved at the given path to the tasks of the job, under the given name
+	 */
+	public static void addToCache(Job job, Path path, String name) throws IOException {
+		CacheFiles.add(job, path, name);
+	}
+
+	/*
+	 * Filter shipped to the task under the given name, counting its probes in the counters of the task
+	 */
+	public static SemiJoinFilter fromCache(TaskAttemptContext context, String name) throws IOException {
+		BloomFilter filter = new BloomFilter();
+		DataInputStream input = new DataInputStream(CacheFiles.open(context, name));
+		try {
+			filter.readFields(input);
+		} finally {
+			input.close();
+		}
+		return new SemiJoinFilter(filter, context);
+	}
+
+	/*
+	 * Whether the record with the given join key has to be kept, false when its key cannot match
+	 */
+	public boolean probe(byte[] bytes, int start, int length) {
+		probed.increment(1);
+		if (filter.mightContain(bytes, start, length)) {
+			return true;
+		}
+		pruned.increment(1);
+		return false;
+	}
+
+	public boolean probe(Text key) {
+		return probe(key.getBytes(), 0, key.getLength());
+	}
+
+	/*
+	 * Count records that passed the filter but could not match any record of the other side
+	 */
+	public static void countFalsePositives(TaskAttemptContext context, long records) {
+		context.getCounter(SemiJoinCounters.FALSE_POSITIVES).increment(records);
+	}
+}
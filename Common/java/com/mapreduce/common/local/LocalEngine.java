@@ -0,0 +1,254 @@
+package com.mapreduce.common.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/*
+ * Runs a line oriented job on the cores of a single machine, without a Hadoop cluster
+ * The input files are split into chunks on line boundaries, each chunk is memory mapped and processed by its own task
+ * on a fork join pool, and the partial results are merged pairwise as the tasks complete
+ * The merge of the partial results replaces the shuffle, there is no sort and nothing is written to disk
+ */
+public class LocalEngine {
+
+	//Configuration flag selecting the local engine instead of submitting map reduce jobs
+	public static final String LOCAL_ENGINE = "local.engine";
+
+	//Number of worker threads, defaults to the number of cores
+	public static final String PARALLELISM = "local.engine.parallelism";
+
+	//Approximate bytes of input per task, chunks are extended up to the end of their last line
+	public static final String CHUNK_BYTES = "local.engine.chunk.bytes";
+	private static final long DEFAULT_CHUNK_BYTES = 32L * 1024 * 1024;
+
+	//A chunk has to fit in a single mapping, leave room for the line extending past its end
+	private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE / 2;
+
+	//Bytes copied out of the mapping at a time, grown for lines longer than this
+	private static final int WINDOW_SIZE = 64 * 1024;
+
+	private static final byte NEW_LINE = '\n';
+	private static final byte CARRIAGE_RETURN = '\r';
+
+	private final Configuration conf;
+	private final int parallelism;
+	private final long chunkBytes;
+
+	public LocalEngine(Configuration conf) {
+		this.conf = conf;
+		this.parallelism = conf.getInt(PARALLELISM, Runtime.getRuntime().availableProcessors());
+		this.chunkBytes = Math.min(MAX_CHUNK_BYTES, Math.max(1, conf.getLong(CHUNK_BYTES, DEFAULT_CHUNK_BYTES)));
+	}
+
+	/*
+	 * Run the job on the files below the given local path, returns the merged result of all the chunks
+	 * Hidden files, starting with _ or ., are ignored as they are by the map reduce jobs
+	 */
+	public <R> R run(LocalLineJob<R> job, Path input) throws IOException {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		for (File file : listFiles(FileSystem.getLocal(conf).pathToFile(input))) {
+			addChunks(file, chunks);
+		}
+		if (chunks.isEmpty()) {
+			return job.createTask().getResult();
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return pool.invoke(new ChunkMerge<R>(job, chunks, 0, chunks.size()));
+		} catch (RuntimeException e) {
+			//Reading a chunk failed in one of the workers, the pool may have wrapped the exception once more
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+			}
+			throw e;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/*
+	 * Non empty, non hidden files below the given file, in name order
+	 */
+	private static List<File> listFiles(File input) throws IOException {
+		List<File> files = new ArrayList<File>();
+		if (input.isFile()) {
+			files.add(input);
+			return files;
+		}
+		File[] children = input.listFiles();
+		if (children == null) {
+			throw new IOException("Input path does not exist: " + input);
+		}
+		Arrays.sort(children);
+		for (File child : children) {
+			String fileName = child.getName();
+			if (fileName.startsWith("_") || fileName.startsWith(".")) {
+				continue;
+			}
+			if (child.isDirectory()) {
+				files.addAll(listFiles(child));
+			} else if (child.length() > 0) {
+				files.add(child);
+			}
+		}
+		return files;
+	}
+
+	/*
+	 * Split the file into chunks of about the configured size, each ending right after a new line or at the end of file
+	 */
+	private void addChunks(File file, List<Chunk> chunks) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			long fileLength = channel.size();
+			long start = 0;
+			while (start < fileLength) {
+				long end = start + chunkBytes < fileLength ? nextLineStart(channel, start + chunkBytes - 1) : fileLength;
+				chunks.add(new Chunk(file, start, end));
+				start = end;
+			}
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/*
+	 * Position following the first new line at or after the given position, the file length if there is none
+	 */
+	private static long nextLineStart(FileChannel channel, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		while (true) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read <= 0) {
+				return channel.size();
+			}
+			for (int index = 0; index < read; index++) {
+				if (buffer.get(index) == NEW_LINE) {
+					return position + index + 1;
+				}
+			}
+			position += read;
+		}
+	}
+
+	/*
+	 * Feed the lines of the chunk to the task, through a window copied out of the mapped chunk
+	 */
+	private static <R> R processChunk(LocalLineJob<R> job, Chunk chunk) throws IOException {
+		LocalLineTask<R> task = job.createTask();
+		RandomAccessFile randomAccessFile = new RandomAccessFile(chunk.file, "r");
+		try {
+			MappedByteBuffer mapped = randomAccessFile.getChannel()
+					.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+			byte[] window = new byte[WINDOW_SIZE];
+			//Bytes of the incomplete line at the start of the window
+			int carried = 0;
+
+			while (mapped.hasRemaining()) {
+				if (carried == window.length) {
+					window = Arrays.copyOf(window, window.length * 2);
+				}
+				int read = Math.min(mapped.remaining(), window.length - carried);
+				mapped.get(window, carried, read);
+				int filled = carried + read;
+
+				int lineStart = 0;
+				for (int index = carried; index < filled; index++) {
+					if (window[index] == NEW_LINE) {
+						processLine(task, window, lineStart, index);
+						lineStart = index + 1;
+					}
+				}
+				carried = filled - lineStart;
+				System.arraycopy(window, lineStart, window, 0, carried);
+			}
+			//Last line of the file, without a new line
+			if (carried > 0) {
+				processLine(task, window, 0, carried);
+			}
+		} finally {
+			randomAccessFile.close();
+		}
+		return task.getResult();
+	}
+
+	/*
+	 * Process the line ending at the given exclusive offset, dropping the carriage return of a windows line end
+	 */
+	private static <R> void processLine(LocalLineTask<R> task, byte[] window, int start, int end) {
+		if (end > start && window[end - 1] == CARRIAGE_RETURN) {
+			end--;
+		}
+		task.processLine(window, start, end - start);
+	}
+
+	/*
+	 * Range of bytes of an input file, starting at the beginning of a line
+	 */
+	private static class Chunk {
+
+		final File file;
+		final long start;
+		final long end;
+
+		Chunk(File file, long start, long end) {
+			this.file = file;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	/*
+	 * Processes a range of chunks, splitting it in halves until a single chunk is left, and merges the two results
+	 */
+	private static class ChunkMerge<R> extends RecursiveTask<R> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final LocalLineJob<R> job;
+		private final List<Chunk> chunks;
+		private final int from;
+		private final int to;
+
+		ChunkMerge(LocalLineJob<R> job, List<Chunk> chunks, int from, int to) {
+			this.job = job;
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected R compute() {
+			if (to - from == 1) {
+				try {
+					return processChunk(job, chunks.get(from));
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			int middle = (from + to) >>> 1;
+			ChunkMerge<R> first = new ChunkMerge<R>(job, chunks, from, middle);
+			ChunkMerge<R> second = new ChunkMerge<R>(job, chunks, middle, to);
+			first.fork();
+			R secondResult = second.compute();
+			return job.merge(first.join(), secondResult);
+		}
+	}
+}
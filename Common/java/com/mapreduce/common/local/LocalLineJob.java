@@ -0,0 +1,18 @@
+package com.mapreduce.common.local;
+
+/*
+ * Job run by the local engine, the counterpart of a mapper and reducer pair
+ * Each chunk of the input is processed by its own task, the partial results of the tasks are then merged pairwise
+ */
+public interface LocalLineJob<R> {
+
+	/*
+	 * New task for a single chunk of the input, tasks are only used by one thread
+	 */
+	LocalLineTask<R> createTask();
+
+	/*
+	 * Merge two partial results, either of them may be returned as the merged result
+	 */
+	R merge(R first, R second);
+}
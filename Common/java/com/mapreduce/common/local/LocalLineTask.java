@@ -0,0 +1,17 @@
+package com.mapreduce.common.local;
+
+/*
+ * Processes the lines of a single chunk of the input, building a partial result
+ */
+public interface LocalLineTask<R> {
+
+	/*
+	 * Process a line without its line terminator, the bytes are only valid until this call returns
+	 */
+	void processLine(byte[] bytes, int start, int length);
+
+	/*
+	 * Partial result of all the lines processed by the task
+	 */
+	R getResult();
+}
@@ -0,0 +1,35 @@
+package com.mapreduce.common.metrics;
+
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+/*
+ * Records read by the flight mappers, the records dropped for each reason, and the records emitted
+ * Every record read is either emitted or dropped for exactly one reason
+ */
+public enum FlightCounters {
+	RECORDS_READ, 
+	RECORDS_EMITTED,
+	//Fields missing, empty or not numbers, including the csv header
+	DROPPED_MALFORMED, 
+	DROPPED_CANCELLED, 
+	DROPPED_DIVERTED, 
+	//Flight date outside the dates of the query
+	DROPPED_OUT_OF_RANGE,
+	//Flight neither leaving from the origin nor arriving at the destination of the query
+	DROPPED_OTHER_ROUTE,
+	//Leg whose connecting airport is not on the other side of the join, pruned by a semi-join filter
+	DROPPED_NO_CONNECTION;
+	
+	/*
+	 * Counters of the task indexed by ordinal, looked up once instead of for every record
+	 */
+	public static Counter[] getCounters(TaskAttemptContext context) {
+		FlightCounters[] flightCounters = values();
+		Counter[] counters = new Counter[flightCounters.length];
+		for (FlightCounters flightCounter : flightCounters) {
+			counters[flightCounter.ordinal()] = context.getCounter(flightCounter);
+		}
+		return counters;
+	}
+}
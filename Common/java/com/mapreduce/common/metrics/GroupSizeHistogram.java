@@ -0,0 +1,45 @@
+package com.mapreduce.common.metrics;
+
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+/*
+ * Histogram of the number of values of each reduce group, in power of two buckets
+ * Each bucket is a counter of the given group, named by its range, so the histograms of all the reducers are merged
+ * A few very large buckets show the skewed keys that keep a single reducer busy
+ */
+public class GroupSizeHistogram {
+
+	private final String counterGroup;
+	private final long[] buckets = new long[Long.SIZE];
+
+	public GroupSizeHistogram(String counterGroup) {
+		this.counterGroup = counterGroup;
+	}
+
+	/*
+	 * Add a group with the given number of values, bucket n holds the sizes from 2^n to 2^(n+1) - 1
+	 */
+	public void add(long groupSize) {
+		buckets[Long.SIZE - 1 - Long.numberOfLeadingZeros(Math.max(1, groupSize))]++;
+	}
+
+	/*
+	 * Add the groups of the task to the counters, at the end of the task
+	 */
+	public void flush(TaskAttemptContext context) {
+		for (int bucket = 0; bucket < buckets.length; bucket++) {
+			if (buckets[bucket] > 0) {
+				context.getCounter(counterGroup, getBucketName(bucket)).increment(buckets[bucket]);
+				buckets[bucket] = 0;
+			}
+		}
+	}
+
+	/*
+	 * Range of sizes of the bucket, zero padded so that the counters sort by size
+	 */
+	private static String getBucketName(int bucket) {
+		long low = 1L << bucket;
+		return String.format("%012d-%012d", low, (low << 1) - 1);
+	}
+}
@@ -0,0 +1,15 @@
+package com.mapreduce.common.metrics;
+
+/*
+ * Cpu time spent by the tasks in each phase, in microseconds, estimated by PhaseTimer
+ */
+public enum PhaseCpuMicros {
+	//Scanning, validating and decoding the input records
+	MAP_PARSE, 
+	//Writing the map output, or adding it to the in-mapper aggregates
+	MAP_EMIT, 
+	//Iterating over the values of the reduce groups and aggregating or joining them
+	REDUCE_PROCESS, 
+	//Writing the reduce output
+	REDUCE_EMIT
+}
@@ -0,0 +1,66 @@
+package com.mapreduce.common.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+/*
+ * Estimates the cpu time of a phase repeated for every record, timing only one in every few calls
+ * Reading the thread cpu time costs a system call, timing every record would slow down the phase being measured
+ * Falls back to elapsed time when the JVM does not measure the cpu time of threads
+ */
+public class PhaseTimer {
+
+	//One in this many calls is timed
+	public static final String SAMPLE_INTERVAL = "phase.timer.sample.interval";
+	private static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final Counter counter;
+	private final int sampleInterval;
+	private final boolean cpuTime;
+
+	private long calls;
+	private long sampledCalls;
+	private long sampledNanos;
+	private long startNanos = -1;
+
+	public PhaseTimer(TaskAttemptContext context, PhaseCpuMicros phase) {
+		this.counter = context.getCounter(phase);
+		this.sampleInterval = Math.max(1, context.getConfiguration().getInt(SAMPLE_INTERVAL, DEFAULT_SAMPLE_INTERVAL));
+		this.cpuTime = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+	}
+
+	public void start() {
+		if (calls++ % sampleInterval == 0) {
+			startNanos = now();
+		}
+	}
+
+	public void stop() {
+		if (startNanos >= 0) {
+			sampledNanos += now() - startNanos;
+			sampledCalls++;
+			startNanos = -1;
+		}
+	}
+
+	/*
+	 * Add the estimated time of all the calls so far to the counter, at the end of the task
+	 */
+	public void flush() {
+		if (sampledCalls > 0) {
+			counter.increment(Math.round(sampledNanos * ((double) calls / sampledCalls) / 1000));
+		}
+		calls = 0;
+		sampledCalls = 0;
+		sampledNanos = 0;
+	}
+
+	private long now() {
+		return cpuTime ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+}
@@ -0,0 +1,105 @@
+package com.mapreduce.common.metrics;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+
+/*
+ * Machine readable report of the jobs of a run, written by the drivers next to their output
+ * { "jobs" : [ { "name", "id", "succeeded", "startTime", "finishTime", "counters" : { group : { counter : value } } } ] }
+ * Times are in milliseconds since the epoch, 0 when the job runner does not report them (local job runner)
+ * The file name starts with _ so that the jobs never read it as input
+ */
+public class RunReport {
+
+	public static final String REPORT_FILE = "_run-report.json";
+
+	private final List<Job> jobs = new ArrayList<Job>();
+
+	/*
+	 * Add a completed job, in the order the jobs were run
+	 */
+	public RunReport add(Job job) {
+		jobs.add(job);
+		return this;
+	}
+
+	/*
+	 * Write the report of all the jobs added into the given directory
+	 */
+	public void write(Configuration conf, Path directory) throws IOException, InterruptedException {
+		Path reportPath = new Path(directory, REPORT_FILE);
+		Writer writer = new OutputStreamWriter(reportPath.getFileSystem(conf).create(reportPath, true), "UTF-8");
+		try {
+			writer.write(toJson());
+		} finally {
+			writer.close();
+		}
+	}
+
+	public String toJson() throws IOException, InterruptedException {
+		StringBuilder json = new StringBuilder("{\n  \"jobs\" : [");
+		for (int index = 0; index < jobs.size(); index++) {
+			Job job = jobs.get(index);
+			json.append(index == 0 ? "\n" : ",\n");
+			json.append("    {\n");
+			json.append("      \"name\" : ").append(quote(job.getJobName())).append(",\n");
+			json.append("      \"id\" : ").append(quote(String.valueOf(job.getJobID()))).append(",\n");
+			json.append("      \"succeeded\" : ").append(job.isSuccessful()).append(",\n");
+			json.append("      \"startTime\" : ").append(job.getStartTime()).append(",\n");
+			json.append("      \"finishTime\" : ").append(job.getFinishTime()).append(",\n");
+			json.append("      \"counters\" : ");
+			appendCounters(json, job.getCounters());
+			json.append("\n    }");
+		}
+		return json.append("\n  ]\n}\n").toString();
+	}
+
+	private static void appendCounters(StringBuilder json, Counters counters) {
+		if (counters == null) {
+			json.append("{}");
+			return;
+		}
+		json.append('{');
+		boolean firstGroup = true;
+		for (CounterGroup group : counters) {
+			json.append(firstGroup ? "\n" : ",\n").append("        ").append(quote(group.getName())).append(" : {");
+			boolean firstCounter = true;
+			for (Counter counter : group) {
+				json.append(firstCounter ? "\n" : ",\n").append("          ")
+					.append(quote(counter.getName())).append(" : ").append(counter.getValue());
+				firstCounter = false;
+			}
+			json.append("\n        }");
+			firstGroup = false;
+		}
+		json.append("\n      }");
+	}
+
+	/*
+	 * JSON string of the given text, escaping quotes, backslashes and control characters
+	 */
+	private static String quote(String text) {
+		StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+		for (int index = 0; index < text.length(); index++) {
+			char character = text.charAt(index);
+			if (character == '"' || character == '\\') {
+				quoted.append('\\').append(character);
+			} else if (character < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) character));
+			} else {
+				quoted.append(character);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
@@ -0,0 +1,89 @@
+package com.mapreduce.common.sample;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.LineReader;
+
+/*
+ * Samples random lines of uncompressed text input, without reading the whole input
+ * Samples are spread over the files in proportion to their size, each sample seeks to a random offset
+ * and takes the first complete line after it
+ * Lines following long lines are slightly more likely to be picked, which is good enough for choosing split points
+ */
+public class RandomLineSampler {
+
+	//Bytes buffered after each seek, a line longer than this is still read completely
+	private static final int READ_BUFFER_SIZE = 4096;
+
+	private final Random random;
+
+	public RandomLineSampler(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/*
+	 * Sample about the given number of lines from the files below the given path
+	 * Hidden files, starting with _ or ., are ignored
+	 */
+	public List<Text> sample(Configuration conf, Path input, int numSamples) throws IOException {
+		FileSystem fileSystem = input.getFileSystem(conf);
+		List<LocatedFileStatus> files = new ArrayList<LocatedFileStatus>();
+		long totalLength = 0;
+
+		RemoteIterator<LocatedFileStatus> fileIterator = fileSystem.listFiles(input, true);
+		while (fileIterator.hasNext()) {
+			LocatedFileStatus file = fileIterator.next();
+			String fileName = file.getPath().getName();
+			if (file.getLen() > 0 && !fileName.startsWith("_") && !fileName.startsWith(".")) {
+				files.add(file);
+				totalLength += file.getLen();
+			}
+		}
+
+		List<Text> samples = new ArrayList<Text>(numSamples);
+		for (LocatedFileStatus file : files) {
+			//At least one sample from each file
+			int fileSamples = (int) Math.max(1, (numSamples * file.getLen()) / totalLength);
+			FSDataInputStream in = fileSystem.open(file.getPath());
+			try {
+				for (int count = 0; count < fileSamples; count++) {
+					Text line = readLineAt(in, (long) (random.nextDouble() * file.getLen()));
+					if (line != null) {
+						samples.add(line);
+					}
+				}
+			} finally {
+				in.close();
+			}
+		}
+		return samples;
+	}
+
+	/*
+	 * First complete line starting after the given offset, or null when there is none
+	 */
+	private Text readLineAt(FSDataInputStream in, long offset) throws IOException {
+		in.seek(offset);
+		LineReader reader = new LineReader(in, READ_BUFFER_SIZE);
+		Text line = new Text();
+
+		//Skip the rest of the line containing the offset, it is most likely partial
+		if (offset > 0 && reader.readLine(line) == 0) {
+			return null;
+		}
+		if (reader.readLine(line) == 0 || line.getLength() == 0) {
+			return null;
+		}
+		return line;
+	}
+}
@@ -0,0 +1,66 @@
+package com.mapreduce.common.sizing;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+
+/*
+ * Number of reduce tasks of a job, chosen from the size of its input instead of a constant
+ * One reducer per BYTES_PER_REDUCER of input, between 1 and MAX_REDUCERS
+ * A number of reducers given explicitly with -D mapreduce.job.reduces always wins
+ */
+public class ReducerSizing {
+	
+	public static final String BYTES_PER_REDUCER = "reducer.sizing.bytes.per.reducer";
+	public static final String MAX_REDUCERS = "reducer.sizing.max.reducers";
+	
+	private static final long DEFAULT_BYTES_PER_REDUCER = 1024L * 1024 * 1024;
+	private static final int DEFAULT_MAX_REDUCERS = 100;
+	
+	/*
+	 * Reducers for the total size of the given input paths
+	 */
+	public static int forInput(Configuration conf, Path... inputs) throws IOException {
+		long inputBytes = 0;
+		for (Path input : inputs) {
+			FileSystem fileSystem = input.getFileSystem(conf);
+			inputBytes += fileSystem.getContentSummary(input).getLength();
+		}
+		return forInputBytes(conf, inputBytes);
+	}
+	
+	public static int forInputBytes(Configuration conf, long inputBytes) {
+		long bytesPerReducer = Math.max(1, conf.getLong(BYTES_PER_REDUCER, DEFAULT_BYTES_PER_REDUCER));
+		return forUnits(conf, (inputBytes + bytesPerReducer - 1) / bytesPerReducer);
+	}
+	
+	/*
+	 * Reducers for the given number of units of work, such as the regions of a table
+	 */
+	public static int forUnits(Configuration conf, long units) {
+		if (isExplicit(conf, MRJobConfig.NUM_REDUCES)) {
+			return conf.getInt(MRJobConfig.NUM_REDUCES, 1);
+		}
+		int maxReducers = conf.getInt(MAX_REDUCERS, DEFAULT_MAX_REDUCERS);
+		return (int) Math.max(1, Math.min(maxReducers, units));
+	}
+	
+	/*
+	 * Whether the key was set by the user, rather than by the default resources loaded with the job classes
+	 */
+	private static boolean isExplicit(Configuration conf, String key) {
+		String[] sources = conf.getPropertySources(key);
+		if (sources == null) {
+			return false;
+		}
+		for (String source : sources) {
+			if (source.endsWith("-default.xml")) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,71 @@
+package com.mapreduce.common.topk;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Comparator;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+
+/*
+ * Entry of a top-K ranking, a name such as a genre or a carrier and the score it is ranked by
+ * | name, Text | score, double |
+ * Written as the name and the score separated by a tab, whole scores such as counts without a fraction
+ */
+public class ScoredNameWritable implements Writable {
+
+	/*
+	 * Highest score first, entries with the same score in increasing byte order of their names
+	 */
+	public static final Comparator<ScoredNameWritable> HIGHEST_FIRST = new Comparator<ScoredNameWritable>() {
+		public int compare(ScoredNameWritable entry1, ScoredNameWritable entry2) {
+			int comparison = Double.compare(entry2.score, entry1.score);
+			return comparison != 0 ? comparison : entry1.name.compareTo(entry2.name);
+		}
+	};
+
+	private Text name = new Text();
+	private double score;
+
+	public ScoredNameWritable() {
+	}
+
+	public ScoredNameWritable(Text name, double score) {
+		set(name, score);
+	}
+
+	public ScoredNameWritable(ScoredNameWritable other) {
+		set(other.name, other.score);
+	}
+
+	public void set(Text name, double score) {
+		this.name.set(name);
+		this.score = score;
+	}
+
+	public Text getName() {
+		return name;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	@Override
+	public void readFields(DataInput input) throws IOException {
+		name.readFields(input);
+		score = input.readDouble();
+	}
+
+	@Override
+	public void write(DataOutput output) throws IOException {
+		name.write(output);
+		output.writeDouble(score);
+	}
+
+	public String toString() {
+		boolean whole = score == Math.rint(score) && Math.abs(score) < Long.MAX_VALUE;
+		return name + "\t" + (whole ? Long.toString((long) score) : Double.toString(score));
+	}
+}
@@ -0,0 +1,68 @@
+package com.mapreduce.common.topk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+ * The k best elements offered so far, in a min-heap bounded to k elements
+ * The worst element kept is at the head of the heap and is the one evicted by a better element,
+ * so offering n elements costs O(n log k) and the heap never holds more than k of them
+ */
+public class TopKHeap<E> {
+
+	private final int k;
+	
+	//Best first order of the elements, ties have to be broken for the result to be deterministic
+	private final Comparator<E> order;
+	
+	//Worst first, the head is the next element to be evicted
+	private final PriorityQueue<E> heap;
+
+	public TopKHeap(int k, Comparator<E> order) {
+		this.k = k;
+		this.order = order;
+		this.heap = new PriorityQueue<E>(Math.max(1, k + 1), Collections.reverseOrder(order));
+	}
+
+	/*
+	 * Keep the element if it is among the k best so far, returns whether it was kept
+	 * A kept element is held by the heap, the caller must not modify it afterwards
+	 */
+	public boolean offer(E element) {
+		if (!wouldKeep(element)) {
+			return false;
+		}
+		if (heap.size() == k) {
+			heap.poll();
+		}
+		heap.add(element);
+		return true;
+	}
+
+	/*
+	 * Whether offering the element would keep it, so that reused objects are copied only when they are kept
+	 */
+	public boolean wouldKeep(E element) {
+		return heap.size() < k || (k > 0 && order.compare(element, heap.peek()) < 0);
+	}
+
+	/*
+	 * The elements kept, best first
+	 */
+	public List<E> getSorted() {
+		List<E> sorted = new ArrayList<E>(heap);
+		Collections.sort(sorted, order);
+		return sorted;
+	}
+
+	public int size() {
+		return heap.size();
+	}
+
+	public void clear() {
+		heap.clear();
+	}
+}
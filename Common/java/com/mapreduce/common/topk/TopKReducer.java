@@ -0,0 +1,84 @@
+package com.mapreduce.common.topk;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+
+/*
+ * Combiner and final reducer of a distributed top-K
+ * Each task of the previous stage keeps its own k best entries in a TopKHeap and sends only those, under a single NullWritable key,
+ * the combiner keeps the k best entries of a map task and the single reducer the k best of all, written best first
+ * Nothing is sorted but the few entries of the result
+ */
+public class TopKReducer extends Reducer<NullWritable, ScoredNameWritable, NullWritable, ScoredNameWritable> {
+
+	//Number of entries kept, 10 by default
+	public static final String K = "topk.k";
+	private static final int DEFAULT_K = 10;
+
+	private TopKHeap<ScoredNameWritable> topEntries;
+
+	protected void setup(Context context) {
+		topEntries = new TopKHeap<ScoredNameWritable>(getK(context.getConfiguration()), ScoredNameWritable.HIGHEST_FIRST);
+	}
+
+	public void reduce(NullWritable key, Iterable<ScoredNameWritable> values, Context context) throws IOException, InterruptedException {
+		topEntries.clear();
+		for (ScoredNameWritable value : values) {
+			//The framework reuses the value, only the entries kept are copied
+			if (topEntries.wouldKeep(value)) {
+				topEntries.offer(new ScoredNameWritable(value));
+			}
+		}
+		for (ScoredNameWritable entry : topEntries.getSorted()) {
+			context.write(key, entry);
+		}
+	}
+
+	public static int getK(Configuration conf) {
+		return conf.getInt(K, DEFAULT_K);
+	}
+
+	/*
+	 * Merge the top entries written by the tasks of a previous job as sequence files of (NullWritable, ScoredNameWritable)
+	 * into the k best, written best first as text to the given file once the job has succeeded; returns the completed job
+	 */
+	public static Job merge(Configuration conf, Path input, Path result) throws Exception {
+		Path mergeOutput = new Path(result.getParent(), "_" + result.getName() + "-merge");
+
+		Job mergeJob = new Job(conf, "Merge Top " + result.getName());
+		mergeJob.setJarByClass(TopKReducer.class);
+		mergeJob.setInputFormatClass(SequenceFileInputFormat.class);
+		mergeJob.setMapperClass(Mapper.class);
+		mergeJob.setCombinerClass(TopKReducer.class);
+		mergeJob.setReducerClass(TopKReducer.class);
+		mergeJob.setOutputKeyClass(NullWritable.class);
+		mergeJob.setOutputValueClass(ScoredNameWritable.class);
+		mergeJob.setOutputFormatClass(TextOutputFormat.class);
+
+		//The k best of all the entries
+		mergeJob.setNumReduceTasks(1);
+		FileInputFormat.addInputPath(mergeJob, input);
+		FileOutputFormat.setOutputPath(mergeJob, mergeOutput);
+
+		if (mergeJob.waitForCompletion(true)) {
+			FileSystem fileSystem = result.getFileSystem(conf);
+			fileSystem.delete(result, false);
+			if (!fileSystem.rename(new Path(mergeOutput, "part-r-00000"), result)) {
+				throw new IOException("Could not move the top entries merged in " + mergeOutput + " to " + result);
+			}
+			fileSystem.delete(mergeOutput, true);
+		}
+		return mergeJob;
+	}
+}
@@ -0,0 +1,592 @@
+package com.music.genre;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+import org.apache.hadoop.util.LineReader;
+
+import com.mapreduce.common.cache.CacheFiles;
+import com.mapreduce.common.csv.CSVFieldScanner;
+import com.mapreduce.common.dictionary.Dictionary;
+import com.mapreduce.common.dictionary.DictionaryBuilder;
+import com.mapreduce.common.join.BloomFilter;
+import com.mapreduce.common.join.SemiJoinFilter;
+import com.mapreduce.common.metrics.RunReport;
+import com.mapreduce.common.sizing.ReducerSizing;
+import com.mapreduce.common.topk.ScoredNameWritable;
+import com.mapreduce.common.topk.TopKHeap;
+
+/*
+ * Most popular genres of the 21st century, the plain map reduce counterpart of the Hive and Pig scripts
+ * The artist genre pairs and the track metadata are small, every mapper loads them from the distributed cache
+ * and joins the user - song - play count triplets with the genres of their song on the map side (replicated join),
+ * so only play counts by genre id are shuffled, and a single reducer keeps the most popular genres in a bounded heap (Common topk)
+ * The reduce side join mode joins by song id instead, behind a Bloom filter of the qualifying songs
+ */
+public class MostPopularGenres {
+	
+	//Number of genres written, the ten most popular by default
+	public static final String TOP_GENRES = "genre.top.k";
+	private static final int DEFAULT_TOP_GENRES = 10;
+	
+	//Path of the genre dictionary, built from the artist genre pairs when missing, <out>.genres by default
+	public static final String GENRE_DICTIONARY = "genre.dictionary";
+	
+	//Configuration flag enabling in-mapper aggregation of the play counts, in an array indexed by genre id
+	public static final String IN_MAPPER_AGGREGATION = "genre.inmapper.aggregation";
+	
+	//Configuration flag joining the triplets with the tracks on the reduce side, behind a Bloom filter of the qualifying songs
+	public static final String REDUCE_JOIN = "genre.reduce.join";
+	
+	/*************** Names of the side files in the distributed cache *****************/
+	private static final String ARTIST_GENRES_NAME = "artist_genres";
+	private static final String TRACKS_NAME = "unique_tracks";
+	private static final String GENRES_NAME = "genres.dict";
+	private static final String SONG_FILTER_NAME = "songs.bloom";
+	
+	/*
+	 * Triplets read, joined with at least one genre, and dropped by reason
+	 */
+	public static enum GenreCounters {
+		TRIPLETS_READ, TRIPLETS_JOINED, DROPPED_MALFORMED, DROPPED_OTHER_SONG
+	}
+	
+	/*
+	 * Mapper joining each triplet with the genres of its song, emits the play count once per genre
+	 */
+	public static class GenreListenMapper extends Mapper<Object, Text, IntWritable, LongWritable> {
+		
+		/*************** Indexes of relevant data in the tab delimited files *****************/
+		static final int TRIPLET_SONG_INDEX = 1;
+		static final int TRIPLET_COUNT_INDEX = 2;
+		static final int ARTIST_INDEX = 0;
+		static final int GENRE_INDEX = 1;
+		static final int TRACK_SONG_INDEX = 2;
+		static final int TRACK_ARTIST_INDEX = 4;
+		static final int TRACK_YEAR_INDEX = 10;
+		
+		/*************** Problem statement data *****************/
+		private static final int START_YEAR = 2000;
+		
+		//Genre ids of each song released in or after START_YEAR
+		private Map<Text, int[]> songGenres;
+		
+		//Play counts by genre id for in-mapper aggregation, null when every play count is emitted
+		private long[] genreListens;
+		
+		private CSVFieldScanner scanner = new CSVFieldScanner(TRIPLET_COUNT_INDEX, '\t', false);
+		private Text songID = new Text();
+		private IntWritable genreID = new IntWritable();
+		private LongWritable listens = new LongWritable();
+		private Counter[] genreCounters;
+		
+		protected void setup(Context context) throws IOException {
+			Dictionary genres = Dictionary.fromCache(context, GENRES_NAME);
+			songGenres = loadSongGenres(context, genres);
+			if (context.getConfiguration().getBoolean(IN_MAPPER_AGGREGATION, false)) {
+				genreListens = new long[genres.size()];
+			}
+			genreCounters = new Counter[GenreCounters.values().length];
+			for (GenreCounters counter : GenreCounters.values()) {
+				genreCounters[counter.ordinal()] = context.getCounter(counter);
+			}
+		}
+		
+		/*
+		 * Key : Offset in input file to read the data from
+		 * Value : Tab delimited user id, song id and play count
+		 */
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+			genreCounters[GenreCounters.TRIPLETS_READ.ordinal()].increment(1);
+			scanner.scan(value);
+			if (!scanner.hasField(TRIPLET_COUNT_INDEX) || scanner.isEmpty(TRIPLET_COUNT_INDEX)) {
+				genreCounters[GenreCounters.DROPPED_MALFORMED.ordinal()].increment(1);
+				return;
+			}
+			
+			scanner.getText(TRIPLET_SONG_INDEX, songID);
+			int[] genreIDs = songGenres.get(songID);
+			if (genreIDs == null) {
+				//Song released before START_YEAR, or whose artist has no genre
+				genreCounters[GenreCounters.DROPPED_OTHER_SONG.ordinal()].increment(1);
+				return;
+			}
+			
+			long playCount;
+			try {
+				playCount = scanner.getLong(TRIPLET_COUNT_INDEX);
+			} catch (NumberFormatException e) {
+				genreCounters[GenreCounters.DROPPED_MALFORMED.ordinal()].increment(1);
+				return;
+			}
+			
+			for (int genre : genreIDs) {
+				if (genreListens != null) {
+					genreListens[genre] += playCount;
+				} else {
+					genreID.set(genre);
+					listens.set(playCount);
+					context.write(genreID, listens);
+				}
+			}
+			genreCounters[GenreCounters.TRIPLETS_JOINED.ordinal()].increment(1);
+		}
+		
+		/*
+		 * Emit the aggregated play counts of the map task, at most one record per genre
+		 */
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			for (int genre = 0; genreListens != null && genre < genreListens.length; genre++) {
+				if (genreListens[genre] > 0) {
+					genreID.set(genre);
+					listens.set(genreListens[genre]);
+					context.write(genreID, listens);
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Genre ids of each song released in or after START_YEAR, from the artist genre pairs and track metadata in the distributed cache
+	 * A song listed by several tracks gets the genres of each track, like the joins of the Hive and Pig scripts
+	 */
+	static Map<Text, int[]> loadSongGenres(JobContext context, Dictionary genres) throws IOException {
+		return loadSongGenres(CacheFiles.open(context, ARTIST_GENRES_NAME), CacheFiles.open(context, TRACKS_NAME), genres);
+	}
+	
+	/*
+	 * Genre ids of each song released in or after START_YEAR, read from the given artist genre pairs and track metadata, closes both streams
+	 */
+	static Map<Text, int[]> loadSongGenres(InputStream artistGenreInput, InputStream trackInput, Dictionary genres) throws IOException {
+		LineReader reader = new LineReader(trackInput);
+		try {
+			Map<Text, int[]> artistGenres = loadArtistGenres(artistGenreInput, genres);
+			
+			//Genre ids of each song, through its artist
+			Map<Text, int[]> songGenres = new HashMap<Text, int[]>();
+			CSVFieldScanner trackScanner = new CSVFieldScanner(GenreListenMapper.TRACK_YEAR_INDEX, '\t', false);
+			Text line = new Text();
+			Text artistID = new Text();
+			while (reader.readLine(line) > 0) {
+				int[] genreIDs = getTrackGenres(line, trackScanner, artistGenres, artistID);
+				if (genreIDs != null) {
+					Text songID = new Text();
+					trackScanner.getText(GenreListenMapper.TRACK_SONG_INDEX, songID);
+					int[] previousGenreIDs = songGenres.get(songID);
+					songGenres.put(songID, previousGenreIDs == null ? genreIDs : append(previousGenreIDs, genreIDs));
+				}
+			}
+			return songGenres;
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/*
+	 * Genre ids of each artist, read from the given artist genre pairs, closes the stream
+	 */
+	static Map<Text, int[]> loadArtistGenres(InputStream input, Dictionary genres) throws IOException {
+		Map<Text, int[]> artistGenres = new HashMap<Text, int[]>();
+		CSVFieldScanner pairScanner = new CSVFieldScanner(GenreListenMapper.GENRE_INDEX, '\t', false);
+		Text line = new Text();
+		LineReader reader = new LineReader(input);
+		try {
+			while (reader.readLine(line) > 0) {
+				pairScanner.scan(line);
+				if (!pairScanner.hasField(GenreListenMapper.GENRE_INDEX) || pairScanner.isEmpty(GenreListenMapper.GENRE_INDEX)) {
+					continue;
+				}
+				int genreID = genres.getId(pairScanner.getBytes(), pairScanner.getStart(GenreListenMapper.GENRE_INDEX), 
+						pairScanner.getLength(GenreListenMapper.GENRE_INDEX));
+				if (genreID < 0) {
+					throw new IOException("Genre " + pairScanner.getString(GenreListenMapper.GENRE_INDEX) 
+							+ " is not in the genre dictionary, remove the file of " + GENRE_DICTIONARY + " to rebuild it");
+				}
+				Text artistID = new Text();
+				pairScanner.getText(GenreListenMapper.ARTIST_INDEX, artistID);
+				artistGenres.put(artistID, append(artistGenres.get(artistID), genreID));
+			}
+		} finally {
+			reader.close();
+		}
+		return artistGenres;
+	}
+	
+	/*
+	 * Genre ids of the artist of the given track line when the track was released in or after START_YEAR, null otherwise
+	 * The track fields stay in the scanner for the caller
+	 */
+	static int[] getTrackGenres(Text line, CSVFieldScanner trackScanner, Map<Text, int[]> artistGenres, Text artistID) {
+		trackScanner.scan(line);
+		if (!trackScanner.hasField(GenreListenMapper.TRACK_YEAR_INDEX) || trackScanner.isEmpty(GenreListenMapper.TRACK_YEAR_INDEX)) {
+			return null;
+		}
+		try {
+			if (trackScanner.getInt(GenreListenMapper.TRACK_YEAR_INDEX) < GenreListenMapper.START_YEAR) {
+				return null;
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		trackScanner.getText(GenreListenMapper.TRACK_ARTIST_INDEX, artistID);
+		return artistGenres.get(artistID);
+	}
+	
+	private static int[] append(int[] ids, int... moreIDs) {
+		if (ids == null) {
+			return moreIDs.clone();
+		}
+		int[] appended = Arrays.copyOf(ids, ids.length + moreIDs.length);
+		System.arraycopy(moreIDs, 0, appended, ids.length, moreIDs.length);
+		return appended;
+	}
+	
+	/*
+	 * Combiner, sums the play counts of each genre
+	 */
+	public static class GenreListenCombiner extends Reducer<IntWritable, LongWritable, IntWritable, LongWritable> {
+		
+		private LongWritable listens = new LongWritable();
+		
+		public void reduce(IntWritable key, Iterable<LongWritable> values, Context context) throws IOException, InterruptedException {
+			long sum = 0;
+			for (LongWritable value : values) {
+				sum += value.get();
+			}
+			listens.set(sum);
+			context.write(key, listens);
+		}
+	}
+	
+	/*
+	 * Single reducer, sums the play counts of each genre and keeps only the most popular genres in a bounded min-heap (Common TopKHeap)
+	 * Genres with the same play count are ranked by genre name, the heap never holds more than TOP_GENRES genres
+	 */
+	public static class TopGenreReducer extends Reducer<IntWritable, LongWritable, NullWritable, ScoredNameWritable> {
+		
+		private Dictionary genres;
+		
+		//Genre names and play counts of the most popular genres so far
+		private TopKHeap<ScoredNameWritable> mostPopular;
+		
+		protected void setup(Context context) throws IOException {
+			genres = Dictionary.fromCache(context, GENRES_NAME);
+			mostPopular = new TopKHeap<ScoredNameWritable>(context.getConfiguration().getInt(TOP_GENRES, DEFAULT_TOP_GENRES), 
+					ScoredNameWritable.HIGHEST_FIRST);
+		}
+		
+		public void reduce(IntWritable key, Iterable<LongWritable> values, Context context) throws IOException, InterruptedException {
+			long sum = 0;
+			for (LongWritable value : values) {
+				sum += value.get();
+			}
+			mostPopular.offer(new ScoredNameWritable(genres.getValue(key.get()), sum));
+		}
+		
+		/*
+		 * Write the genres from the most popular down
+		 */
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			for (ScoredNameWritable genre : mostPopular.getSorted()) {
+				context.write(NullWritable.get(), genre);
+			}
+		}
+	}
+	
+	/*
+	 * Reduce side join mode, mapper of the triplets
+	 * Probes the song id of each triplet in the Bloom filter of the qualifying songs and drops the triplets that cannot join
+	 * before the shuffle, the others are sent to the reducer of their song id
+	 */
+	public static class TripletFilterMapper extends Mapper<Object, Text, Text, SongJoinWritable> {
+		
+		private SemiJoinFilter songFilter;
+		private CSVFieldScanner scanner = new CSVFieldScanner(GenreListenMapper.TRIPLET_COUNT_INDEX, '\t', false);
+		private Text songID = new Text();
+		private SongJoinWritable triplet = new SongJoinWritable();
+		private Counter[] genreCounters;
+		
+		protected void setup(Context context) throws IOException {
+			songFilter = SemiJoinFilter.fromCache(context, SONG_FILTER_NAME);
+			genreCounters = new Counter[GenreCounters.values().length];
+			for (GenreCounters counter : GenreCounters.values()) {
+				genreCounters[counter.ordinal()] = context.getCounter(counter);
+			}
+		}
+		
+		/*
+		 * Key : Offset in input file to read the data from
+		 * Value : Tab delimited user id, song id and play count
+		 */
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+			genreCounters[GenreCounters.TRIPLETS_READ.ordinal()].increment(1);
+			scanner.scan(value);
+			if (!scanner.hasField(GenreListenMapper.TRIPLET_COUNT_INDEX) || scanner.isEmpty(GenreListenMapper.TRIPLET_COUNT_INDEX)) {
+				genreCounters[GenreCounters.DROPPED_MALFORMED.ordinal()].increment(1);
+				return;
+			}
+			
+			if (!songFilter.probe(scanner.getBytes(), scanner.getStart(GenreListenMapper.TRIPLET_SONG_INDEX), 
+					scanner.getLength(GenreListenMapper.TRIPLET_SONG_INDEX))) {
+				genreCounters[GenreCounters.DROPPED_OTHER_SONG.ordinal()].increment(1);
+				return;
+			}
+			
+			try {
+				triplet.setPlayCount(scanner.getLong(GenreListenMapper.TRIPLET_COUNT_INDEX));
+			} catch (NumberFormatException e) {
+				genreCounters[GenreCounters.DROPPED_MALFORMED.ordinal()].increment(1);
+				return;
+			}
+			scanner.getText(GenreListenMapper.TRIPLET_SONG_INDEX, songID);
+			context.write(songID, triplet);
+		}
+	}
+	
+	/*
+	 * Reduce side join mode, mapper of the track metadata
+	 * Sends the genre ids of each track released in or after START_YEAR to the reducer of its song id
+	 */
+	public static class TrackGenreMapper extends Mapper<Object, Text, Text, SongJoinWritable> {
+		
+		//Genre ids of each artist
+		private Map<Text, int[]> artistGenres;
+		
+		private CSVFieldScanner trackScanner = new CSVFieldScanner(GenreListenMapper.TRACK_YEAR_INDEX, '\t', false);
+		private Text artistID = new Text();
+		private Text songID = new Text();
+		private SongJoinWritable track = new SongJoinWritable();
+		
+		protected void setup(Context context) throws IOException {
+			artistGenres = loadArtistGenres(CacheFiles.open(context, ARTIST_GENRES_NAME), Dictionary.fromCache(context, GENRES_NAME));
+		}
+		
+		/*
+		 * Key : Offset in input file to read the data from
+		 * Value : Tab delimited track metadata
+		 */
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
+			int[] genreIDs = getTrackGenres(value, trackScanner, artistGenres, artistID);
+			if (genreIDs != null) {
+				trackScanner.getText(GenreListenMapper.TRACK_SONG_INDEX, songID);
+				track.setGenres(genreIDs);
+				context.write(songID, track);
+			}
+		}
+	}
+	
+	/*
+	 * Reduce side join mode, joins the triplets of a song with the genres of its tracks and emits the play count of the song once per genre
+	 * Triplets of a song without genres passed the Bloom filter by mistake and are counted as its false positives
+	 */
+	public static class SongJoinReducer extends Reducer<Text, SongJoinWritable, IntWritable, LongWritable> {
+		
+		private IntWritable genreID = new IntWritable();
+		private LongWritable listens = new LongWritable();
+		private Counter[] genreCounters;
+		
+		protected void setup(Context context) {
+			genreCounters = new Counter[GenreCounters.values().length];
+			for (GenreCounters counter : GenreCounters.values()) {
+				genreCounters[counter.ordinal()] = context.getCounter(counter);
+			}
+		}
+		
+		public void reduce(Text key, Iterable<SongJoinWritable> values, Context context) throws IOException, InterruptedException {
+			int[] genreIDs = null;
+			long playCount = 0;
+			long triplets = 0;
+			for (SongJoinWritable value : values) {
+				if (value.isGenres()) {
+					//A song listed by several tracks gets the genres of each track, like the replicated join
+					genreIDs = append(genreIDs, value.getGenreIDs());
+				} else {
+					playCount += value.getPlayCount();
+					triplets++;
+				}
+			}
+			
+			if (genreIDs == null) {
+				SemiJoinFilter.countFalsePositives(context, triplets);
+				genreCounters[GenreCounters.DROPPED_OTHER_SONG.ordinal()].increment(triplets);
+				return;
+			}
+			if (triplets == 0) {
+				return;
+			}
+			
+			listens.set(playCount);
+			for (int genre : genreIDs) {
+				genreID.set(genre);
+				context.write(genreID, listens);
+			}
+			genreCounters[GenreCounters.TRIPLETS_JOINED.ordinal()].increment(triplets);
+		}
+	}
+	
+	/*
+	 * Run the job, building the genre dictionary first when its file does not exist yet
+	 * Returns the last job run, the dictionary job when it failed
+	 */
+	public static Job run(Configuration genreConf, Path triplets, Path artistGenres, Path tracks, Path output) throws Exception {
+		Path dictionaryPath = new Path(genreConf.get(GENRE_DICTIONARY, output + ".genres"));
+		RunReport runReport = new RunReport();
+		if (!dictionaryPath.getFileSystem(genreConf).exists(dictionaryPath)) {
+			Configuration dictionaryConf = new Configuration(genreConf);
+			dictionaryConf.setInt(DictionaryBuilder.FIELDS, GenreListenMapper.GENRE_INDEX);
+			dictionaryConf.set(DictionaryBuilder.DELIMITER, "\t");
+			Job dictionaryJob = DictionaryBuilder.build(dictionaryConf, artistGenres, dictionaryPath, DictionaryBuilder.FieldValueMapper.class);
+			runReport.add(dictionaryJob);
+			if (!dictionaryJob.isSuccessful()) {
+				return dictionaryJob;
+			}
+		}
+		
+		if (genreConf.getBoolean(REDUCE_JOIN, false)) {
+			return runReduceJoin(genreConf, triplets, artistGenres, tracks, dictionaryPath, output, runReport);
+		}
+		
+		Job genreJob = new Job(genreConf, "Most Popular Genres");
+		genreJob.setJarByClass(MostPopularGenres.class);
+		
+		//Side tables of the replicated join
+		CacheFiles.add(genreJob, artistGenres, ARTIST_GENRES_NAME);
+		CacheFiles.add(genreJob, tracks, TRACKS_NAME);
+		Dictionary.addToCache(genreJob, dictionaryPath, GENRES_NAME);
+		
+		//Setup map reduce classes
+		genreJob.setMapperClass(GenreListenMapper.class);
+		genreJob.setCombinerClass(GenreListenCombiner.class);
+		genreJob.setReducerClass(TopGenreReducer.class);
+		
+		//Setup output classes
+		genreJob.setMapOutputKeyClass(IntWritable.class);
+		genreJob.setMapOutputValueClass(LongWritable.class);
+		genreJob.setOutputKeyClass(NullWritable.class);
+		genreJob.setOutputValueClass(ScoredNameWritable.class);
+		
+		//The most popular genres are chosen among all the genres
+		genreJob.setNumReduceTasks(1);
+		
+		FileInputFormat.addInputPath(genreJob, triplets);
+		FileOutputFormat.setOutputPath(genreJob, output);
+		
+		if (genreJob.waitForCompletion(true)) {
+			runReport.add(genreJob).write(genreConf, output);
+		}
+		return genreJob;
+	}
+	
+	/*
+	 * Reduce side join mode, the triplets are joined with the tracks by song id in a first job and the play counts
+	 * of each genre are ranked by a second job; a Bloom filter of the qualifying song ids, built here from the side tables,
+	 * keeps the triplets of the other songs out of the shuffle of the join
+	 * Returns the last job run
+	 */
+	private static Job runReduceJoin(Configuration genreConf, Path triplets, Path artistGenres, Path tracks, Path dictionaryPath, 
+			Path output, RunReport runReport) throws Exception {
+		FileSystem fileSystem = output.getFileSystem(genreConf);
+		Path songFilterPath = new Path(output + ".songs.bloom");
+		Path joinOutput = new Path(output + ".join");
+		
+		Map<Text, int[]> songGenres = loadSongGenres(artistGenres.getFileSystem(genreConf).open(artistGenres), 
+				tracks.getFileSystem(genreConf).open(tracks), Dictionary.read(genreConf, dictionaryPath));
+		BloomFilter songFilter = SemiJoinFilter.newFilter(genreConf, songGenres.size());
+		for (Text songID : songGenres.keySet()) {
+			songFilter.add(songID.getBytes(), 0, songID.getLength());
+		}
+		SemiJoinFilter.save(genreConf, songFilterPath, songFilter);
+		
+		Job joinJob = new Job(genreConf, "Most Popular Genres Join");
+		joinJob.setJarByClass(MostPopularGenres.class);
+		SemiJoinFilter.addToCache(joinJob, songFilterPath, SONG_FILTER_NAME);
+		CacheFiles.add(joinJob, artistGenres, ARTIST_GENRES_NAME);
+		Dictionary.addToCache(joinJob, dictionaryPath, GENRES_NAME);
+		
+		//Setup map reduce classes
+		MultipleInputs.addInputPath(joinJob, triplets, TextInputFormat.class, TripletFilterMapper.class);
+		MultipleInputs.addInputPath(joinJob, tracks, TextInputFormat.class, TrackGenreMapper.class);
+		joinJob.setReducerClass(SongJoinReducer.class);
+		
+		//Setup output classes
+		joinJob.setMapOutputKeyClass(Text.class);
+		joinJob.setMapOutputValueClass(SongJoinWritable.class);
+		joinJob.setOutputKeyClass(IntWritable.class);
+		joinJob.setOutputValueClass(LongWritable.class);
+		joinJob.setOutputFormatClass(SequenceFileOutputFormat.class);
+		
+		joinJob.setNumReduceTasks(ReducerSizing.forInput(genreConf, triplets, tracks));
+		FileOutputFormat.setOutputPath(joinJob, joinOutput);
+		
+		boolean joined = joinJob.waitForCompletion(true);
+		fileSystem.delete(songFilterPath, false);
+		runReport.add(joinJob);
+		if (!joined) {
+			return joinJob;
+		}
+		
+		Job genreJob = new Job(genreConf, "Most Popular Genres");
+		genreJob.setJarByClass(MostPopularGenres.class);
+		Dictionary.addToCache(genreJob, dictionaryPath, GENRES_NAME);
+		
+		//Setup map reduce classes, the joined play counts are read as they were written
+		genreJob.setInputFormatClass(SequenceFileInputFormat.class);
+		genreJob.setMapperClass(Mapper.class);
+		genreJob.setCombinerClass(GenreListenCombiner.class);
+		genreJob.setReducerClass(TopGenreReducer.class);
+		
+		//Setup output classes
+		genreJob.setMapOutputKeyClass(IntWritable.class);
+		genreJob.setMapOutputValueClass(LongWritable.class);
+		genreJob.setOutputKeyClass(NullWritable.class);
+		genreJob.setOutputValueClass(ScoredNameWritable.class);
+		
+		//The most popular genres are chosen among all the genres
+		genreJob.setNumReduceTasks(1);
+		
+		FileInputFormat.addInputPath(genreJob, joinOutput);
+		FileOutputFormat.setOutputPath(genreJob, output);
+		
+		if (genreJob.waitForCompletion(true)) {
+			fileSystem.delete(joinOutput, true);
+			runReport.add(genreJob).write(genreConf, output);
+		}
+		return genreJob;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		
+		Configuration genreConf = new Configuration();
+		String[] otherArgs = new GenericOptionsParser(genreConf, args).getRemainingArgs();
+		
+		if (otherArgs.length != 4) {
+			System.err.println("Usage: MostPopularGenres <user triplets> <artist genres> <unique tracks> <out>");
+			System.exit(2);
+		}
+		
+		Job lastJob = run(genreConf, new Path(otherArgs[0]), new Path(otherArgs[1]), new Path(otherArgs[2]), new Path(otherArgs[3]));
+		System.exit(lastJob.isSuccessful() ? 0 : 1);
+	}
+}
@@ -0,0 +1,76 @@
+package com.music.genre;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/*
+ * Map output value of the reduce side join by song id, either the genre ids of a track of the song or the play count of a triplet
+ * | side, 1 byte | genre ids, vint count then vints | or | side, 1 byte | play count, vlong |
+ */
+public class SongJoinWritable implements Writable {
+
+	private static final byte GENRES = 0;
+	private static final byte TRIPLET = 1;
+
+	private byte side;
+	private int[] genreIDs = new int[0];
+	private long playCount;
+
+	public void setGenres(int[] genreIDs) {
+		this.side = GENRES;
+		this.genreIDs = genreIDs;
+	}
+
+	public void setPlayCount(long playCount) {
+		this.side = TRIPLET;
+		this.playCount = playCount;
+	}
+
+	public boolean isGenres() {
+		return side == GENRES;
+	}
+
+	/*
+	 * Genre ids of the track, shared with the next record read and not to be kept
+	 */
+	public int[] getGenreIDs() {
+		return genreIDs;
+	}
+
+	public long getPlayCount() {
+		return playCount;
+	}
+
+	@Override
+	public void readFields(DataInput input) throws IOException {
+		side = input.readByte();
+		if (side == GENRES) {
+			int length = WritableUtils.readVInt(input);
+			if (genreIDs.length != length) {
+				genreIDs = new int[length];
+			}
+			for (int index = 0; index < length; index++) {
+				genreIDs[index] = WritableUtils.readVInt(input);
+			}
+		} else {
+			playCount = WritableUtils.readVLong(input);
+		}
+	}
+
+	@Override
+	public void write(DataOutput output) throws IOException {
+		output.writeByte(side);
+		if (side == GENRES) {
+			WritableUtils.writeVInt(output, genreIDs.length);
+			for (int genreID : genreIDs) {
+				WritableUtils.writeVInt(output, genreID);
+			}
+		} else {
+			WritableUtils.writeVLong(output, playCount);
+		}
+	}
+}